@@ -194,7 +194,22 @@ public class Vertigo {
    * @return The Vertigo instance.
    */
   public Vertigo deployCluster(final String cluster, int nodes, final Handler<AsyncResult<ClusterManager>> doneHandler) {
-    JsonObject config = new JsonObject().putString("cluster", cluster);
+    return deployCluster(cluster, new JsonObject(), nodes, doneHandler);
+  }
+
+  /**
+   * Deploys multiple nodes within a cluster at the given address.
+   *
+   * @param cluster The cluster event bus address.
+   * @param config Additional cluster agent configuration, e.g. <code>persistence</code>.
+   * @param nodes The number of nodes to deploy.
+   * @param doneHandler An asynchronous handler to be called once the cluster
+   *        has been deployed. The handler will be called with a {@link ClusterManager}
+   *        which can be used to manage networks running in the cluster.
+   * @return The Vertigo instance.
+   */
+  public Vertigo deployCluster(final String cluster, JsonObject config, int nodes, final Handler<AsyncResult<ClusterManager>> doneHandler) {
+    config = config.copy().putString("cluster", cluster);
     container.deployWorkerVerticle(getClusterMain(), config, nodes, false, new Handler<AsyncResult<String>>() {
       @Override
       public void handle(AsyncResult<String> result) {
@@ -15,11 +15,19 @@
  */
 package net.kuujo.vertigo.cluster;
 
+import net.kuujo.vertigo.cluster.data.AsyncBloomFilter;
+import net.kuujo.vertigo.cluster.data.AsyncCountMinSketch;
 import net.kuujo.vertigo.cluster.data.AsyncCounter;
+import net.kuujo.vertigo.cluster.data.AsyncHyperLogLog;
 import net.kuujo.vertigo.cluster.data.AsyncList;
+import net.kuujo.vertigo.cluster.data.AsyncLock;
 import net.kuujo.vertigo.cluster.data.AsyncMap;
 import net.kuujo.vertigo.cluster.data.AsyncQueue;
 import net.kuujo.vertigo.cluster.data.AsyncSet;
+import net.kuujo.vertigo.cluster.data.CounterAccumulatorOptions;
+import net.kuujo.vertigo.cluster.data.NearCacheOptions;
+import net.kuujo.vertigo.cluster.data.SketchOptions;
+import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
@@ -714,6 +722,18 @@ public interface Cluster {
    */
   <K, V> AsyncMap<K, V> getMap(String name);
 
+  /**
+   * Returns an asynchronous cluster-wide replicated map with a near cache.<p>
+   *
+   * Values read from the map are cached locally and invalidated when the
+   * cached key changes anywhere in the cluster.
+   *
+   * @param name The map name.
+   * @param options The near cache options.
+   * @return An asynchronous cluster-wide replicated map.
+   */
+  <K, V> WatchableAsyncMap<K, V> getMap(String name, NearCacheOptions options);
+
   /**
    * Returns an asynchronous cluster-wide replicated list.
    *
@@ -746,4 +766,97 @@ public interface Cluster {
    */
   AsyncCounter getCounter(String name);
 
+  /**
+   * Returns an asynchronous cluster-wide counter that accumulates updates locally.<p>
+   *
+   * Updates to the counter are collected locally and flushed to the cluster
+   * as a single update periodically or once the accumulated delta reaches
+   * the configured threshold. Calls with the same name and equal options
+   * return the same counter, while calls with different options return
+   * counters that accumulate independently.
+   *
+   * @param name The counter name.
+   * @param options The counter accumulator options.
+   * @return An asynchronous cluster-wide counter.
+   */
+  AsyncCounter getCounter(String name, CounterAccumulatorOptions options);
+
+  /**
+   * Returns an asynchronous cluster-wide lease based lock.
+   *
+   * @param name The lock name.
+   * @return An asynchronous cluster-wide lock.
+   */
+  AsyncLock getLock(String name);
+
+  /**
+   * Returns an asynchronous cluster-wide HyperLogLog with default options.
+   *
+   * @param name The HyperLogLog name.
+   * @return An asynchronous cluster-wide HyperLogLog.
+   */
+  AsyncHyperLogLog getHyperLogLog(String name);
+
+  /**
+   * Returns an asynchronous cluster-wide HyperLogLog.<p>
+   *
+   * Items are added to a local sketch and merged into the cluster's sketch
+   * in batches. Options only apply to the first instance returned for a name.
+   *
+   * @param name The HyperLogLog name.
+   * @param options The sketch options.
+   * @return An asynchronous cluster-wide HyperLogLog.
+   */
+  AsyncHyperLogLog getHyperLogLog(String name, SketchOptions options);
+
+  /**
+   * Returns an asynchronous cluster-wide Count-Min sketch with default options.
+   *
+   * @param name The sketch name.
+   * @return An asynchronous cluster-wide Count-Min sketch.
+   */
+  AsyncCountMinSketch getCountMinSketch(String name);
+
+  /**
+   * Returns an asynchronous cluster-wide Count-Min sketch.<p>
+   *
+   * Items are added to a local sketch and merged into the cluster's sketch
+   * in batches. Options only apply to the first instance returned for a name.
+   *
+   * @param name The sketch name.
+   * @param options The sketch options.
+   * @return An asynchronous cluster-wide Count-Min sketch.
+   */
+  AsyncCountMinSketch getCountMinSketch(String name, SketchOptions options);
+
+  /**
+   * Returns an asynchronous cluster-wide Bloom filter with default options.
+   *
+   * @param name The filter name.
+   * @return An asynchronous cluster-wide Bloom filter.
+   */
+  AsyncBloomFilter getBloomFilter(String name);
+
+  /**
+   * Returns an asynchronous cluster-wide Bloom filter.<p>
+   *
+   * Items are added to a local filter and merged into the cluster's filter
+   * in batches. Options only apply to the first instance returned for a name.
+   *
+   * @param name The filter name.
+   * @param options The sketch options.
+   * @return An asynchronous cluster-wide Bloom filter.
+   */
+  AsyncBloomFilter getBloomFilter(String name, SketchOptions options);
+
+  /**
+   * Flushes all locally accumulated counter updates and sketch batches.<p>
+   *
+   * Components flush their cluster when they're stopped so that updates
+   * accumulated since the last flush are not lost.
+   *
+   * @param doneHandler An asynchronous handler to be called once all updates have been flushed.
+   */
+  void flush(Handler<AsyncResult<Void>> doneHandler);
+
 }
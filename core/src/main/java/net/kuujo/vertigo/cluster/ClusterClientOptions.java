@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cluster client options.<p>
+ *
+ * These options control how requests are sent to the cluster. Each request
+ * fails once its timeout passes without a reply, and the timeout can be set
+ * per action so that quick data operations fail fast while slow operations
+ * like deployments are given more time. Requests that fail because no agent
+ * received them are retried, as are read-only requests that time out.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ClusterClientOptions {
+  public static final long DEFAULT_TIMEOUT = 5000;
+  public static final long DEFAULT_DEPLOY_TIMEOUT = 30000;
+  public static final int DEFAULT_RETRIES = 2;
+  public static final long DEFAULT_RETRY_DELAY = 100;
+  public static final boolean DEFAULT_COALESCE_READS = true;
+  public static final long DEFAULT_LOCK_WAIT_TIMEOUT = 30000;
+
+  private long timeout = DEFAULT_TIMEOUT;
+  private final Map<String, Long> timeouts = new HashMap<>();
+  private int retries = DEFAULT_RETRIES;
+  private long retryDelay = DEFAULT_RETRY_DELAY;
+  private boolean coalesceReads = DEFAULT_COALESCE_READS;
+  private long lockWaitTimeout = DEFAULT_LOCK_WAIT_TIMEOUT;
+
+  public ClusterClientOptions() {
+    timeouts.put("deploy", DEFAULT_DEPLOY_TIMEOUT);
+    timeouts.put("undeploy", DEFAULT_DEPLOY_TIMEOUT);
+  }
+
+  /**
+   * Sets the default request timeout.
+   *
+   * @param timeout The default request timeout in milliseconds.
+   * @return The cluster client options.
+   */
+  public ClusterClientOptions setTimeout(long timeout) {
+    if (timeout < 1) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * Sets the request timeout for a specific action.
+   *
+   * @param action The request action, e.g. <code>get</code> or <code>deploy</code>.
+   * @param timeout The request timeout in milliseconds.
+   * @return The cluster client options.
+   */
+  public ClusterClientOptions setTimeout(String action, long timeout) {
+    if (timeout < 1) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    timeouts.put(action, timeout);
+    return this;
+  }
+
+  /**
+   * Returns the default request timeout.
+   *
+   * @return The default request timeout in milliseconds.
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Returns the request timeout for a specific action.
+   *
+   * @param action The request action.
+   * @return The request timeout in milliseconds.
+   */
+  public long getTimeout(String action) {
+    Long actionTimeout = action != null ? timeouts.get(action) : null;
+    return actionTimeout != null ? actionTimeout : timeout;
+  }
+
+  /**
+   * Sets the maximum number of times a failed request is retried.
+   *
+   * @param retries The maximum number of retries.
+   * @return The cluster client options.
+   */
+  public ClusterClientOptions setRetries(int retries) {
+    if (retries < 0) {
+      throw new IllegalArgumentException("Retries cannot be negative");
+    }
+    this.retries = retries;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of times a failed request is retried.
+   *
+   * @return The maximum number of retries.
+   */
+  public int getRetries() {
+    return retries;
+  }
+
+  /**
+   * Sets the delay before the first retry. The delay doubles with each retry.
+   *
+   * @param delay The retry delay in milliseconds.
+   * @return The cluster client options.
+   */
+  public ClusterClientOptions setRetryDelay(long delay) {
+    if (delay < 1) {
+      throw new IllegalArgumentException("Retry delay must be positive");
+    }
+    this.retryDelay = delay;
+    return this;
+  }
+
+  /**
+   * Returns the delay before the first retry.
+   *
+   * @return The retry delay in milliseconds.
+   */
+  public long getRetryDelay() {
+    return retryDelay;
+  }
+
+  /**
+   * Sets whether identical concurrent read requests share a single request.
+   *
+   * @param coalesce Whether to coalesce concurrent reads.
+   * @return The cluster client options.
+   */
+  public ClusterClientOptions setCoalesceReads(boolean coalesce) {
+    this.coalesceReads = coalesce;
+    return this;
+  }
+
+  /**
+   * Returns whether identical concurrent read requests share a single request.
+   *
+   * @return Whether concurrent reads are coalesced.
+   */
+  public boolean isCoalesceReads() {
+    return coalesceReads;
+  }
+
+  /**
+   * Sets the time for which a single request to acquire a lock waits.<p>
+   *
+   * Acquiring a lock without a timeout is done with consecutive requests
+   * that each wait at most this long for the lock.
+   *
+   * @param timeout The lock wait timeout in milliseconds.
+   * @return The cluster client options.
+   */
+  public ClusterClientOptions setLockWaitTimeout(long timeout) {
+    if (timeout < 1) {
+      throw new IllegalArgumentException("Lock wait timeout must be positive");
+    }
+    this.lockWaitTimeout = timeout;
+    return this;
+  }
+
+  /**
+   * Returns the time for which a single request to acquire a lock waits.
+   *
+   * @return The lock wait timeout in milliseconds.
+   */
+  public long getLockWaitTimeout() {
+    return lockWaitTimeout;
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Asynchronous cluster-wide Bloom filter.<p>
+ *
+ * Tests whether items may have been added to the filter anywhere in the
+ * cluster in a fixed amount of memory. Membership tests may return false
+ * positives but never false negatives. Items are added to a local filter
+ * which is merged into the cluster's filter in batches.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface AsyncBloomFilter {
+
+  /**
+   * Returns the filter name.
+   *
+   * @return The filter name.
+   */
+  String name();
+
+  /**
+   * Adds an item to the filter.
+   *
+   * @param item The item to add.
+   */
+  void add(Object item);
+
+  /**
+   * Adds an item to the filter.
+   *
+   * @param item The item to add.
+   * @param doneHandler An asynchronous handler to be called once the item
+   *        has been added to the local batch.
+   */
+  void add(Object item, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Tests whether an item may have been added to the filter.<p>
+   *
+   * The local batch is flushed before the cluster's filter is queried.
+   *
+   * @param item The item to test.
+   * @param resultHandler An asynchronous handler to be called with a boolean
+   *        indicating whether the item may have been added to the filter.
+   */
+  void mightContain(Object item, Handler<AsyncResult<Boolean>> resultHandler);
+
+  /**
+   * Merges the local batch into the cluster's filter.
+   *
+   * @param doneHandler An asynchronous handler to be called once the batch has been merged.
+   */
+  void flush(Handler<AsyncResult<Void>> doneHandler);
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Asynchronous cluster-wide Count-Min sketch.<p>
+ *
+ * Estimates the number of occurrences of items added to the sketch across
+ * the cluster in a fixed amount of memory. Estimates may overcount but never
+ * undercount. Items are added to a local sketch which is merged into the
+ * cluster's sketch in batches.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface AsyncCountMinSketch {
+
+  /**
+   * Returns the sketch name.
+   *
+   * @return The sketch name.
+   */
+  String name();
+
+  /**
+   * Adds a single occurrence of an item to the sketch.
+   *
+   * @param item The item to add.
+   */
+  void add(Object item);
+
+  /**
+   * Adds occurrences of an item to the sketch.
+   *
+   * @param item The item to add.
+   * @param count The number of occurrences to add.
+   */
+  void add(Object item, long count);
+
+  /**
+   * Adds occurrences of an item to the sketch.
+   *
+   * @param item The item to add.
+   * @param count The number of occurrences to add.
+   * @param doneHandler An asynchronous handler to be called once the item
+   *        has been added to the local batch.
+   */
+  void add(Object item, long count, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Estimates the number of occurrences of an item.<p>
+   *
+   * The local batch is flushed before the cluster's sketch is queried.
+   *
+   * @param item The item to estimate.
+   * @param resultHandler An asynchronous handler to be called with the estimate.
+   */
+  void estimate(Object item, Handler<AsyncResult<Long>> resultHandler);
+
+  /**
+   * Merges the local batch into the cluster's sketch.
+   *
+   * @param doneHandler An asynchronous handler to be called once the batch has been merged.
+   */
+  void flush(Handler<AsyncResult<Void>> doneHandler);
+
+}
@@ -77,4 +77,36 @@ public interface AsyncCounter {
    */
   void decrementAndGet(Handler<AsyncResult<Long>> doneHandler);
 
+  /**
+   * Adds a value to the counter.
+   *
+   * @param delta The value to add.
+   */
+  void add(long delta);
+
+  /**
+   * Adds a value to the counter.
+   *
+   * @param delta The value to add.
+   * @param doneHandler An asynchronous handler to be called once complete.
+   */
+  void add(long delta, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Adds a value to the counter and gets the new value.
+   *
+   * @param delta The value to add.
+   * @param doneHandler An asynchronous handler to be called with the result.
+   */
+  void addAndGet(long delta, Handler<AsyncResult<Long>> doneHandler);
+
+  /**
+   * Flushes any locally accumulated updates to the cluster.<p>
+   *
+   * Counters that don't accumulate updates locally have nothing to flush.
+   *
+   * @param doneHandler An asynchronous handler to be called once the updates have been flushed.
+   */
+  void flush(Handler<AsyncResult<Void>> doneHandler);
+
 }
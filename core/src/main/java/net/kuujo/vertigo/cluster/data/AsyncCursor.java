@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+import java.util.List;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Asynchronous cursor over a cluster data structure.<p>
+ *
+ * Cursors read a data structure in pages of a fixed size so that large
+ * data structures can be iterated without transferring the entire data
+ * structure in a single message. Pages can either be read explicitly by
+ * calling {@link #next(Handler)} or streamed to a handler. When streaming,
+ * the next page is only requested once the current page has been handled,
+ * and pausing the cursor stops both delivery and requests until resumed.<p>
+ *
+ * Cursors that are not read to the end should be closed. Cursors that are
+ * left idle are eventually closed by the cluster.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The cursor element type.
+ */
+public interface AsyncCursor<T> {
+
+  /**
+   * Reads the next page from the cursor. Once the cursor has been
+   * exhausted the result will be an empty list.
+   *
+   * @param resultHandler An asynchronous handler to be called with the page.
+   */
+  void next(Handler<AsyncResult<List<T>>> resultHandler);
+
+  /**
+   * Returns a boolean indicating whether the cursor may have more elements.
+   *
+   * @return Indicates whether the cursor may have more elements.
+   */
+  boolean hasNext();
+
+  /**
+   * Streams the cursor's elements to a handler.
+   *
+   * @param handler A handler to be called with each element.
+   * @return The cursor.
+   */
+  AsyncCursor<T> handler(Handler<T> handler);
+
+  /**
+   * Sets a handler to be called once all elements have been streamed.
+   *
+   * @param handler A handler to be called once the stream has ended or failed.
+   * @return The cursor.
+   */
+  AsyncCursor<T> endHandler(Handler<AsyncResult<Void>> handler);
+
+  /**
+   * Pauses the stream.
+   *
+   * @return The cursor.
+   */
+  AsyncCursor<T> pause();
+
+  /**
+   * Resumes the stream.
+   *
+   * @return The cursor.
+   */
+  AsyncCursor<T> resume();
+
+  /**
+   * Closes the cursor.
+   */
+  void close();
+
+  /**
+   * Closes the cursor.
+   *
+   * @param doneHandler An asynchronous handler to be called once the cursor is closed.
+   */
+  void close(Handler<AsyncResult<Void>> doneHandler);
+
+}
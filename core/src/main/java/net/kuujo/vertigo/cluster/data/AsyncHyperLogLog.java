@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Asynchronous cluster-wide HyperLogLog.<p>
+ *
+ * Estimates the number of distinct items added to the HyperLogLog across
+ * the cluster in a fixed amount of memory. Items are added to a local
+ * sketch which is merged into the cluster's sketch in batches.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface AsyncHyperLogLog {
+
+  /**
+   * Returns the HyperLogLog name.
+   *
+   * @return The HyperLogLog name.
+   */
+  String name();
+
+  /**
+   * Adds an item to the HyperLogLog.
+   *
+   * @param item The item to add.
+   */
+  void add(Object item);
+
+  /**
+   * Adds an item to the HyperLogLog.
+   *
+   * @param item The item to add.
+   * @param doneHandler An asynchronous handler to be called once the item
+   *        has been added to the local batch.
+   */
+  void add(Object item, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Estimates the number of distinct items added to the HyperLogLog.<p>
+   *
+   * The local batch is flushed before the cluster's sketch is queried.
+   *
+   * @param resultHandler An asynchronous handler to be called with the estimate.
+   */
+  void count(Handler<AsyncResult<Long>> resultHandler);
+
+  /**
+   * Merges the local batch into the cluster's sketch.
+   *
+   * @param doneHandler An asynchronous handler to be called once the batch has been merged.
+   */
+  void flush(Handler<AsyncResult<Void>> doneHandler);
+
+}
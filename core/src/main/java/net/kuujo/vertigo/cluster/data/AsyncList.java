@@ -68,4 +68,12 @@ public interface AsyncList<T> extends AsyncCollection<T> {
    */
   void remove(int index, Handler<AsyncResult<T>> doneHandler);
 
+  /**
+   * Returns a cursor that reads the list in pages.
+   *
+   * @param pageSize The maximum number of elements to read per page.
+   * @return A cursor over the list.
+   */
+  AsyncCursor<T> scan(int pageSize);
+
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Asynchronous cluster-wide lease based lock.<p>
+ *
+ * Locks are held for a lease period after which they're automatically
+ * released unless renewed. Each acquisition of the lock is identified by a
+ * fencing token which is greater than the token of any previous acquisition,
+ * so resources protected by the lock can reject requests from holders whose
+ * lease has already expired. Requests waiting to acquire the lock are queued
+ * by the cluster and granted the lock in order as soon as it's released.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface AsyncLock {
+
+  /**
+   * Returns the lock name.
+   *
+   * @return The lock name.
+   */
+  String name();
+
+  /**
+   * Acquires the lock, waiting until the lock is available.
+   *
+   * @param lease The lease period in milliseconds.
+   * @param resultHandler An asynchronous handler to be called with the fencing token.
+   */
+  void acquire(long lease, Handler<AsyncResult<Long>> resultHandler);
+
+  /**
+   * Acquires the lock, waiting up to a timeout for the lock to become available.
+   *
+   * @param lease The lease period in milliseconds.
+   * @param timeout The maximum time to wait in milliseconds.
+   * @param resultHandler An asynchronous handler to be called with the fencing
+   *        token, or <code>null</code> if the lock could not be acquired in time.
+   */
+  void acquire(long lease, long timeout, Handler<AsyncResult<Long>> resultHandler);
+
+  /**
+   * Acquires the lock if it's immediately available.
+   *
+   * @param lease The lease period in milliseconds.
+   * @param resultHandler An asynchronous handler to be called with the fencing
+   *        token, or <code>null</code> if the lock is held.
+   */
+  void tryAcquire(long lease, Handler<AsyncResult<Long>> resultHandler);
+
+  /**
+   * Extends the lease of a held lock.
+   *
+   * @param token The fencing token of the held lock.
+   * @param lease The new lease period in milliseconds.
+   * @param resultHandler An asynchronous handler to be called with a boolean
+   *        indicating whether the lease was renewed. The lease can't be renewed
+   *        if it has already expired.
+   */
+  void renew(long token, long lease, Handler<AsyncResult<Boolean>> resultHandler);
+
+  /**
+   * Releases a held lock.
+   *
+   * @param token The fencing token of the held lock.
+   */
+  void release(long token);
+
+  /**
+   * Releases a held lock.
+   *
+   * @param token The fencing token of the held lock.
+   * @param doneHandler An asynchronous handler to be called with a boolean
+   *        indicating whether the lock was released by this call.
+   */
+  void release(long token, Handler<AsyncResult<Boolean>> doneHandler);
+
+}
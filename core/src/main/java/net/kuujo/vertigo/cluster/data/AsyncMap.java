@@ -16,6 +16,7 @@
 package net.kuujo.vertigo.cluster.data;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import org.vertx.java.core.AsyncResult;
@@ -56,6 +57,53 @@ public interface AsyncMap<K, V> {
    */
   void put(K key, V value, Handler<AsyncResult<V>> doneHandler);
 
+  /**
+   * Sets a key value in the map with a time to live.<p>
+   *
+   * Once the time to live has passed the key is removed from the map as if
+   * it had been removed by {@link #remove(Object)}. Setting the key again
+   * replaces its time to live.
+   *
+   * @param key The key to set.
+   * @param value The value to set.
+   * @param ttl The time to live in milliseconds.
+   */
+  void put(K key, V value, long ttl);
+
+  /**
+   * Sets a key value in the map with a time to live.<p>
+   *
+   * Once the time to live has passed the key is removed from the map as if
+   * it had been removed by {@link #remove(Object)}. Setting the key again
+   * replaces its time to live.
+   *
+   * @param key The key to set.
+   * @param value The value to set.
+   * @param ttl The time to live in milliseconds.
+   * @param doneHandler An asynchronous handler to be called once complete. The handler
+   *                    will be called with the previous key value if any.
+   */
+  void put(K key, V value, long ttl, Handler<AsyncResult<V>> doneHandler);
+
+  /**
+   * Sets multiple key values in the map.<p>
+   *
+   * All entries are sent to the cluster in a single request.
+   *
+   * @param entries The entries to set.
+   */
+  void putAll(Map<K, V> entries);
+
+  /**
+   * Sets multiple key values in the map.<p>
+   *
+   * All entries are sent to the cluster in a single request.
+   *
+   * @param entries The entries to set.
+   * @param doneHandler An asynchronous handler to be called once complete.
+   */
+  void putAll(Map<K, V> entries, Handler<AsyncResult<Void>> doneHandler);
+
   /**
    * Gets a key value from the map.
    *
@@ -65,6 +113,17 @@ public interface AsyncMap<K, V> {
    */
   void get(K key, Handler<AsyncResult<V>> resultHandler);
 
+  /**
+   * Gets multiple key values from the map.<p>
+   *
+   * All keys are read from the cluster in a single request.
+   *
+   * @param keys The keys to get.
+   * @param resultHandler An asynchronous handler to be called with the result. The result
+   *                      contains only those keys that are set in the map.
+   */
+  void getAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler);
+
   /**
    * Removes a key from the map.
    *
@@ -81,6 +140,60 @@ public interface AsyncMap<K, V> {
    */
   void remove(K key, Handler<AsyncResult<V>> resultHandler);
 
+  /**
+   * Removes multiple keys from the map.<p>
+   *
+   * All keys are removed from the cluster in a single request.
+   *
+   * @param keys The keys to remove.
+   */
+  void removeAll(Collection<K> keys);
+
+  /**
+   * Removes multiple keys from the map.<p>
+   *
+   * All keys are removed from the cluster in a single request.
+   *
+   * @param keys The keys to remove.
+   * @param resultHandler An asynchronous handler to be called with the removed values. The
+   *                      result contains only those keys that were set in the map.
+   */
+  void removeAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler);
+
+  /**
+   * Sets a key value in the map if the key is not already set.
+   *
+   * @param key The key to set.
+   * @param value The value to set.
+   * @param resultHandler An asynchronous handler to be called with the current key value.
+   *                      If the key was set then the result value will be <code>null</code>.
+   */
+  void putIfAbsent(K key, V value, Handler<AsyncResult<V>> resultHandler);
+
+  /**
+   * Replaces a key value in the map if the key's current value is the expected value.
+   *
+   * @param key The key to replace.
+   * @param expect The expected current value.
+   * @param value The value to set.
+   * @param resultHandler An asynchronous handler to be called with the result indicating
+   *                      whether the value was replaced.
+   */
+  void replace(K key, V expect, V value, Handler<AsyncResult<Boolean>> resultHandler);
+
+  /**
+   * Atomically computes a new value for a key if the key is set.<p>
+   *
+   * The function is applied to the key's current value in the cluster. If the
+   * function returns <code>null</code> then the key is removed.
+   *
+   * @param key The key to compute.
+   * @param function The function with which to compute the new value.
+   * @param resultHandler An asynchronous handler to be called with the new key value. If
+   *                      the key is not set then the result value will be <code>null</code>.
+   */
+  void computeIfPresent(K key, MapFunction<K, V> function, Handler<AsyncResult<V>> resultHandler);
+
   /**
    * Checks whether the map contains a key.
    *
@@ -97,6 +210,17 @@ public interface AsyncMap<K, V> {
    */
   void keySet(Handler<AsyncResult<Set<K>>> resultHandler);
 
+  /**
+   * Returns a cursor that reads the map's entries in pages.<p>
+   *
+   * Unlike {@link #keySet(Handler)} and {@link #values(Handler)}, scanning
+   * a map never transfers more than a single page of entries at once.
+   *
+   * @param pageSize The maximum number of entries to read per page.
+   * @return A cursor over the map's entries.
+   */
+  AsyncCursor<Map.Entry<K, V>> scan(int pageSize);
+
   /**
    * Gets a collection of values in the map.
    *
@@ -15,6 +15,8 @@
  */
 package net.kuujo.vertigo.cluster.data;
 
+import java.util.List;
+
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 
@@ -65,6 +67,37 @@ public interface AsyncQueue<T> extends AsyncCollection<T> {
    */
   void poll(Handler<AsyncResult<T>> resultHandler);
 
+  /**
+   * Retrieves and removes the head of the queue, waiting for a value to be
+   * added to the queue if the queue is empty. If no value is added before
+   * the timeout expires then the result value will be <code>null</code>.
+   *
+   * @param timeout The maximum time to wait for a value in milliseconds.
+   * @param resultHandler An asynchronous handler to be called with the result.
+   */
+  void poll(long timeout, Handler<AsyncResult<T>> resultHandler);
+
+  /**
+   * Retrieves and removes up to a maximum number of values from the head
+   * of the queue. If the queue is empty then the result will be empty.
+   *
+   * @param max The maximum number of values to remove.
+   * @param resultHandler An asynchronous handler to be called with the result.
+   */
+  void drain(int max, Handler<AsyncResult<List<T>>> resultHandler);
+
+  /**
+   * Retrieves and removes up to a maximum number of values from the head
+   * of the queue, waiting for a value to be added to the queue if the queue
+   * is empty. If no value is added before the timeout expires then the
+   * result will be empty.
+   *
+   * @param max The maximum number of values to remove.
+   * @param timeout The maximum time to wait for a value in milliseconds.
+   * @param resultHandler An asynchronous handler to be called with the result.
+   */
+  void drain(int max, long timeout, Handler<AsyncResult<List<T>>> resultHandler);
+
   /**
    * Retrieves and removed the head of the queue.
    *
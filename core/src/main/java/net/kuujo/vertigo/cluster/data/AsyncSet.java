@@ -23,4 +23,13 @@ package net.kuujo.vertigo.cluster.data;
  * @param <T> The set data type.
  */
 public interface AsyncSet<T> extends AsyncCollection<T> {
+
+  /**
+   * Returns a cursor that reads the set in pages.
+   *
+   * @param pageSize The maximum number of elements to read per page.
+   * @return A cursor over the set.
+   */
+  AsyncCursor<T> scan(int pageSize);
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+/**
+ * Counter accumulation options.<p>
+ *
+ * Accumulating counters collect increments and decrements locally and
+ * flush the accumulated delta to the cluster in a single request, either
+ * periodically or once the delta reaches a threshold. This allows counters
+ * to be updated at high rates without a request per update.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CounterAccumulatorOptions {
+  public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+  public static final long DEFAULT_FLUSH_THRESHOLD = 1000;
+  public static final boolean DEFAULT_ESTIMATE = false;
+
+  private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+  private long flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+  private boolean estimate = DEFAULT_ESTIMATE;
+
+  /**
+   * Sets the interval at which accumulated updates are flushed.
+   *
+   * @param interval The flush interval in milliseconds.
+   * @return The counter accumulator options.
+   */
+  public CounterAccumulatorOptions setFlushInterval(long interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Flush interval must be positive");
+    }
+    this.flushInterval = interval;
+    return this;
+  }
+
+  /**
+   * Returns the interval at which accumulated updates are flushed.
+   *
+   * @return The flush interval in milliseconds.
+   */
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Sets the accumulated delta at which updates are flushed immediately.
+   *
+   * @param threshold The absolute accumulated delta at which to flush.
+   * @return The counter accumulator options.
+   */
+  public CounterAccumulatorOptions setFlushThreshold(long threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("Flush threshold must be positive");
+    }
+    this.flushThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Returns the accumulated delta at which updates are flushed immediately.
+   *
+   * @return The absolute accumulated delta at which to flush.
+   */
+  public long getFlushThreshold() {
+    return flushThreshold;
+  }
+
+  /**
+   * Sets whether reads should return a local estimate.<p>
+   *
+   * When enabled, reads return the last value received from the cluster
+   * plus any locally accumulated delta rather than flushing and reading
+   * the cluster value. Estimates don't reflect updates made elsewhere in
+   * the cluster since the last flush.
+   *
+   * @param estimate Whether reads should return a local estimate.
+   * @return The counter accumulator options.
+   */
+  public CounterAccumulatorOptions setEstimate(boolean estimate) {
+    this.estimate = estimate;
+    return this;
+  }
+
+  /**
+   * Returns whether reads return a local estimate.
+   *
+   * @return Whether reads return a local estimate.
+   */
+  public boolean isEstimate() {
+    return estimate;
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+import net.kuujo.vertigo.util.serialization.JsonSerializable;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Function applied to a map entry in the cluster.<p>
+ *
+ * Map functions are serialized and sent to the cluster, where they're
+ * applied to the entry atomically. Functions must be serializable and
+ * their classes must be available on the cluster's class path.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <K> The map key type.
+ * @param <V> The map value type.
+ */
+@JsonTypeInfo(use=JsonTypeInfo.Id.CLASS, include=JsonTypeInfo.As.PROPERTY, property="function")
+public interface MapFunction<K, V> extends JsonSerializable {
+
+  /**
+   * Computes a new value for a map entry.
+   *
+   * @param key The entry key.
+   * @param value The current entry value.
+   * @return The new entry value. If the new value is <code>null</code> then
+   *         the entry will be removed.
+   */
+  V apply(K key, V value);
+
+}
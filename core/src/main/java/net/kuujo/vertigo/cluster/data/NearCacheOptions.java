@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+/**
+ * Near cache options.<p>
+ *
+ * Near caches hold recently read map entries in the local Vert.x instance
+ * so that repeated reads of the same key don't require a round trip to the
+ * cluster. Cached entries are invalidated by watching each cached key for
+ * changes and always expire after a time to live, and the number of cached
+ * entries is bounded by evicting entries according to the configured
+ * {@link Eviction} policy.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class NearCacheOptions {
+  public static final int DEFAULT_MAX_SIZE = 1000;
+  public static final long DEFAULT_TTL = 10000;
+
+  /**
+   * Near cache eviction policy.
+   *
+   * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+   */
+  public static enum Eviction {
+
+    /**
+     * Evicts the least recently used entry.
+     */
+    LRU,
+
+    /**
+     * Evicts the least frequently used entry.
+     */
+    LFU;
+
+  }
+
+  private int maxSize = DEFAULT_MAX_SIZE;
+  private long ttl = DEFAULT_TTL;
+  private Eviction eviction = Eviction.LRU;
+
+  /**
+   * Sets the maximum number of cached entries.
+   *
+   * @param maxSize The maximum number of cached entries.
+   * @return The near cache options.
+   */
+  public NearCacheOptions setMaxSize(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Near cache size must be positive");
+    }
+    this.maxSize = maxSize;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of cached entries.
+   *
+   * @return The maximum number of cached entries.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Sets the time after which a cached entry expires.<p>
+   *
+   * Entries are invalidated when the key changes, but change events are
+   * best effort. A change made just after a key is first cached may not be
+   * published, and clearing a map publishes no events. The time to live
+   * bounds how long a cached entry can be out of date when an event is
+   * missed, so entries can't be cached indefinitely.
+   *
+   * @param ttl The time to live in milliseconds. Defaults to <code>10000</code>.
+   * @return The near cache options.
+   */
+  public NearCacheOptions setTtl(long ttl) {
+    if (ttl < 1) {
+      throw new IllegalArgumentException("Near cache TTL must be positive");
+    }
+    this.ttl = ttl;
+    return this;
+  }
+
+  /**
+   * Returns the time after which a cached entry expires.
+   *
+   * @return The time to live in milliseconds.
+   */
+  public long getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Sets the cache eviction policy.
+   *
+   * @param eviction The cache eviction policy.
+   * @return The near cache options.
+   */
+  public NearCacheOptions setEviction(Eviction eviction) {
+    this.eviction = eviction != null ? eviction : Eviction.LRU;
+    return this;
+  }
+
+  /**
+   * Returns the cache eviction policy.
+   *
+   * @return The cache eviction policy.
+   */
+  public Eviction getEviction() {
+    return eviction;
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data;
+
+/**
+ * Probabilistic data structure options.<p>
+ *
+ * Sketches are updated locally and the local batch is merged into the
+ * cluster's sketch either periodically or once the number of pending updates
+ * reaches a threshold. The sizing options determine the accuracy and memory
+ * usage of each type of sketch and must be the same for every instance of a
+ * named sketch in the cluster.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class SketchOptions {
+  public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+  public static final long DEFAULT_FLUSH_THRESHOLD = 1000;
+  public static final int DEFAULT_PRECISION = 14;
+  public static final int DEFAULT_WIDTH = 2048;
+  public static final int DEFAULT_DEPTH = 5;
+  public static final long DEFAULT_EXPECTED_ITEMS = 100000;
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+  private long flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+  private int precision = DEFAULT_PRECISION;
+  private int width = DEFAULT_WIDTH;
+  private int depth = DEFAULT_DEPTH;
+  private long expectedItems = DEFAULT_EXPECTED_ITEMS;
+  private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+
+  /**
+   * Sets the interval at which pending updates are flushed.
+   *
+   * @param interval The flush interval in milliseconds.
+   * @return The sketch options.
+   */
+  public SketchOptions setFlushInterval(long interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Flush interval must be positive");
+    }
+    this.flushInterval = interval;
+    return this;
+  }
+
+  /**
+   * Returns the interval at which pending updates are flushed.
+   *
+   * @return The flush interval in milliseconds.
+   */
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Sets the number of pending updates at which updates are flushed immediately.
+   *
+   * @param threshold The number of pending updates at which to flush.
+   * @return The sketch options.
+   */
+  public SketchOptions setFlushThreshold(long threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("Flush threshold must be positive");
+    }
+    this.flushThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Returns the number of pending updates at which updates are flushed immediately.
+   *
+   * @return The number of pending updates at which to flush.
+   */
+  public long getFlushThreshold() {
+    return flushThreshold;
+  }
+
+  /**
+   * Sets the HyperLogLog precision.<p>
+   *
+   * A HyperLogLog uses <code>2^precision</code> bytes and has a standard
+   * error of roughly <code>1.04 / sqrt(2^precision)</code>.
+   *
+   * @param precision The HyperLogLog precision, between 4 and 18.
+   * @return The sketch options.
+   */
+  public SketchOptions setPrecision(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("Precision must be between 4 and 18");
+    }
+    this.precision = precision;
+    return this;
+  }
+
+  /**
+   * Returns the HyperLogLog precision.
+   *
+   * @return The HyperLogLog precision.
+   */
+  public int getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Sets the number of counters in each row of a Count-Min sketch.
+   *
+   * @param width The Count-Min sketch width.
+   * @return The sketch options.
+   */
+  public SketchOptions setWidth(int width) {
+    if (width < 1) {
+      throw new IllegalArgumentException("Width must be positive");
+    }
+    this.width = width;
+    return this;
+  }
+
+  /**
+   * Returns the number of counters in each row of a Count-Min sketch.
+   *
+   * @return The Count-Min sketch width.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Sets the number of rows in a Count-Min sketch.
+   *
+   * @param depth The Count-Min sketch depth.
+   * @return The sketch options.
+   */
+  public SketchOptions setDepth(int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("Depth must be positive");
+    }
+    this.depth = depth;
+    return this;
+  }
+
+  /**
+   * Returns the number of rows in a Count-Min sketch.
+   *
+   * @return The Count-Min sketch depth.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Sets the number of distinct items a Bloom filter is sized for.
+   *
+   * @param expectedItems The expected number of distinct items.
+   * @return The sketch options.
+   */
+  public SketchOptions setExpectedItems(long expectedItems) {
+    if (expectedItems < 1) {
+      throw new IllegalArgumentException("Expected items must be positive");
+    }
+    this.expectedItems = expectedItems;
+    return this;
+  }
+
+  /**
+   * Returns the number of distinct items a Bloom filter is sized for.
+   *
+   * @return The expected number of distinct items.
+   */
+  public long getExpectedItems() {
+    return expectedItems;
+  }
+
+  /**
+   * Sets the Bloom filter false positive rate at the expected number of items.
+   *
+   * @param rate The false positive rate, between 0 and 1.
+   * @return The sketch options.
+   */
+  public SketchOptions setFalsePositiveRate(double rate) {
+    if (rate <= 0 || rate >= 1) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+    }
+    this.falsePositiveRate = rate;
+    return this;
+  }
+
+  /**
+   * Returns the Bloom filter false positive rate at the expected number of items.
+   *
+   * @return The false positive rate.
+   */
+  public double getFalsePositiveRate() {
+    return falsePositiveRate;
+  }
+
+}
@@ -25,7 +25,15 @@ import org.vertx.java.core.Handler;
  * map key events. Types that implement this interface will trigger
  * event handlers when data changes in the map. Note that events can
  * be received from anywhere in the cluster, so the async map events
- * system is distributed.
+ * system is distributed.<p>
+ *
+ * Events are published by the cluster once per change and only when
+ * some map in the cluster is watching the changed key. Handlers that
+ * watch all event types receive the specific <code>CREATE</code>,
+ * <code>UPDATE</code> or <code>DELETE</code> event for each change, while
+ * handlers that watch <code>CHANGE</code> events receive a <code>CHANGE</code>
+ * event for each change. Rapid updates to a single key may be coalesced
+ * into a single event carrying the latest value.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  *
@@ -106,4 +114,47 @@ public interface WatchableAsyncMap<K, V> extends AsyncMap<K, V> {
    */
   void unwatch(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler);
 
+
+  /**
+   * Watches all keys that start with a prefix for changes.<p>
+   *
+   * Handlers receive the <code>CREATE</code>, <code>UPDATE</code> and
+   * <code>DELETE</code> events for matching keys. An empty prefix watches
+   * all keys in the map.
+   *
+   * @param prefix The key prefix to watch.
+   * @param handler The handler to call when an event occurs.
+   */
+  void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler);
+
+  /**
+   * Watches all keys that start with a prefix for changes.<p>
+   *
+   * Handlers receive the <code>CREATE</code>, <code>UPDATE</code> and
+   * <code>DELETE</code> events for matching keys. An empty prefix watches
+   * all keys in the map.
+   *
+   * @param prefix The key prefix to watch.
+   * @param handler The handler to call when an event occurs.
+   * @param doneHandler An asynchronous handler to be called once the prefix is being watched.
+   */
+  void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Stops watching a key prefix for changes.
+   *
+   * @param prefix The key prefix to unwatch.
+   * @param handler The handler that was watching the prefix.
+   */
+  void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler);
+
+  /**
+   * Stops watching a key prefix for changes.
+   *
+   * @param prefix The key prefix to unwatch.
+   * @param handler The handler that was watching the prefix.
+   * @param doneHandler An asynchronous handler to be called once the prefix is no longer being watched.
+   */
+  void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler);
+
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Base cursor implementation.<p>
+ *
+ * This class handles streaming pages to a handler. Concrete cursors need
+ * only read pages and indicate when the cursor has been exhausted.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The cursor element type.
+ */
+public abstract class AbstractAsyncCursor<T> implements AsyncCursor<T> {
+  private final Deque<T> buffer = new ArrayDeque<>();
+  private boolean complete;
+  private Handler<T> handler;
+  private Handler<AsyncResult<Void>> endHandler;
+  private boolean paused;
+  private boolean fetching;
+  private boolean ended;
+
+  /**
+   * Reads the next page.
+   *
+   * @param resultHandler An asynchronous handler to be called with the page.
+   */
+  protected abstract void fetch(Handler<AsyncResult<List<T>>> resultHandler);
+
+  /**
+   * Releases any resources held by the cursor.
+   *
+   * @param doneHandler An asynchronous handler to be called once complete.
+   */
+  protected abstract void release(Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Indicates that the cursor has no more pages after the current page.
+   */
+  protected void complete() {
+    complete = true;
+  }
+
+  /**
+   * Returns a boolean indicating whether the cursor has been exhausted.
+   */
+  protected boolean isComplete() {
+    return complete;
+  }
+
+  @Override
+  public void next(Handler<AsyncResult<List<T>>> resultHandler) {
+    if (complete) {
+      new DefaultFutureResult<List<T>>(Collections.<T>emptyList()).setHandler(resultHandler);
+    } else {
+      fetch(resultHandler);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !complete || !buffer.isEmpty();
+  }
+
+  @Override
+  public AsyncCursor<T> handler(Handler<T> handler) {
+    this.handler = handler;
+    doStream();
+    return this;
+  }
+
+  @Override
+  public AsyncCursor<T> endHandler(Handler<AsyncResult<Void>> handler) {
+    this.endHandler = handler;
+    return this;
+  }
+
+  @Override
+  public AsyncCursor<T> pause() {
+    paused = true;
+    return this;
+  }
+
+  @Override
+  public AsyncCursor<T> resume() {
+    paused = false;
+    doStream();
+    return this;
+  }
+
+  /**
+   * Delivers buffered elements and requests the next page once the
+   * buffer is empty, as long as the stream isn't paused.
+   */
+  private void doStream() {
+    if (handler == null || ended) {
+      return;
+    }
+    while (!paused && !buffer.isEmpty()) {
+      handler.handle(buffer.poll());
+    }
+    if (paused || !buffer.isEmpty() || fetching) {
+      return;
+    }
+    if (complete) {
+      ended = true;
+      new DefaultFutureResult<Void>((Void) null).setHandler(endHandler);
+      return;
+    }
+    fetching = true;
+    next(new Handler<AsyncResult<List<T>>>() {
+      @Override
+      public void handle(AsyncResult<List<T>> result) {
+        fetching = false;
+        if (result.failed()) {
+          ended = true;
+          new DefaultFutureResult<Void>(result.cause()).setHandler(endHandler);
+        } else {
+          buffer.addAll(result.result());
+          doStream();
+        }
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+    close(null);
+  }
+
+  @Override
+  public void close(Handler<AsyncResult<Void>> doneHandler) {
+    buffer.clear();
+    if (complete) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+    } else {
+      complete = true;
+      release(doneHandler);
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import net.kuujo.vertigo.cluster.data.SketchOptions;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Base class for locally batched sketches.<p>
+ *
+ * Items are added to a local sketch of the same type and size as the
+ * cluster's sketch. The local sketch is merged into the cluster's sketch as
+ * a single batch once the flush interval passes or the number of pending
+ * updates reaches the flush threshold, so the cost of a flush depends on the
+ * size of the sketch rather than the number of items added. Queries flush the
+ * pending batch before querying the cluster's sketch.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public abstract class AbstractAsyncSketch {
+  private final String name;
+  private final SketchStore store;
+  private final Vertx vertx;
+  private final long flushInterval;
+  private final long flushThreshold;
+  private final Sketch template;
+  private Sketch batch;
+  private long pending;
+  private boolean scheduled;
+
+  private final Handler<Long> flushTimer = new Handler<Long>() {
+    @Override
+    public void handle(Long timerID) {
+      synchronized (AbstractAsyncSketch.this) {
+        scheduled = false;
+      }
+      flush(null);
+    }
+  };
+
+  protected AbstractAsyncSketch(String name, Sketch template, SketchStore store, Vertx vertx, SketchOptions options) {
+    this.name = name;
+    this.template = template;
+    this.store = store;
+    this.vertx = vertx;
+    this.flushInterval = options.getFlushInterval();
+    this.flushThreshold = options.getFlushThreshold();
+    this.batch = template.emptyCopy();
+  }
+
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Adds an item to the local batch, flushing the batch if the threshold is reached.
+   */
+  protected void accumulate(Object item, long count, Handler<AsyncResult<Void>> doneHandler) {
+    boolean flush = false;
+    synchronized (this) {
+      batch.add(item, count);
+      if (++pending >= flushThreshold) {
+        flush = true;
+      } else if (!scheduled) {
+        scheduled = true;
+        vertx.setTimer(flushInterval, flushTimer);
+      }
+    }
+    if (flush) {
+      flush(null);
+    }
+    new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+  }
+
+  public void flush(final Handler<AsyncResult<Void>> doneHandler) {
+    final Sketch flushed;
+    synchronized (this) {
+      if (pending == 0) {
+        flushed = null;
+      } else {
+        flushed = batch;
+        batch = template.emptyCopy();
+        pending = 0;
+      }
+    }
+
+    if (flushed == null) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    }
+
+    store.merge(name, flushed, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          // Return the batch to the local sketch so that it's retried on
+          // the next flush rather than being lost.
+          synchronized (AbstractAsyncSketch.this) {
+            batch.merge(flushed);
+            pending++;
+            if (!scheduled) {
+              scheduled = true;
+              vertx.setTimer(flushInterval, flushTimer);
+            }
+          }
+        }
+        if (doneHandler != null) {
+          doneHandler.handle(result);
+        }
+      }
+    });
+  }
+
+  /**
+   * Flushes the local batch and queries the cluster's sketch.
+   */
+  protected void query(final Object item, final Handler<AsyncResult<Object>> resultHandler) {
+    flush(new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Object>(result.cause()).setHandler(resultHandler);
+        } else {
+          store.query(name, template, item, resultHandler);
+        }
+      }
+    });
+  }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.kuujo.vertigo.cluster.data.AsyncCounter;
+import net.kuujo.vertigo.cluster.data.CounterAccumulatorOptions;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Locally accumulating counter.<p>
+ *
+ * Updates are accumulated locally and flushed to the underlying counter
+ * as a single {@link AsyncCounter#addAndGet(long, Handler)} call once the
+ * flush interval passes or the accumulated delta reaches the flush threshold.
+ * Since each verticle has its own cluster client, each verticle instance
+ * accumulates into its own delta. The delta is atomic so that multi-threaded
+ * worker verticles can share the counter.<p>
+ *
+ * Updates that don't return a value complete as soon as they're accumulated.
+ * Updates that return a value either flush the accumulated delta and return
+ * the cluster value or, if estimates are enabled, return the last known
+ * cluster value plus the locally accumulated delta. Any delta that's still
+ * accumulated when the owning component stops is flushed by the component's
+ * cluster, and may be flushed explicitly with {@link #flush(Handler)}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class AccumulatingAsyncCounter implements AsyncCounter {
+  private final AsyncCounter counter;
+  private final Vertx vertx;
+  private final long flushInterval;
+  private final long flushThreshold;
+  private final boolean estimate;
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicLong inflight = new AtomicLong();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile long lastKnown;
+  private volatile boolean known;
+
+  private final Handler<Long> flushTimer = new Handler<Long>() {
+    @Override
+    public void handle(Long timerID) {
+      scheduled.set(false);
+      flushAndGet(null);
+    }
+  };
+
+  public AccumulatingAsyncCounter(AsyncCounter counter, Vertx vertx, CounterAccumulatorOptions options) {
+    this.counter = counter;
+    this.vertx = vertx;
+    this.flushInterval = options.getFlushInterval();
+    this.flushThreshold = options.getFlushThreshold();
+    this.estimate = options.isEstimate();
+  }
+
+  @Override
+  public String name() {
+    return counter.name();
+  }
+
+  @Override
+  public void get(Handler<AsyncResult<Long>> doneHandler) {
+    addAndGet(0, doneHandler);
+  }
+
+  @Override
+  public void increment() {
+    add(1, null);
+  }
+
+  @Override
+  public void increment(Handler<AsyncResult<Void>> doneHandler) {
+    add(1, doneHandler);
+  }
+
+  @Override
+  public void incrementAndGet(Handler<AsyncResult<Long>> doneHandler) {
+    addAndGet(1, doneHandler);
+  }
+
+  @Override
+  public void decrement() {
+    add(-1, null);
+  }
+
+  @Override
+  public void decrement(Handler<AsyncResult<Void>> doneHandler) {
+    add(-1, doneHandler);
+  }
+
+  @Override
+  public void decrementAndGet(Handler<AsyncResult<Long>> doneHandler) {
+    addAndGet(-1, doneHandler);
+  }
+
+  @Override
+  public void add(long delta) {
+    add(delta, null);
+  }
+
+  @Override
+  public void add(long delta, Handler<AsyncResult<Void>> doneHandler) {
+    accumulate(delta);
+    new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+  }
+
+  @Override
+  public void addAndGet(long delta, Handler<AsyncResult<Long>> doneHandler) {
+    if (estimate && known) {
+      accumulate(delta);
+      new DefaultFutureResult<Long>(lastKnown + inflight.get() + pending.get()).setHandler(doneHandler);
+    } else {
+      pending.addAndGet(delta);
+      flushAndGet(doneHandler);
+    }
+  }
+
+  @Override
+  public void flush(final Handler<AsyncResult<Void>> doneHandler) {
+    if (pending.get() == 0) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    }
+    flushAndGet(new Handler<AsyncResult<Long>>() {
+      @Override
+      public void handle(AsyncResult<Long> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+  /**
+   * Accumulates a delta, flushing the counter if the threshold is reached.
+   */
+  private void accumulate(long delta) {
+    if (delta == 0) {
+      return;
+    }
+    if (Math.abs(pending.addAndGet(delta)) >= flushThreshold) {
+      flushAndGet(null);
+    } else if (scheduled.compareAndSet(false, true)) {
+      vertx.setTimer(flushInterval, flushTimer);
+    }
+  }
+
+  /**
+   * Flushes the accumulated delta to the cluster and gets the new value.
+   */
+  private void flushAndGet(final Handler<AsyncResult<Long>> doneHandler) {
+    final long delta = pending.getAndSet(0);
+    if (delta == 0 && doneHandler == null) {
+      return;
+    }
+
+    inflight.addAndGet(delta);
+    counter.addAndGet(delta, new Handler<AsyncResult<Long>>() {
+      @Override
+      public void handle(AsyncResult<Long> result) {
+        inflight.addAndGet(-delta);
+        if (result.failed()) {
+          // Return the delta to the accumulator so that it's retried on
+          // the next flush rather than being lost.
+          accumulate(delta);
+        } else {
+          lastKnown = result.result();
+          known = true;
+        }
+        if (doneHandler != null) {
+          doneHandler.handle(result);
+        }
+      }
+    });
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.nio.ByteBuffer;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Bloom filter membership sketch.<p>
+ *
+ * Tests whether an item may have been added to the sketch. Membership tests
+ * never return false negatives, but may return false positives at a rate
+ * determined by the number of bits, the number of hash functions and the
+ * number of items added.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class BloomFilterSketch extends Sketch {
+  public static final String TYPE = "bloom";
+  private final int bits;
+  private final int hashes;
+  private final long[] words;
+
+  /**
+   * Creates a Bloom filter sized for an expected number of items.
+   *
+   * @param expectedItems The expected number of distinct items.
+   * @param falsePositiveRate The desired false positive rate once the
+   *        expected number of items have been added.
+   * @return An empty Bloom filter.
+   */
+  public static BloomFilterSketch create(long expectedItems, double falsePositiveRate) {
+    if (expectedItems < 1) {
+      throw new IllegalArgumentException("Expected items must be positive");
+    } else if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+    }
+    double bits = Math.ceil(-expectedItems * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    if (bits > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Bloom filter is too large");
+    }
+    int hashes = (int) Math.max(1, Math.round(bits / expectedItems * Math.log(2)));
+    return new BloomFilterSketch((int) bits, hashes);
+  }
+
+  public BloomFilterSketch(int bits, int hashes) {
+    if (bits < 1 || hashes < 1) {
+      throw new IllegalArgumentException("Bits and hashes must be positive");
+    }
+    this.bits = bits;
+    this.hashes = hashes;
+    this.words = new long[(bits + 63) / 64];
+  }
+
+  static BloomFilterSketch decode(JsonObject json) {
+    BloomFilterSketch sketch = new BloomFilterSketch(json.getInteger("bits", 0), json.getInteger("hashes", 0));
+    byte[] words = json.getBinary("words");
+    if (words != null) {
+      if (words.length != sketch.words.length * 8) {
+        throw new IllegalArgumentException("Invalid word count");
+      }
+      ByteBuffer.wrap(words).asLongBuffer().get(sketch.words);
+    } else {
+      JsonArray sparse = json.getArray("sparse", new JsonArray());
+      for (Object index : sparse) {
+        sketch.set(((Number) index).intValue());
+      }
+    }
+    return sketch;
+  }
+
+  /**
+   * Returns the number of bits in the filter.
+   */
+  public int bits() {
+    return bits;
+  }
+
+  /**
+   * Returns the number of hash functions.
+   */
+  public int hashes() {
+    return hashes;
+  }
+
+  @Override
+  public String type() {
+    return TYPE;
+  }
+
+  @Override
+  public void add(Object item, long count) {
+    long hash = hash(item);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashes; i++) {
+      set(index(hash1, hash2, i));
+    }
+  }
+
+  /**
+   * Returns the index of the bit for one of an item's hash functions.
+   */
+  private int index(int hash1, int hash2, int i) {
+    return ((hash1 + i * hash2) & Integer.MAX_VALUE) % bits;
+  }
+
+  private void set(int index) {
+    words[index >>> 6] |= 1L << index;
+  }
+
+  private boolean isSet(int index) {
+    return (words[index >>> 6] & (1L << index)) != 0;
+  }
+
+  @Override
+  public void merge(Sketch sketch) {
+    if (!(sketch instanceof BloomFilterSketch) || ((BloomFilterSketch) sketch).bits != bits || ((BloomFilterSketch) sketch).hashes != hashes) {
+      throw new IllegalArgumentException("Cannot merge incompatible sketches");
+    }
+    long[] other = ((BloomFilterSketch) sketch).words;
+    for (int i = 0; i < words.length; i++) {
+      words[i] |= other[i];
+    }
+  }
+
+  @Override
+  public Object query(Object item) {
+    return mightContain(item);
+  }
+
+  /**
+   * Returns a boolean indicating whether an item may have been added to the filter.
+   */
+  public boolean mightContain(Object item) {
+    long hash = hash(item);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashes; i++) {
+      if (!isSet(index(hash1, hash2, i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public BloomFilterSketch emptyCopy() {
+    return new BloomFilterSketch(bits, hashes);
+  }
+
+  @Override
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject()
+        .putString("type", TYPE)
+        .putNumber("bits", bits)
+        .putNumber("hashes", hashes);
+    int used = 0;
+    for (long word : words) {
+      used += Long.bitCount(word);
+    }
+    // A sparse index costs several bytes while a dense bit costs an eighth
+    // of a byte, so only small batches are encoded sparsely.
+    if (used * 32 < bits) {
+      JsonArray sparse = new JsonArray();
+      for (int i = 0; i < words.length; i++) {
+        long word = words[i];
+        while (word != 0) {
+          sparse.addNumber(i * 64 + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      json.putArray("sparse", sparse);
+    } else {
+      ByteBuffer buffer = ByteBuffer.allocate(words.length * 8);
+      buffer.asLongBuffer().put(words);
+      json.putBinary("words", buffer.array());
+    }
+    return json;
+  }
+
+}
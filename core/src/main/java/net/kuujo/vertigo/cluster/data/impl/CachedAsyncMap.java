@@ -0,0 +1,390 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
+import net.kuujo.vertigo.cluster.data.MapEvent;
+import net.kuujo.vertigo.cluster.data.MapEvent.Type;
+import net.kuujo.vertigo.cluster.data.MapFunction;
+import net.kuujo.vertigo.cluster.data.NearCacheOptions;
+import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Near cached asynchronous map.<p>
+ *
+ * This map serves repeated reads from a local {@link NearCache}. When a
+ * key is first read the map watches the key for changes before loading
+ * its value, and the key remains watched for as long as it's cached. Local
+ * changes always invalidate the cached entry, and changes made elsewhere in
+ * the cluster invalidate it once their events are received. Watch events
+ * are best effort: agents learn of new watches asynchronously, so a change
+ * made just after a key is first read may not be published, and clearing a
+ * map publishes no events. Cached entries therefore always expire after the
+ * configured time to live, which bounds how long an entry can be stale.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <K> The map key type.
+ * @param <V> The map value type.
+ */
+public class CachedAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
+  private final WatchableAsyncMap<K, V> map;
+  private final NearCache<K, V> cache;
+  private final long ttl;
+  private final Map<K, Handler<MapEvent<K, V>>> watchers = new HashMap<>();
+  private final Map<K, PendingGet> pending = new HashMap<>();
+
+  /**
+   * A pending load of a key shared by all concurrent readers of the key.
+   */
+  private class PendingGet {
+    private final List<Handler<AsyncResult<V>>> handlers = new ArrayList<>();
+    private boolean stale;
+  }
+
+  public CachedAsyncMap(WatchableAsyncMap<K, V> map, NearCacheOptions options) {
+    this.map = map;
+    this.cache = NearCache.create(options);
+    this.ttl = options.getTtl();
+  }
+
+  @Override
+  public String name() {
+    return map.name();
+  }
+
+  @Override
+  public void put(K key, V value) {
+    put(key, value, null);
+  }
+
+  @Override
+  public void put(K key, V value, Handler<AsyncResult<V>> doneHandler) {
+    invalidate(key);
+    map.put(key, value, doneHandler);
+  }
+
+  @Override
+  public void put(K key, V value, long ttl) {
+    put(key, value, ttl, null);
+  }
+
+  @Override
+  public void put(K key, V value, long ttl, Handler<AsyncResult<V>> doneHandler) {
+    invalidate(key);
+    map.put(key, value, ttl, doneHandler);
+  }
+
+  @Override
+  public void putAll(Map<K, V> entries) {
+    putAll(entries, null);
+  }
+
+  @Override
+  public void putAll(Map<K, V> entries, Handler<AsyncResult<Void>> doneHandler) {
+    for (K key : entries.keySet()) {
+      invalidate(key);
+    }
+    map.putAll(entries, doneHandler);
+  }
+
+  @Override
+  public void get(final K key, Handler<AsyncResult<V>> resultHandler) {
+    NearCache.Entry<V> entry = cache.get(key);
+    if (entry != null) {
+      if (!entry.expired(System.currentTimeMillis())) {
+        new DefaultFutureResult<V>(entry.value).setHandler(resultHandler);
+        return;
+      }
+      cache.remove(key);
+      unwatch(key);
+    }
+
+    // If the key is already being loaded then simply wait for the result
+    // of the pending load rather than sending another request.
+    PendingGet get = pending.get(key);
+    if (get != null) {
+      get.handlers.add(resultHandler);
+      return;
+    }
+
+    final PendingGet newGet = new PendingGet();
+    newGet.handlers.add(resultHandler);
+    pending.put(key, newGet);
+
+    // Watch the key before loading it so that any change that occurs
+    // after the value is read will invalidate the cached value.
+    Handler<MapEvent<K, V>> watcher = new Handler<MapEvent<K, V>>() {
+      @Override
+      public void handle(MapEvent<K, V> event) {
+        invalidate(key);
+      }
+    };
+    watchers.put(key, watcher);
+    map.watch(key, MapEvent.Type.CHANGE, watcher, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          newGet.stale = true;
+        }
+        map.get(key, new Handler<AsyncResult<V>>() {
+          @Override
+          public void handle(AsyncResult<V> result) {
+            pending.remove(key);
+            if (result.succeeded() && !newGet.stale) {
+              K evicted = cache.put(key, result.result(), System.currentTimeMillis() + ttl);
+              if (evicted != null) {
+                unwatch(evicted);
+              }
+            } else {
+              unwatch(key);
+            }
+            for (Handler<AsyncResult<V>> handler : newGet.handlers) {
+              if (handler != null) {
+                handler.handle(result);
+              }
+            }
+          }
+        });
+      }
+    });
+  }
+
+  @Override
+  public void getAll(Collection<K> keys, final Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    // Cached keys are served locally and the remaining keys are loaded
+    // in a single batch request. Batch loaded values aren't cached.
+    final Map<K, V> results = new HashMap<>();
+    List<K> misses = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (K key : keys) {
+      NearCache.Entry<V> entry = cache.get(key);
+      if (entry != null && !entry.expired(now)) {
+        if (entry.value != null) {
+          results.put(key, entry.value);
+        }
+      } else {
+        misses.add(key);
+      }
+    }
+
+    if (misses.isEmpty()) {
+      new DefaultFutureResult<Map<K, V>>(results).setHandler(resultHandler);
+    } else {
+      map.getAll(misses, new Handler<AsyncResult<Map<K, V>>>() {
+        @Override
+        public void handle(AsyncResult<Map<K, V>> result) {
+          if (result.failed()) {
+            new DefaultFutureResult<Map<K, V>>(result.cause()).setHandler(resultHandler);
+          } else {
+            results.putAll(result.result());
+            new DefaultFutureResult<Map<K, V>>(results).setHandler(resultHandler);
+          }
+        }
+      });
+    }
+  }
+
+  @Override
+  public void remove(K key) {
+    remove(key, null);
+  }
+
+  @Override
+  public void remove(K key, Handler<AsyncResult<V>> resultHandler) {
+    invalidate(key);
+    map.remove(key, resultHandler);
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys) {
+    removeAll(keys, null);
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    for (K key : keys) {
+      invalidate(key);
+    }
+    map.removeAll(keys, resultHandler);
+  }
+
+  @Override
+  public void putIfAbsent(K key, V value, Handler<AsyncResult<V>> resultHandler) {
+    invalidate(key);
+    map.putIfAbsent(key, value, resultHandler);
+  }
+
+  @Override
+  public void replace(K key, V expect, V value, Handler<AsyncResult<Boolean>> resultHandler) {
+    invalidate(key);
+    map.replace(key, expect, value, resultHandler);
+  }
+
+  @Override
+  public void computeIfPresent(K key, MapFunction<K, V> function, Handler<AsyncResult<V>> resultHandler) {
+    invalidate(key);
+    map.computeIfPresent(key, function, resultHandler);
+  }
+
+  @Override
+  public void containsKey(K key, Handler<AsyncResult<Boolean>> resultHandler) {
+    NearCache.Entry<V> entry = cache.get(key);
+    if (entry != null && !entry.expired(System.currentTimeMillis())) {
+      new DefaultFutureResult<Boolean>(entry.value != null).setHandler(resultHandler);
+    } else {
+      map.containsKey(key, resultHandler);
+    }
+  }
+
+  @Override
+  public AsyncCursor<Map.Entry<K, V>> scan(int pageSize) {
+    return map.scan(pageSize);
+  }
+
+  @Override
+  public void keySet(Handler<AsyncResult<Set<K>>> resultHandler) {
+    map.keySet(resultHandler);
+  }
+
+  @Override
+  public void values(Handler<AsyncResult<Collection<V>>> resultHandler) {
+    map.values(resultHandler);
+  }
+
+  @Override
+  public void size(Handler<AsyncResult<Integer>> resultHandler) {
+    map.size(resultHandler);
+  }
+
+  @Override
+  public void isEmpty(Handler<AsyncResult<Boolean>> resultHandler) {
+    map.isEmpty(resultHandler);
+  }
+
+  @Override
+  public void clear() {
+    clear(null);
+  }
+
+  @Override
+  public void clear(Handler<AsyncResult<Void>> doneHandler) {
+    for (K key : new ArrayList<>(cache.keys())) {
+      invalidate(key);
+    }
+    for (PendingGet get : pending.values()) {
+      get.stale = true;
+    }
+    map.clear(doneHandler);
+  }
+
+  /**
+   * Invalidates a cached key.
+   */
+  private void invalidate(K key) {
+    cache.remove(key);
+    PendingGet get = pending.get(key);
+    if (get != null) {
+      // The key's watcher is still needed until the pending load completes,
+      // at which point the loaded value will be discarded.
+      get.stale = true;
+    } else {
+      unwatch(key);
+    }
+  }
+
+  /**
+   * Stops watching a key that's no longer cached.
+   */
+  private void unwatch(K key) {
+    Handler<MapEvent<K, V>> watcher = watchers.remove(key);
+    if (watcher != null) {
+      map.unwatch(key, MapEvent.Type.CHANGE, watcher);
+    }
+  }
+
+  @Override
+  public void watch(K key, Handler<MapEvent<K, V>> handler) {
+    map.watch(key, handler);
+  }
+
+  @Override
+  public void watch(K key, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    map.watch(key, handler, doneHandler);
+  }
+
+  @Override
+  public void watch(K key, Type event, Handler<MapEvent<K, V>> handler) {
+    map.watch(key, event, handler);
+  }
+
+  @Override
+  public void watch(K key, Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    map.watch(key, event, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatch(K key, Handler<MapEvent<K, V>> handler) {
+    map.unwatch(key, handler);
+  }
+
+  @Override
+  public void unwatch(K key, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    map.unwatch(key, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatch(K key, Type event, Handler<MapEvent<K, V>> handler) {
+    map.unwatch(key, event, handler);
+  }
+
+  @Override
+  public void unwatch(K key, Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    map.unwatch(key, event, handler, doneHandler);
+  }
+
+  @Override
+  public void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler) {
+    map.watchPrefix(prefix, handler);
+  }
+
+  @Override
+  public void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    map.watchPrefix(prefix, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler) {
+    map.unwatchPrefix(prefix, handler);
+  }
+
+  @Override
+  public void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    map.unwatchPrefix(prefix, handler, doneHandler);
+  }
+
+}
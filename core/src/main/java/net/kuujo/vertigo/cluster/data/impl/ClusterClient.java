@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.kuujo.vertigo.cluster.ClusterClientOptions;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.ReplyException;
+import org.vertx.java.core.eventbus.ReplyFailure;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Client for sending requests to cluster agents.<p>
+ *
+ * All cluster and data structure requests are sent through a client, which
+ * applies the configured per-action timeouts and retries failed requests.
+ * Requests that weren't received by any agent are always safe to retry. If
+ * the request was sent to a partition that has left the cluster then the
+ * partition is excluded from routing and the request is retried against the
+ * partition that now owns its data, so requests that wait on the agent, like
+ * lock and queue requests, are parked on the same agent as other requests for
+ * the same data. Read-only requests are also retried if they time out.
+ * Identical read requests that are sent while an earlier one is still waiting
+ * for a reply share the earlier request's reply rather than being sent again.
+ * Each caller receives its own copy of the shared reply's body.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ClusterClient {
+  private static final Set<String> READ_ACTIONS = new HashSet<>(Arrays.asList(
+      "check", "contains", "element", "empty", "get", "getAll", "keys", "list", "load", "peek", "query", "size", "values"));
+  private final String address;
+  private final Vertx vertx;
+  private final ClusterClientOptions options;
+  private final PartitionRouter partitions;
+  private final Map<String, List<PendingRead>> pendingReads = new HashMap<>();
+
+  public ClusterClient(String address, Vertx vertx) {
+    this(address, vertx, new ClusterClientOptions());
+  }
+
+  public ClusterClient(String address, Vertx vertx, ClusterClientOptions options) {
+    this.address = address;
+    this.vertx = vertx;
+    this.options = options;
+    this.partitions = PartitionRouter.getInstance(address, vertx);
+  }
+
+  /**
+   * Returns the cluster address.
+   */
+  public String address() {
+    return address;
+  }
+
+  /**
+   * Returns the client options.
+   */
+  public ClusterClientOptions options() {
+    return options;
+  }
+
+  /**
+   * Creates a request template for a named data structure.
+   *
+   * @param type The data structure type.
+   * @param name The data structure name.
+   * @return A request template.
+   */
+  public RequestTemplate template(String type, String name) {
+    return new RequestTemplate(type, name);
+  }
+
+  /**
+   * Sends a request to the cluster address.
+   *
+   * @param request The request.
+   * @param replyHandler An asynchronous handler to be called with the reply.
+   */
+  public void send(JsonObject request, Handler<AsyncResult<Message<JsonObject>>> replyHandler) {
+    send(address, request, 0, replyHandler);
+  }
+
+  /**
+   * Sends a request.
+   *
+   * @param address The address to which to send the request.
+   * @param request The request.
+   * @param replyHandler An asynchronous handler to be called with the reply.
+   */
+  public void send(String address, JsonObject request, Handler<AsyncResult<Message<JsonObject>>> replyHandler) {
+    send(address, request, 0, replyHandler);
+  }
+
+  /**
+   * Sends a request that may wait on the agent before it's answered.
+   *
+   * @param address The address to which to send the request.
+   * @param request The request.
+   * @param wait The maximum time the agent may hold the request in
+   *        milliseconds. This is added to the request timeout.
+   * @param replyHandler An asynchronous handler to be called with the reply.
+   */
+  public void send(String address, JsonObject request, long wait, final Handler<AsyncResult<Message<JsonObject>>> replyHandler) {
+    String action = request.getString("action");
+    final long timeout = options.getTimeout(action) + wait;
+    final boolean read = READ_ACTIONS.contains(action);
+    if (!read || !options.isCoalesceReads() || replyHandler == null) {
+      if (!read) {
+        // Reads sent after a write must not share the reply of a read that
+        // was sent before it, so pending reads stop accepting new requests.
+        synchronized (pendingReads) {
+          pendingReads.clear();
+        }
+      }
+      send(address, request, timeout, read, 0, replyHandler);
+      return;
+    }
+
+    final String key = address + ":" + request.encode();
+    final List<PendingRead> reads;
+    synchronized (pendingReads) {
+      List<PendingRead> pending = pendingReads.get(key);
+      if (pending != null) {
+        pending.add(new PendingRead(vertx.currentContext(), replyHandler));
+        return;
+      }
+      reads = new ArrayList<>();
+      reads.add(new PendingRead(vertx.currentContext(), replyHandler));
+      pendingReads.put(key, reads);
+    }
+
+    send(address, request, timeout, true, 0, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(final AsyncResult<Message<JsonObject>> result) {
+        synchronized (pendingReads) {
+          if (pendingReads.get(key) == reads) {
+            pendingReads.remove(key);
+          }
+        }
+        // Each caller gets its own copy of the reply body since callers may
+        // mutate it. Copies are made before any handler is called.
+        List<AsyncResult<Message<JsonObject>>> results = new ArrayList<>(reads.size());
+        results.add(result);
+        for (int i = 1; i < reads.size(); i++) {
+          results.add(result.succeeded() ? new DefaultFutureResult<Message<JsonObject>>(copyOf(result.result())) : result);
+        }
+
+        Context context = vertx.currentContext();
+        for (int i = 0; i < reads.size(); i++) {
+          final PendingRead read = reads.get(i);
+          final AsyncResult<Message<JsonObject>> readResult = results.get(i);
+          if (read.context == null || read.context == context) {
+            read.handler.handle(readResult);
+          } else {
+            read.context.runOnContext(new Handler<Void>() {
+              @Override
+              public void handle(Void _) {
+                read.handler.handle(readResult);
+              }
+            });
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Sends a request, retrying it if it fails.
+   */
+  private void send(final String address, final JsonObject request, final long timeout, final boolean read, final int attempt,
+      final Handler<AsyncResult<Message<JsonObject>>> replyHandler) {
+    vertx.eventBus().sendWithTimeout(address, request, timeout, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.succeeded() || attempt >= options.getRetries() || !isRetryable(result.cause(), read)) {
+          if (replyHandler != null) {
+            replyHandler.handle(result);
+          }
+          return;
+        }
+
+        // If a partition didn't receive the request then it has left the
+        // cluster, so retry the request against the partition that now owns
+        // the request's data. Since any agent can answer a read, timed out
+        // reads are retried against the cluster address.
+        final String retryAddress;
+        if (address.equals(ClusterClient.this.address)) {
+          retryAddress = address;
+        } else if (((ReplyException) result.cause()).failureType() == ReplyFailure.NO_HANDLERS) {
+          partitions.fail(address);
+          retryAddress = partitions.route(request);
+        } else {
+          partitions.invalidate();
+          retryAddress = ClusterClient.this.address;
+        }
+        vertx.setTimer(options.getRetryDelay() << attempt, new Handler<Long>() {
+          @Override
+          public void handle(Long timerID) {
+            send(retryAddress, request, timeout, read, attempt + 1, replyHandler);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Returns a view of a reply with its own copy of the reply body.<p>
+   *
+   * All other methods, including replies, are delegated to the original
+   * message, so the copy doesn't need to track the message interface.
+   */
+  @SuppressWarnings("unchecked")
+  private static Message<JsonObject> copyOf(final Message<JsonObject> message) {
+    final JsonObject body = message.body() != null ? message.body().copy() : null;
+    return (Message<JsonObject>) Proxy.newProxyInstance(Message.class.getClassLoader(), new Class<?>[]{Message.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("body") && method.getParameterTypes().length == 0) {
+          return body;
+        }
+        try {
+          return method.invoke(message, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns a boolean indicating whether a failed request can safely be retried.
+   */
+  private boolean isRetryable(Throwable cause, boolean read) {
+    if (!(cause instanceof ReplyException)) {
+      return false;
+    }
+    ReplyFailure failure = ((ReplyException) cause).failureType();
+    return failure == ReplyFailure.NO_HANDLERS || (read && failure == ReplyFailure.TIMEOUT);
+  }
+
+  /**
+   * A read request waiting for a shared reply.
+   */
+  private static class PendingRead {
+    private final Context context;
+    private final Handler<AsyncResult<Message<JsonObject>>> handler;
+
+    private PendingRead(Context context, Handler<AsyncResult<Message<JsonObject>>> handler) {
+      this.context = context;
+      this.handler = handler;
+    }
+  }
+
+  /**
+   * Request template for a named data structure.<p>
+   *
+   * The type and name fields that are common to all requests for a data
+   * structure are built once and copied into each request.
+   */
+  public static class RequestTemplate {
+    private final JsonObject template;
+
+    private RequestTemplate(String type, String name) {
+      this.template = new JsonObject()
+          .putString("type", type)
+          .putString("name", name);
+    }
+
+    /**
+     * Creates a new request.
+     *
+     * @param action The request action.
+     * @return A new request for the data structure.
+     */
+    public JsonObject request(String action) {
+      return template.copy().putString("action", action);
+    }
+  }
+
+}
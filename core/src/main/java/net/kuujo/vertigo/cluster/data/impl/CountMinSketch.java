@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Count-Min frequency sketch.<p>
+ *
+ * Estimates the number of occurrences of each item added to the sketch using
+ * <code>depth</code> rows of <code>width</code> counters. Estimates never
+ * undercount, and overcount by at most <code>2N / width</code> (where N is
+ * the total count) with probability <code>1 - 1 / 2^depth</code>.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CountMinSketch extends Sketch {
+  public static final String TYPE = "cms";
+  private final int width;
+  private final int depth;
+  private final long[] counts;
+
+  public CountMinSketch(int width, int depth) {
+    if (width < 1 || depth < 1) {
+      throw new IllegalArgumentException("Width and depth must be positive");
+    }
+    this.width = width;
+    this.depth = depth;
+    this.counts = new long[width * depth];
+  }
+
+  static CountMinSketch decode(JsonObject json) {
+    CountMinSketch sketch = new CountMinSketch(json.getInteger("width", 0), json.getInteger("depth", 0));
+    JsonArray counts = json.getArray("counts");
+    if (counts != null) {
+      if (counts.size() != sketch.counts.length) {
+        throw new IllegalArgumentException("Invalid counter count");
+      }
+      for (int i = 0; i < counts.size(); i++) {
+        sketch.counts[i] = ((Number) counts.get(i)).longValue();
+      }
+    } else {
+      JsonArray sparse = json.getArray("sparse", new JsonArray());
+      for (int i = 0; i < sparse.size() - 1; i += 2) {
+        sketch.counts[((Number) sparse.get(i)).intValue()] = ((Number) sparse.get(i + 1)).longValue();
+      }
+    }
+    return sketch;
+  }
+
+  /**
+   * Returns the number of counters in each row.
+   */
+  public int width() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows.
+   */
+  public int depth() {
+    return depth;
+  }
+
+  @Override
+  public String type() {
+    return TYPE;
+  }
+
+  @Override
+  public void add(Object item, long count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Count cannot be negative");
+    }
+    long hash = hash(item);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 0; i < depth; i++) {
+      counts[i * width + index(hash1, hash2, i)] += count;
+    }
+  }
+
+  /**
+   * Returns the index of an item's counter in a row.
+   */
+  private int index(int hash1, int hash2, int row) {
+    return ((hash1 + row * hash2) & Integer.MAX_VALUE) % width;
+  }
+
+  @Override
+  public void merge(Sketch sketch) {
+    if (!(sketch instanceof CountMinSketch) || ((CountMinSketch) sketch).width != width || ((CountMinSketch) sketch).depth != depth) {
+      throw new IllegalArgumentException("Cannot merge incompatible sketches");
+    }
+    long[] other = ((CountMinSketch) sketch).counts;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other[i];
+    }
+  }
+
+  @Override
+  public Object query(Object item) {
+    return estimate(item);
+  }
+
+  /**
+   * Returns the estimated number of occurrences of an item.
+   */
+  public long estimate(Object item) {
+    long hash = hash(item);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    long estimate = Long.MAX_VALUE;
+    for (int i = 0; i < depth; i++) {
+      estimate = Math.min(estimate, counts[i * width + index(hash1, hash2, i)]);
+    }
+    return estimate;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (long count : counts) {
+      if (count != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public CountMinSketch emptyCopy() {
+    return new CountMinSketch(width, depth);
+  }
+
+  @Override
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject()
+        .putString("type", TYPE)
+        .putNumber("width", width)
+        .putNumber("depth", depth);
+    int used = 0;
+    for (long count : counts) {
+      if (count != 0) {
+        used++;
+      }
+    }
+    if (used * 2 < counts.length) {
+      JsonArray sparse = new JsonArray();
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] != 0) {
+          sparse.addNumber(i).addNumber(counts[i]);
+        }
+      }
+      json.putArray("sparse", sparse);
+    } else {
+      JsonArray dense = new JsonArray();
+      for (long count : counts) {
+        dense.addNumber(count);
+      }
+      json.putArray("counts", dense);
+    }
+    return json;
+  }
+
+}
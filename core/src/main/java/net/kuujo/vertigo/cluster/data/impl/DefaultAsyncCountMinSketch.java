@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import net.kuujo.vertigo.cluster.data.AsyncCountMinSketch;
+import net.kuujo.vertigo.cluster.data.SketchOptions;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Locally batched Count-Min sketch.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultAsyncCountMinSketch extends AbstractAsyncSketch implements AsyncCountMinSketch {
+
+  public DefaultAsyncCountMinSketch(String name, SketchStore store, Vertx vertx, SketchOptions options) {
+    super(name, new CountMinSketch(options.getWidth(), options.getDepth()), store, vertx, options);
+  }
+
+  @Override
+  public void add(Object item) {
+    add(item, 1, null);
+  }
+
+  @Override
+  public void add(Object item, long count) {
+    add(item, count, null);
+  }
+
+  @Override
+  public void add(Object item, long count, Handler<AsyncResult<Void>> doneHandler) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Count cannot be negative");
+    }
+    accumulate(item, count, doneHandler);
+  }
+
+  @Override
+  public void estimate(Object item, final Handler<AsyncResult<Long>> resultHandler) {
+    query(item, new Handler<AsyncResult<Object>>() {
+      @Override
+      public void handle(AsyncResult<Object> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Long>(result.cause()).setHandler(resultHandler);
+        } else {
+          new DefaultFutureResult<Long>(((Number) result.result()).longValue()).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
+}
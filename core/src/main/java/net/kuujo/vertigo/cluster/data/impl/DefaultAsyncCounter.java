@@ -20,25 +20,34 @@ import net.kuujo.vertigo.cluster.data.AsyncCounter;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
-import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.impl.DefaultFutureResult;
 import org.vertx.java.core.json.JsonObject;
 
 /**
- * Event bus based counter.
+ * Event bus based counter.<p>
+ *
+ * All requests for the counter are routed to the cluster partition that owns it.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class DefaultAsyncCounter implements AsyncCounter {
   private final String address;
   private final String name;
-  private final EventBus eventBus;
+  private final ClusterClient client;
+  private final ClusterClient.RequestTemplate requests;
+  private final PartitionRouter partitions;
 
   public DefaultAsyncCounter(String address, String name, Vertx vertx) {
-    this.address = address;
+    this(new ClusterClient(address, vertx), name, vertx);
+  }
+
+  public DefaultAsyncCounter(ClusterClient client, String name, Vertx vertx) {
+    this.address = client.address();
     this.name = name;
-    this.eventBus = vertx.eventBus();
+    this.client = client;
+    this.requests = client.template("counter", name);
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
   }
 
   @Override
@@ -48,11 +57,8 @@ public class DefaultAsyncCounter implements AsyncCounter {
 
   @Override
   public void get(final Handler<AsyncResult<Long>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "get")
-        .putString("type", "counter")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("get");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -71,11 +77,8 @@ public class DefaultAsyncCounter implements AsyncCounter {
 
   @Override
   public void increment(final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "increment")
-        .putString("type", "counter")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("increment");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -89,11 +92,8 @@ public class DefaultAsyncCounter implements AsyncCounter {
 
   @Override
   public void incrementAndGet(final Handler<AsyncResult<Long>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "increment")
-        .putString("type", "counter")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("increment");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -112,11 +112,8 @@ public class DefaultAsyncCounter implements AsyncCounter {
 
   @Override
   public void decrement(final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "decrement")
-        .putString("type", "counter")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("decrement");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -130,11 +127,8 @@ public class DefaultAsyncCounter implements AsyncCounter {
 
   @Override
   public void decrementAndGet(final Handler<AsyncResult<Long>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "decrement")
-        .putString("type", "counter")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("decrement");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -146,4 +140,46 @@ public class DefaultAsyncCounter implements AsyncCounter {
     });
   }
 
+  @Override
+  public void add(long delta) {
+    add(delta, null);
+  }
+
+  @Override
+  public void add(long delta, final Handler<AsyncResult<Void>> doneHandler) {
+    JsonObject message = requests.request("add")
+        .putNumber("value", delta);
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void addAndGet(long delta, final Handler<AsyncResult<Long>> doneHandler) {
+    JsonObject message = requests.request("add")
+        .putNumber("value", delta);
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Long>(result.cause()).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Long>(result.result().body().getLong("result", 0)).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void flush(Handler<AsyncResult<Void>> doneHandler) {
+    new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+  }
+
 }
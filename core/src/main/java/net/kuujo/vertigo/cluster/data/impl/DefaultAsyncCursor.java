@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.kuujo.vertigo.cluster.data.DataException;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Event bus cursor implementation.<p>
+ *
+ * The first page is requested from the cluster with a <code>scan</code>
+ * action. If the data structure has more elements than fit in the page,
+ * the agent that handled the request holds the cursor open and replies
+ * with the cursor ID and the address at which the cursor can be read.
+ * Subsequent pages are then requested directly from that agent.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The cursor element type.
+ */
+public class DefaultAsyncCursor<T> extends AbstractAsyncCursor<T> {
+  private final String address;
+  private final String type;
+  private final String name;
+  private final int pageSize;
+  private final ClusterClient client;
+  private String cursorAddress;
+  private String cursorID;
+  private boolean started;
+
+  public DefaultAsyncCursor(String address, String type, String name, int pageSize, Vertx vertx) {
+    this(new ClusterClient(address, vertx), type, name, pageSize, vertx);
+  }
+
+  public DefaultAsyncCursor(ClusterClient client, String type, String name, int pageSize, Vertx vertx) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    this.address = client.address();
+    this.type = type;
+    this.name = name;
+    this.pageSize = pageSize;
+    this.client = client;
+  }
+
+  @Override
+  protected void fetch(final Handler<AsyncResult<List<T>>> resultHandler) {
+    String address;
+    JsonObject message;
+    if (!started) {
+      started = true;
+      address = this.address;
+      message = client.template(type, name).request("scan")
+          .putNumber("count", pageSize);
+    } else {
+      address = cursorAddress;
+      message = new JsonObject()
+          .putString("action", "next")
+          .putString("cursor", cursorID);
+    }
+
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<List<T>>(result.cause()).setHandler(resultHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<List<T>>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+        } else {
+          JsonObject body = result.result().body();
+          if (body.containsField("cursor")) {
+            cursorID = body.getString("cursor");
+            cursorAddress = body.getString("address");
+          } else {
+            complete();
+          }
+          JsonArray values = body.getArray("result");
+          List<T> page = new ArrayList<>(values != null ? values.size() : 0);
+          if (values != null) {
+            for (Object value : values) {
+              page.add(convert(value));
+            }
+          }
+          new DefaultFutureResult<List<T>>(page).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
+  /**
+   * Converts a page element to the cursor type. Map entries are sent as
+   * objects with a <code>key</code> and <code>value</code>.
+   */
+  @SuppressWarnings("unchecked")
+  private T convert(Object value) {
+    if (type.equals("map")) {
+      JsonObject entry = (JsonObject) value;
+      return (T) new AbstractMap.SimpleImmutableEntry<Object, Object>(entry.getValue("key"), entry.getValue("value"));
+    }
+    return (T) value;
+  }
+
+  @Override
+  protected void release(final Handler<AsyncResult<Void>> doneHandler) {
+    if (cursorID == null) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    }
+    JsonObject message = new JsonObject()
+        .putString("action", "close")
+        .putString("cursor", cursorID);
+    client.send(cursorAddress, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import net.kuujo.vertigo.cluster.data.AsyncHyperLogLog;
+import net.kuujo.vertigo.cluster.data.SketchOptions;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Locally batched HyperLogLog.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultAsyncHyperLogLog extends AbstractAsyncSketch implements AsyncHyperLogLog {
+
+  public DefaultAsyncHyperLogLog(String name, SketchStore store, Vertx vertx, SketchOptions options) {
+    super(name, new HyperLogLogSketch(options.getPrecision()), store, vertx, options);
+  }
+
+  @Override
+  public void add(Object item) {
+    add(item, null);
+  }
+
+  @Override
+  public void add(Object item, Handler<AsyncResult<Void>> doneHandler) {
+    accumulate(item, 1, doneHandler);
+  }
+
+  @Override
+  public void count(final Handler<AsyncResult<Long>> resultHandler) {
+    query(null, new Handler<AsyncResult<Object>>() {
+      @Override
+      public void handle(AsyncResult<Object> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Long>(result.cause()).setHandler(resultHandler);
+        } else {
+          new DefaultFutureResult<Long>(((Number) result.result()).longValue()).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
+}
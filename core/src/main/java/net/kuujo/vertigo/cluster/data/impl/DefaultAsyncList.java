@@ -15,19 +15,21 @@
  */
 package net.kuujo.vertigo.cluster.data.impl;
 
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
 import net.kuujo.vertigo.cluster.data.AsyncList;
 import net.kuujo.vertigo.cluster.data.DataException;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
-import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.impl.DefaultFutureResult;
 import org.vertx.java.core.json.JsonObject;
 
 /**
- * An event bus list implementation.
+ * An event bus list implementation.<p>
+ *
+ * All requests for the list are routed to the cluster partition that owns it.
  *
  * @author Jordan Halterman
  *
@@ -36,12 +38,22 @@ import org.vertx.java.core.json.JsonObject;
 public class DefaultAsyncList<T> implements AsyncList<T> {
   private final String address;
   private final String name;
-  private final EventBus eventBus;
+  private final Vertx vertx;
+  private final ClusterClient client;
+  private final ClusterClient.RequestTemplate requests;
+  private final PartitionRouter partitions;
 
   public DefaultAsyncList(String address, String name, Vertx vertx) {
-    this.address = address;
+    this(new ClusterClient(address, vertx), name, vertx);
+  }
+
+  public DefaultAsyncList(ClusterClient client, String name, Vertx vertx) {
+    this.address = client.address();
     this.name = name;
-    this.eventBus = vertx.eventBus();
+    this.vertx = vertx;
+    this.client = client;
+    this.requests = client.template("list", name);
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
   }
 
   @Override
@@ -56,12 +68,9 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void add(T value, final Handler<AsyncResult<Boolean>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "add")
-        .putString("type", "list")
-        .putString("name", name)
+    JsonObject message = requests.request("add")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -82,12 +91,9 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void remove(T value, final Handler<AsyncResult<Boolean>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "remove")
-        .putString("type", "list")
-        .putString("name", name)
+    JsonObject message = requests.request("remove")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -109,12 +115,9 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void remove(int index, final Handler<AsyncResult<T>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "remove")
-        .putString("type", "list")
-        .putString("name", name)
+    JsonObject message = requests.request("remove")
         .putValue("index", index);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -131,12 +134,9 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void contains(Object value, final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "contains")
-        .putString("type", "list")
-        .putString("name", name)
+    JsonObject message = requests.request("contains")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -152,11 +152,8 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void size(final Handler<AsyncResult<Integer>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "size")
-        .putString("type", "list")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("size");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -172,11 +169,8 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void isEmpty(final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "empty")
-        .putString("type", "list")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("empty");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -197,11 +191,8 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void clear(final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "clear")
-        .putString("type", "list")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("clear");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -217,12 +208,9 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void get(int index, final Handler<AsyncResult<T>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "get")
-        .putString("type", "list")
-        .putString("name", name)
+    JsonObject message = requests.request("get")
         .putNumber("index", index);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -244,13 +232,10 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
 
   @Override
   public void set(int index, T value, final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-      .putString("action", "set")
-      .putString("type", "list")
-      .putString("name", name)
+    JsonObject message = requests.request("set")
       .putNumber("index", index)
       .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -264,4 +249,9 @@ public class DefaultAsyncList<T> implements AsyncList<T> {
     });
   }
 
+  @Override
+  public AsyncCursor<T> scan(int pageSize) {
+    return new DefaultAsyncCursor<T>(client, "list", name, pageSize, vertx);
+  }
+
 }
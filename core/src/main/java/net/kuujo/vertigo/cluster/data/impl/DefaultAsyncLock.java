@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import net.kuujo.vertigo.cluster.data.AsyncLock;
+import net.kuujo.vertigo.cluster.data.DataException;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Event bus based lock.<p>
+ *
+ * All requests for the lock are routed to the cluster partition that owns it,
+ * where requests waiting to acquire the lock are queued until it's released.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultAsyncLock implements AsyncLock {
+  private final String name;
+  private final ClusterClient client;
+  private final ClusterClient.RequestTemplate requests;
+  private final PartitionRouter partitions;
+
+  public DefaultAsyncLock(String address, String name, Vertx vertx) {
+    this(new ClusterClient(address, vertx), name, vertx);
+  }
+
+  public DefaultAsyncLock(ClusterClient client, String name, Vertx vertx) {
+    this.name = name;
+    this.client = client;
+    this.requests = client.template("lock", name);
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void acquire(final long lease, final Handler<AsyncResult<Long>> resultHandler) {
+    // Waiting indefinitely is done with consecutive long polling requests
+    // so that a request is never waiting on a reply that won't arrive.
+    acquire(lease, client.options().getLockWaitTimeout(), new Handler<AsyncResult<Long>>() {
+      @Override
+      public void handle(AsyncResult<Long> result) {
+        if (result.succeeded() && result.result() == null) {
+          acquire(lease, resultHandler);
+        } else {
+          resultHandler.handle(result);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void acquire(long lease, long timeout, final Handler<AsyncResult<Long>> resultHandler) {
+    JsonObject message = requests.request("acquire")
+        .putNumber("lease", lease)
+        .putNumber("timeout", timeout);
+    client.send(partitions.route(name), message, timeout, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        handleToken(result, resultHandler);
+      }
+    });
+  }
+
+  @Override
+  public void tryAcquire(long lease, final Handler<AsyncResult<Long>> resultHandler) {
+    JsonObject message = requests.request("acquire")
+        .putNumber("lease", lease);
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        handleToken(result, resultHandler);
+      }
+    });
+  }
+
+  /**
+   * Handles a reply to an acquire request.
+   */
+  private void handleToken(AsyncResult<Message<JsonObject>> result, Handler<AsyncResult<Long>> resultHandler) {
+    if (result.failed()) {
+      new DefaultFutureResult<Long>(result.cause()).setHandler(resultHandler);
+    } else if (result.result().body().getString("status").equals("error")) {
+      new DefaultFutureResult<Long>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+    } else {
+      new DefaultFutureResult<Long>(result.result().body().getLong("result")).setHandler(resultHandler);
+    }
+  }
+
+  @Override
+  public void renew(long token, long lease, final Handler<AsyncResult<Boolean>> resultHandler) {
+    JsonObject message = requests.request("renew")
+        .putNumber("token", token)
+        .putNumber("lease", lease);
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        handleBoolean(result, resultHandler);
+      }
+    });
+  }
+
+  @Override
+  public void release(long token) {
+    release(token, null);
+  }
+
+  @Override
+  public void release(long token, final Handler<AsyncResult<Boolean>> doneHandler) {
+    JsonObject message = requests.request("release")
+        .putNumber("token", token);
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        handleBoolean(result, doneHandler);
+      }
+    });
+  }
+
+  /**
+   * Handles a reply to a renew or release request.
+   */
+  private void handleBoolean(AsyncResult<Message<JsonObject>> result, Handler<AsyncResult<Boolean>> resultHandler) {
+    if (result.failed()) {
+      new DefaultFutureResult<Boolean>(result.cause()).setHandler(resultHandler);
+    } else if (result.result().body().getString("status").equals("error")) {
+      new DefaultFutureResult<Boolean>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+    } else {
+      new DefaultFutureResult<Boolean>(result.result().body().getBoolean("result")).setHandler(resultHandler);
+    }
+  }
+
+}
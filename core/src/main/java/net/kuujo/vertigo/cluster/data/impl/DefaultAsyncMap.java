@@ -17,12 +17,21 @@ package net.kuujo.vertigo.cluster.data.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
-import net.kuujo.vertigo.cluster.data.AsyncMap;
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
 import net.kuujo.vertigo.cluster.data.DataException;
+import net.kuujo.vertigo.cluster.data.MapEvent;
+import net.kuujo.vertigo.cluster.data.MapFunction;
+import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
+import net.kuujo.vertigo.util.serialization.Serializer;
+import net.kuujo.vertigo.util.serialization.SerializerFactory;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
@@ -34,22 +43,44 @@ import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
 /**
- * An event bus map implementation.
+ * An event bus map implementation.<p>
+ *
+ * Watches are multiplexed so that all handlers watching keys or key
+ * prefixes through this map share a single event bus handler.<p>
+ *
+ * Requests for a single key are routed to the cluster partition that owns
+ * the key, while requests spanning multiple keys may be handled by any agent.
  *
  * @author Jordan Halterman
  *
  * @param <K> The map key type.
  * @param <V> The map value type.
  */
-public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
+public class DefaultAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
+  private static final Serializer functionSerializer = SerializerFactory.getSerializer(MapFunction.class);
   private final String address;
   private final String name;
+  private final Vertx vertx;
   private final EventBus eventBus;
+  private final ClusterClient client;
+  private final ClusterClient.RequestTemplate requests;
+  private final PartitionRouter partitions;
+  private final Map<String, Subscription> keySubscriptions = new HashMap<>();
+  private final Map<String, Subscription> prefixSubscriptions = new HashMap<>();
+  private Registration registration;
 
   public DefaultAsyncMap(String address, String name, Vertx vertx) {
-    this.address = address;
+    this(new ClusterClient(address, vertx), name, vertx);
+  }
+
+  public DefaultAsyncMap(ClusterClient client, String name, Vertx vertx) {
+    this.address = client.address();
     this.name = name;
+    this.vertx = vertx;
     this.eventBus = vertx.eventBus();
+    this.client = client;
+    this.requests = client.template("map", name);
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
   }
 
   @Override
@@ -64,13 +95,31 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
 
   @Override
   public void put(K key, V value, final Handler<AsyncResult<V>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "put")
-        .putString("type", "map")
-        .putString("name", name)
+    JsonObject message = requests.request("put")
         .putValue("key", key)
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    sendForValue(message, doneHandler);
+  }
+
+  @Override
+  public void put(K key, V value, long ttl) {
+    put(key, value, ttl, null);
+  }
+
+  @Override
+  public void put(K key, V value, long ttl, final Handler<AsyncResult<V>> doneHandler) {
+    JsonObject message = requests.request("put")
+        .putValue("key", key)
+        .putValue("value", value)
+        .putNumber("ttl", ttl);
+    sendForValue(message, doneHandler);
+  }
+
+  /**
+   * Sends a keyed request to the key's partition and calls the handler with the resulting value.
+   */
+  private void sendForValue(JsonObject message, final Handler<AsyncResult<V>> doneHandler) {
+    client.send(partitions.route(name, message.getValue("key")), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -85,14 +134,38 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
     });
   }
 
+  @Override
+  public void putAll(Map<K, V> entries) {
+    putAll(entries, null);
+  }
+
+  @Override
+  public void putAll(Map<K, V> entries, final Handler<AsyncResult<Void>> doneHandler) {
+    JsonArray jsonEntries = new JsonArray();
+    for (Map.Entry<K, V> entry : entries.entrySet()) {
+      jsonEntries.addObject(new JsonObject().putValue("key", entry.getKey()).putValue("value", entry.getValue()));
+    }
+    JsonObject message = requests.request("putAll")
+        .putArray("entries", jsonEntries);
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<Void>(new DataException(result.result().body().getString("message"))).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
   @Override
   public void get(K key, final Handler<AsyncResult<V>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "get")
-        .putString("type", "map")
-        .putString("name", name)
+    JsonObject message = requests.request("get")
         .putValue("key", key);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name, key), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -107,6 +180,18 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
     });
   }
 
+  @Override
+  public void getAll(Collection<K> keys, final Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    JsonObject message = requests.request("getAll")
+        .putArray("keys", toJsonKeys(keys));
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        handleEntries(result, resultHandler);
+      }
+    });
+  }
+
   @Override
   public void remove(K key) {
     remove(key, null);
@@ -114,12 +199,9 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
 
   @Override
   public void remove(K key, final Handler<AsyncResult<V>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "remove")
-        .putString("type", "map")
-        .putString("name", name)
+    JsonObject message = requests.request("remove")
         .putValue("key", key);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name, key), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -134,14 +216,99 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
     });
   }
 
+  @Override
+  public void removeAll(Collection<K> keys) {
+    removeAll(keys, null);
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys, final Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    JsonObject message = requests.request("removeAll")
+        .putArray("keys", toJsonKeys(keys));
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        handleEntries(result, resultHandler);
+      }
+    });
+  }
+
+  /**
+   * Converts a collection of keys to a JSON array.
+   */
+  private JsonArray toJsonKeys(Collection<K> keys) {
+    JsonArray jsonKeys = new JsonArray();
+    for (K key : keys) {
+      jsonKeys.add(key);
+    }
+    return jsonKeys;
+  }
+
+  /**
+   * Handles a response containing an array of map entries.
+   */
+  @SuppressWarnings("unchecked")
+  private void handleEntries(AsyncResult<Message<JsonObject>> result, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    if (result.failed()) {
+      new DefaultFutureResult<Map<K, V>>(result.cause()).setHandler(resultHandler);
+    } else if (result.result().body().getString("status").equals("error")) {
+      new DefaultFutureResult<Map<K, V>>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+    } else {
+      JsonArray jsonEntries = result.result().body().getArray("result");
+      if (jsonEntries != null) {
+        Map<K, V> entries = new HashMap<>();
+        for (Object jsonEntry : jsonEntries) {
+          JsonObject entry = (JsonObject) jsonEntry;
+          entries.put((K) entry.getValue("key"), (V) entry.getValue("value"));
+        }
+        new DefaultFutureResult<Map<K, V>>(entries).setHandler(resultHandler);
+      } else {
+        new DefaultFutureResult<Map<K, V>>(new DataException("Invalid response.")).setHandler(resultHandler);
+      }
+    }
+  }
+
+  @Override
+  public void putIfAbsent(K key, V value, Handler<AsyncResult<V>> resultHandler) {
+    JsonObject message = requests.request("putIfAbsent")
+        .putValue("key", key)
+        .putValue("value", value);
+    sendForValue(message, resultHandler);
+  }
+
+  @Override
+  public void replace(K key, V expect, V value, final Handler<AsyncResult<Boolean>> resultHandler) {
+    JsonObject message = requests.request("replace")
+        .putValue("key", key)
+        .putValue("expect", expect)
+        .putValue("value", value);
+    client.send(partitions.route(name, key), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Boolean>(result.cause()).setHandler(resultHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<Boolean>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+        } else {
+          new DefaultFutureResult<Boolean>(result.result().body().getBoolean("result")).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void computeIfPresent(K key, MapFunction<K, V> function, Handler<AsyncResult<V>> resultHandler) {
+    JsonObject message = requests.request("computeIfPresent")
+        .putValue("key", key)
+        .putObject("function", functionSerializer.serializeToObject(function));
+    sendForValue(message, resultHandler);
+  }
+
   @Override
   public void containsKey(K key, final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "contains")
-        .putString("type", "map")
-        .putString("name", name)
+    JsonObject message = requests.request("contains")
         .putValue("key", key);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name, key), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -155,13 +322,15 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
     });
   }
 
+  @Override
+  public AsyncCursor<Map.Entry<K, V>> scan(int pageSize) {
+    return new DefaultAsyncCursor<Map.Entry<K, V>>(client, "map", name, pageSize, vertx);
+  }
+
   @Override
   public void keySet(final Handler<AsyncResult<Set<K>>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "keys")
-        .putString("type", "map")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("keys");
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -187,11 +356,8 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
 
   @Override
   public void values(final Handler<AsyncResult<Collection<V>>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "values")
-        .putString("type", "map")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("values");
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -217,11 +383,8 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
 
   @Override
   public void size(final Handler<AsyncResult<Integer>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "size")
-        .putString("type", "map")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("size");
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -237,11 +400,8 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
 
   @Override
   public void isEmpty(final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "empty")
-        .putString("type", "map")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("empty");
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -262,11 +422,248 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
 
   @Override
   public void clear(final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "clear")
-        .putString("type", "map")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("clear");
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<Void>(new DataException(result.result().body().getString("message"))).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void watch(K key, Handler<MapEvent<K, V>> handler) {
+    watch(key, null, handler, null);
+  }
+
+  @Override
+  public void watch(K key, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    watch(key, null, handler, doneHandler);
+  }
+
+  @Override
+  public void watch(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler) {
+    watch(key, event, handler, null);
+  }
+
+  @Override
+  public void watch(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    subscribe(keySubscriptions, String.valueOf(key), event, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatch(K key, Handler<MapEvent<K, V>> handler) {
+    unwatch(key, null, handler, null);
+  }
+
+  @Override
+  public void unwatch(K key, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    unwatch(key, null, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatch(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler) {
+    unwatch(key, event, handler, null);
+  }
+
+  @Override
+  public void unwatch(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    unsubscribe(keySubscriptions, String.valueOf(key), event, handler, doneHandler);
+  }
+
+  @Override
+  public void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler) {
+    watchPrefix(prefix, handler, null);
+  }
+
+  @Override
+  public void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    subscribe(prefixSubscriptions, prefix, null, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler) {
+    unwatchPrefix(prefix, handler, null);
+  }
+
+  @Override
+  public void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    unsubscribe(prefixSubscriptions, prefix, null, handler, doneHandler);
+  }
+
+  /**
+   * Adds a watcher to the subscription for a key or prefix.<p>
+   *
+   * All watchers share a single event bus handler which filters the map's
+   * events by key. The first watcher registers the map's interest with the
+   * cluster, which only publishes events for maps that are being watched,
+   * and then registers the event bus handler.
+   */
+  private void subscribe(Map<String, Subscription> subscriptions, String target, MapEvent.Type event,
+      Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    Subscription subscription = subscriptions.get(target);
+    if (subscription == null) {
+      subscription = new Subscription(target);
+      subscriptions.put(target, subscription);
+    }
+    subscription.watchers.add(new Watcher(event, handler));
+
+    if (registration == null) {
+      register();
+    }
+    if (registration.registered) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+    } else {
+      registration.doneHandlers.add(doneHandler);
+    }
+  }
+
+  /**
+   * Registers the map's interest and event bus handler.<p>
+   *
+   * Interest is registered with the cluster as a lease which is renewed for
+   * as long as the handler is registered, so if this map's Vert.x instance
+   * fails the cluster eventually stops publishing events for the map.
+   */
+  private void register() {
+    final Registration newRegistration = new Registration();
+    registration = newRegistration;
+    addInterest(newRegistration.owner, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          failRegistration(newRegistration, result.cause());
+        } else {
+          eventBus.registerHandler(eventAddress(name), newRegistration.messageHandler, new Handler<AsyncResult<Void>>() {
+            @Override
+            public void handle(AsyncResult<Void> result) {
+              if (result.failed()) {
+                removeInterest(newRegistration.owner, null);
+                failRegistration(newRegistration, result.cause());
+              } else {
+                newRegistration.registered = true;
+                newRegistration.renewTimer = vertx.setPeriodic(MapEventPublisher.WATCH_TIMEOUT / 2, new Handler<Long>() {
+                  @Override
+                  public void handle(Long timerID) {
+                    addInterest(newRegistration.owner, null);
+                  }
+                });
+                for (Handler<AsyncResult<Void>> doneHandler : newRegistration.doneHandlers) {
+                  new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+                }
+                newRegistration.doneHandlers.clear();
+
+                // If all the watchers were removed while the handler was
+                // being registered then unregister the handler.
+                if (keySubscriptions.isEmpty() && prefixSubscriptions.isEmpty()) {
+                  unregister(newRegistration, null);
+                }
+              }
+            }
+          });
+        }
+      }
+    });
+  }
+
+  /**
+   * Fails a registration that could not be completed. Since watchers are
+   * only added to a pending registration, all watchers are removed.
+   */
+  private void failRegistration(Registration registration, Throwable cause) {
+    if (this.registration == registration) {
+      this.registration = null;
+      keySubscriptions.clear();
+      prefixSubscriptions.clear();
+    }
+    for (Handler<AsyncResult<Void>> doneHandler : registration.doneHandlers) {
+      new DefaultFutureResult<Void>(cause).setHandler(doneHandler);
+    }
+    registration.doneHandlers.clear();
+  }
+
+  /**
+   * Removes a watcher from the subscription for a key or prefix.
+   */
+  private void unsubscribe(Map<String, Subscription> subscriptions, String target, MapEvent.Type event,
+      Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    Subscription subscription = subscriptions.get(target);
+    if (subscription == null) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    }
+
+    Iterator<Watcher> iterator = subscription.watchers.iterator();
+    while (iterator.hasNext()) {
+      Watcher watcher = iterator.next();
+      if (watcher.handler.equals(handler) && (event == null || event.equals(watcher.type))) {
+        iterator.remove();
+      }
+    }
+    if (subscription.watchers.isEmpty()) {
+      subscriptions.remove(target);
+    }
+
+    // Pending registrations are removed once registration completes.
+    if (keySubscriptions.isEmpty() && prefixSubscriptions.isEmpty() && registration != null && registration.registered) {
+      unregister(registration, doneHandler);
+    } else {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+    }
+  }
+
+  /**
+   * Unregisters the map's event bus handler and interest.
+   */
+  private void unregister(final Registration registration, final Handler<AsyncResult<Void>> doneHandler) {
+    this.registration = null;
+    vertx.cancelTimer(registration.renewTimer);
+    eventBus.unregisterHandler(eventAddress(name), registration.messageHandler, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        removeInterest(registration.owner, doneHandler);
+      }
+    });
+  }
+
+  /**
+   * Dispatches an event to the watchers of the event's key and any
+   * matching prefixes.
+   */
+  private void dispatch(JsonObject event) {
+    MapEvent.Type type = MapEvent.Type.parse(event.getString("type"));
+    K key = event.getValue("key");
+    V value = event.getValue("value");
+    String target = String.valueOf(key);
+    Subscription subscription = keySubscriptions.get(target);
+    if (subscription != null) {
+      subscription.handle(type, key, value);
+    }
+    if (!prefixSubscriptions.isEmpty()) {
+      for (Subscription prefixSubscription : new ArrayList<>(prefixSubscriptions.values())) {
+        if (target.startsWith(prefixSubscription.target)) {
+          prefixSubscription.handle(type, key, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers or renews the map's interest with the cluster.
+   *
+   * @param owner A unique identifier for the registration.
+   * @param doneHandler An asynchronous handler to be called once complete.
+   */
+  protected void addInterest(String owner, final Handler<AsyncResult<Void>> doneHandler) {
+    JsonObject message = requests.request("watch")
+        .putString("owner", owner);
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -280,4 +677,89 @@ public class DefaultAsyncMap<K, V> implements AsyncMap<K, V> {
     });
   }
 
+  /**
+   * Removes the map's interest from the cluster.
+   *
+   * @param owner The identifier with which the interest was registered.
+   * @param doneHandler An asynchronous handler to be called once complete.
+   */
+  protected void removeInterest(String owner, final Handler<AsyncResult<Void>> doneHandler) {
+    JsonObject message = requests.request("unwatch")
+        .putString("owner", owner);
+    client.send(address, message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<Void>(new DataException(result.result().body().getString("message"))).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the event bus address to which events for a map are published.
+   *
+   * @param name The map name.
+   * @return The map's event address.
+   */
+  public static String eventAddress(String name) {
+    return String.format("%s.__events", name);
+  }
+
+  /**
+   * A handler watching a key or prefix.
+   */
+  private class Watcher {
+    private final MapEvent.Type type;
+    private final Handler<MapEvent<K, V>> handler;
+
+    private Watcher(MapEvent.Type type, Handler<MapEvent<K, V>> handler) {
+      this.type = type;
+      this.handler = handler;
+    }
+  }
+
+  /**
+   * The watchers of a key or prefix.
+   */
+  private class Subscription {
+    private final String target;
+    private final List<Watcher> watchers = new ArrayList<>();
+
+    private Subscription(String target) {
+      this.target = target;
+    }
+
+    private void handle(MapEvent.Type type, K key, V value) {
+      for (Watcher watcher : new ArrayList<>(watchers)) {
+        if (watcher.type == null || watcher.type.equals(type)) {
+          watcher.handler.handle(new MapEvent<K, V>(type, key, value));
+        } else if (watcher.type.equals(MapEvent.Type.CHANGE)) {
+          watcher.handler.handle(new MapEvent<K, V>(MapEvent.Type.CHANGE, key, value));
+        }
+      }
+    }
+  }
+
+  /**
+   * The map's event bus handler and its registration with the cluster.
+   */
+  private class Registration {
+    private final String owner = UUID.randomUUID().toString();
+    private final List<Handler<AsyncResult<Void>>> doneHandlers = new ArrayList<>();
+    private boolean registered;
+    private long renewTimer = -1;
+
+    private final Handler<Message<JsonObject>> messageHandler = new Handler<Message<JsonObject>>() {
+      @Override
+      public void handle(Message<JsonObject> message) {
+        dispatch(message.body());
+      }
+    };
+  }
+
 }
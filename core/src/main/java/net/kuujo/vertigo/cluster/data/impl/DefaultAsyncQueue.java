@@ -15,19 +15,24 @@
  */
 package net.kuujo.vertigo.cluster.data.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.kuujo.vertigo.cluster.data.AsyncQueue;
 import net.kuujo.vertigo.cluster.data.DataException;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
-import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
 /**
- * An event bus queue implementation.
+ * An event bus queue implementation.<p>
+ *
+ * All requests for the queue are routed to the cluster partition that owns it.
  *
  * @author Jordan Halterman
  *
@@ -36,12 +41,20 @@ import org.vertx.java.core.json.JsonObject;
 public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
   private final String address;
   private final String name;
-  private final EventBus eventBus;
+  private final ClusterClient client;
+  private final ClusterClient.RequestTemplate requests;
+  private final PartitionRouter partitions;
 
   public DefaultAsyncQueue(String address, String name, Vertx vertx) {
-    this.address = address;
+    this(new ClusterClient(address, vertx), name, vertx);
+  }
+
+  public DefaultAsyncQueue(ClusterClient client, String name, Vertx vertx) {
+    this.address = client.address();
     this.name = name;
-    this.eventBus = vertx.eventBus();
+    this.client = client;
+    this.requests = client.template("queue", name);
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
   }
 
   @Override
@@ -56,12 +69,9 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void add(T value, final Handler<AsyncResult<Boolean>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "add")
-        .putString("type", "queue")
-        .putString("name", name)
+    JsonObject message = requests.request("add")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -92,12 +102,9 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void remove(T value, final Handler<AsyncResult<Boolean>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "remove")
-        .putString("type", "queue")
-        .putString("name", name)
+    JsonObject message = requests.request("remove")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -113,12 +120,9 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void contains(Object value, final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "contains")
-        .putString("type", "queue")
-        .putString("name", name)
+    JsonObject message = requests.request("contains")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -134,11 +138,8 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void size(final Handler<AsyncResult<Integer>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "size")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("size");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -154,11 +155,8 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void isEmpty(final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "empty")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("empty");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -179,11 +177,8 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void clear(final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "clear")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("clear");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -199,11 +194,8 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void element(final Handler<AsyncResult<T>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "element")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("element");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -220,11 +212,8 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void peek(final Handler<AsyncResult<T>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "peek")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("peek");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -241,11 +230,27 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
 
   @Override
   public void poll(final Handler<AsyncResult<T>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "poll")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("poll");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<T>(result.cause()).setHandler(resultHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<T>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+        } else {
+          new DefaultFutureResult<T>((T) result.result().body().getValue("result")).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void poll(long timeout, final Handler<AsyncResult<T>> resultHandler) {
+    JsonObject message = requests.request("poll")
+        .putNumber("timeout", timeout);
+    client.send(partitions.route(name), message, timeout, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
@@ -260,13 +265,42 @@ public class DefaultAsyncQueue<T> implements AsyncQueue<T> {
     });
   }
 
+  @Override
+  public void drain(int max, Handler<AsyncResult<List<T>>> resultHandler) {
+    drain(max, 0, resultHandler);
+  }
+
+  @Override
+  public void drain(int max, long timeout, final Handler<AsyncResult<List<T>>> resultHandler) {
+    JsonObject message = requests.request("drain")
+        .putNumber("max", max)
+        .putNumber("timeout", timeout);
+    client.send(partitions.route(name), message, timeout, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<List<T>>(result.cause()).setHandler(resultHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<List<T>>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+        } else {
+          JsonArray values = result.result().body().getArray("result");
+          List<T> results = new ArrayList<>(values != null ? values.size() : 0);
+          if (values != null) {
+            for (Object value : values) {
+              results.add((T) value);
+            }
+          }
+          new DefaultFutureResult<List<T>>(results).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
   @Override
   public void remove(final Handler<AsyncResult<T>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "remove")
-        .putString("type", "queue")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("remove");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       @SuppressWarnings("unchecked")
       public void handle(AsyncResult<Message<JsonObject>> result) {
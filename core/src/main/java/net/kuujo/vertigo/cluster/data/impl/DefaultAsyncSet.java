@@ -15,19 +15,21 @@
  */
 package net.kuujo.vertigo.cluster.data.impl;
 
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
 import net.kuujo.vertigo.cluster.data.AsyncSet;
 import net.kuujo.vertigo.cluster.data.DataException;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
-import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.impl.DefaultFutureResult;
 import org.vertx.java.core.json.JsonObject;
 
 /**
- * An event bus set implementation.
+ * An event bus set implementation.<p>
+ *
+ * All requests for the set are routed to the cluster partition that owns it.
  *
  * @author Jordan Halterman
  *
@@ -36,12 +38,22 @@ import org.vertx.java.core.json.JsonObject;
 public class DefaultAsyncSet<T> implements AsyncSet<T> {
   private final String address;
   private final String name;
-  private final EventBus eventBus;
+  private final Vertx vertx;
+  private final ClusterClient client;
+  private final ClusterClient.RequestTemplate requests;
+  private final PartitionRouter partitions;
 
   public DefaultAsyncSet(String address, String name, Vertx vertx) {
-    this.address = address;
+    this(new ClusterClient(address, vertx), name, vertx);
+  }
+
+  public DefaultAsyncSet(ClusterClient client, String name, Vertx vertx) {
+    this.address = client.address();
     this.name = name;
-    this.eventBus = vertx.eventBus();
+    this.vertx = vertx;
+    this.client = client;
+    this.requests = client.template("set", name);
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
   }
 
   @Override
@@ -56,12 +68,9 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
 
   @Override
   public void add(T value, final Handler<AsyncResult<Boolean>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "add")
-        .putString("type", "set")
-        .putString("name", name)
+    JsonObject message = requests.request("add")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -82,12 +91,9 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
 
   @Override
   public void remove(T value, final Handler<AsyncResult<Boolean>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "remove")
-        .putString("type", "set")
-        .putString("name", name)
+    JsonObject message = requests.request("remove")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -103,12 +109,9 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
 
   @Override
   public void contains(Object value, final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "contains")
-        .putString("type", "set")
-        .putString("name", name)
+    JsonObject message = requests.request("contains")
         .putValue("value", value);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -124,11 +127,8 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
 
   @Override
   public void size(final Handler<AsyncResult<Integer>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "size")
-        .putString("type", "set")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("size");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -144,11 +144,8 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
 
   @Override
   public void isEmpty(final Handler<AsyncResult<Boolean>> resultHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "empty")
-        .putString("type", "set")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("empty");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -169,11 +166,8 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
 
   @Override
   public void clear(final Handler<AsyncResult<Void>> doneHandler) {
-    JsonObject message = new JsonObject()
-        .putString("action", "clear")
-        .putString("type", "set")
-        .putString("name", name);
-    eventBus.sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    JsonObject message = requests.request("clear");
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -187,4 +181,9 @@ public class DefaultAsyncSet<T> implements AsyncSet<T> {
     });
   }
 
+  @Override
+  public AsyncCursor<T> scan(int pageSize) {
+    return new DefaultAsyncCursor<T>(client, "set", name, pageSize, vertx);
+  }
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import net.kuujo.vertigo.cluster.data.DataException;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Event bus based sketch store.<p>
+ *
+ * Batches are sent to the cluster partition that owns the sketch, which
+ * merges them into the sketch stored in the cluster.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultSketchStore implements SketchStore {
+  private final ClusterClient client;
+  private final PartitionRouter partitions;
+
+  public DefaultSketchStore(String address, Vertx vertx) {
+    this(new ClusterClient(address, vertx), vertx);
+  }
+
+  public DefaultSketchStore(ClusterClient client, Vertx vertx) {
+    this.client = client;
+    this.partitions = PartitionRouter.getInstance(client.address(), vertx);
+  }
+
+  @Override
+  public void merge(String name, Sketch batch, final Handler<AsyncResult<Void>> doneHandler) {
+    JsonObject message = new JsonObject()
+        .putString("action", "merge")
+        .putString("type", "sketch")
+        .putString("name", name)
+        .putObject("sketch", batch.toJson());
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<Void>(new DataException(result.result().body().getString("message"))).setHandler(doneHandler);
+        } else {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void query(String name, Sketch template, Object item, final Handler<AsyncResult<Object>> resultHandler) {
+    JsonObject message = new JsonObject()
+        .putString("action", "query")
+        .putString("type", "sketch")
+        .putString("name", name)
+        .putObject("sketch", template.emptyCopy().toJson())
+        .putString("item", String.valueOf(item));
+    client.send(partitions.route(name), message, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Object>(result.cause()).setHandler(resultHandler);
+        } else if (result.result().body().getString("status").equals("error")) {
+          new DefaultFutureResult<Object>(new DataException(result.result().body().getString("message"))).setHandler(resultHandler);
+        } else {
+          new DefaultFutureResult<Object>(result.result().body().getValue("result")).setHandler(resultHandler);
+        }
+      }
+    });
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * HyperLogLog cardinality sketch.<p>
+ *
+ * Estimates the number of distinct items added to the sketch using
+ * <code>2^precision</code> one byte registers. The standard error of the
+ * estimate is roughly <code>1.04 / sqrt(2^precision)</code>, so the default
+ * precision of 14 uses 16KB and is accurate to within about 1%.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class HyperLogLogSketch extends Sketch {
+  public static final String TYPE = "hll";
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLogSketch(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  static HyperLogLogSketch decode(JsonObject json) {
+    HyperLogLogSketch sketch = new HyperLogLogSketch(json.getInteger("precision", 0));
+    byte[] registers = json.getBinary("registers");
+    if (registers != null) {
+      if (registers.length != sketch.registers.length) {
+        throw new IllegalArgumentException("Invalid register count");
+      }
+      System.arraycopy(registers, 0, sketch.registers, 0, registers.length);
+    } else {
+      JsonArray sparse = json.getArray("sparse", new JsonArray());
+      for (int i = 0; i < sparse.size() - 1; i += 2) {
+        sketch.registers[((Number) sparse.get(i)).intValue()] = ((Number) sparse.get(i + 1)).byteValue();
+      }
+    }
+    return sketch;
+  }
+
+  /**
+   * Returns the sketch precision.
+   */
+  public int precision() {
+    return precision;
+  }
+
+  @Override
+  public String type() {
+    return TYPE;
+  }
+
+  @Override
+  public void add(Object item, long count) {
+    long hash = hash(item);
+    int index = (int) (hash >>> (64 - precision));
+    // The rank is the position of the first set bit in the remaining bits.
+    // A sentinel bit bounds the rank if all remaining bits are zero.
+    byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  @Override
+  public void merge(Sketch sketch) {
+    if (!(sketch instanceof HyperLogLogSketch) || ((HyperLogLogSketch) sketch).precision != precision) {
+      throw new IllegalArgumentException("Cannot merge incompatible sketches");
+    }
+    byte[] other = ((HyperLogLogSketch) sketch).registers;
+    for (int i = 0; i < registers.length; i++) {
+      if (other[i] > registers[i]) {
+        registers[i] = other[i];
+      }
+    }
+  }
+
+  @Override
+  public Object query(Object item) {
+    return count();
+  }
+
+  /**
+   * Returns the estimated number of distinct items added to the sketch.
+   */
+  public long count() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    double alpha;
+    switch (m) {
+      case 16:
+        alpha = 0.673;
+        break;
+      case 32:
+        alpha = 0.697;
+        break;
+      case 64:
+        alpha = 0.709;
+        break;
+      default:
+        alpha = 0.7213 / (1 + 1.079 / m);
+        break;
+    }
+
+    double estimate = alpha * m * m / sum;
+    // Small cardinalities are estimated more accurately by linear counting.
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (byte register : registers) {
+      if (register != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public HyperLogLogSketch emptyCopy() {
+    return new HyperLogLogSketch(precision);
+  }
+
+  @Override
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject()
+        .putString("type", TYPE)
+        .putNumber("precision", precision);
+    int used = 0;
+    for (byte register : registers) {
+      if (register != 0) {
+        used++;
+      }
+    }
+    if (used * 4 < registers.length) {
+      JsonArray sparse = new JsonArray();
+      for (int i = 0; i < registers.length; i++) {
+        if (registers[i] != 0) {
+          sparse.addNumber(i).addNumber(registers[i]);
+        }
+      }
+      json.putArray("sparse", sparse);
+    } else {
+      json.putBinary("registers", registers);
+    }
+    return json;
+  }
+
+}
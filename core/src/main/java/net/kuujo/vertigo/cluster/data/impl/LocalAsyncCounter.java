@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.concurrent.ConcurrentMap;
+
+import net.kuujo.vertigo.cluster.data.AsyncCounter;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Local counter implementation.<p>
+ *
+ * Local counters are stored in the same Vert.x shared data map as the
+ * cluster agent's counters in a non-clustered Vert.x instance, which is
+ * scoped by cluster, and are updated with a compare-and-set loop.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LocalAsyncCounter implements AsyncCounter {
+  private static final String COUNTERS_MAP = "__vertigo.counters";
+  private final String name;
+  private final Vertx vertx;
+  private final ConcurrentMap<String, Number> counters;
+
+  public LocalAsyncCounter(String address, String name, Vertx vertx) {
+    this.name = name;
+    this.vertx = vertx;
+    this.counters = vertx.sharedData().getMap(String.format("%s.%s", COUNTERS_MAP, address));
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void get(Handler<AsyncResult<Long>> doneHandler) {
+    Number value = counters.get(name);
+    LocalResults.complete(vertx, value != null ? value.longValue() : 0, doneHandler);
+  }
+
+  @Override
+  public void increment() {
+    addAndGet(1, null);
+  }
+
+  @Override
+  public void increment(Handler<AsyncResult<Void>> doneHandler) {
+    add(1, doneHandler);
+  }
+
+  @Override
+  public void incrementAndGet(Handler<AsyncResult<Long>> doneHandler) {
+    addAndGet(1, doneHandler);
+  }
+
+  @Override
+  public void decrement() {
+    addAndGet(-1, null);
+  }
+
+  @Override
+  public void decrement(Handler<AsyncResult<Void>> doneHandler) {
+    add(-1, doneHandler);
+  }
+
+  @Override
+  public void decrementAndGet(Handler<AsyncResult<Long>> doneHandler) {
+    addAndGet(-1, doneHandler);
+  }
+
+  @Override
+  public void add(long delta) {
+    addAndGet(delta, null);
+  }
+
+  @Override
+  public void add(long delta, Handler<AsyncResult<Void>> doneHandler) {
+    doAdd(delta);
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public void addAndGet(long delta, Handler<AsyncResult<Long>> doneHandler) {
+    LocalResults.complete(vertx, doAdd(delta), doneHandler);
+  }
+
+  @Override
+  public void flush(Handler<AsyncResult<Void>> doneHandler) {
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  /**
+   * Atomically adds a delta to the counter.
+   */
+  private long doAdd(long delta) {
+    while (true) {
+      Number current = counters.get(name);
+      if (current == null) {
+        if (counters.putIfAbsent(name, delta) == null) {
+          return delta;
+        }
+      } else if (counters.replace(name, current, current.longValue() + delta)) {
+        return current.longValue() + delta;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Local cursor implementation.<p>
+ *
+ * Local cursors page through a snapshot of a local data structure.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The cursor element type.
+ */
+public class LocalAsyncCursor<T> extends AbstractAsyncCursor<T> {
+  private final Iterator<T> iterator;
+  private final int pageSize;
+  private final Vertx vertx;
+
+  public LocalAsyncCursor(Iterator<T> iterator, int pageSize, Vertx vertx) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    this.iterator = iterator;
+    this.pageSize = pageSize;
+    this.vertx = vertx;
+  }
+
+  @Override
+  protected void fetch(Handler<AsyncResult<List<T>>> resultHandler) {
+    List<T> page = new ArrayList<>(pageSize);
+    while (page.size() < pageSize && iterator.hasNext()) {
+      page.add(iterator.next());
+    }
+    if (!iterator.hasNext()) {
+      complete();
+    }
+    LocalResults.complete(vertx, page, resultHandler);
+  }
+
+  @Override
+  protected void release(Handler<AsyncResult<Void>> doneHandler) {
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
+import net.kuujo.vertigo.cluster.data.AsyncList;
+import net.kuujo.vertigo.cluster.data.DataException;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Local list implementation.<p>
+ *
+ * Local lists operate directly on the list stored by the cluster agent in
+ * the same Vert.x instance, so lists written through the agent and through
+ * the local cluster are the same list. List operations are made atomic by
+ * synchronizing on the agent's list instance.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The list data type.
+ */
+public class LocalAsyncList<T> implements AsyncList<T> {
+  private final String name;
+  private final Vertx vertx;
+  private final List<T> list;
+
+  public LocalAsyncList(String name, LocalStructures.Provider structures, Vertx vertx) {
+    this.name = name;
+    this.vertx = vertx;
+    this.list = structures.getList(name);
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void add(T value) {
+    add(value, null);
+  }
+
+  @Override
+  public void add(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    boolean added;
+    synchronized (list) {
+      added = list.add(LocalStructures.copy(value));
+    }
+    LocalResults.complete(vertx, added, doneHandler);
+  }
+
+  @Override
+  public void remove(T value) {
+    remove(value, null);
+  }
+
+  @Override
+  public void remove(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    boolean removed;
+    synchronized (list) {
+      removed = list.remove(value);
+    }
+    LocalResults.complete(vertx, removed, doneHandler);
+  }
+
+  @Override
+  public void remove(int index) {
+    remove(index, null);
+  }
+
+  @Override
+  public void remove(int index, Handler<AsyncResult<T>> doneHandler) {
+    T result;
+    synchronized (list) {
+      if (index < 0 || index >= list.size()) {
+        LocalResults.fail(vertx, new DataException("Index out of bounds."), doneHandler);
+        return;
+      }
+      result = list.remove(index);
+    }
+    LocalResults.complete(vertx, result, doneHandler);
+  }
+
+  @Override
+  public void contains(Object value, Handler<AsyncResult<Boolean>> resultHandler) {
+    boolean contains;
+    synchronized (list) {
+      contains = list.contains(value);
+    }
+    LocalResults.complete(vertx, contains, resultHandler);
+  }
+
+  @Override
+  public void size(Handler<AsyncResult<Integer>> resultHandler) {
+    int size;
+    synchronized (list) {
+      size = list.size();
+    }
+    LocalResults.complete(vertx, size, resultHandler);
+  }
+
+  @Override
+  public void isEmpty(Handler<AsyncResult<Boolean>> resultHandler) {
+    boolean empty;
+    synchronized (list) {
+      empty = list.isEmpty();
+    }
+    LocalResults.complete(vertx, empty, resultHandler);
+  }
+
+  @Override
+  public void clear() {
+    clear(null);
+  }
+
+  @Override
+  public void clear(Handler<AsyncResult<Void>> doneHandler) {
+    synchronized (list) {
+      list.clear();
+    }
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public void get(int index, Handler<AsyncResult<T>> resultHandler) {
+    T value;
+    synchronized (list) {
+      value = index >= 0 && index < list.size() ? LocalStructures.copy(list.get(index)) : null;
+    }
+    LocalResults.complete(vertx, value, resultHandler);
+  }
+
+  @Override
+  public void set(int index, T value) {
+    set(index, value, null);
+  }
+
+  @Override
+  public void set(int index, T value, Handler<AsyncResult<Void>> doneHandler) {
+    synchronized (list) {
+      if (index < 0 || index >= list.size()) {
+        LocalResults.fail(vertx, new DataException("Index out of bounds."), doneHandler);
+        return;
+      }
+      list.set(index, LocalStructures.copy(value));
+    }
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public AsyncCursor<T> scan(int pageSize) {
+    List<T> values;
+    synchronized (list) {
+      values = new ArrayList<>(list.size());
+      for (T value : list) {
+        values.add(LocalStructures.copy(value));
+      }
+    }
+    return new LocalAsyncCursor<T>(values.iterator(), pageSize, vertx);
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.kuujo.vertigo.cluster.data.AsyncLock;
+import net.kuujo.vertigo.util.TimerWheel;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Local lock implementation.<p>
+ *
+ * Lock state is stored in a Vert.x shared data map in the same format used
+ * by the cluster agent. Requests waiting for the lock are queued in a wait
+ * queue shared by all verticles in the Vert.x instance, and whenever the lock
+ * is released or its lease expires the lock is handed to the next waiter on
+ * the waiter's own context.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LocalAsyncLock implements AsyncLock {
+  private static final String LOCKS_MAP = "__vertigo.locks";
+  private static final Map<Vertx, Map<String, Deque<Waiter>>> waiters = new WeakHashMap<>();
+  private final String address;
+  private final String name;
+  private final Vertx vertx;
+  private final Map<String, String> locks;
+
+  public LocalAsyncLock(String address, String name, Vertx vertx) {
+    this.address = address;
+    this.name = name;
+    this.vertx = vertx;
+    this.locks = vertx.sharedData().getMap(String.format("%s.%s", LOCKS_MAP, address));
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void acquire(long lease, Handler<AsyncResult<Long>> resultHandler) {
+    acquire(lease, 0, resultHandler);
+  }
+
+  @Override
+  public void acquire(long lease, long timeout, Handler<AsyncResult<Long>> resultHandler) {
+    Deque<Waiter> queue = waiters();
+    synchronized (queue) {
+      // Only acquire the lock immediately if no other requests are already
+      // waiting for it, otherwise wait behind them.
+      Long token = queue.isEmpty() ? LockState.tryAcquire(locks, name, lease) : null;
+      if (token != null) {
+        scheduleExpiration(lease);
+        LocalResults.complete(vertx, token, resultHandler);
+        return;
+      }
+
+      final Waiter waiter = new Waiter();
+      waiter.context = vertx.currentContext();
+      waiter.lease = lease;
+      waiter.handler = resultHandler;
+      if (timeout > 0) {
+        waiter.timeoutID = TimerWheel.getInstance(vertx).schedule(timeout, new Handler<Void>() {
+          @Override
+          public void handle(Void _) {
+            boolean removed;
+            Deque<Waiter> queue = waiters();
+            synchronized (queue) {
+              removed = queue.remove(waiter);
+            }
+            if (removed) {
+              new DefaultFutureResult<Long>((Long) null).setHandler(waiter.handler);
+            }
+          }
+        });
+      }
+      queue.add(waiter);
+    }
+  }
+
+  @Override
+  public void tryAcquire(long lease, Handler<AsyncResult<Long>> resultHandler) {
+    Deque<Waiter> queue = waiters();
+    Long token;
+    synchronized (queue) {
+      token = queue.isEmpty() ? LockState.tryAcquire(locks, name, lease) : null;
+    }
+    if (token != null) {
+      scheduleExpiration(lease);
+    }
+    LocalResults.complete(vertx, token, resultHandler);
+  }
+
+  @Override
+  public void renew(long token, long lease, Handler<AsyncResult<Boolean>> resultHandler) {
+    boolean renewed = LockState.renew(locks, name, token, lease);
+    if (renewed) {
+      scheduleExpiration(lease);
+    }
+    LocalResults.complete(vertx, renewed, resultHandler);
+  }
+
+  @Override
+  public void release(long token) {
+    release(token, null);
+  }
+
+  @Override
+  public void release(long token, Handler<AsyncResult<Boolean>> doneHandler) {
+    boolean released = LockState.release(locks, name, token);
+    if (released) {
+      grant();
+    }
+    LocalResults.complete(vertx, released, doneHandler);
+  }
+
+  /**
+   * Returns the wait queue for the lock.
+   */
+  private Deque<Waiter> waiters() {
+    synchronized (waiters) {
+      Map<String, Deque<Waiter>> locks = waiters.get(vertx);
+      if (locks == null) {
+        locks = new HashMap<>();
+        waiters.put(vertx, locks);
+      }
+      String key = String.format("%s.%s", address, name);
+      Deque<Waiter> queue = locks.get(key);
+      if (queue == null) {
+        queue = new ArrayDeque<>();
+        locks.put(key, queue);
+      }
+      return queue;
+    }
+  }
+
+  /**
+   * Schedules a check for waiters once the current lease expires.
+   */
+  private void scheduleExpiration(long lease) {
+    TimerWheel.getInstance(vertx).schedule(lease + 1, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        grant();
+      }
+    });
+  }
+
+  /**
+   * Grants the lock to the next waiter if the lock is available.
+   */
+  private void grant() {
+    Deque<Waiter> queue = waiters();
+    synchronized (queue) {
+      while (!queue.isEmpty()) {
+        final Waiter waiter = queue.peek();
+        final Long token = LockState.tryAcquire(locks, name, waiter.lease);
+        if (token == null) {
+          break;
+        }
+        queue.poll();
+        waiter.context.runOnContext(new Handler<Void>() {
+          @Override
+          public void handle(Void _) {
+            if (waiter.timeoutID > 0) {
+              TimerWheel.getInstance(vertx).cancel(waiter.timeoutID);
+            }
+            scheduleExpiration(waiter.lease);
+            new DefaultFutureResult<Long>(token).setHandler(waiter.handler);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * A request waiting to acquire the lock.
+   */
+  private static class Waiter {
+    private Context context;
+    private long lease;
+    private Handler<AsyncResult<Long>> handler;
+    private long timeoutID;
+  }
+
+}
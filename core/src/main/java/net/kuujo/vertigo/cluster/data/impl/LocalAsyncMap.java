@@ -0,0 +1,323 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
+import net.kuujo.vertigo.cluster.data.DataException;
+import net.kuujo.vertigo.cluster.data.MapEvent;
+import net.kuujo.vertigo.cluster.data.MapFunction;
+import net.kuujo.vertigo.util.TimerWheel;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Local map implementation.<p>
+ *
+ * Local maps operate directly on the Vert.x shared data map that backs the
+ * cluster agent's maps in a non-clustered Vert.x instance, so local maps see
+ * the same data as the agent without sending messages over the event bus.
+ * Watches are registered in the same registry used by the agent, and events
+ * for local changes are published in the same manner as the agent's.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <K> The map key type.
+ * @param <V> The map value type.
+ */
+public class LocalAsyncMap<K, V> extends DefaultAsyncMap<K, V> {
+  private static final String EXPIRATIONS_MAP = "__vertigo.expirations";
+  private static final Map<Vertx, MapEventPublisher> publishers = new WeakHashMap<>();
+  private final String name;
+  private final Vertx vertx;
+  private final ConcurrentMap<K, V> map;
+  private final ConcurrentMap<K, Long> expirations;
+  private final MapEventPublisher publisher;
+
+  public LocalAsyncMap(String address, String name, final Vertx vertx) {
+    super(address, name, vertx);
+    this.name = name;
+    this.vertx = vertx;
+    this.map = vertx.sharedData().getMap(name);
+    this.expirations = vertx.sharedData().getMap(String.format("%s.%s", EXPIRATIONS_MAP, name));
+    this.publisher = getPublisher(vertx);
+  }
+
+  /**
+   * Returns the event publisher shared by all local maps in a Vert.x instance.
+   */
+  private static MapEventPublisher getPublisher(final Vertx vertx) {
+    synchronized (publishers) {
+      MapEventPublisher publisher = publishers.get(vertx);
+      if (publisher == null) {
+        publisher = new MapEventPublisher(vertx) {
+          @Override
+          protected <K1, V1> Map<K1, V1> getMap(String name) {
+            return vertx.sharedData().getMap(name);
+          }
+        };
+        publishers.put(vertx, publisher);
+      }
+      return publisher;
+    }
+  }
+
+  @Override
+  public void put(K key, V value, Handler<AsyncResult<V>> doneHandler) {
+    V result;
+    try {
+      result = map.put(key, value);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), doneHandler);
+      return;
+    }
+    expirations.remove(key);
+    publish(key, result == null ? MapEvent.Type.CREATE : MapEvent.Type.UPDATE, value);
+    LocalResults.complete(vertx, result, doneHandler);
+  }
+
+  @Override
+  public void put(final K key, V value, long ttl, Handler<AsyncResult<V>> doneHandler) {
+    if (ttl <= 0) {
+      put(key, value, doneHandler);
+      return;
+    }
+
+    V result;
+    try {
+      result = map.put(key, value);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), doneHandler);
+      return;
+    }
+
+    // Expirations are registered in the same registry as the agent's so
+    // that a stale expiration never removes a key that was put again. This
+    // timer runs on the caller's context and is lost if the caller is
+    // undeployed, in which case the key is expired by the agent's periodic
+    // sweep of the registry.
+    final long deadline = System.currentTimeMillis() + ttl;
+    vertx.sharedData().<String, Boolean>getMap(EXPIRATIONS_MAP).put(name, true);
+    expirations.put(key, deadline);
+    TimerWheel.getInstance(vertx).schedule(ttl, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        // The key is only removed if it still has the value it had when its
+        // deadline was removed so that a concurrent put is never lost.
+        V value = map.get(key);
+        if (value != null && expirations.remove(key, deadline) && map.remove(key, value)) {
+          publish(key, MapEvent.Type.DELETE, value);
+        }
+      }
+    });
+    publish(key, result == null ? MapEvent.Type.CREATE : MapEvent.Type.UPDATE, value);
+    LocalResults.complete(vertx, result, doneHandler);
+  }
+
+  @Override
+  public void putAll(Map<K, V> entries, Handler<AsyncResult<Void>> doneHandler) {
+    try {
+      for (Map.Entry<K, V> entry : entries.entrySet()) {
+        V result = map.put(entry.getKey(), entry.getValue());
+        expirations.remove(entry.getKey());
+        publish(entry.getKey(), result == null ? MapEvent.Type.CREATE : MapEvent.Type.UPDATE, entry.getValue());
+      }
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), doneHandler);
+      return;
+    }
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public void get(K key, Handler<AsyncResult<V>> resultHandler) {
+    LocalResults.complete(vertx, map.get(key), resultHandler);
+  }
+
+  @Override
+  public void getAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    Map<K, V> results = new HashMap<>();
+    for (K key : keys) {
+      V value = map.get(key);
+      if (value != null) {
+        results.put(key, value);
+      }
+    }
+    LocalResults.complete(vertx, results, resultHandler);
+  }
+
+  @Override
+  public void remove(K key, Handler<AsyncResult<V>> resultHandler) {
+    V result = map.remove(key);
+    expirations.remove(key);
+    if (result != null) {
+      publish(key, MapEvent.Type.DELETE, result);
+    }
+    LocalResults.complete(vertx, result, resultHandler);
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    Map<K, V> results = new HashMap<>();
+    for (K key : keys) {
+      V value = map.remove(key);
+      expirations.remove(key);
+      if (value != null) {
+        results.put(key, value);
+        publish(key, MapEvent.Type.DELETE, value);
+      }
+    }
+    LocalResults.complete(vertx, results, resultHandler);
+  }
+
+  @Override
+  public void putIfAbsent(K key, V value, Handler<AsyncResult<V>> resultHandler) {
+    V result;
+    try {
+      result = map.putIfAbsent(key, value);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), resultHandler);
+      return;
+    }
+    if (result == null) {
+      expirations.remove(key);
+      publish(key, MapEvent.Type.CREATE, value);
+    }
+    LocalResults.complete(vertx, result, resultHandler);
+  }
+
+  @Override
+  public void replace(K key, V expect, V value, Handler<AsyncResult<Boolean>> resultHandler) {
+    boolean replaced;
+    try {
+      replaced = map.replace(key, expect, value);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), resultHandler);
+      return;
+    }
+    if (replaced) {
+      expirations.remove(key);
+      publish(key, MapEvent.Type.UPDATE, value);
+    }
+    LocalResults.complete(vertx, replaced, resultHandler);
+  }
+
+  @Override
+  public void computeIfPresent(K key, MapFunction<K, V> function, Handler<AsyncResult<V>> resultHandler) {
+    while (true) {
+      V current = map.get(key);
+      if (current == null) {
+        LocalResults.complete(vertx, (V) null, resultHandler);
+        return;
+      }
+
+      V value;
+      try {
+        value = function.apply(key, current);
+      } catch (Exception e) {
+        LocalResults.fail(vertx, new DataException(e.getMessage()), resultHandler);
+        return;
+      }
+
+      if (value == null) {
+        if (map.remove(key, current)) {
+          expirations.remove(key);
+          publish(key, MapEvent.Type.DELETE, current);
+          LocalResults.complete(vertx, (V) null, resultHandler);
+          return;
+        }
+      } else if (map.replace(key, current, value)) {
+        publish(key, MapEvent.Type.UPDATE, value);
+        LocalResults.complete(vertx, value, resultHandler);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void containsKey(K key, Handler<AsyncResult<Boolean>> resultHandler) {
+    LocalResults.complete(vertx, map.containsKey(key), resultHandler);
+  }
+
+  @Override
+  public AsyncCursor<Map.Entry<K, V>> scan(int pageSize) {
+    List<Map.Entry<K, V>> entries = new ArrayList<>();
+    for (Map.Entry<K, V> entry : map.entrySet()) {
+      entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), entry.getValue()));
+    }
+    return new LocalAsyncCursor<Map.Entry<K, V>>(entries.iterator(), pageSize, vertx);
+  }
+
+  @Override
+  public void keySet(Handler<AsyncResult<Set<K>>> resultHandler) {
+    LocalResults.complete(vertx, (Set<K>) new HashSet<>(map.keySet()), resultHandler);
+  }
+
+  @Override
+  public void values(Handler<AsyncResult<Collection<V>>> resultHandler) {
+    LocalResults.complete(vertx, (Collection<V>) new ArrayList<>(map.values()), resultHandler);
+  }
+
+  @Override
+  public void size(Handler<AsyncResult<Integer>> resultHandler) {
+    LocalResults.complete(vertx, map.size(), resultHandler);
+  }
+
+  @Override
+  public void isEmpty(Handler<AsyncResult<Boolean>> resultHandler) {
+    LocalResults.complete(vertx, map.isEmpty(), resultHandler);
+  }
+
+  @Override
+  public void clear(Handler<AsyncResult<Void>> doneHandler) {
+    map.clear();
+    expirations.clear();
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  /**
+   * Publishes an event for a change to the map. Events are only queued
+   * for publishing when the map is being watched.
+   */
+  private void publish(K key, MapEvent.Type type, V value) {
+    publisher.publish(name, key, type, value);
+  }
+
+  @Override
+  protected void addInterest(String owner, Handler<AsyncResult<Void>> doneHandler) {
+    publisher.watch(name, owner);
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  protected void removeInterest(String owner, Handler<AsyncResult<Void>> doneHandler) {
+    publisher.unwatch(name, owner);
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+}
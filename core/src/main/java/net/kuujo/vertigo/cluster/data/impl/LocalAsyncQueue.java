@@ -0,0 +1,341 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+
+import net.kuujo.vertigo.cluster.data.AsyncQueue;
+import net.kuujo.vertigo.cluster.data.DataException;
+import net.kuujo.vertigo.util.TimerWheel;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Local queue implementation.<p>
+ *
+ * Local queues operate directly on the queue stored by the cluster agent in
+ * the same Vert.x instance, so elements offered through the agent and through
+ * the local cluster are taken from the same queue. Queue operations are made
+ * atomic by synchronizing on the agent's queue instance.<p>
+ *
+ * Polls that wait for an element are queued in a wait queue shared by all
+ * verticles in the Vert.x instance. Whenever an element is offered, either
+ * locally or through the agent, the waiting requests are completed on their
+ * own contexts.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The queue data type.
+ */
+public class LocalAsyncQueue<T> implements AsyncQueue<T> {
+  private static final Map<Vertx, Map<String, Deque<Waiter>>> waiters = new WeakHashMap<>();
+  private final String address;
+  private final String name;
+  private final Vertx vertx;
+  private final Queue<T> queue;
+
+  public LocalAsyncQueue(String address, String name, LocalStructures.Provider structures, Vertx vertx) {
+    this.address = address;
+    this.name = name;
+    this.vertx = vertx;
+    this.queue = structures.getQueue(name);
+  }
+
+  /**
+   * Completes local requests waiting on a queue once elements are offered
+   * to the queue through the cluster agent.
+   *
+   * @param vertx The agent's Vert.x instance.
+   * @param address The cluster address.
+   * @param name The queue name.
+   */
+  public static void signal(Vertx vertx, String address, String name) {
+    Deque<Waiter> queue = waiters(vertx, address, name, false);
+    if (queue != null) {
+      dispatch(queue);
+    }
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void add(T value) {
+    add(value, null);
+  }
+
+  @Override
+  public void add(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    offer(value, doneHandler);
+  }
+
+  @Override
+  public void offer(T value) {
+    offer(value, null);
+  }
+
+  @Override
+  public void offer(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    boolean offered;
+    synchronized (queue) {
+      offered = queue.offer(LocalStructures.copy(value));
+    }
+    signal(vertx, address, name);
+    LocalResults.complete(vertx, offered, doneHandler);
+  }
+
+  @Override
+  public void remove(T value) {
+    remove(value, null);
+  }
+
+  @Override
+  public void remove(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    boolean removed;
+    synchronized (queue) {
+      removed = queue.remove(value);
+    }
+    LocalResults.complete(vertx, removed, doneHandler);
+  }
+
+  @Override
+  public void contains(Object value, Handler<AsyncResult<Boolean>> resultHandler) {
+    boolean contains;
+    synchronized (queue) {
+      contains = queue.contains(value);
+    }
+    LocalResults.complete(vertx, contains, resultHandler);
+  }
+
+  @Override
+  public void size(Handler<AsyncResult<Integer>> resultHandler) {
+    int size;
+    synchronized (queue) {
+      size = queue.size();
+    }
+    LocalResults.complete(vertx, size, resultHandler);
+  }
+
+  @Override
+  public void isEmpty(Handler<AsyncResult<Boolean>> resultHandler) {
+    boolean empty;
+    synchronized (queue) {
+      empty = queue.isEmpty();
+    }
+    LocalResults.complete(vertx, empty, resultHandler);
+  }
+
+  @Override
+  public void clear() {
+    clear(null);
+  }
+
+  @Override
+  public void clear(Handler<AsyncResult<Void>> doneHandler) {
+    synchronized (queue) {
+      queue.clear();
+    }
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public void element(Handler<AsyncResult<T>> resultHandler) {
+    T value = doPeek();
+    if (value == null) {
+      LocalResults.fail(vertx, new DataException("Queue is empty."), resultHandler);
+    } else {
+      LocalResults.complete(vertx, value, resultHandler);
+    }
+  }
+
+  @Override
+  public void peek(Handler<AsyncResult<T>> resultHandler) {
+    LocalResults.complete(vertx, doPeek(), resultHandler);
+  }
+
+  private T doPeek() {
+    synchronized (queue) {
+      return LocalStructures.copy(queue.peek());
+    }
+  }
+
+  @Override
+  public void poll(Handler<AsyncResult<T>> resultHandler) {
+    List<T> values = take(queue, 1);
+    LocalResults.complete(vertx, !values.isEmpty() ? values.get(0) : null, resultHandler);
+  }
+
+  @Override
+  public void poll(long timeout, final Handler<AsyncResult<T>> resultHandler) {
+    drain(1, timeout, new Handler<AsyncResult<List<T>>>() {
+      @Override
+      public void handle(AsyncResult<List<T>> result) {
+        new DefaultFutureResult<T>(!result.result().isEmpty() ? result.result().get(0) : null).setHandler(resultHandler);
+      }
+    });
+  }
+
+  @Override
+  public void drain(int max, Handler<AsyncResult<List<T>>> resultHandler) {
+    LocalResults.complete(vertx, take(queue, max), resultHandler);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void drain(int max, long timeout, Handler<AsyncResult<List<T>>> resultHandler) {
+    Deque<Waiter> waiting = waiters(vertx, address, name, true);
+    synchronized (waiting) {
+      // If there are already requests waiting on the queue then this request
+      // must wait behind them in order to ensure elements are taken fairly.
+      if (waiting.isEmpty()) {
+        List<T> values = take(queue, max);
+        if (!values.isEmpty() || timeout <= 0) {
+          LocalResults.complete(vertx, values, resultHandler);
+          return;
+        }
+      } else if (timeout <= 0) {
+        LocalResults.complete(vertx, new ArrayList<T>(), resultHandler);
+        return;
+      }
+
+      final Waiter waiter = new Waiter();
+      waiter.vertx = vertx;
+      waiter.context = vertx.currentContext();
+      waiter.queue = (Queue<Object>) (Queue<?>) queue;
+      waiter.max = max;
+      waiter.handler = resultHandler;
+      waiter.timeoutID = TimerWheel.getInstance(vertx).schedule(timeout, new Handler<Void>() {
+        @Override
+        public void handle(Void _) {
+          boolean removed;
+          Deque<Waiter> waiting = waiters(vertx, address, name, true);
+          synchronized (waiting) {
+            removed = waiting.remove(waiter);
+          }
+          if (removed) {
+            waiter.complete(new ArrayList<Object>());
+          }
+        }
+      });
+      waiting.add(waiter);
+    }
+  }
+
+  @Override
+  public void remove(Handler<AsyncResult<T>> resultHandler) {
+    List<T> values = take(queue, 1);
+    if (values.isEmpty()) {
+      LocalResults.fail(vertx, new DataException("Queue is empty."), resultHandler);
+    } else {
+      LocalResults.complete(vertx, values.get(0), resultHandler);
+    }
+  }
+
+  /**
+   * Returns the wait queue for a queue.
+   */
+  private static Deque<Waiter> waiters(Vertx vertx, String address, String name, boolean create) {
+    synchronized (waiters) {
+      Map<String, Deque<Waiter>> queues = waiters.get(vertx);
+      if (queues == null) {
+        if (!create) {
+          return null;
+        }
+        queues = new HashMap<>();
+        waiters.put(vertx, queues);
+      }
+      String key = String.format("%s.%s", address, name);
+      Deque<Waiter> queue = queues.get(key);
+      if (queue == null && create) {
+        queue = new ArrayDeque<>();
+        queues.put(key, queue);
+      }
+      return queue;
+    }
+  }
+
+  /**
+   * Completes waiting requests for which elements are now available.
+   */
+  private static void dispatch(Deque<Waiter> waiting) {
+    synchronized (waiting) {
+      while (!waiting.isEmpty()) {
+        final Waiter waiter = waiting.peek();
+        final List<Object> values = take(waiter.queue, waiter.max);
+        if (values.isEmpty()) {
+          break;
+        }
+        waiting.poll();
+        waiter.context.runOnContext(new Handler<Void>() {
+          @Override
+          public void handle(Void _) {
+            TimerWheel.getInstance(waiter.vertx).cancel(waiter.timeoutID);
+            waiter.complete(values);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Removes up to a maximum number of values from the head of a queue.
+   */
+  private static <T> List<T> take(Queue<T> queue, int max) {
+    List<T> values = new ArrayList<>();
+    synchronized (queue) {
+      while (values.size() < max) {
+        T value = queue.poll();
+        if (value == null) {
+          break;
+        }
+        values.add(value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * A request waiting for elements to be offered to a queue.
+   */
+  private static class Waiter {
+    private Vertx vertx;
+    private Context context;
+    private Queue<Object> queue;
+    private int max;
+    @SuppressWarnings("rawtypes")
+    private Handler handler;
+    private long timeoutID;
+
+    @SuppressWarnings("unchecked")
+    private void complete(List<Object> values) {
+      new DefaultFutureResult<List<Object>>(values).setHandler(handler);
+    }
+  }
+
+}
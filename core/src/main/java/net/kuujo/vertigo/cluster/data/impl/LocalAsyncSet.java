@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
+import net.kuujo.vertigo.cluster.data.AsyncSet;
+import net.kuujo.vertigo.cluster.data.DataException;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Local set implementation.<p>
+ *
+ * Local sets operate directly on the Vert.x shared data set that backs
+ * the cluster agent's sets in a non-clustered Vert.x instance.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The set data type.
+ */
+public class LocalAsyncSet<T> implements AsyncSet<T> {
+  private final String name;
+  private final Vertx vertx;
+  private final Set<T> set;
+
+  public LocalAsyncSet(String name, Vertx vertx) {
+    this.name = name;
+    this.vertx = vertx;
+    this.set = vertx.sharedData().getSet(name);
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void add(T value) {
+    add(value, null);
+  }
+
+  @Override
+  public void add(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    try {
+      LocalResults.complete(vertx, set.add(value), doneHandler);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), doneHandler);
+    }
+  }
+
+  @Override
+  public void remove(T value) {
+    remove(value, null);
+  }
+
+  @Override
+  public void remove(T value, Handler<AsyncResult<Boolean>> doneHandler) {
+    LocalResults.complete(vertx, set.remove(value), doneHandler);
+  }
+
+  @Override
+  public void contains(Object value, Handler<AsyncResult<Boolean>> resultHandler) {
+    LocalResults.complete(vertx, set.contains(value), resultHandler);
+  }
+
+  @Override
+  public void size(Handler<AsyncResult<Integer>> resultHandler) {
+    LocalResults.complete(vertx, set.size(), resultHandler);
+  }
+
+  @Override
+  public void isEmpty(Handler<AsyncResult<Boolean>> resultHandler) {
+    LocalResults.complete(vertx, set.isEmpty(), resultHandler);
+  }
+
+  @Override
+  public void clear() {
+    clear(null);
+  }
+
+  @Override
+  public void clear(Handler<AsyncResult<Void>> doneHandler) {
+    set.clear();
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public AsyncCursor<T> scan(int pageSize) {
+    return new LocalAsyncCursor<T>(new ArrayList<>(set).iterator(), pageSize, vertx);
+  }
+
+}
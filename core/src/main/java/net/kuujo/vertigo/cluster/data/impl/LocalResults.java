@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * Result helpers for local data structures.<p>
+ *
+ * Local data structures operate synchronously, but results are still
+ * delivered on a later turn of the caller's context so that local and
+ * clustered data structures call handlers in the same order.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class LocalResults {
+
+  private LocalResults() {
+  }
+
+  /**
+   * Completes a handler with a result.
+   */
+  static <T> void complete(Vertx vertx, final T result, final Handler<AsyncResult<T>> handler) {
+    if (handler != null) {
+      vertx.runOnContext(new Handler<Void>() {
+        @Override
+        public void handle(Void _) {
+          new DefaultFutureResult<T>(result).setHandler(handler);
+        }
+      });
+    }
+  }
+
+  /**
+   * Fails a handler.
+   */
+  static <T> void fail(Vertx vertx, final Throwable cause, final Handler<AsyncResult<T>> handler) {
+    if (handler != null) {
+      vertx.runOnContext(new Handler<Void>() {
+        @Override
+        public void handle(Void _) {
+          new DefaultFutureResult<T>(cause).setHandler(handler);
+        }
+      });
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.Map;
+
+import net.kuujo.vertigo.cluster.data.DataException;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Local sketch store.<p>
+ *
+ * Sketches are stored in a Vert.x shared data map in the same format used
+ * by the cluster agent. As with the agent, each cluster has its own map so
+ * that sketches of the same name in different clusters aren't merged.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LocalSketchStore implements SketchStore {
+  private static final String SKETCHES_MAP = "__vertigo.sketches";
+  private final Vertx vertx;
+  private final Map<String, String> sketches;
+
+  public LocalSketchStore(String address, Vertx vertx) {
+    this.vertx = vertx;
+    this.sketches = vertx.sharedData().getMap(String.format("%s.%s", SKETCHES_MAP, address));
+  }
+
+  @Override
+  public void merge(String name, Sketch batch, Handler<AsyncResult<Void>> doneHandler) {
+    try {
+      SketchState.merge(sketches, name, batch);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), doneHandler);
+      return;
+    }
+    LocalResults.complete(vertx, (Void) null, doneHandler);
+  }
+
+  @Override
+  public void query(String name, Sketch template, Object item, Handler<AsyncResult<Object>> resultHandler) {
+    Object result;
+    try {
+      result = SketchState.query(sketches, name, template, item);
+    } catch (IllegalArgumentException e) {
+      LocalResults.fail(vertx, new DataException(e.getMessage()), resultHandler);
+      return;
+    }
+    LocalResults.complete(vertx, result, resultHandler);
+  }
+
+}
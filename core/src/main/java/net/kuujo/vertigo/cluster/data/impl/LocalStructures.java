@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Registry of the lists and queues stored by cluster agents.<p>
+ *
+ * Vert.x shared data has no lists or queues, so the cluster agent's lists
+ * and queues can't be reached through shared data the way its maps, sets
+ * and counters can. Instead each agent registers its structures here by
+ * Vert.x instance and cluster address, and local lists and queues operate
+ * on the agent's structures directly.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class LocalStructures {
+  private static final Map<Vertx, Map<String, Provider>> providers = new WeakHashMap<>();
+
+  private LocalStructures() {
+  }
+
+  /**
+   * Provides the lists and queues stored by a cluster agent.
+   */
+  public static interface Provider {
+
+    /**
+     * Returns a list by name.
+     */
+    <T> List<T> getList(String name);
+
+    /**
+     * Returns a queue by name.
+     */
+    <T> Queue<T> getQueue(String name);
+
+  }
+
+  /**
+   * Registers the structures of an agent.
+   *
+   * @param vertx The agent's Vert.x instance.
+   * @param cluster The cluster address.
+   * @param provider The agent's structures.
+   */
+  public static synchronized void register(Vertx vertx, String cluster, Provider provider) {
+    Map<String, Provider> clusters = providers.get(vertx);
+    if (clusters == null) {
+      clusters = new HashMap<>();
+      providers.put(vertx, clusters);
+    }
+    clusters.put(cluster, provider);
+  }
+
+  /**
+   * Unregisters the structures of an agent.
+   *
+   * @param vertx The agent's Vert.x instance.
+   * @param cluster The cluster address.
+   * @param provider The agent's structures.
+   */
+  public static synchronized void unregister(Vertx vertx, String cluster, Provider provider) {
+    Map<String, Provider> clusters = providers.get(vertx);
+    if (clusters != null && clusters.get(cluster) == provider) {
+      clusters.remove(cluster);
+      if (clusters.isEmpty()) {
+        providers.remove(vertx);
+      }
+    }
+  }
+
+  /**
+   * Looks up the structures of the agent for a cluster.
+   *
+   * @param vertx The Vert.x instance.
+   * @param cluster The cluster address.
+   * @return The agent's structures or <code>null</code> if the cluster's
+   *         agent isn't running in the Vert.x instance.
+   */
+  public static synchronized Provider lookup(Vertx vertx, String cluster) {
+    Map<String, Provider> clusters = providers.get(vertx);
+    return clusters != null ? clusters.get(cluster) : null;
+  }
+
+  /**
+   * Copies mutable values so that verticles sharing a structure don't share
+   * the values in it, just as they wouldn't over the event bus.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T copy(T value) {
+    if (value instanceof JsonObject) {
+      return (T) ((JsonObject) value).copy();
+    } else if (value instanceof JsonArray) {
+      return (T) ((JsonArray) value).copy();
+    } else if (value instanceof Buffer) {
+      return (T) ((Buffer) value).copy();
+    } else if (value instanceof byte[]) {
+      return (T) ((byte[]) value).clone();
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.Map;
+
+import net.kuujo.vertigo.util.SharedMaps;
+
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Lock state operations.<p>
+ *
+ * The state of each lock is stored in a shared map as an encoded
+ * <code>token</code> and lease <code>expires</code> time. The token is
+ * retained when the lock is released so that fencing tokens keep increasing.
+ * All state changes are made with compare-and-set operations so that locks
+ * can be safely managed by any number of agents sharing the map.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class LockState {
+
+  private LockState() {
+  }
+
+  /**
+   * Acquires a lock if it's not held.
+   *
+   * @param locks The shared lock state map.
+   * @param name The lock name.
+   * @param lease The lease period in milliseconds.
+   * @return The new fencing token, or <code>null</code> if the lock is held.
+   */
+  public static Long tryAcquire(Map<String, String> locks, String name, long lease) {
+    while (true) {
+      String current = locks.get(name);
+      long now = System.currentTimeMillis();
+      JsonObject state = current != null ? new JsonObject(current) : null;
+      if (state != null && state.getLong("expires", 0) > now) {
+        return null;
+      }
+      long token = (state != null ? state.getLong("token", 0) : 0) + 1;
+      String update = new JsonObject().putNumber("token", token).putNumber("expires", now + lease).encode();
+      if (SharedMaps.compareAndSet(locks, name, current, update)) {
+        return token;
+      }
+    }
+  }
+
+  /**
+   * Extends the lease of a held lock.
+   *
+   * @return Indicates whether the lease was renewed.
+   */
+  public static boolean renew(Map<String, String> locks, String name, long token, long lease) {
+    while (true) {
+      String current = locks.get(name);
+      long now = System.currentTimeMillis();
+      if (current == null) {
+        return false;
+      }
+      JsonObject state = new JsonObject(current);
+      if (state.getLong("token", 0) != token || state.getLong("expires", 0) <= now) {
+        return false;
+      }
+      String update = new JsonObject().putNumber("token", token).putNumber("expires", now + lease).encode();
+      if (SharedMaps.compareAndSet(locks, name, current, update)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases a held lock.
+   *
+   * @return Indicates whether the lock was released.
+   */
+  public static boolean release(Map<String, String> locks, String name, long token) {
+    while (true) {
+      String current = locks.get(name);
+      if (current == null) {
+        return false;
+      }
+      JsonObject state = new JsonObject(current);
+      if (state.getLong("token", 0) != token || state.getLong("expires", 0) <= System.currentTimeMillis()) {
+        return false;
+      }
+      String update = new JsonObject().putNumber("token", token).putNumber("expires", 0).encode();
+      if (SharedMaps.compareAndSet(locks, name, current, update)) {
+        return true;
+      }
+    }
+  }
+
+}
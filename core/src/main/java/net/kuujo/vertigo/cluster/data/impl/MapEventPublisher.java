@@ -0,0 +1,358 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+import net.kuujo.vertigo.cluster.data.MapEvent;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.EventBus;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Cluster map event publisher.<p>
+ *
+ * All events for a map are published to a single event bus address and
+ * watchers filter events by key. A cluster-wide registry records which maps
+ * are being watched, and events are only published for watched maps. Each
+ * registration is a lease held by the watching map: watchers periodically
+ * renew their leases, so the registrations of watchers that fail without
+ * unwatching expire on their own.<p>
+ *
+ * Publishers cache the registry rather than reading it for every event.
+ * Publishers notify each other when a map is first watched or unwatched, and
+ * a cached registration is reloaded from the registry once its lease expires.
+ * Since other agents only learn of a new watch once the notification arrives,
+ * changes handled by other agents immediately after a watch completes may
+ * not be published.<p>
+ *
+ * Events are published once the agent has processed all pending requests.
+ * Consecutive events of the same type for the same key are coalesced into
+ * a single event carrying the latest value.<p>
+ *
+ * The registry is stored in maps provided by the concrete publisher so that
+ * the cluster agent and local maps can share a registry.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public abstract class MapEventPublisher {
+  private static final String WATCHES_MAP = "__vertigo.watches";
+  private static final String WATCHES_ADDRESS = "__vertigo.watches";
+  private static final long REFRESH_INTERVAL = 1000;
+
+  /**
+   * The time for which a watch is registered. Watchers must renew their
+   * watches well before the watch expires.
+   */
+  static final long WATCH_TIMEOUT = 10000;
+
+  private final String owner = UUID.randomUUID().toString();
+  private final Vertx vertx;
+  private final EventBus eventBus;
+  private final Map<String, PendingEvent> pending = new LinkedHashMap<>();
+  private final Map<String, Long> leases = new HashMap<>();
+  private final Map<String, Long> refreshed = new HashMap<>();
+  private final Map<String, Integer> localWatches = new HashMap<>();
+  private long renewTimer = -1;
+  private boolean listening;
+  private boolean scheduled;
+
+  private final Handler<Void> flushHandler = new Handler<Void>() {
+    @Override
+    public void handle(Void _) {
+      List<PendingEvent> events;
+      synchronized (MapEventPublisher.this) {
+        scheduled = false;
+        events = new ArrayList<>(pending.values());
+        pending.clear();
+      }
+      for (PendingEvent event : events) {
+        doPublish(event);
+      }
+    }
+  };
+
+  private final Handler<Message<JsonObject>> watchHandler = new Handler<Message<JsonObject>>() {
+    @Override
+    public void handle(Message<JsonObject> message) {
+      String name = message.body().getString("name");
+      synchronized (MapEventPublisher.this) {
+        if (message.body().containsField("deadline")) {
+          cacheLease(name, message.body().getLong("deadline"));
+        } else {
+          leases.remove(name);
+          refreshed.remove(name);
+        }
+      }
+    }
+  };
+
+  private final Handler<Long> renewHandler = new Handler<Long>() {
+    @Override
+    public void handle(Long timerID) {
+      List<String> names;
+      synchronized (MapEventPublisher.this) {
+        names = new ArrayList<>(localWatches.keySet());
+      }
+      for (String name : names) {
+        watch(name, owner);
+      }
+    }
+  };
+
+  protected MapEventPublisher(Vertx vertx) {
+    this.vertx = vertx;
+    this.eventBus = vertx.eventBus();
+  }
+
+  /**
+   * Registers or renews a watch on a map.
+   *
+   * @param name The map name.
+   * @param owner A unique identifier for the watcher.
+   */
+  public void watch(String name, String owner) {
+    long deadline = System.currentTimeMillis() + WATCH_TIMEOUT;
+    Number previous = registry(name).put(owner, deadline);
+    synchronized (this) {
+      cacheLease(name, deadline);
+    }
+    // Other publishers reload expired leases from the registry, so they
+    // only need to be notified of new watches.
+    if (previous == null) {
+      eventBus.publish(WATCHES_ADDRESS, new JsonObject().putString("name", name).putNumber("deadline", deadline));
+    }
+  }
+
+  /**
+   * Unregisters a watch on a map.
+   *
+   * @param name The map name.
+   * @param owner The identifier with which the watch was registered.
+   */
+  public void unwatch(String name, String owner) {
+    if (registry(name).remove(owner) != null) {
+      synchronized (this) {
+        leases.remove(name);
+        refreshed.remove(name);
+      }
+      eventBus.publish(WATCHES_ADDRESS, new JsonObject().putString("name", name));
+    }
+  }
+
+  /**
+   * Registers a watch on a map on behalf of the publisher itself.<p>
+   *
+   * Local watches are counted and renewed by the publisher until the
+   * last local watch on the map is removed or the publisher is closed.
+   *
+   * @param name The map name.
+   */
+  public void addLocalWatch(String name) {
+    synchronized (this) {
+      Integer count = localWatches.get(name);
+      localWatches.put(name, count != null ? count + 1 : 1);
+      if (count != null) {
+        return;
+      }
+      if (renewTimer == -1) {
+        renewTimer = vertx.setPeriodic(WATCH_TIMEOUT / 2, renewHandler);
+      }
+    }
+    watch(name, owner);
+  }
+
+  /**
+   * Unregisters a watch on a map registered by the publisher itself.
+   *
+   * @param name The map name.
+   */
+  public void removeLocalWatch(String name) {
+    synchronized (this) {
+      Integer count = localWatches.get(name);
+      if (count == null) {
+        return;
+      } else if (count > 1) {
+        localWatches.put(name, count - 1);
+        return;
+      }
+      localWatches.remove(name);
+      if (localWatches.isEmpty() && renewTimer != -1) {
+        vertx.cancelTimer(renewTimer);
+        renewTimer = -1;
+      }
+    }
+    unwatch(name, owner);
+  }
+
+  /**
+   * Indicates whether a map is being watched.<p>
+   *
+   * The registry is only read once the cached lease for the map has
+   * expired, or periodically if the map is not being watched.
+   *
+   * @param name The map name.
+   * @return Indicates whether any watcher holds a lease on the map.
+   */
+  public synchronized boolean isWatched(String name) {
+    if (!listening) {
+      eventBus.registerHandler(WATCHES_ADDRESS, watchHandler);
+      listening = true;
+    }
+
+    long now = System.currentTimeMillis();
+    Long lease = leases.get(name);
+    if (lease != null && lease > now) {
+      return true;
+    }
+    Long checked = refreshed.get(name);
+    if (lease == null && checked != null && now - checked < REFRESH_INTERVAL) {
+      return false;
+    }
+    refreshed.put(name, now);
+    leases.remove(name);
+
+    // Expired registrations are removed from the registry when it's read.
+    Map<String, Number> registry = registry(name);
+    for (Map.Entry<String, Number> entry : new ArrayList<>(registry.entrySet())) {
+      long deadline = entry.getValue().longValue();
+      if (deadline > now) {
+        cacheLease(name, deadline);
+      } else if (registry instanceof ConcurrentMap) {
+        ((ConcurrentMap<String, Number>) registry).remove(entry.getKey(), entry.getValue());
+      } else {
+        registry.remove(entry.getKey());
+      }
+    }
+    return leases.containsKey(name);
+  }
+
+  /**
+   * Caches the latest known lease on a map.
+   */
+  private void cacheLease(String name, long deadline) {
+    Long lease = leases.get(name);
+    if (lease == null || lease < deadline) {
+      leases.put(name, deadline);
+    }
+  }
+
+  /**
+   * Publishes a map event. Events are only published for maps that are
+   * being watched.
+   *
+   * @param name The map name.
+   * @param key The key that changed.
+   * @param type The event type.
+   * @param value The key's value.
+   */
+  public synchronized void publish(String name, Object key, MapEvent.Type type, Object value) {
+    if (!isWatched(name)) {
+      return;
+    }
+
+    String id = String.format("%s.%s", name, key);
+    PendingEvent event = pending.get(id);
+    if (event != null) {
+      if (event.type.equals(type)) {
+        event.value = value;
+        return;
+      }
+      // Events of different types can't be coalesced without losing the
+      // intermediate state, so publish the pending event immediately.
+      pending.remove(id);
+      doPublish(event);
+    }
+
+    event = new PendingEvent();
+    event.name = name;
+    event.key = key;
+    event.type = type;
+    event.value = value;
+    pending.put(id, event);
+    if (!scheduled) {
+      scheduled = true;
+      vertx.runOnContext(flushHandler);
+    }
+  }
+
+  /**
+   * Publishes an event to the map's watchers.
+   */
+  private void doPublish(PendingEvent event) {
+    eventBus.publish(DefaultAsyncMap.eventAddress(event.name), new JsonObject()
+        .putString("type", event.type.toString())
+        .putValue("key", event.key)
+        .putValue("value", event.value));
+  }
+
+  /**
+   * Closes the publisher, unregistering the publisher's own watches.
+   */
+  public void close() {
+    List<String> names;
+    synchronized (this) {
+      if (renewTimer != -1) {
+        vertx.cancelTimer(renewTimer);
+        renewTimer = -1;
+      }
+      if (listening) {
+        eventBus.unregisterHandler(WATCHES_ADDRESS, watchHandler);
+        listening = false;
+      }
+      names = new ArrayList<>(localWatches.keySet());
+      localWatches.clear();
+    }
+    for (String name : names) {
+      unwatch(name, owner);
+    }
+  }
+
+  /**
+   * Returns a map in which the watch registry is stored.
+   *
+   * @param name The map name.
+   * @return The map.
+   */
+  protected abstract <K, V> Map<K, V> getMap(String name);
+
+  /**
+   * Returns the registry of watch deadlines for a map, keyed by watcher.
+   */
+  private Map<String, Number> registry(String name) {
+    return this.<String, Number>getMap(String.format("%s.%s", WATCHES_MAP, name));
+  }
+
+  /**
+   * An event waiting to be published.
+   */
+  private static class PendingEvent {
+    private String name;
+    private Object key;
+    private MapEvent.Type type;
+    private Object value;
+  }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.kuujo.vertigo.cluster.data.NearCacheOptions;
+
+/**
+ * Size bounded near cache storage.<p>
+ *
+ * LRU caches are backed by an access ordered {@link LinkedHashMap}. LFU
+ * caches keep keys in insertion ordered sets by access frequency so that
+ * the least frequently used key - and of those the oldest - can be found
+ * in constant time.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+abstract class NearCache<K, V> {
+
+  /**
+   * Creates a near cache for the given options.
+   */
+  static <K, V> NearCache<K, V> create(NearCacheOptions options) {
+    switch (options.getEviction()) {
+      case LFU:
+        return new LfuCache<K, V>(options.getMaxSize());
+      case LRU:
+      default:
+        return new LruCache<K, V>(options.getMaxSize());
+    }
+  }
+
+  /**
+   * Cached entry.
+   */
+  static class Entry<V> {
+    V value;
+    long expires;
+    int frequency;
+
+    boolean expired(long now) {
+      return expires > 0 && now >= expires;
+    }
+  }
+
+  final int maxSize;
+
+  NearCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the entry for a key and records the access.
+   */
+  abstract Entry<V> get(K key);
+
+  /**
+   * Puts an entry in the cache.
+   *
+   * @return The key that was evicted to make room for the entry, or
+   *         <code>null</code> if no key was evicted.
+   */
+  abstract K put(K key, V value, long expires);
+
+  /**
+   * Removes an entry from the cache.
+   *
+   * @return Indicates whether the key was cached.
+   */
+  abstract boolean remove(K key);
+
+  /**
+   * Returns the set of cached keys.
+   */
+  abstract Set<K> keys();
+
+  /**
+   * Removes all entries from the cache.
+   */
+  abstract void clear();
+
+  /**
+   * Returns the number of cached entries.
+   */
+  abstract int size();
+
+  /**
+   * Least recently used cache.
+   */
+  private static class LruCache<K, V> extends NearCache<K, V> {
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private LruCache(int maxSize) {
+      super(maxSize);
+    }
+
+    @Override
+    Entry<V> get(K key) {
+      return entries.get(key);
+    }
+
+    @Override
+    K put(K key, V value, long expires) {
+      Entry<V> entry = entries.get(key);
+      if (entry == null) {
+        entry = new Entry<V>();
+        entries.put(key, entry);
+      }
+      entry.value = value;
+      entry.expires = expires;
+      if (entries.size() > maxSize) {
+        Iterator<K> iterator = entries.keySet().iterator();
+        K eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+      }
+      return null;
+    }
+
+    @Override
+    boolean remove(K key) {
+      return entries.remove(key) != null;
+    }
+
+    @Override
+    Set<K> keys() {
+      return entries.keySet();
+    }
+
+    @Override
+    void clear() {
+      entries.clear();
+    }
+
+    @Override
+    int size() {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Least frequently used cache.
+   */
+  private static class LfuCache<K, V> extends NearCache<K, V> {
+    private final Map<K, Entry<V>> entries = new HashMap<>();
+    private final Map<Integer, LinkedHashSet<K>> frequencies = new HashMap<>();
+    private int minFrequency;
+
+    private LfuCache(int maxSize) {
+      super(maxSize);
+    }
+
+    @Override
+    Entry<V> get(K key) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null) {
+        touch(key, entry);
+      }
+      return entry;
+    }
+
+    private void touch(K key, Entry<V> entry) {
+      unlink(key, entry.frequency);
+      entry.frequency++;
+      link(key, entry.frequency);
+    }
+
+    private void link(K key, int frequency) {
+      LinkedHashSet<K> keys = frequencies.get(frequency);
+      if (keys == null) {
+        keys = new LinkedHashSet<>();
+        frequencies.put(frequency, keys);
+      }
+      keys.add(key);
+    }
+
+    private void unlink(K key, int frequency) {
+      LinkedHashSet<K> keys = frequencies.get(frequency);
+      if (keys != null) {
+        keys.remove(key);
+        if (keys.isEmpty()) {
+          frequencies.remove(frequency);
+          if (minFrequency == frequency) {
+            minFrequency++;
+          }
+        }
+      }
+    }
+
+    @Override
+    K put(K key, V value, long expires) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null) {
+        entry.value = value;
+        entry.expires = expires;
+        touch(key, entry);
+        return null;
+      }
+
+      K evicted = null;
+      if (entries.size() >= maxSize) {
+        evicted = evict();
+      }
+
+      entry = new Entry<V>();
+      entry.value = value;
+      entry.expires = expires;
+      entry.frequency = 1;
+      entries.put(key, entry);
+      link(key, 1);
+      minFrequency = 1;
+      return evicted;
+    }
+
+    private K evict() {
+      // Arbitrary removals can leave the minimum frequency pointing at a
+      // frequency that no longer has any keys, so find the real minimum.
+      LinkedHashSet<K> keys = frequencies.get(minFrequency);
+      if (keys == null) {
+        minFrequency = Integer.MAX_VALUE;
+        for (Integer frequency : frequencies.keySet()) {
+          if (frequency < minFrequency) {
+            minFrequency = frequency;
+          }
+        }
+        keys = frequencies.get(minFrequency);
+      }
+      K key = keys.iterator().next();
+      unlink(key, minFrequency);
+      entries.remove(key);
+      return key;
+    }
+
+    @Override
+    boolean remove(K key) {
+      Entry<V> entry = entries.remove(key);
+      if (entry != null) {
+        unlink(key, entry.frequency);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    Set<K> keys() {
+      return entries.keySet();
+    }
+
+    @Override
+    void clear() {
+      entries.clear();
+      frequencies.clear();
+      minFrequency = 0;
+    }
+
+    @Override
+    int size() {
+      return entries.size();
+    }
+  }
+
+}
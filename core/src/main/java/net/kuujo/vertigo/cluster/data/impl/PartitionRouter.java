@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.kuujo.vertigo.util.HashRing;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Routes data operations to the cluster agent that owns a key.<p>
+ *
+ * Each cluster agent advertises its node address as a partition of the
+ * cluster. Keys are assigned to partitions with a consistent hash ring so
+ * that operations on the same key are always handled by the same agent and
+ * load is spread across all agents. Since all agents share the same cluster
+ * data, routing is only an optimization: until the partitions are known, or
+ * while they're changing, operations may be handled by any agent.<p>
+ *
+ * Routers are shared by all data structures for a cluster within a Vert.x
+ * instance. Routers only weakly reference the Vert.x instance so that their
+ * registry doesn't keep the instance alive once it's no longer used. The
+ * partition list is refreshed lazily in the background.
+ * Partitions that couldn't be reached are excluded from routing until the
+ * cluster stops listing them, so their keys move to the same partitions
+ * that will own them once the cluster's partition list is updated.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class PartitionRouter {
+  private static final long REFRESH_INTERVAL = 5000;
+  private static final long FAILURE_TIMEOUT = 15000;
+  private static final Map<Vertx, Map<String, PartitionRouter>> routers = new WeakHashMap<>();
+  private final String address;
+  private final WeakReference<Vertx> vertx;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private final Map<String, Long> failed = new ConcurrentHashMap<>();
+  private volatile HashRing<String> ring = new HashRing<String>(Collections.<String>emptyList());
+  private volatile long refreshed;
+
+  /**
+   * Returns the shared partition router for a cluster.
+   *
+   * @param address The cluster address.
+   * @param vertx The current Vert.x instance.
+   * @return The shared partition router for the cluster.
+   */
+  public static PartitionRouter getInstance(String address, Vertx vertx) {
+    synchronized (routers) {
+      Map<String, PartitionRouter> clusterRouters = routers.get(vertx);
+      if (clusterRouters == null) {
+        clusterRouters = new HashMap<>();
+        routers.put(vertx, clusterRouters);
+      }
+      PartitionRouter router = clusterRouters.get(address);
+      if (router == null) {
+        router = new PartitionRouter(address, vertx);
+        clusterRouters.put(address, router);
+      }
+      return router;
+    }
+  }
+
+  public PartitionRouter(String address, Vertx vertx) {
+    this.address = address;
+    this.vertx = new WeakReference<>(vertx);
+  }
+
+  /**
+   * Returns the address of the partition that owns a key.
+   *
+   * @param key The key to route.
+   * @return The owning partition's address, or the cluster address if no
+   *         partitions are known yet.
+   */
+  public String route(Object key) {
+    if (System.currentTimeMillis() - refreshed > REFRESH_INTERVAL) {
+      refresh();
+    }
+    String partition = ring.get(key);
+    return partition != null ? partition : address;
+  }
+
+  /**
+   * Returns the address of the partition that owns a key in a named data structure.
+   */
+  public String route(String name, Object key) {
+    return route(partitionKey(name, key));
+  }
+
+  /**
+   * Returns the key by which a key in a named data structure is partitioned.
+   */
+  public static String partitionKey(String name, Object key) {
+    return String.format("%s:%s", name, key);
+  }
+
+  /**
+   * Returns the address of the partition that owns a request's data.<p>
+   *
+   * Map requests for a key are routed by key and all other requests are
+   * routed by data structure name, just as data structures route them.
+   *
+   * @param request The request.
+   * @return The owning partition's address.
+   */
+  public String route(JsonObject request) {
+    String name = request.getString("name");
+    Object key = request.getValue("key");
+    if ("map".equals(request.getString("type")) && key != null) {
+      return route(name, key);
+    }
+    return route(name);
+  }
+
+  /**
+   * Forces the partitions to be reloaded on the next route, e.g. after a
+   * request to a partition failed.
+   */
+  public void invalidate() {
+    refreshed = 0;
+  }
+
+  /**
+   * Excludes a partition that couldn't be reached from routing and forces
+   * the partitions to be reloaded on the next route.<p>
+   *
+   * Agents that fail without unregistering are still listed by the cluster
+   * until their registration expires, so the partition is excluded from
+   * reloaded partition lists for the same time.
+   *
+   * @param partition The partition address.
+   */
+  public void fail(String partition) {
+    failed.put(partition, System.currentTimeMillis());
+    List<String> members = new ArrayList<>(ring.members());
+    if (members.remove(partition)) {
+      ring = new HashRing<String>(members);
+    }
+    invalidate();
+  }
+
+  /**
+   * Loads the current partitions from the cluster.
+   */
+  private void refresh() {
+    Vertx vertx = this.vertx.get();
+    if (vertx == null || !refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    JsonObject message = new JsonObject()
+        .putString("action", "list")
+        .putString("type", "partition");
+    vertx.eventBus().sendWithTimeout(address, message, REFRESH_INTERVAL, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.succeeded() && result.result().body().getString("status").equals("ok")) {
+          JsonArray partitions = result.result().body().getArray("result");
+          List<String> members = new ArrayList<>();
+          long now = System.currentTimeMillis();
+          for (Object partition : partitions) {
+            Long failure = failed.get(partition);
+            if (failure == null) {
+              members.add((String) partition);
+            } else if (now - failure > FAILURE_TIMEOUT) {
+              failed.remove(partition);
+              members.add((String) partition);
+            }
+          }
+          if (!members.equals(ring.members())) {
+            ring = new HashRing<String>(members);
+          }
+        }
+        refreshed = System.currentTimeMillis();
+        refreshing.set(false);
+      }
+    });
+  }
+
+}
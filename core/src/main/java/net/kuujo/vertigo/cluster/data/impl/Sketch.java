@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.nio.charset.Charset;
+
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Mergeable fixed-size probabilistic data structure.<p>
+ *
+ * Sketches summarize a stream of items in a fixed amount of memory and can
+ * be merged with other sketches of the same type and size. This allows each
+ * component to update a sketch locally and periodically merge it into the
+ * cluster's sketch rather than sending a request per item.<p>
+ *
+ * Sketches are encoded as JSON objects so they can be sent over the event bus
+ * and stored in cluster maps. Sparse sketches are encoded as a list of the
+ * non-empty cells to keep small batches small.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public abstract class Sketch {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Decodes a sketch.
+   *
+   * @param json The encoded sketch.
+   * @return The decoded sketch.
+   * @throws IllegalArgumentException If the sketch type is unknown.
+   */
+  public static Sketch fromJson(JsonObject json) {
+    String type = json.getString("type");
+    if (type == null) {
+      throw new IllegalArgumentException("No sketch type specified");
+    }
+    switch (type) {
+      case HyperLogLogSketch.TYPE:
+        return HyperLogLogSketch.decode(json);
+      case CountMinSketch.TYPE:
+        return CountMinSketch.decode(json);
+      case BloomFilterSketch.TYPE:
+        return BloomFilterSketch.decode(json);
+      default:
+        throw new IllegalArgumentException("Unknown sketch type " + type);
+    }
+  }
+
+  /**
+   * Returns a 64-bit hash of an item.<p>
+   *
+   * Items are hashed by their string value so that the same item hashes
+   * the same way in every Vert.x instance.
+   */
+  protected static long hash(Object item) {
+    long hash = FNV_OFFSET;
+    for (byte b : String.valueOf(item).getBytes(UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= FNV_PRIME;
+    }
+    // FNV alone mixes the high bits poorly, so finish with the MurmurHash3
+    // 64-bit finalizer.
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Returns the sketch type.
+   */
+  public abstract String type();
+
+  /**
+   * Adds an item to the sketch.
+   *
+   * @param item The item to add.
+   * @param count The number of occurrences of the item. Sketches that don't
+   *        count occurrences ignore the count.
+   */
+  public abstract void add(Object item, long count);
+
+  /**
+   * Merges another sketch into this sketch.
+   *
+   * @param sketch The sketch to merge.
+   * @throws IllegalArgumentException If the sketch has a different type or size.
+   */
+  public abstract void merge(Sketch sketch);
+
+  /**
+   * Queries the sketch.
+   *
+   * @param item The item to query. Sketches that summarize the whole stream
+   *        ignore the item.
+   * @return The query result.
+   */
+  public abstract Object query(Object item);
+
+  /**
+   * Returns a boolean indicating whether any items have been added to the sketch.
+   */
+  public abstract boolean isEmpty();
+
+  /**
+   * Returns an empty sketch with the same type and size.
+   */
+  public abstract Sketch emptyCopy();
+
+  /**
+   * Encodes the sketch.
+   */
+  public abstract JsonObject toJson();
+
+}
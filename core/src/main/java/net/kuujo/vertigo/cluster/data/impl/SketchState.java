@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import java.util.Map;
+
+import net.kuujo.vertigo.util.SharedMaps;
+
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Sketch state operations.<p>
+ *
+ * Each sketch is stored in a shared map as its encoded JSON. Batches are
+ * merged into the stored sketch with a compare-and-set loop so that sketches
+ * can be safely updated by any number of agents sharing the map.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class SketchState {
+
+  private SketchState() {
+  }
+
+  /**
+   * Merges a batch into a stored sketch.
+   *
+   * @param sketches The shared sketch map.
+   * @param name The sketch name.
+   * @param batch The sketch to merge.
+   * @return The encoded merged sketch.
+   * @throws IllegalArgumentException If the stored sketch has a different type or size.
+   */
+  public static String merge(Map<String, String> sketches, String name, Sketch batch) {
+    while (true) {
+      String current = sketches.get(name);
+      Sketch sketch = batch.emptyCopy();
+      if (current != null) {
+        sketch.merge(Sketch.fromJson(new JsonObject(current)));
+      }
+      sketch.merge(batch);
+      String update = sketch.toJson().encode();
+      if (SharedMaps.compareAndSet(sketches, name, current, update)) {
+        return update;
+      }
+    }
+  }
+
+  /**
+   * Queries a stored sketch.
+   *
+   * @param sketches The shared sketch map.
+   * @param name The sketch name.
+   * @param template An empty sketch of the expected type and size, queried
+   *        if no items have been merged into the sketch yet.
+   * @param item The item to query.
+   * @return The query result.
+   * @throws IllegalArgumentException If the stored sketch has a different type or size.
+   */
+  public static Object query(Map<String, String> sketches, String name, Sketch template, Object item) {
+    String current = sketches.get(name);
+    Sketch sketch = template.emptyCopy();
+    if (current != null) {
+      sketch.merge(Sketch.fromJson(new JsonObject(current)));
+    }
+    return sketch.query(item);
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.data.impl;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Storage for cluster-wide sketches.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface SketchStore {
+
+  /**
+   * Merges a batch into a named sketch.
+   *
+   * @param name The sketch name.
+   * @param batch The batch to merge.
+   * @param doneHandler An asynchronous handler to be called once the batch has been merged.
+   */
+  void merge(String name, Sketch batch, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Queries a named sketch.
+   *
+   * @param name The sketch name.
+   * @param template An empty sketch of the expected type and size.
+   * @param item The item to query.
+   * @param resultHandler An asynchronous handler to be called with the query result.
+   */
+  void query(String name, Sketch template, Object item, Handler<AsyncResult<Object>> resultHandler);
+
+}
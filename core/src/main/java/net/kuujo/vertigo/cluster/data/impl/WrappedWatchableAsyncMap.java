@@ -16,26 +16,27 @@
 package net.kuujo.vertigo.cluster.data.impl;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
 import net.kuujo.vertigo.cluster.data.AsyncMap;
 import net.kuujo.vertigo.cluster.data.MapEvent;
 import net.kuujo.vertigo.cluster.data.MapEvent.Type;
+import net.kuujo.vertigo.cluster.data.MapFunction;
 import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
-import net.kuujo.vertigo.util.CountingCompletionHandler;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
-import org.vertx.java.core.eventbus.EventBus;
-import org.vertx.java.core.eventbus.Message;
-import org.vertx.java.core.impl.DefaultFutureResult;
-import org.vertx.java.core.json.JsonObject;
 
 /**
- * Wrapped watchable asynchronous map.
+ * Wrapped watchable asynchronous map.<p>
+ *
+ * Map events are published by the cluster whenever a watched key changes,
+ * so this wrapper simply exposes the watch operations of the wrapped map.
+ * Watches are supported for maps returned by the cluster, which themselves
+ * implement {@link WatchableAsyncMap}.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  *
@@ -44,12 +45,9 @@ import org.vertx.java.core.json.JsonObject;
  */
 public class WrappedWatchableAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
   private final AsyncMap<K, V> map;
-  private final EventBus eventBus;
-  private final Map<MapEvent.Type, Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>>> watchHandlers = new HashMap<>();
 
   public WrappedWatchableAsyncMap(AsyncMap<K, V> map, Vertx vertx) {
     this.map = map;
-    this.eventBus = vertx.eventBus();
   }
 
   @Override
@@ -59,28 +57,32 @@ public class WrappedWatchableAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
 
   @Override
   public void put(K key, V value) {
-    put(key, value, null);
+    map.put(key, value);
+  }
+
+  @Override
+  public void put(K key, V value, Handler<AsyncResult<V>> doneHandler) {
+    map.put(key, value, doneHandler);
+  }
+
+  @Override
+  public void put(K key, V value, long ttl) {
+    map.put(key, value, ttl);
   }
 
   @Override
-  public void put(final K key, final V value, final Handler<AsyncResult<V>> doneHandler) {
-    map.put(key, value, new Handler<AsyncResult<V>>() {
-      @Override
-      public void handle(AsyncResult<V> result) {
-        eventBus.publish(String.format("%s.%s.%s", map.name(), key, MapEvent.Type.CHANGE.toString()), new JsonObject()
-            .putString("type", MapEvent.Type.CHANGE.toString())
-            .putValue("key", key)
-            .putValue("value", value));
-        String event = result.result() == null ? MapEvent.Type.CREATE.toString() : MapEvent.Type.UPDATE.toString();
-        eventBus.publish(String.format("%s.%s.%s", map.name(), key, event), new JsonObject()
-            .putString("type", event)
-            .putValue("key", key)
-            .putValue("value", value));
-        if (doneHandler != null) {
-          doneHandler.handle(result);
-        }
-      }
-    });
+  public void put(K key, V value, long ttl, Handler<AsyncResult<V>> doneHandler) {
+    map.put(key, value, ttl, doneHandler);
+  }
+
+  @Override
+  public void putAll(Map<K, V> entries) {
+    map.putAll(entries);
+  }
+
+  @Override
+  public void putAll(Map<K, V> entries, Handler<AsyncResult<Void>> doneHandler) {
+    map.putAll(entries, doneHandler);
   }
 
   @Override
@@ -88,29 +90,44 @@ public class WrappedWatchableAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
     map.get(key, resultHandler);
   }
 
+  @Override
+  public void getAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    map.getAll(keys, resultHandler);
+  }
+
   @Override
   public void remove(K key) {
-    remove(key, null);
+    map.remove(key);
+  }
+
+  @Override
+  public void remove(K key, Handler<AsyncResult<V>> resultHandler) {
+    map.remove(key, resultHandler);
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys) {
+    map.removeAll(keys);
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    map.removeAll(keys, resultHandler);
+  }
+
+  @Override
+  public void putIfAbsent(K key, V value, Handler<AsyncResult<V>> resultHandler) {
+    map.putIfAbsent(key, value, resultHandler);
   }
 
   @Override
-  public void remove(final K key, final Handler<AsyncResult<V>> resultHandler) {
-    map.remove(key, new Handler<AsyncResult<V>>() {
-      @Override
-      public void handle(AsyncResult<V> result) {
-        eventBus.publish(String.format("%s.%s.%s", map.name(), key, MapEvent.Type.CHANGE.toString()), new JsonObject()
-            .putString("type", MapEvent.Type.CHANGE.toString())
-            .putValue("key", key)
-            .putValue("value", result.result()));
-        eventBus.publish(String.format("%s.%s.%s", map.name(), key, MapEvent.Type.DELETE.toString()), new JsonObject()
-            .putString("type", MapEvent.Type.DELETE.toString())
-            .putValue("key", key)
-            .putValue("value", result.result()));
-        if (resultHandler != null) {
-          resultHandler.handle(result);
-        }
-      }
-    });
+  public void replace(K key, V expect, V value, Handler<AsyncResult<Boolean>> resultHandler) {
+    map.replace(key, expect, value, resultHandler);
+  }
+
+  @Override
+  public void computeIfPresent(K key, MapFunction<K, V> function, Handler<AsyncResult<V>> resultHandler) {
+    map.computeIfPresent(key, function, resultHandler);
   }
 
   @Override
@@ -118,6 +135,11 @@ public class WrappedWatchableAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
     map.containsKey(key, resultHandler);
   }
 
+  @Override
+  public AsyncCursor<Map.Entry<K, V>> scan(int pageSize) {
+    return map.scan(pageSize);
+  }
+
   @Override
   public void keySet(Handler<AsyncResult<Set<K>>> resultHandler) {
     map.keySet(resultHandler);
@@ -148,94 +170,75 @@ public class WrappedWatchableAsyncMap<K, V> implements WatchableAsyncMap<K, V> {
     map.clear(doneHandler);
   }
 
+  /**
+   * Returns the wrapped map as a watchable map.
+   */
+  @SuppressWarnings("unchecked")
+  private WatchableAsyncMap<K, V> watchable() {
+    if (!(map instanceof WatchableAsyncMap)) {
+      throw new UnsupportedOperationException("Map " + map.name() + " does not support watches");
+    }
+    return (WatchableAsyncMap<K, V>) map;
+  }
+
   @Override
   public void watch(K key, Handler<MapEvent<K, V>> handler) {
-    watch(key, null, handler, null);
+    watchable().watch(key, handler);
   }
 
   @Override
   public void watch(K key, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-    watch(key, null, handler, doneHandler);
+    watchable().watch(key, handler, doneHandler);
   }
 
   @Override
   public void watch(K key, Type event, Handler<MapEvent<K, V>> handler) {
-    watch(key, event, handler, null);
+    watchable().watch(key, event, handler);
   }
 
   @Override
-  public void watch(final K key, final Type event, final Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-    if (event == null) {
-      final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(4).setHandler(doneHandler);
-      addWatcher(key, MapEvent.Type.CHANGE, handler, counter);
-      addWatcher(key, MapEvent.Type.CREATE, handler, counter);
-      addWatcher(key, MapEvent.Type.UPDATE, handler, counter);
-      addWatcher(key, MapEvent.Type.DELETE, handler, counter);
-    } else {
-      addWatcher(key, event, handler, doneHandler);
-    }
-  }
-
-  private void addWatcher(K key, final MapEvent.Type event, final Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-    Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>> watchHandlers = this.watchHandlers.get(event);
-    if (watchHandlers == null) {
-      watchHandlers = new HashMap<>();
-      this.watchHandlers.put(event, watchHandlers);
-    }
-
-    Handler<Message<JsonObject>> wrappedHandler;
-    if (!watchHandlers.containsKey(handler)) {
-      wrappedHandler = new Handler<Message<JsonObject>>() {
-        @Override
-        public void handle(Message<JsonObject> message) {
-          K key = message.body().getValue("key");
-          V value = message.body().getValue("value");
-          handler.handle(new MapEvent<K, V>(event, key, value));
-        }
-      };
-      watchHandlers.put(handler, wrappedHandler);
-    } else {
-      wrappedHandler = watchHandlers.get(handler);
-    }
-    eventBus.registerHandler(String.format("%s.%s.%s", map.name(), key, event.toString()), wrappedHandler, doneHandler);
+  public void watch(K key, Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    watchable().watch(key, event, handler, doneHandler);
   }
 
   @Override
   public void unwatch(K key, Handler<MapEvent<K, V>> handler) {
-    unwatch(key, null, handler, null);
+    watchable().unwatch(key, handler);
   }
 
   @Override
   public void unwatch(K key, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-    unwatch(key, null, handler, doneHandler);
+    watchable().unwatch(key, handler, doneHandler);
   }
 
   @Override
   public void unwatch(K key, Type event, Handler<MapEvent<K, V>> handler) {
-    unwatch(key, event, handler, null);
+    watchable().unwatch(key, event, handler);
   }
 
   @Override
   public void unwatch(K key, Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-    if (event == null) {
-      final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(4).setHandler(doneHandler);
-      removeWatcher(key, MapEvent.Type.CHANGE, handler, counter);
-      removeWatcher(key, MapEvent.Type.CREATE, handler, counter);
-      removeWatcher(key, MapEvent.Type.UPDATE, handler, counter);
-      removeWatcher(key, MapEvent.Type.DELETE, handler, counter);
-    } else {
-      removeWatcher(key, event, handler, doneHandler);
-    }
+    watchable().unwatch(key, event, handler, doneHandler);
   }
 
-  private void removeWatcher(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-    Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>> watchHandlers = this.watchHandlers.get(event);
-    if (watchHandlers == null || !watchHandlers.containsKey(handler)) {
-      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
-    } else {
-      Handler<Message<JsonObject>> wrappedHandler = watchHandlers.remove(handler);
-      eventBus.unregisterHandler(String.format("%s.%s.%s", map.name(), key, event.toString()), wrappedHandler, doneHandler);
-    }
+  @Override
+  public void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler) {
+    watchable().watchPrefix(prefix, handler);
+  }
+
+  @Override
+  public void watchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    watchable().watchPrefix(prefix, handler, doneHandler);
+  }
+
+  @Override
+  public void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler) {
+    watchable().unwatchPrefix(prefix, handler);
+  }
+
+  @Override
+  public void unwatchPrefix(String prefix, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
+    watchable().unwatchPrefix(prefix, handler, doneHandler);
   }
 
 }
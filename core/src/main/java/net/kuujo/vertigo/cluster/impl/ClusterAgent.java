@@ -15,13 +15,33 @@
  */
 package net.kuujo.vertigo.cluster.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.UUID;
 
 import net.kuujo.vertigo.Config;
 import net.kuujo.vertigo.cluster.data.MapEvent;
+import net.kuujo.vertigo.cluster.data.MapFunction;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncMap;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncQueue;
+import net.kuujo.vertigo.cluster.data.impl.LocalStructures;
+import net.kuujo.vertigo.cluster.data.impl.LockState;
+import net.kuujo.vertigo.cluster.data.impl.MapEventPublisher;
+import net.kuujo.vertigo.cluster.data.impl.PartitionRouter;
+import net.kuujo.vertigo.cluster.data.impl.Sketch;
+import net.kuujo.vertigo.cluster.data.impl.SketchState;
 import net.kuujo.vertigo.impl.ContextBuilder;
 import net.kuujo.vertigo.network.NetworkConfig;
 import net.kuujo.vertigo.network.NetworkContext;
@@ -29,13 +49,16 @@ import net.kuujo.vertigo.network.impl.DefaultNetworkConfig;
 import net.kuujo.vertigo.network.impl.DefaultNetworkContext;
 import net.kuujo.vertigo.network.manager.NetworkManager;
 import net.kuujo.vertigo.util.Configs;
-import net.kuujo.vertigo.util.CountingCompletionHandler;
+import net.kuujo.vertigo.util.HashRing;
+import net.kuujo.vertigo.util.SharedMaps;
+import net.kuujo.vertigo.util.TimerWheel;
 import net.kuujo.vertigo.util.serialization.SerializationException;
 import net.kuujo.vertigo.util.serialization.Serializer;
 import net.kuujo.vertigo.util.serialization.SerializerFactory;
 import net.kuujo.xync.Xync;
 
 import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Future;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.eventbus.EventBus;
@@ -56,15 +79,211 @@ import org.vertx.java.core.json.JsonObject;
  */
 public class ClusterAgent extends Xync {
   private static final Serializer configSerializer = SerializerFactory.getSerializer(Config.class);
+  private static final Serializer functionSerializer = SerializerFactory.getSerializer(MapFunction.class);
+  private static final String COUNTERS_MAP = "__vertigo.counters";
+  private static final long COUNTER_MIGRATION_TIMEOUT = 30000;
+  private static final long QUEUE_CHECK_INTERVAL = 100;
+  private static final String LOCKS_MAP = "__vertigo.locks";
+  private static final long LOCK_CHECK_INTERVAL = 100;
+  private static final String SKETCHES_MAP = "__vertigo.sketches";
+  private static final long SCAN_CURSOR_TIMEOUT = 60000;
+  private static final String EXPIRATIONS_MAP = "__vertigo.expirations";
+  private static final long EXPIRATION_SWEEP_INTERVAL = 1000;
+  private static final long DEFAULT_SNAPSHOT_INTERVAL = 60000;
+  private static final String PARTITIONS_MAP = "__vertigo.partitions";
+  private static final long PARTITION_HEARTBEAT_INTERVAL = 5000;
+  private final Map<String, Deque<QueueWaiter>> queueWaiters = new HashMap<>();
+  private long queueTimer = -1;
+  private final Map<String, Deque<LockWaiter>> lockWaiters = new HashMap<>();
+  private long lockTimer = -1;
+  private MapEventPublisher publisher;
+  private final Map<String, ScanCursor> scanCursors = new HashMap<>();
+  private String scanAddress;
+  private DataPersistence persistence;
+  private long snapshotTimer = -1;
+  private long partitionTimer = -1;
+  private long expirationTimer = -1;
+  private LocalStructures.Provider structures;
+  private final Set<String> indexedExpirations = new HashSet<>();
+  private final Set<String> migratedCounters = new HashSet<>();
+  private boolean clustered;
+  private List<String> owners = Collections.emptyList();
+  private HashRing<String> ring = new HashRing<>(owners);
 
   @Override
-  protected void handleClusterMessage(final Message<JsonObject> message) {
+  public void start(final Future<Void> startResult) {
+    super.start(new DefaultFutureResult<Void>().setHandler(new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          startResult.setFailure(result.cause());
+        } else {
+          try {
+            clustered = DefaultClusterFactory.isClustered(vertx);
+            startPartition();
+            startPersistence();
+            startExpirations();
+            startStructures();
+            startResult.setResult((Void) null);
+          } catch (IOException e) {
+            startResult.setFailure(e);
+          }
+        }
+      }
+    }));
+  }
+
+  @Override
+  public void stop() {
+    if (structures != null) {
+      LocalStructures.unregister(vertx, cluster, structures);
+    }
+    if (partitionTimer != -1) {
+      vertx.cancelTimer(partitionTimer);
+      partitionTimer = -1;
+    }
+    partitions().remove(address);
+    if (expirationTimer != -1) {
+      vertx.cancelTimer(expirationTimer);
+      expirationTimer = -1;
+    }
+    if (publisher != null) {
+      publisher.close();
+    }
+    if (snapshotTimer != -1) {
+      vertx.cancelTimer(snapshotTimer);
+      snapshotTimer = -1;
+    }
+    if (persistence != null) {
+      persistence.close();
+    }
+    super.stop();
+  }
+
+  /**
+   * Registers this agent as a partition of the cluster's data.<p>
+   *
+   * Agents periodically refresh their registration so that partitions of
+   * agents that failed without unregistering eventually expire.
+   */
+  private void startPartition() {
+    partitions().put(address, System.currentTimeMillis());
+    partitionTimer = vertx.setPeriodic(PARTITION_HEARTBEAT_INTERVAL, new Handler<Long>() {
+      @Override
+      public void handle(Long timerID) {
+        partitions().put(address, System.currentTimeMillis());
+        checkPartitions();
+        refreshExpirationIndex();
+      }
+    });
+  }
+
+  /**
+   * Registers the agent's lists and queues so that local clusters in the
+   * same Vert.x instance operate on the same lists and queues.
+   */
+  private void startStructures() {
+    structures = new LocalStructures.Provider() {
+      @Override
+      public <T> List<T> getList(String name) {
+        return manager.<T>getList(name);
+      }
+      @Override
+      public <T> Queue<T> getQueue(String name) {
+        return manager.<T>getQueue(name);
+      }
+    };
+    LocalStructures.register(vertx, cluster, structures);
+  }
+
+  /**
+   * Returns the cluster's partition registry.
+   */
+  private Map<String, Long> partitions() {
+    return manager.<String, Long>getMap(String.format("%s.%s", PARTITIONS_MAP, cluster));
+  }
+
+  /**
+   * Lists the addresses of the live partitions in the cluster.
+   */
+  private void doListPartitions(final Message<JsonObject> message) {
+    message.reply(new JsonObject().putString("status", "ok").putArray("result", new JsonArray(livePartitions().toArray())));
+  }
+
+  /**
+   * Returns the sorted addresses of the live partitions in the cluster.
+   */
+  private List<String> livePartitions() {
+    long expired = System.currentTimeMillis() - PARTITION_HEARTBEAT_INTERVAL * 3;
+    List<String> addresses = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : partitions().entrySet()) {
+      if (entry.getValue() > expired) {
+        addresses.add(entry.getKey());
+      }
+    }
+    // Partitions are sorted so that clients can detect changes by comparing lists.
+    Collections.sort(addresses);
+    return addresses;
+  }
+
+  /**
+   * Checks whether the live partitions have changed.<p>
+   *
+   * When partitions join or leave the cluster, ownership of keys moves
+   * between agents, so this agent schedules expirations for the keys it
+   * now owns.
+   */
+  private void checkPartitions() {
+    List<String> partitions = livePartitions();
+    if (!partitions.equals(owners)) {
+      owners = partitions;
+      ring = new HashRing<>(partitions);
+      scheduleExpirations();
+    }
+  }
+
+  /**
+   * Starts data persistence if a persistence directory is configured.<p>
+   *
+   * If this is the first agent to start in the cluster, persisted data is
+   * recovered along with the expiration deadlines of recovered keys that have
+   * a time to live, which are then expired by the agents that own them. A
+   * snapshot is then written immediately so that the recovered logs can be
+   * compacted.
+   */
+  private void startPersistence() throws IOException {
+    JsonObject config = container.config().getObject("persistence");
+    if (config == null || config.getString("directory") == null) {
+      return;
+    }
+
+    long interval = config.getLong("interval", DEFAULT_SNAPSHOT_INTERVAL);
+    persistence = new DataPersistence(manager, cluster, EXPIRATIONS_MAP, new File(config.getString("directory")), interval, config.getBoolean("sync", false));
+    for (JsonObject expiration : persistence.recover()) {
+      indexExpirations(expiration.getString("name"));
+    }
+    persistence.snapshot();
+    snapshotTimer = vertx.setPeriodic(interval, new Handler<Long>() {
+      @Override
+      public void handle(Long timerID) {
+        persistence.snapshot();
+      }
+    });
+  }
+
+  @Override
+  protected void handleClusterMessage(Message<JsonObject> message) {
     String action = message.body().getString("action");
     if (action != null) {
+      if (persistence != null) {
+        message = persistence.logOnReply(message);
+      }
       switch (action) {
         case "list":
           if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
             doListNetworks(message);
+          } else if (message.body().containsField("type") && message.body().getString("type").equals("partition")) {
+            doListPartitions(message);
           } else {
             super.handleClusterMessage(message);
           }
@@ -83,69 +302,1591 @@ public class ClusterAgent extends Xync {
             super.handleClusterMessage(message);
           }
           break;
-        case "deploy":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doDeployNetwork(message);
-          } else {
-            super.handleClusterMessage(message);
-          }
+        case "deploy":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doDeployNetwork(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "undeploy":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doUndeployNetwork(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "put":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapPut(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "remove":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapRemove(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "watch":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapWatch(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "unwatch":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapUnwatch(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "putIfAbsent":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapPutIfAbsent(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "replace":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapReplace(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "computeIfPresent":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapComputeIfPresent(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "getAll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapGetAll(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "putAll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapPutAll(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "removeAll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapRemoveAll(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "get":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterGet(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "increment":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterIncrement(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "decrement":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterDecrement(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "add":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterAdd(message);
+          } else if (message.body().containsField("type") && message.body().getString("type").equals("queue")) {
+            super.handleClusterMessage(message);
+            checkQueueWaiters(message.body().getString("name"));
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "offer":
+          super.handleClusterMessage(message);
+          if (message.body().containsField("type") && message.body().getString("type").equals("queue")) {
+            checkQueueWaiters(message.body().getString("name"));
+          }
+          break;
+        case "poll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("queue") && message.body().containsField("timeout")) {
+            doQueuePoll(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "scan":
+          if (message.body().containsField("type") && (message.body().getString("type").equals("map")
+              || message.body().getString("type").equals("set") || message.body().getString("type").equals("list"))) {
+            doScan(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "drain":
+          if (message.body().containsField("type") && message.body().getString("type").equals("queue")) {
+            doQueueDrain(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "acquire":
+          if (message.body().containsField("type") && message.body().getString("type").equals("lock")) {
+            doLockAcquire(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "renew":
+          if (message.body().containsField("type") && message.body().getString("type").equals("lock")) {
+            doLockRenew(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "release":
+          if (message.body().containsField("type") && message.body().getString("type").equals("lock")) {
+            doLockRelease(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "merge":
+          if (message.body().containsField("type") && message.body().getString("type").equals("sketch")) {
+            doSketchMerge(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "query":
+          if (message.body().containsField("type") && message.body().getString("type").equals("sketch")) {
+            doSketchQuery(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        default:
+          super.handleClusterMessage(message);
+      }
+    }
+  }
+
+  @Override
+  protected void handleNodeMessage(Message<JsonObject> message) {
+    String action = message.body().getString("action");
+    if (action != null) {
+      if (persistence != null) {
+        message = persistence.logOnReply(message);
+      }
+      switch (action) {
+        case "list":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doListNetworks(message);
+          } else if (message.body().containsField("type") && message.body().getString("type").equals("partition")) {
+            doListPartitions(message);
+          } else {
+            super.handleClusterMessage(message);
+          }
+          break;
+        case "check":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doIsDeployedNetwork(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "load":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doLoadNetwork(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "deploy":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doDeployNetwork(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "undeploy":
+          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
+            doUndeployNetwork(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "put":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapPut(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "remove":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapRemove(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "watch":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapWatch(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "unwatch":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapUnwatch(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "putIfAbsent":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapPutIfAbsent(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "replace":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapReplace(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "computeIfPresent":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapComputeIfPresent(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "getAll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapGetAll(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "putAll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapPutAll(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "removeAll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("map")) {
+            doMapRemoveAll(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "get":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter") && !message.body().getBoolean("legacy", false)) {
+            doCounterGet(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "increment":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterIncrement(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "decrement":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterDecrement(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "add":
+          if (message.body().containsField("type") && message.body().getString("type").equals("counter")) {
+            doCounterAdd(message);
+          } else if (message.body().containsField("type") && message.body().getString("type").equals("queue")) {
+            super.handleNodeMessage(message);
+            checkQueueWaiters(message.body().getString("name"));
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "offer":
+          super.handleNodeMessage(message);
+          if (message.body().containsField("type") && message.body().getString("type").equals("queue")) {
+            checkQueueWaiters(message.body().getString("name"));
+          }
+          break;
+        case "poll":
+          if (message.body().containsField("type") && message.body().getString("type").equals("queue") && message.body().containsField("timeout")) {
+            doQueuePoll(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "scan":
+          if (message.body().containsField("type") && (message.body().getString("type").equals("map")
+              || message.body().getString("type").equals("set") || message.body().getString("type").equals("list"))) {
+            doScan(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "drain":
+          if (message.body().containsField("type") && message.body().getString("type").equals("queue")) {
+            doQueueDrain(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "acquire":
+          if (message.body().containsField("type") && message.body().getString("type").equals("lock")) {
+            doLockAcquire(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "renew":
+          if (message.body().containsField("type") && message.body().getString("type").equals("lock")) {
+            doLockRenew(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "release":
+          if (message.body().containsField("type") && message.body().getString("type").equals("lock")) {
+            doLockRelease(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "merge":
+          if (message.body().containsField("type") && message.body().getString("type").equals("sketch")) {
+            doSketchMerge(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        case "query":
+          if (message.body().containsField("type") && message.body().getString("type").equals("sketch")) {
+            doSketchQuery(message);
+          } else {
+            super.handleNodeMessage(message);
+          }
+          break;
+        default:
+          super.handleNodeMessage(message);
+      }
+    }
+  }
+
+  /**
+   * Gets multiple keys from a map.
+   */
+  private void doMapGetAll(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    JsonArray keys = message.body().getArray("keys");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (keys == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No keys specified."));
+    } else {
+      Map<Object, Object> map = manager.<Object, Object>getMap(name);
+      JsonArray results = new JsonArray();
+      for (Object key : keys) {
+        Object value = map.get(key);
+        if (value != null) {
+          results.addObject(new JsonObject().putValue("key", key).putValue("value", value));
+        }
+      }
+      message.reply(new JsonObject().putString("status", "ok").putArray("result", results));
+    }
+  }
+
+  /**
+   * Puts multiple entries in a map.
+   */
+  private void doMapPutAll(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    JsonArray entries = message.body().getArray("entries");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (entries == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No entries specified."));
+    } else {
+      // Entries are written to the cluster map in a single call so that
+      // clustered maps can write the entries in a batch.
+      Map<Object, Object> values = new HashMap<>();
+      for (Object entry : entries) {
+        values.put(((JsonObject) entry).getValue("key"), ((JsonObject) entry).getValue("value"));
+      }
+      Map<Object, Object> map = manager.<Object, Object>getMap(name);
+
+      // Previous values are only needed to determine the type of event to
+      // publish, so they're only loaded if the map is being watched.
+      Map<Object, Boolean> watched = new HashMap<>();
+      if (publisher().isWatched(name)) {
+        for (Object key : values.keySet()) {
+          watched.put(key, map.containsKey(key));
+        }
+      }
+
+      map.putAll(values);
+      removeExpirations(name, values.keySet());
+      if (persistence != null) {
+        persistence.logPutAll(name, values);
+      }
+      message.reply(new JsonObject().putString("status", "ok"));
+      for (Map.Entry<Object, Boolean> entry : watched.entrySet()) {
+        publisher().publish(name, entry.getKey(), entry.getValue() ? MapEvent.Type.UPDATE : MapEvent.Type.CREATE, values.get(entry.getKey()));
+      }
+    }
+  }
+
+  /**
+   * Removes multiple keys from a map.
+   */
+  private void doMapRemoveAll(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    JsonArray keys = message.body().getArray("keys");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (keys == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No keys specified."));
+    } else {
+      Map<Object, Object> map = manager.<Object, Object>getMap(name);
+      JsonArray results = new JsonArray();
+      for (Object key : keys) {
+        Object value = map.remove(key);
+        if (value != null) {
+          results.addObject(new JsonObject().putValue("key", key).putValue("value", value));
+          publisher().publish(name, key, MapEvent.Type.DELETE, value);
+        }
+      }
+      removeExpirations(name, keys.toList());
+      if (persistence != null) {
+        persistence.logRemoveAll(name, keys.toList());
+      }
+      message.reply(new JsonObject().putString("status", "ok").putArray("result", results));
+    }
+  }
+
+  /**
+   * Puts a key in a map.
+   */
+  private void doMapPut(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Object key = message.body().getValue("key");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (key == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No key specified."));
+    } else {
+      Object value = message.body().getValue("value");
+      long ttl = message.body().getLong("ttl", 0);
+      Object result = manager.<Object, Object>getMap(name).put(key, value);
+
+      // Putting a key replaces any time to live set by a previous put.
+      if (ttl > 0) {
+        long deadline = System.currentTimeMillis() + ttl;
+        indexExpirations(name);
+        expirations(name).put(key, deadline);
+        if (persistence != null) {
+          persistence.logPut(name, key, value, deadline);
+        }
+        scheduleExpiration(new Expiration(name, key, deadline));
+      } else {
+        if (hasExpirations(name)) {
+          expirations(name).remove(key);
+        }
+        if (persistence != null) {
+          persistence.logPut(name, key, value, 0);
+        }
+      }
+      message.reply(new JsonObject().putString("status", "ok").putValue("result", result));
+      publisher().publish(name, key, result == null ? MapEvent.Type.CREATE : MapEvent.Type.UPDATE, value);
+    }
+  }
+
+  /**
+   * Removes a key from a map.
+   */
+  private void doMapRemove(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Object key = message.body().getValue("key");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (key == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No key specified."));
+    } else {
+      Object result = manager.<Object, Object>getMap(name).remove(key);
+      if (hasExpirations(name)) {
+        expirations(name).remove(key);
+      }
+      if (persistence != null) {
+        persistence.logRemove(name, key);
+      }
+      message.reply(new JsonObject().putString("status", "ok").putValue("result", result));
+      publisher().publish(name, key, MapEvent.Type.DELETE, result);
+    }
+  }
+
+  /**
+   * Puts a key in a map if the key is not already set.
+   */
+  private void doMapPutIfAbsent(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Object key = message.body().getValue("key");
+    Object value = message.body().getValue("value");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (key == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No key specified."));
+    } else if (value == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No value specified."));
+    } else {
+      Map<Object, Object> map = manager.<Object, Object>getMap(name);
+      Object result = SharedMaps.putIfAbsent(map, key, value);
+
+      if (result == null) {
+        if (hasExpirations(name)) {
+          expirations(name).remove(key);
+        }
+        if (persistence != null) {
+          persistence.logPut(name, key, value, 0);
+        }
+      }
+      message.reply(new JsonObject().putString("status", "ok").putValue("result", result));
+      if (result == null) {
+        publisher().publish(name, key, MapEvent.Type.CREATE, value);
+      }
+    }
+  }
+
+  /**
+   * Replaces a key in a map if the key's current value is the expected value.
+   */
+  private void doMapReplace(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Object key = message.body().getValue("key");
+    Object expect = message.body().getValue("expect");
+    Object value = message.body().getValue("value");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (key == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No key specified."));
+    } else if (expect == null || value == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No value specified."));
+    } else {
+      boolean replaced = SharedMaps.replace(manager.<Object, Object>getMap(name), key, expect, value);
+      if (replaced) {
+        if (hasExpirations(name)) {
+          expirations(name).remove(key);
+        }
+        if (persistence != null) {
+          persistence.logPut(name, key, value, 0);
+        }
+      }
+      message.reply(new JsonObject().putString("status", "ok").putBoolean("result", replaced));
+      if (replaced) {
+        publisher().publish(name, key, MapEvent.Type.UPDATE, value);
+      }
+    }
+  }
+
+  /**
+   * Computes a new value for a key in a map if the key is set.<p>
+   *
+   * The function is applied to the current value and the result is written
+   * back with a compare-and-set, retrying if the value was changed through
+   * another agent in the meantime.
+   */
+  @SuppressWarnings("unchecked")
+  private void doMapComputeIfPresent(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Object key = message.body().getValue("key");
+    JsonObject jsonFunction = message.body().getObject("function");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (key == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No key specified."));
+    } else if (jsonFunction == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No function specified."));
+    } else {
+      MapFunction<Object, Object> function;
+      try {
+        function = functionSerializer.deserializeObject(jsonFunction, MapFunction.class);
+      } catch (SerializationException e) {
+        message.reply(new JsonObject().putString("status", "error").putString("message", e.getMessage()));
+        return;
+      }
+
+      Map<Object, Object> map = manager.<Object, Object>getMap(name);
+      while (true) {
+        Object current = map.get(key);
+        if (current == null) {
+          message.reply(new JsonObject().putString("status", "ok"));
+          return;
+        }
+
+        Object value;
+        try {
+          value = function.apply(key, current);
+        } catch (Exception e) {
+          message.reply(new JsonObject().putString("status", "error").putString("message", e.getMessage()));
+          return;
+        }
+
+        if (value == null) {
+          if (SharedMaps.remove(map, key, current)) {
+            if (hasExpirations(name)) {
+              expirations(name).remove(key);
+            }
+            if (persistence != null) {
+              persistence.logRemove(name, key);
+            }
+            message.reply(new JsonObject().putString("status", "ok"));
+            publisher().publish(name, key, MapEvent.Type.DELETE, current);
+            return;
+          }
+        } else if (SharedMaps.replace(map, key, current, value)) {
+          if (persistence != null) {
+            // Computing a value doesn't change the key's time to live.
+            Long deadline = hasExpirations(name) ? expirations(name).get(key) : null;
+            persistence.logPut(name, key, value, deadline != null ? deadline : 0);
+          }
+          message.reply(new JsonObject().putString("status", "ok").putValue("result", value));
+          publisher().publish(name, key, MapEvent.Type.UPDATE, value);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers or renews a watch on a map.
+   */
+  private void doMapWatch(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    String owner = message.body().getString("owner");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (owner == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No watch owner specified."));
+    } else {
+      publisher().watch(name, owner);
+      message.reply(new JsonObject().putString("status", "ok"));
+    }
+  }
+
+  /**
+   * Unregisters a watch on a map.
+   */
+  private void doMapUnwatch(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    String owner = message.body().getString("owner");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No map name specified."));
+    } else if (owner == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No watch owner specified."));
+    } else {
+      publisher().unwatch(name, owner);
+      message.reply(new JsonObject().putString("status", "ok"));
+    }
+  }
+
+  /**
+   * Returns the registry of key expiration deadlines for a map.<p>
+   *
+   * The registry is shared by all agents in the cluster and is keyed by the
+   * map's keys. An agent's timer only removes a key if the key's deadline in
+   * the registry is still the deadline the timer was scheduled for, so keys
+   * that were put again or removed through another agent aren't expired by
+   * a stale timer.
+   */
+  private Map<Object, Long> expirations(String name) {
+    return manager.<Object, Long>getMap(String.format("%s.%s", EXPIRATIONS_MAP, name));
+  }
+
+  /**
+   * Returns the index of maps that have expiration registries.
+   */
+  private Map<String, Boolean> expirationIndex() {
+    return manager.<String, Boolean>getMap(EXPIRATIONS_MAP);
+  }
+
+  /**
+   * Adds a map to the index of maps that have expiration registries.<p>
+   *
+   * Maps are never removed from the index since another agent may be
+   * registering an expiration in the map at the same time.
+   */
+  private void indexExpirations(String name) {
+    if (indexedExpirations.add(name)) {
+      expirationIndex().put(name, true);
+    }
+  }
+
+  /**
+   * Returns whether keys in a map may have expiration deadlines.<p>
+   *
+   * A map's registry is only touched if the map is in the expiration index,
+   * so puts and removes on maps that never had a time to live don't cost an
+   * extra round trip to the cluster. Puts with a time to live are sent to the
+   * agent that owns the key, and that agent indexes the map itself, so in a
+   * clustered Vert.x instance the index is mirrored locally and refreshed with
+   * each partition heartbeat. In a non-clustered Vert.x instance local maps
+   * index maps directly, but the index is local too, so it's simply read.
+   */
+  private boolean hasExpirations(String name) {
+    if (indexedExpirations.contains(name)) {
+      return true;
+    } else if (!clustered && expirationIndex().containsKey(name)) {
+      indexedExpirations.add(name);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Refreshes the local mirror of the expiration index.
+   */
+  private void refreshExpirationIndex() {
+    indexedExpirations.addAll(expirationIndex().keySet());
+  }
+
+  /**
+   * Starts expiring keys owned by this agent.<p>
+   *
+   * The agent that accepts a put with a time to live expires the key with
+   * a local timer, but that timer is lost if the agent fails. The deadlines
+   * in the shared expiration registries are therefore the source of truth,
+   * and whenever the cluster's partitions change the partition that owns
+   * a key schedules its expiration.<p>
+   *
+   * In a non-clustered Vert.x instance keys put through a local map are
+   * expired by a timer on the caller's context, which is lost if the caller
+   * is undeployed without any change in partitions, so registries are also
+   * swept periodically for keys whose deadlines have passed. Registries are
+   * in memory in that case. Clustered instances don't sweep since reading
+   * every registry would cost network reads for every key with a time to live.
+   */
+  private void startExpirations() {
+    checkPartitions();
+    if (!clustered) {
+      expirationTimer = vertx.setPeriodic(EXPIRATION_SWEEP_INTERVAL, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          sweepExpirations();
+        }
+      });
+    }
+  }
+
+  /**
+   * Schedules expirations for all registered keys owned by this agent.<p>
+   *
+   * Expirations that were already scheduled by this agent are scheduled
+   * again, but since keys are removed conditionally an expiration never
+   * removes a key more than once.
+   */
+  private void scheduleExpirations() {
+    refreshExpirationIndex();
+    for (String name : new ArrayList<>(indexedExpirations)) {
+      for (Map.Entry<Object, Long> entry : new ArrayList<>(expirations(name).entrySet())) {
+        if (address.equals(ring.get(PartitionRouter.partitionKey(name, entry.getKey())))) {
+          scheduleExpiration(new Expiration(name, entry.getKey(), entry.getValue()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Expires all registered keys owned by this agent whose deadlines have passed.
+   */
+  private void sweepExpirations() {
+    long now = System.currentTimeMillis();
+    for (String name : new ArrayList<>(expirationIndex().keySet())) {
+      for (Map.Entry<Object, Long> entry : new ArrayList<>(expirations(name).entrySet())) {
+        if (entry.getValue() <= now && address.equals(ring.get(PartitionRouter.partitionKey(name, entry.getKey())))) {
+          doExpire(new Expiration(name, entry.getKey(), entry.getValue()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Schedules a key to be expired at its deadline.
+   */
+  private void scheduleExpiration(final Expiration expiration) {
+    TimerWheel.getInstance(vertx).schedule(expiration.deadline - System.currentTimeMillis(), new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        doExpire(expiration);
+      }
+    });
+  }
+
+  /**
+   * Removes the expiration deadlines for a set of keys.
+   */
+  private void removeExpirations(String name, Collection<?> keys) {
+    if (hasExpirations(name)) {
+      Map<Object, Long> expirations = expirations(name);
+      for (Object key : keys) {
+        expirations.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Removes an expired key from a map.<p>
+   *
+   * The key is only removed if its deadline is unchanged and only if it
+   * still has the value it had when its deadline was removed, so a put that
+   * lands while the key is being expired is never lost.
+   */
+  private void doExpire(Expiration expiration) {
+    Map<Object, Object> map = manager.<Object, Object>getMap(expiration.name);
+    Object value = map.get(expiration.key);
+    if (value != null && SharedMaps.remove(expirations(expiration.name), expiration.key, expiration.deadline)
+        && SharedMaps.remove(map, expiration.key, value)) {
+      if (persistence != null) {
+        persistence.logRemove(expiration.name, expiration.key);
+      }
+      publisher().publish(expiration.name, expiration.key, MapEvent.Type.DELETE, value);
+    }
+  }
+
+  /**
+   * A scheduled key expiration.
+   */
+  private static class Expiration {
+    private final String name;
+    private final Object key;
+    private final long deadline;
+
+    private Expiration(String name, Object key, long deadline) {
+      this.name = name;
+      this.key = key;
+      this.deadline = deadline;
+    }
+  }
+
+  /**
+   * Returns the map event publisher.
+   */
+  private MapEventPublisher publisher() {
+    if (publisher == null) {
+      publisher = new MapEventPublisher(vertx) {
+        @Override
+        protected <K, V> Map<K, V> getMap(String name) {
+          return manager.<K, V>getMap(name);
+        }
+      };
+    }
+    return publisher;
+  }
+
+  /**
+   * Gets the current value of a counter.
+   */
+  private void doCounterGet(final Message<JsonObject> message) {
+    final String name = message.body().getString("name");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No counter name specified."));
+    } else {
+      migrateCounter(name, new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> result) {
+          if (result.failed()) {
+            message.reply(new JsonObject().putString("status", "error").putString("message", result.cause().getMessage()));
+          } else {
+            Number value = counters().get(name);
+            message.reply(new JsonObject().putString("status", "ok").putNumber("result", value != null ? value.longValue() : 0));
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Increments a counter.
+   */
+  private void doCounterIncrement(final Message<JsonObject> message) {
+    doCounterAdd(message, 1);
+  }
+
+  /**
+   * Decrements a counter.
+   */
+  private void doCounterDecrement(final Message<JsonObject> message) {
+    doCounterAdd(message, -1);
+  }
+
+  /**
+   * Adds a delta to a counter.
+   */
+  private void doCounterAdd(final Message<JsonObject> message) {
+    Number delta = message.body().getNumber("value");
+    if (delta == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No value specified."));
+    } else {
+      doCounterAdd(message, delta.longValue());
+    }
+  }
+
+  /**
+   * Atomically adds a delta to a counter and replies with the new value.
+   */
+  private void doCounterAdd(final Message<JsonObject> message, final long delta) {
+    final String name = message.body().getString("name");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No counter name specified."));
+    } else {
+      migrateCounter(name, new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> result) {
+          if (result.failed()) {
+            message.reply(new JsonObject().putString("status", "error").putString("message", result.cause().getMessage()));
+          } else {
+            message.reply(new JsonObject().putString("status", "ok").putNumber("result", addCounter(name, delta)));
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Atomically adds a delta to a counter.
+   *
+   * @return The counter's new value.
+   */
+  private long addCounter(String name, long delta) {
+    // Since requests can be handled by any agent in the cluster, the value
+    // is updated with a compare-and-set loop.
+    Map<String, Number> counters = counters();
+    long value;
+    while (true) {
+      Number current = counters.get(name);
+      value = (current != null ? current.longValue() : 0) + delta;
+      if (SharedMaps.<String, Number>compareAndSet(counters, name, current, value)) {
+        break;
+      }
+    }
+    if (persistence != null) {
+      persistence.logPut(countersMap(), name, value, 0);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the name of the cluster's counter map.<p>
+   *
+   * Counters are scoped by cluster so that counters of the same name in
+   * different clusters are independent.
+   */
+  private String countersMap() {
+    return String.format("%s.%s", COUNTERS_MAP, cluster);
+  }
+
+  /**
+   * Returns the cluster's counter map.
+   */
+  private Map<String, Number> counters() {
+    return manager.<String, Number>getMap(countersMap());
+  }
+
+  /**
+   * Migrates a counter from Xync's counter storage if necessary.<p>
+   *
+   * Counters used to be stored by Xync, so the first time a counter is
+   * accessed its value is loaded from Xync and copied to the cluster's
+   * counter map. Once the counter is in the map it's never loaded from
+   * Xync again, and once this agent has seen the counter in the map the map
+   * isn't checked again either. The value is loaded with a <code>legacy</code>
+   * request to this agent's own address, which is passed on to Xync. If the
+   * request fails then the counter is not migrated and the handler is failed,
+   * so the migration is retried on the next request for the counter rather
+   * than losing the stored value.
+   */
+  private void migrateCounter(final String name, final Handler<AsyncResult<Void>> doneHandler) {
+    if (migratedCounters.contains(name)) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    } else if (counters().containsKey(name)) {
+      migratedCounters.add(name);
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    }
+
+    JsonObject request = new JsonObject()
+        .putString("type", "counter")
+        .putString("name", name)
+        .putString("action", "get")
+        .putBoolean("legacy", true);
+    vertx.eventBus().sendWithTimeout(address, request, COUNTER_MIGRATION_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+      @Override
+      public void handle(AsyncResult<Message<JsonObject>> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+          return;
+        }
+
+        JsonObject reply = result.result().body();
+        Number value = "ok".equals(reply.getString("status")) ? reply.getNumber("result") : null;
+        long current = value != null ? value.longValue() : 0;
+        // If the counter was migrated by another agent in the meantime then
+        // its value already includes the value stored by Xync.
+        if (SharedMaps.putIfAbsent(counters(), name, current) == null && persistence != null) {
+          persistence.logPut(countersMap(), name, current, 0);
+        }
+        migratedCounters.add(name);
+        new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      }
+    });
+  }
+
+  /**
+   * Opens a cursor over a map, set or list and replies with the first page.
+   */
+  private void doScan(final Message<JsonObject> message) {
+    String type = message.body().getString("type");
+    String name = message.body().getString("name");
+    Number count = message.body().getNumber("count");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No name specified."));
+    } else if (count == null || count.intValue() < 1) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No count specified."));
+    } else {
+      final ScanCursor cursor = new ScanCursor();
+      cursor.id = UUID.randomUUID().toString();
+      cursor.count = count.intValue();
+      switch (type) {
+        case "map":
+          cursor.map = manager.<Object, Object>getMap(name);
+          cursor.iterator = cursor.map.keySet().iterator();
+          break;
+        case "set":
+          cursor.iterator = manager.<Object>getSet(name).iterator();
           break;
-        case "undeploy":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doUndeployNetwork(message);
-          } else {
-            super.handleClusterMessage(message);
-          }
+        case "list":
+          cursor.iterator = manager.<Object>getList(name).iterator();
           break;
-        default:
-          super.handleClusterMessage(message);
       }
+      doScanPage(cursor, message);
     }
   }
 
-  @Override
-  protected void handleNodeMessage(final Message<JsonObject> message) {
-    String action = message.body().getString("action");
-    if (action != null) {
-      switch (action) {
-        case "list":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doListNetworks(message);
+  /**
+   * Reads the next page from a cursor.<p>
+   *
+   * If the cursor has more elements after the page then the cursor is held
+   * open and the reply includes the cursor ID and the agent's scan address
+   * so that following pages are read from this agent.
+   */
+  private void doScanPage(final ScanCursor cursor, final Message<JsonObject> message) {
+    JsonArray results = new JsonArray();
+    int read = 0;
+    while (read < cursor.count && cursor.iterator.hasNext()) {
+      Object value = cursor.iterator.next();
+      if (cursor.map != null) {
+        // The key may have been removed since the key set was read.
+        Object mapValue = cursor.map.get(value);
+        if (mapValue != null) {
+          results.addObject(new JsonObject().putValue("key", value).putValue("value", mapValue));
+          read++;
+        }
+      } else {
+        results.add(value);
+        read++;
+      }
+    }
+
+    JsonObject reply = new JsonObject().putString("status", "ok").putArray("result", results);
+    if (cursor.iterator.hasNext()) {
+      if (!scanCursors.containsKey(cursor.id)) {
+        scanCursors.put(cursor.id, cursor);
+      } else {
+        vertx.cancelTimer(cursor.timerID);
+      }
+      cursor.timerID = vertx.setTimer(SCAN_CURSOR_TIMEOUT, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          scanCursors.remove(cursor.id);
+        }
+      });
+      reply.putString("cursor", cursor.id).putString("address", scanAddress());
+    } else if (scanCursors.remove(cursor.id) != null) {
+      vertx.cancelTimer(cursor.timerID);
+    }
+    message.reply(reply);
+  }
+
+  /**
+   * Returns the address at which this agent's open cursors are read,
+   * registering the cursor handler on first use.
+   */
+  private String scanAddress() {
+    if (scanAddress == null) {
+      scanAddress = String.format("%s.scan.%s", cluster, UUID.randomUUID().toString());
+      vertx.eventBus().registerHandler(scanAddress, new Handler<Message<JsonObject>>() {
+        @Override
+        public void handle(Message<JsonObject> message) {
+          String action = message.body().getString("action");
+          ScanCursor cursor = scanCursors.get(message.body().getString("cursor"));
+          if (action == null) {
+            message.reply(new JsonObject().putString("status", "error").putString("message", "No action specified."));
+          } else if (action.equals("next")) {
+            if (cursor == null) {
+              message.reply(new JsonObject().putString("status", "error").putString("message", "Invalid cursor."));
+            } else {
+              doScanPage(cursor, message);
+            }
+          } else if (action.equals("close")) {
+            if (cursor != null) {
+              scanCursors.remove(cursor.id);
+              vertx.cancelTimer(cursor.timerID);
+            }
+            message.reply(new JsonObject().putString("status", "ok"));
           } else {
-            super.handleClusterMessage(message);
+            message.reply(new JsonObject().putString("status", "error").putString("message", "Invalid action " + action));
           }
-          break;
-        case "check":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doIsDeployedNetwork(message);
-          } else {
-            super.handleNodeMessage(message);
+        }
+      });
+    }
+    return scanAddress;
+  }
+
+  /**
+   * An open cursor over a map, set or list.
+   */
+  private static class ScanCursor {
+    private String id;
+    private int count;
+    private Map<Object, Object> map;
+    private Iterator<Object> iterator;
+    private long timerID;
+  }
+
+  /**
+   * Polls a queue, waiting for an element if the queue is empty.
+   */
+  private void doQueuePoll(final Message<JsonObject> message) {
+    doQueueTake(message, 1, true);
+  }
+
+  /**
+   * Drains up to a maximum number of elements from a queue.
+   */
+  private void doQueueDrain(final Message<JsonObject> message) {
+    Number max = message.body().getNumber("max");
+    if (max == null || max.intValue() < 1) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No maximum specified."));
+    } else {
+      doQueueTake(message, max.intValue(), false);
+    }
+  }
+
+  /**
+   * Takes elements from a queue, parking the request if the queue is empty.
+   */
+  private void doQueueTake(final Message<JsonObject> message, int max, boolean single) {
+    String name = message.body().getString("name");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No queue name specified."));
+      return;
+    }
+
+    // If there are already requests waiting on the queue then this request
+    // must wait behind them in order to ensure elements are taken fairly.
+    Deque<QueueWaiter> waiters = queueWaiters.get(name);
+    long timeout = message.body().getLong("timeout", 0);
+    if (waiters == null || waiters.isEmpty()) {
+      JsonArray results = takeQueueElements(name, max);
+      if (results.size() > 0 || timeout <= 0) {
+        replyQueueElements(message, results, single);
+        return;
+      }
+    } else if (timeout <= 0) {
+      replyQueueElements(message, new JsonArray(), single);
+      return;
+    }
+
+    final QueueWaiter waiter = new QueueWaiter();
+    waiter.name = name;
+    waiter.message = message;
+    waiter.max = max;
+    waiter.single = single;
+    waiter.timerID = vertx.setTimer(timeout, new Handler<Long>() {
+      @Override
+      public void handle(Long timerID) {
+        Deque<QueueWaiter> waiters = queueWaiters.get(waiter.name);
+        if (waiters != null && waiters.remove(waiter)) {
+          if (waiters.isEmpty()) {
+            queueWaiters.remove(waiter.name);
           }
+          replyQueueElements(waiter.message, new JsonArray(), waiter.single);
+          checkQueueTimer();
+        }
+      }
+    });
+    if (waiters == null) {
+      waiters = new ArrayDeque<>();
+      queueWaiters.put(name, waiters);
+    }
+    waiters.add(waiter);
+    checkQueueTimer();
+  }
+
+  /**
+   * Completes any waiting requests for which elements are now available,
+   * including requests waiting on local queues in this Vert.x instance.
+   */
+  private void checkQueueWaiters(String name) {
+    LocalAsyncQueue.signal(vertx, cluster, name);
+    Deque<QueueWaiter> waiters = queueWaiters.get(name);
+    if (waiters != null) {
+      while (!waiters.isEmpty()) {
+        QueueWaiter waiter = waiters.peek();
+        JsonArray results = takeQueueElements(name, waiter.max);
+        if (results.size() == 0) {
           break;
-        case "load":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doLoadNetwork(message);
-          } else {
-            super.handleNodeMessage(message);
+        }
+        waiters.poll();
+        vertx.cancelTimer(waiter.timerID);
+        replyQueueElements(waiter.message, results, waiter.single);
+      }
+      if (waiters.isEmpty()) {
+        queueWaiters.remove(name);
+      }
+      checkQueueTimer();
+    }
+  }
+
+  /**
+   * Starts or stops the timer that checks queues with waiting requests.<p>
+   *
+   * Elements added to the queue through this agent complete waiting requests
+   * immediately, but elements may also be added through other agents in the
+   * cluster, so queues with waiting requests are also checked periodically.
+   */
+  private void checkQueueTimer() {
+    if (!queueWaiters.isEmpty() && queueTimer == -1) {
+      queueTimer = vertx.setPeriodic(QUEUE_CHECK_INTERVAL, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          for (String name : new ArrayList<>(queueWaiters.keySet())) {
+            checkQueueWaiters(name);
           }
+        }
+      });
+    } else if (queueWaiters.isEmpty() && queueTimer != -1) {
+      vertx.cancelTimer(queueTimer);
+      queueTimer = -1;
+    }
+  }
+
+  /**
+   * Takes up to a maximum number of elements from a queue.
+   */
+  private JsonArray takeQueueElements(String name, int max) {
+    Queue<Object> queue = manager.<Object>getQueue(name);
+    JsonArray results = new JsonArray();
+    // Local queues in the same Vert.x instance synchronize on the queue too.
+    synchronized (queue) {
+      for (int i = 0; i < max; i++) {
+        Object value = queue.poll();
+        if (value == null) {
           break;
-        case "deploy":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doDeployNetwork(message);
-          } else {
-            super.handleNodeMessage(message);
+        }
+        results.add(value);
+      }
+    }
+    if (persistence != null && results.size() > 0) {
+      persistence.logPoll(name, results.size());
+    }
+    return results;
+  }
+
+  /**
+   * Replies to a queue request with the taken elements.
+   */
+  private void replyQueueElements(Message<JsonObject> message, JsonArray results, boolean single) {
+    if (single) {
+      message.reply(new JsonObject().putString("status", "ok").putValue("result", results.size() > 0 ? results.get(0) : null));
+    } else {
+      message.reply(new JsonObject().putString("status", "ok").putArray("result", results));
+    }
+  }
+
+  /**
+   * A request waiting for elements to be added to a queue.
+   */
+  private static class QueueWaiter {
+    private String name;
+    private Message<JsonObject> message;
+    private int max;
+    private boolean single;
+    private long timerID;
+  }
+
+  /**
+   * Returns the cluster's shared lock state map.
+   */
+  private Map<String, String> locks() {
+    return manager.<String, String>getMap(String.format("%s.%s", LOCKS_MAP, cluster));
+  }
+
+  /**
+   * Acquires a lock, parking the request if the lock is held.
+   */
+  private void doLockAcquire(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    long lease = message.body().getLong("lease", 0);
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No lock name specified."));
+      return;
+    } else if (lease <= 0) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No lease specified."));
+      return;
+    }
+
+    // If there are already requests waiting on the lock then this request
+    // must wait behind them so that the lock is granted fairly.
+    Deque<LockWaiter> waiters = lockWaiters.get(name);
+    long timeout = message.body().getLong("timeout", 0);
+    if (waiters == null || waiters.isEmpty()) {
+      Long token = LockState.tryAcquire(locks(), name, lease);
+      if (token != null) {
+        scheduleLockExpiration(name, lease);
+        message.reply(new JsonObject().putString("status", "ok").putNumber("result", token));
+        return;
+      }
+    }
+
+    if (timeout <= 0) {
+      message.reply(new JsonObject().putString("status", "ok").putValue("result", null));
+      return;
+    }
+
+    final LockWaiter waiter = new LockWaiter();
+    waiter.name = name;
+    waiter.message = message;
+    waiter.lease = lease;
+    waiter.timerID = vertx.setTimer(timeout, new Handler<Long>() {
+      @Override
+      public void handle(Long timerID) {
+        Deque<LockWaiter> waiters = lockWaiters.get(waiter.name);
+        if (waiters != null && waiters.remove(waiter)) {
+          if (waiters.isEmpty()) {
+            lockWaiters.remove(waiter.name);
           }
+          waiter.message.reply(new JsonObject().putString("status", "ok").putValue("result", null));
+          checkLockTimer();
+        }
+      }
+    });
+    if (waiters == null) {
+      waiters = new ArrayDeque<>();
+      lockWaiters.put(name, waiters);
+    }
+    waiters.add(waiter);
+    checkLockTimer();
+  }
+
+  /**
+   * Renews the lease on a held lock.
+   */
+  private void doLockRenew(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Long token = message.body().getLong("token");
+    long lease = message.body().getLong("lease", 0);
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No lock name specified."));
+    } else if (token == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No token specified."));
+    } else if (lease <= 0) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No lease specified."));
+    } else {
+      boolean renewed = LockState.renew(locks(), name, token, lease);
+      if (renewed) {
+        scheduleLockExpiration(name, lease);
+      }
+      message.reply(new JsonObject().putString("status", "ok").putBoolean("result", renewed));
+    }
+  }
+
+  /**
+   * Releases a held lock and hands it to the next waiting request.
+   */
+  private void doLockRelease(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    Long token = message.body().getLong("token");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No lock name specified."));
+    } else if (token == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No token specified."));
+    } else {
+      boolean released = LockState.release(locks(), name, token);
+      message.reply(new JsonObject().putString("status", "ok").putBoolean("result", released));
+      if (released) {
+        checkLockWaiters(name);
+      }
+    }
+  }
+
+  /**
+   * Schedules a check for waiting requests once a lease expires.
+   */
+  private void scheduleLockExpiration(final String name, long lease) {
+    TimerWheel.getInstance(vertx).schedule(lease + 1, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        checkLockWaiters(name);
+      }
+    });
+  }
+
+  /**
+   * Grants a lock to waiting requests while the lock is available.
+   */
+  private void checkLockWaiters(String name) {
+    Deque<LockWaiter> waiters = lockWaiters.get(name);
+    if (waiters != null) {
+      while (!waiters.isEmpty()) {
+        LockWaiter waiter = waiters.peek();
+        Long token = LockState.tryAcquire(locks(), name, waiter.lease);
+        if (token == null) {
           break;
-        case "undeploy":
-          if (message.body().containsField("type") && message.body().getString("type").equals("network")) {
-            doUndeployNetwork(message);
-          } else {
-            super.handleNodeMessage(message);
+        }
+        waiters.poll();
+        vertx.cancelTimer(waiter.timerID);
+        scheduleLockExpiration(name, waiter.lease);
+        waiter.message.reply(new JsonObject().putString("status", "ok").putNumber("result", token));
+      }
+      if (waiters.isEmpty()) {
+        lockWaiters.remove(name);
+      }
+      checkLockTimer();
+    }
+  }
+
+  /**
+   * Starts or stops the timer that checks locks with waiting requests.<p>
+   *
+   * Locks released or expired through this agent are handed off immediately,
+   * but locks may also be released through other agents in the cluster, so
+   * locks with waiting requests are also checked periodically.
+   */
+  private void checkLockTimer() {
+    if (!lockWaiters.isEmpty() && lockTimer == -1) {
+      lockTimer = vertx.setPeriodic(LOCK_CHECK_INTERVAL, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          for (String name : new ArrayList<>(lockWaiters.keySet())) {
+            checkLockWaiters(name);
           }
-          break;
-        default:
-          super.handleNodeMessage(message);
+        }
+      });
+    } else if (lockWaiters.isEmpty() && lockTimer != -1) {
+      vertx.cancelTimer(lockTimer);
+      lockTimer = -1;
+    }
+  }
+
+  /**
+   * A request waiting to acquire a lock.
+   */
+  private static class LockWaiter {
+    private String name;
+    private Message<JsonObject> message;
+    private long lease;
+    private long timerID;
+  }
+
+  /**
+   * Returns the name of the cluster's sketch map.<p>
+   *
+   * Sketches are scoped by cluster so that sketches of the same name in
+   * different clusters aren't merged into each other.
+   */
+  private String sketchesMap() {
+    return String.format("%s.%s", SKETCHES_MAP, cluster);
+  }
+
+  /**
+   * Returns the cluster's sketch map.
+   */
+  private Map<String, String> sketches() {
+    return manager.<String, String>getMap(sketchesMap());
+  }
+
+  /**
+   * Merges a batch into a sketch.
+   */
+  private void doSketchMerge(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    JsonObject batch = message.body().getObject("sketch");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No sketch name specified."));
+    } else if (batch == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No sketch specified."));
+    } else {
+      String merged;
+      try {
+        merged = SketchState.merge(sketches(), name, Sketch.fromJson(batch));
+      } catch (IllegalArgumentException e) {
+        message.reply(new JsonObject().putString("status", "error").putString("message", e.getMessage()));
+        return;
+      }
+      if (persistence != null) {
+        persistence.logPut(sketchesMap(), name, merged, 0);
+      }
+      message.reply(new JsonObject().putString("status", "ok"));
+    }
+  }
+
+  /**
+   * Queries a sketch.
+   */
+  private void doSketchQuery(final Message<JsonObject> message) {
+    String name = message.body().getString("name");
+    JsonObject template = message.body().getObject("sketch");
+    if (name == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No sketch name specified."));
+    } else if (template == null) {
+      message.reply(new JsonObject().putString("status", "error").putString("message", "No sketch specified."));
+    } else {
+      Object result;
+      try {
+        result = SketchState.query(sketches(), name, Sketch.fromJson(template), message.body().getString("item"));
+      } catch (IllegalArgumentException e) {
+        message.reply(new JsonObject().putString("status", "error").putString("message", e.getMessage()));
+        return;
       }
+      message.reply(new JsonObject().putString("status", "ok").putValue("result", result));
     }
   }
 
@@ -557,11 +2298,11 @@ public class ClusterAgent extends Xync {
     }
   }
 
-  private static class WrappedWatchableMap<K, V> implements Map<K, V> {
+  private class WrappedWatchableMap<K, V> implements Map<K, V> {
     private final String name;
     private final Map<K, V> map;
     private final EventBus eventBus;
-    private final Map<MapEvent.Type, Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>>> watchHandlers = new HashMap<>();
+    private final Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>> watchHandlers = new HashMap<>();
 
     public WrappedWatchableMap(String name, Map<K, V> map, Vertx vertx) {
       this.name = name;
@@ -597,40 +2338,37 @@ public class ClusterAgent extends Xync {
     @Override
     public V put(K key, V value) {
       V result = map.put(key, value);
-      eventBus.publish(String.format("%s.%s.%s", name, key, MapEvent.Type.CHANGE.toString()), new JsonObject()
-          .putString("type", MapEvent.Type.CHANGE.toString())
-          .putValue("key", key)
-          .putValue("value", value));
-      String event = result == null ? MapEvent.Type.CREATE.toString() : MapEvent.Type.UPDATE.toString();
-      eventBus.publish(String.format("%s.%s.%s", name, key, event), new JsonObject()
-          .putString("type", event)
-          .putValue("key", key)
-          .putValue("value", value));
+      if (persistence != null) {
+        persistence.logPut(name, key, value, 0);
+      }
+      publisher().publish(name, key, result == null ? MapEvent.Type.CREATE : MapEvent.Type.UPDATE, value);
       return result;
     }
 
     @Override
     public V remove(Object key) {
       V result = map.remove(key);
-      eventBus.publish(String.format("%s.%s.%s", name, key, MapEvent.Type.CHANGE.toString()), new JsonObject()
-          .putString("type", MapEvent.Type.CHANGE.toString())
-          .putValue("key", key)
-          .putValue("value", result));
-      eventBus.publish(String.format("%s.%s.%s", name, key, MapEvent.Type.DELETE.toString()), new JsonObject()
-          .putString("type", MapEvent.Type.DELETE.toString())
-          .putValue("key", key)
-          .putValue("value", result));
+      if (persistence != null) {
+        persistence.logRemove(name, key);
+      }
+      publisher().publish(name, key, MapEvent.Type.DELETE, result);
       return result;
     }
 
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
       map.putAll(m);
+      if (persistence != null) {
+        persistence.logPutAll(name, m);
+      }
     }
 
     @Override
     public void clear() {
       map.clear();
+      if (persistence != null) {
+        persistence.logClear(name);
+      }
     }
 
     @Override
@@ -649,60 +2387,36 @@ public class ClusterAgent extends Xync {
     }
 
     public void watch(final K key, final MapEvent.Type event, final Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-      if (event == null) {
-        final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(4).setHandler(doneHandler);
-        addWatcher(key, MapEvent.Type.CHANGE, handler, counter);
-        addWatcher(key, MapEvent.Type.CREATE, handler, counter);
-        addWatcher(key, MapEvent.Type.UPDATE, handler, counter);
-        addWatcher(key, MapEvent.Type.DELETE, handler, counter);
-      } else {
-        addWatcher(key, event, handler, doneHandler);
-      }
-    }
-
-    private void addWatcher(K key, final MapEvent.Type event, final Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-      Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>> watchHandlers = this.watchHandlers.get(event);
-      if (watchHandlers == null) {
-        watchHandlers = new HashMap<>();
-        this.watchHandlers.put(event, watchHandlers);
-      }
-
-      Handler<Message<JsonObject>> wrappedHandler;
-      if (!watchHandlers.containsKey(handler)) {
-        wrappedHandler = new Handler<Message<JsonObject>>() {
-          @Override
-          public void handle(Message<JsonObject> message) {
-            K key = message.body().getValue("key");
-            V value = message.body().getValue("value");
-            handler.handle(new MapEvent<K, V>(event, key, value));
+      // Register the watch before registering the handler so that any change
+      // that occurs once the handler is registered will be published.
+      publisher().addLocalWatch(name);
+      Handler<Message<JsonObject>> wrappedHandler = new Handler<Message<JsonObject>>() {
+        @Override
+        public void handle(Message<JsonObject> message) {
+          K eventKey = message.body().getValue("key");
+          if (!String.valueOf(key).equals(String.valueOf(eventKey))) {
+            return;
           }
-        };
-        watchHandlers.put(handler, wrappedHandler);
-      } else {
-        wrappedHandler = watchHandlers.get(handler);
-      }
-      eventBus.registerHandler(String.format("%s.%s.%s", name, key, event.toString()), wrappedHandler, doneHandler);
+          MapEvent.Type type = MapEvent.Type.parse(message.body().getString("type"));
+          V value = message.body().getValue("value");
+          if (event == null || event.equals(type)) {
+            handler.handle(new MapEvent<K, V>(type, eventKey, value));
+          } else if (event.equals(MapEvent.Type.CHANGE)) {
+            handler.handle(new MapEvent<K, V>(MapEvent.Type.CHANGE, eventKey, value));
+          }
+        }
+      };
+      watchHandlers.put(handler, wrappedHandler);
+      eventBus.registerHandler(DefaultAsyncMap.eventAddress(name), wrappedHandler, doneHandler);
     }
 
     public void unwatch(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-      if (event == null) {
-        final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(4).setHandler(doneHandler);
-        removeWatcher(key, MapEvent.Type.CHANGE, handler, counter);
-        removeWatcher(key, MapEvent.Type.CREATE, handler, counter);
-        removeWatcher(key, MapEvent.Type.UPDATE, handler, counter);
-        removeWatcher(key, MapEvent.Type.DELETE, handler, counter);
-      } else {
-        removeWatcher(key, event, handler, doneHandler);
-      }
-    }
-
-    private void removeWatcher(K key, MapEvent.Type event, Handler<MapEvent<K, V>> handler, Handler<AsyncResult<Void>> doneHandler) {
-      Map<Handler<MapEvent<K, V>>, Handler<Message<JsonObject>>> watchHandlers = this.watchHandlers.get(event);
-      if (watchHandlers == null || !watchHandlers.containsKey(handler)) {
+      Handler<Message<JsonObject>> wrappedHandler = watchHandlers.remove(handler);
+      if (wrappedHandler == null) {
         new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
       } else {
-        Handler<Message<JsonObject>> wrappedHandler = watchHandlers.remove(handler);
-        eventBus.unregisterHandler(String.format("%s.%s.%s", name, key, event.toString()), wrappedHandler, doneHandler);
+        publisher().removeLocalWatch(name);
+        eventBus.unregisterHandler(DefaultAsyncMap.eventAddress(name), wrappedHandler, doneHandler);
       }
     }
 
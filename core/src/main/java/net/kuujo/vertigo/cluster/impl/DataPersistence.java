@@ -0,0 +1,667 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+
+import net.kuujo.vertigo.util.SharedMaps;
+import net.kuujo.xync.cluster.XyncClusterManager;
+
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+
+/**
+ * Cluster agent data persistence.<p>
+ *
+ * Each agent appends the mutations it performs on cluster data structures
+ * to its own operation log in the persistence directory. Periodically the
+ * agent writes a compacted snapshot of every persisted data structure and
+ * truncates its log. When a cluster is restarted, the first agent to start
+ * loads the newest snapshot in the directory and replays the logged operations
+ * of all agents that occurred after the snapshot was taken.<p>
+ *
+ * Both logs and snapshots are files of JSON encoded operations, one per line,
+ * so snapshots are recovered by simply replaying them.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+class DataPersistence {
+  private static final Logger log = LoggerFactory.getLogger(DataPersistence.class);
+  private static final String STRUCTURES_SET = "__vertigo.persistence.structures";
+  private static final String RECOVERY_MAP = "__vertigo.persistence";
+  private static final String LOG_SUFFIX = ".log";
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+  private final XyncClusterManager manager;
+  private final String cluster;
+  private final String expirationsMap;
+  private final File directory;
+  private final long interval;
+  private final boolean sync;
+  private final String id = UUID.randomUUID().toString();
+  private final Set<String> structures = new HashSet<>();
+  private FileOutputStream logStream;
+  private Writer logWriter;
+
+  DataPersistence(XyncClusterManager manager, String cluster, String expirationsMap, File directory, long interval, boolean sync) {
+    this.manager = manager;
+    this.cluster = cluster;
+    this.expirationsMap = expirationsMap;
+    this.directory = directory;
+    this.interval = interval;
+    this.sync = sync;
+  }
+
+  /**
+   * Recovers persisted data if this is the first agent to start in the cluster.<p>
+   *
+   * Data is only recovered once per cluster. Agents joining a running cluster
+   * simply open their own log.
+   *
+   * @return A list of <code>name</code>, <code>key</code> and <code>deadline</code>
+   *         objects for recovered map keys that have a time to live.
+   */
+  List<JsonObject> recover() throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Failed to create persistence directory " + directory);
+    }
+
+    List<JsonObject> expirations = new ArrayList<>();
+    if (claimRecovery()) {
+      Map<String, Map<Object, JsonObject>> deadlines = new HashMap<>();
+
+      // Load the newest snapshot and then replay all logged operations that
+      // occurred after it in time order. Logs from agents that were stopped
+      // before the snapshot was taken are skipped entirely.
+      long time = 0;
+      File snapshot = null;
+      File[] files = directory.listFiles();
+      for (File file : files) {
+        if (file.getName().endsWith(SNAPSHOT_SUFFIX)) {
+          List<JsonObject> header = read(file, 1);
+          if (!header.isEmpty() && header.get(0).getLong("snapshot", 0) >= time) {
+            time = header.get(0).getLong("snapshot", 0);
+            snapshot = file;
+          }
+        }
+      }
+
+      if (snapshot != null) {
+        List<JsonObject> operations = read(snapshot, 0);
+        for (JsonObject operation : operations.subList(1, operations.size())) {
+          apply(operation, deadlines);
+        }
+      }
+
+      List<JsonObject> operations = new ArrayList<>();
+      for (File file : files) {
+        if (file.getName().endsWith(LOG_SUFFIX)) {
+          for (JsonObject operation : read(file, 0)) {
+            if (operation.getLong("time", 0) >= time) {
+              operations.add(operation);
+            }
+          }
+        }
+      }
+      Collections.sort(operations, new Comparator<JsonObject>() {
+        @Override
+        public int compare(JsonObject operation1, JsonObject operation2) {
+          return Long.compare(operation1.getLong("time", 0), operation2.getLong("time", 0));
+        }
+      });
+      for (JsonObject operation : operations) {
+        apply(operation, deadlines);
+      }
+
+      for (Map<Object, JsonObject> keys : deadlines.values()) {
+        expirations.addAll(keys.values());
+      }
+    }
+
+    openLog(true);
+    return expirations;
+  }
+
+  /**
+   * Attempts to become the agent that recovers the cluster's data.
+   */
+  private boolean claimRecovery() {
+    Map<String, String> recovery = manager.<String, String>getMap(String.format("%s.%s", RECOVERY_MAP, cluster));
+    return SharedMaps.putIfAbsent(recovery, "recovered", id) == null;
+  }
+
+  /**
+   * Returns the cluster's registry of persisted data structures.<p>
+   *
+   * The registry is scoped by cluster so that each cluster's snapshots only
+   * include its own data structures.
+   */
+  private Set<String> registry() {
+    return manager.<String>getSet(String.format("%s.%s", STRUCTURES_SET, cluster));
+  }
+
+  /**
+   * Reads operations from a file.
+   */
+  private List<JsonObject> read(File file, int max) throws IOException {
+    List<JsonObject> operations = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null && (max == 0 || operations.size() < max)) {
+        if (!line.isEmpty()) {
+          try {
+            operations.add(new JsonObject(line));
+          } catch (RuntimeException e) {
+            // A partially written line at the end of a log is expected if
+            // the agent was killed during a write.
+            log.warn("Skipping corrupt operation in " + file);
+          }
+        }
+      }
+    }
+    return operations;
+  }
+
+  /**
+   * Applies a logged operation to the cluster's data structures.
+   */
+  @SuppressWarnings("unchecked")
+  private void apply(JsonObject operation, Map<String, Map<Object, JsonObject>> deadlines) {
+    String type = operation.getString("type");
+    String name = operation.getString("name");
+    String action = operation.getString("action");
+    if (type == null || name == null || action == null) {
+      return;
+    }
+
+    try {
+      switch (type) {
+        case "map":
+          Map<Object, Object> map = manager.<Object, Object>getMap(name);
+          Map<Object, Long> mapExpirations = manager.<Object, Long>getMap(String.format("%s.%s", expirationsMap, name));
+          Map<Object, JsonObject> mapDeadlines = deadlines.get(name);
+          if (mapDeadlines == null) {
+            mapDeadlines = new HashMap<>();
+            deadlines.put(name, mapDeadlines);
+          }
+          switch (action) {
+            case "put":
+              map.put(operation.getValue("key"), operation.getValue("value"));
+              if (operation.getLong("deadline", 0) > 0) {
+                mapExpirations.put(operation.getValue("key"), operation.getLong("deadline"));
+                mapDeadlines.put(operation.getValue("key"), new JsonObject()
+                    .putString("name", name)
+                    .putValue("key", operation.getValue("key"))
+                    .putNumber("deadline", operation.getLong("deadline")));
+              } else {
+                mapExpirations.remove(operation.getValue("key"));
+                mapDeadlines.remove(operation.getValue("key"));
+              }
+              break;
+            case "putAll":
+              for (Object entry : operation.getArray("entries")) {
+                map.put(((JsonObject) entry).getValue("key"), ((JsonObject) entry).getValue("value"));
+                mapExpirations.remove(((JsonObject) entry).getValue("key"));
+                mapDeadlines.remove(((JsonObject) entry).getValue("key"));
+              }
+              break;
+            case "remove":
+              map.remove(operation.getValue("key"));
+              mapExpirations.remove(operation.getValue("key"));
+              mapDeadlines.remove(operation.getValue("key"));
+              break;
+            case "removeAll":
+              for (Object key : operation.getArray("keys")) {
+                map.remove(key);
+                mapExpirations.remove(key);
+                mapDeadlines.remove(key);
+              }
+              break;
+            case "clear":
+              map.clear();
+              mapExpirations.clear();
+              mapDeadlines.clear();
+              break;
+          }
+          break;
+        case "set":
+          Set<Object> set = manager.<Object>getSet(name);
+          switch (action) {
+            case "add":
+              set.add(operation.getValue("value"));
+              break;
+            case "remove":
+              set.remove(operation.getValue("value"));
+              break;
+            case "clear":
+              set.clear();
+              break;
+          }
+          break;
+        case "list":
+          List<Object> list = manager.<Object>getList(name);
+          switch (action) {
+            case "add":
+              list.add(operation.getValue("value"));
+              break;
+            case "remove":
+              if (operation.containsField("index")) {
+                list.remove(operation.getInteger("index").intValue());
+              } else {
+                list.remove(operation.getValue("value"));
+              }
+              break;
+            case "set":
+              list.set(operation.getInteger("index"), operation.getValue("value"));
+              break;
+            case "clear":
+              list.clear();
+              break;
+          }
+          break;
+        case "queue":
+          Queue<Object> queue = manager.<Object>getQueue(name);
+          switch (action) {
+            case "add":
+              queue.add(operation.getValue("value"));
+              break;
+            case "remove":
+              queue.remove(operation.getValue("value"));
+              break;
+            case "poll":
+              for (int i = 0; i < operation.getInteger("count", 1); i++) {
+                queue.poll();
+              }
+              break;
+            case "clear":
+              queue.clear();
+              break;
+          }
+          break;
+        default:
+          return;
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to recover " + type + " operation " + operation.encode(), e);
+    }
+    register(type, name);
+  }
+
+  /**
+   * Wraps a data request that is handled directly by the Xync agent so that
+   * the request is logged once the agent replies that it succeeded.<p>
+   *
+   * Requests that fail or are rejected must not be replayed on recovery, so
+   * nothing is logged until a reply with an <code>ok</code> status is sent.
+   * Requests that are handled by the Vertigo agent itself are logged by the
+   * agent once the outcome of the request is known, so they're returned as is.
+   */
+  @SuppressWarnings("unchecked")
+  Message<JsonObject> logOnReply(final Message<JsonObject> message) {
+    final JsonObject operation = operation(message.body());
+    if (operation == null) {
+      return message;
+    }
+
+    return (Message<JsonObject>) Proxy.newProxyInstance(Message.class.getClassLoader(), new Class<?>[]{Message.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().startsWith("reply") && args != null && args.length > 0 && args[0] instanceof JsonObject) {
+          JsonObject reply = (JsonObject) args[0];
+          // A poll of an empty queue succeeds without removing anything.
+          if ("ok".equals(reply.getString("status"))
+              && (!operation.getString("action").equals("poll") || reply.getValue("result") != null)) {
+            log(operation);
+          }
+        }
+        try {
+          return method.invoke(message, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the operation to log for a request handled by the Xync agent, or
+   * <code>null</code> if the request isn't logged.
+   */
+  private static JsonObject operation(JsonObject request) {
+    String type = request.getString("type");
+    String name = request.getString("name");
+    String action = request.getString("action");
+    if (type == null || name == null || action == null) {
+      return null;
+    }
+
+    switch (type) {
+      case "map":
+        if (action.equals("clear")) {
+          return clear(name);
+        }
+        break;
+      case "set":
+        if (action.equals("add") || action.equals("remove") || action.equals("clear")) {
+          return copy(request);
+        }
+        break;
+      case "list":
+        if (action.equals("add") || action.equals("remove") || action.equals("set") || action.equals("clear")) {
+          return copy(request);
+        }
+        break;
+      case "queue":
+        switch (action) {
+          case "add":
+          case "offer":
+            return copy(request).putString("action", "add");
+          case "remove":
+            return request.containsField("value") ? copy(request) : poll(name, 1);
+          case "poll":
+            if (!request.containsField("timeout")) {
+              return poll(name, 1);
+            }
+            break;
+          case "clear":
+            return copy(request);
+        }
+        break;
+    }
+    return null;
+  }
+
+  /**
+   * Copies the persisted fields of a request.
+   */
+  private static JsonObject copy(JsonObject request) {
+    JsonObject operation = new JsonObject()
+        .putString("type", request.getString("type"))
+        .putString("name", request.getString("name"))
+        .putString("action", request.getString("action"));
+    if (request.containsField("index")) {
+      operation.putValue("index", request.getValue("index"));
+    }
+    if (request.containsField("value")) {
+      operation.putValue("value", request.getValue("value"));
+    }
+    return operation;
+  }
+
+  /**
+   * Logs a map put.
+   *
+   * @param deadline The time at which the key expires, or <code>0</code>.
+   */
+  void logPut(String name, Object key, Object value, long deadline) {
+    JsonObject operation = new JsonObject()
+        .putString("type", "map")
+        .putString("name", name)
+        .putString("action", "put")
+        .putValue("key", key)
+        .putValue("value", value);
+    if (deadline > 0) {
+      operation.putNumber("deadline", deadline);
+    }
+    log(operation);
+  }
+
+  /**
+   * Logs a batch of map puts.
+   */
+  void logPutAll(String name, Map<?, ?> entries) {
+    JsonArray jsonEntries = new JsonArray();
+    for (Map.Entry<?, ?> entry : entries.entrySet()) {
+      jsonEntries.addObject(new JsonObject().putValue("key", entry.getKey()).putValue("value", entry.getValue()));
+    }
+    log(new JsonObject()
+        .putString("type", "map")
+        .putString("name", name)
+        .putString("action", "putAll")
+        .putArray("entries", jsonEntries));
+  }
+
+  /**
+   * Logs a map remove.
+   */
+  void logRemove(String name, Object key) {
+    log(new JsonObject()
+        .putString("type", "map")
+        .putString("name", name)
+        .putString("action", "remove")
+        .putValue("key", key));
+  }
+
+  /**
+   * Logs a batch of map removes.
+   */
+  void logRemoveAll(String name, Collection<?> keys) {
+    JsonArray jsonKeys = new JsonArray();
+    for (Object key : keys) {
+      jsonKeys.add(key);
+    }
+    log(new JsonObject()
+        .putString("type", "map")
+        .putString("name", name)
+        .putString("action", "removeAll")
+        .putArray("keys", jsonKeys));
+  }
+
+  /**
+   * Logs a map clear.
+   */
+  void logClear(String name) {
+    log(clear(name));
+  }
+
+  /**
+   * Returns a map clear operation.
+   */
+  private static JsonObject clear(String name) {
+    return new JsonObject()
+        .putString("type", "map")
+        .putString("name", name)
+        .putString("action", "clear");
+  }
+
+  /**
+   * Logs the removal of elements from the head of a queue.
+   */
+  void logPoll(String name, int count) {
+    log(poll(name, count));
+  }
+
+  /**
+   * Returns a queue poll operation.
+   */
+  private static JsonObject poll(String name, int count) {
+    return new JsonObject()
+        .putString("type", "queue")
+        .putString("name", name)
+        .putString("action", "poll")
+        .putNumber("count", count);
+  }
+
+  /**
+   * Appends an operation to the log.
+   */
+  private void log(JsonObject operation) {
+    register(operation.getString("type"), operation.getString("name"));
+    if (logWriter != null) {
+      try {
+        logWriter.write(operation.putNumber("time", System.currentTimeMillis()).encode());
+        logWriter.write('\n');
+        logWriter.flush();
+        if (sync) {
+          logStream.getFD().sync();
+        }
+      } catch (IOException e) {
+        log.error("Failed to write to operation log", e);
+      }
+    }
+  }
+
+  /**
+   * Registers a persisted data structure with the cluster so that it's
+   * included in snapshots taken by any agent.
+   */
+  private void register(String type, String name) {
+    String structure = String.format("%s:%s", type, name);
+    if (structures.add(structure)) {
+      registry().add(structure);
+    }
+  }
+
+  /**
+   * Writes a snapshot of all persisted data structures and truncates the log.
+   */
+  void snapshot() {
+    long time = System.currentTimeMillis();
+    File snapshot = new File(directory, id + SNAPSHOT_SUFFIX);
+    File temp = new File(directory, id + SNAPSHOT_SUFFIX + ".tmp");
+    try {
+      try (FileOutputStream stream = new FileOutputStream(temp);
+          Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+        writer.write(new JsonObject().putNumber("snapshot", time).encode());
+        writer.write('\n');
+        for (String structure : new ArrayList<>(registry())) {
+          String type = structure.substring(0, structure.indexOf(':'));
+          String name = structure.substring(structure.indexOf(':') + 1);
+          for (JsonObject operation : dump(type, name)) {
+            writer.write(operation.encode());
+            writer.write('\n');
+          }
+        }
+        writer.flush();
+        stream.getFD().sync();
+      }
+      Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      openLog(false);
+    } catch (IOException e) {
+      log.error("Failed to write snapshot", e);
+      return;
+    }
+
+    // Every running agent rewrites its files at least once per interval,
+    // so files that haven't been modified for longer than that belong to
+    // agents that have been stopped and are covered by this snapshot.
+    for (File file : directory.listFiles()) {
+      if (!file.getName().startsWith(id) && (file.getName().endsWith(LOG_SUFFIX) || file.getName().endsWith(SNAPSHOT_SUFFIX))
+          && file.lastModified() < time - interval * 2) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Dumps the contents of a data structure as a list of operations.
+   */
+  private List<JsonObject> dump(String type, String name) {
+    List<JsonObject> operations = new ArrayList<>();
+    Collection<Object> values;
+    switch (type) {
+      case "map":
+        Map<Object, Long> expirations = manager.<Object, Long>getMap(String.format("%s.%s", expirationsMap, name));
+        for (Map.Entry<Object, Object> entry : manager.<Object, Object>getMap(name).entrySet()) {
+          JsonObject operation = new JsonObject()
+              .putString("type", type)
+              .putString("name", name)
+              .putString("action", "put")
+              .putValue("key", entry.getKey())
+              .putValue("value", entry.getValue());
+          Long deadline = expirations.get(entry.getKey());
+          if (deadline != null) {
+            operation.putNumber("deadline", deadline);
+          }
+          operations.add(operation);
+        }
+        return operations;
+      case "set":
+        values = manager.<Object>getSet(name);
+        break;
+      case "list":
+        values = manager.<Object>getList(name);
+        break;
+      case "queue":
+        values = manager.<Object>getQueue(name);
+        break;
+      default:
+        return operations;
+    }
+
+    for (Object value : values) {
+      operations.add(new JsonObject()
+          .putString("type", type)
+          .putString("name", name)
+          .putString("action", "add")
+          .putValue("value", value));
+    }
+    return operations;
+  }
+
+  /**
+   * Opens the operation log.
+   */
+  private void openLog(boolean append) throws IOException {
+    close();
+    logStream = new FileOutputStream(new File(directory, id + LOG_SUFFIX), append);
+    logWriter = new BufferedWriter(new OutputStreamWriter(logStream, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Closes the operation log.
+   */
+  void close() {
+    if (logWriter != null) {
+      try {
+        logWriter.close();
+      } catch (IOException e) {
+        log.error("Failed to close operation log", e);
+      }
+      logWriter = null;
+      logStream = null;
+    }
+  }
+
+}
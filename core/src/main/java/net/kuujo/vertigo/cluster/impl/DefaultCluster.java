@@ -15,21 +15,42 @@
  */
 package net.kuujo.vertigo.cluster.impl;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import net.kuujo.vertigo.cluster.Cluster;
+import net.kuujo.vertigo.cluster.ClusterClientOptions;
 import net.kuujo.vertigo.cluster.DeploymentException;
+import net.kuujo.vertigo.cluster.data.AsyncBloomFilter;
+import net.kuujo.vertigo.cluster.data.AsyncCountMinSketch;
 import net.kuujo.vertigo.cluster.data.AsyncCounter;
+import net.kuujo.vertigo.cluster.data.AsyncHyperLogLog;
 import net.kuujo.vertigo.cluster.data.AsyncList;
+import net.kuujo.vertigo.cluster.data.AsyncLock;
 import net.kuujo.vertigo.cluster.data.AsyncMap;
 import net.kuujo.vertigo.cluster.data.AsyncQueue;
 import net.kuujo.vertigo.cluster.data.AsyncSet;
+import net.kuujo.vertigo.cluster.data.CounterAccumulatorOptions;
+import net.kuujo.vertigo.cluster.data.NearCacheOptions;
+import net.kuujo.vertigo.cluster.data.SketchOptions;
+import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
+import net.kuujo.vertigo.cluster.data.impl.AccumulatingAsyncCounter;
+import net.kuujo.vertigo.cluster.data.impl.CachedAsyncMap;
+import net.kuujo.vertigo.cluster.data.impl.ClusterClient;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncBloomFilter;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncCountMinSketch;
 import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncCounter;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncHyperLogLog;
 import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncList;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncLock;
 import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncMap;
 import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncQueue;
 import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncSet;
+import net.kuujo.vertigo.cluster.data.impl.DefaultSketchStore;
+import net.kuujo.vertigo.cluster.data.impl.SketchStore;
+import net.kuujo.vertigo.cluster.data.impl.WrappedWatchableAsyncMap;
+import net.kuujo.vertigo.util.CountingCompletionHandler;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
@@ -49,15 +70,24 @@ public class DefaultCluster implements Cluster {
   private static final String DEFAULT_CLUSTER_ADDRESS = "vertigo";
   private final String address;
   private final Vertx vertx;
+  private final ClusterClient client;
   @SuppressWarnings("rawtypes")
   private final Map<String, AsyncMap> maps = new HashMap<>();
   @SuppressWarnings("rawtypes")
+  private final Map<String, WatchableAsyncMap> cachedMaps = new HashMap<>();
+  @SuppressWarnings("rawtypes")
   private final Map<String, AsyncList> lists = new HashMap<>();
   @SuppressWarnings("rawtypes")
   private final Map<String, AsyncQueue> queues = new HashMap<>();
   @SuppressWarnings("rawtypes")
   private final Map<String, AsyncSet> sets = new HashMap<>();
   private final Map<String, AsyncCounter> counters = new HashMap<>();
+  private final Map<String, AsyncLock> locks = new HashMap<>();
+  private final Map<String, AsyncCounter> accumulatingCounters = new HashMap<>();
+  private final Map<String, AsyncHyperLogLog> hyperLogLogs = new HashMap<>();
+  private final Map<String, AsyncCountMinSketch> countMinSketches = new HashMap<>();
+  private final Map<String, AsyncBloomFilter> bloomFilters = new HashMap<>();
+  private SketchStore sketchStore;
 
   public DefaultCluster(Verticle verticle) {
     this(DEFAULT_CLUSTER_ADDRESS, verticle);
@@ -72,8 +102,13 @@ public class DefaultCluster implements Cluster {
   }
 
   public DefaultCluster(String address, Vertx vertx, Container container) {
+    this(address, vertx, container, new ClusterClientOptions());
+  }
+
+  public DefaultCluster(String address, Vertx vertx, Container container, ClusterClientOptions options) {
     this.address = address;
     this.vertx = vertx;
+    this.client = new ClusterClient(address, vertx, options);
   }
 
   @Override
@@ -86,7 +121,7 @@ public class DefaultCluster implements Cluster {
     JsonObject message = new JsonObject()
         .putString("action", "check")
         .putString("id", deploymentID);
-    vertx.eventBus().sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -197,7 +232,7 @@ public class DefaultCluster implements Cluster {
         .putObject("config", config)
         .putNumber("instances", instances)
         .putBoolean("ha", ha);
-    vertx.eventBus().sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -308,7 +343,7 @@ public class DefaultCluster implements Cluster {
         .putObject("config", config)
         .putNumber("instances", instances)
         .putBoolean("ha", ha);
-    vertx.eventBus().sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -421,7 +456,7 @@ public class DefaultCluster implements Cluster {
         .putBoolean("worker", true)
         .putBoolean("multi-threaded", multiThreaded)
         .putBoolean("ha", ha);
-    vertx.eventBus().sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -447,7 +482,7 @@ public class DefaultCluster implements Cluster {
         .putString("action", "undeploy")
         .putString("id", deploymentID)
         .putString("type", "module");
-    vertx.eventBus().sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -473,7 +508,7 @@ public class DefaultCluster implements Cluster {
         .putString("action", "undeploy")
         .putString("id", deploymentID)
         .putString("type", "verticle");
-    vertx.eventBus().sendWithTimeout(address, message, 30000, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -493,18 +528,29 @@ public class DefaultCluster implements Cluster {
   public <K, V> AsyncMap<K, V> getMap(String name) {
     AsyncMap<K, V> map = maps.get(name);
     if (map == null) {
-      map = new DefaultAsyncMap<K, V>(address, name, vertx);
+      map = new DefaultAsyncMap<K, V>(client, name, vertx);
       maps.put(name, map);
     }
     return map;
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> WatchableAsyncMap<K, V> getMap(String name, NearCacheOptions options) {
+    WatchableAsyncMap<K, V> map = cachedMaps.get(name);
+    if (map == null) {
+      map = new CachedAsyncMap<K, V>(new WrappedWatchableAsyncMap<K, V>(this.<K, V>getMap(name), vertx), options);
+      cachedMaps.put(name, map);
+    }
+    return map;
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public <T> AsyncList<T> getList(String name) {
     AsyncList<T> list = lists.get(name);
     if (list == null) {
-      list = new DefaultAsyncList<T>(address, name, vertx);
+      list = new DefaultAsyncList<T>(client, name, vertx);
       lists.put(name, list);
     }
     return list;
@@ -515,7 +561,7 @@ public class DefaultCluster implements Cluster {
   public <T> AsyncSet<T> getSet(String name) {
     AsyncSet<T> set = sets.get(name);
     if (set == null) {
-      set = new DefaultAsyncSet<T>(address, name, vertx);
+      set = new DefaultAsyncSet<T>(client, name, vertx);
       sets.put(name, set);
     }
     return set;
@@ -526,7 +572,7 @@ public class DefaultCluster implements Cluster {
   public <T> AsyncQueue<T> getQueue(String name) {
     AsyncQueue<T> queue = queues.get(name);
     if (queue == null) {
-      queue = new DefaultAsyncQueue<T>(address, name, vertx);
+      queue = new DefaultAsyncQueue<T>(client, name, vertx);
       queues.put(name, queue);
     }
     return queue;
@@ -536,12 +582,112 @@ public class DefaultCluster implements Cluster {
   public AsyncCounter getCounter(String name) {
     AsyncCounter counter = counters.get(name);
     if (counter == null) {
-      counter = new DefaultAsyncCounter(address, name, vertx);
+      counter = new DefaultAsyncCounter(client, name, vertx);
       counters.put(name, counter);
     }
     return counter;
   }
 
+  @Override
+  public AsyncCounter getCounter(String name, CounterAccumulatorOptions options) {
+    String key = String.format("%s:%d:%d:%b", name, options.getFlushInterval(), options.getFlushThreshold(), options.isEstimate());
+    AsyncCounter counter = accumulatingCounters.get(key);
+    if (counter == null) {
+      counter = new AccumulatingAsyncCounter(getCounter(name), vertx, options);
+      accumulatingCounters.put(key, counter);
+    }
+    return counter;
+  }
+
+  @Override
+  public AsyncLock getLock(String name) {
+    AsyncLock lock = locks.get(name);
+    if (lock == null) {
+      lock = new DefaultAsyncLock(client, name, vertx);
+      locks.put(name, lock);
+    }
+    return lock;
+  }
+
+  @Override
+  public AsyncHyperLogLog getHyperLogLog(String name) {
+    return getHyperLogLog(name, new SketchOptions());
+  }
+
+  @Override
+  public AsyncHyperLogLog getHyperLogLog(String name, SketchOptions options) {
+    AsyncHyperLogLog hyperLogLog = hyperLogLogs.get(name);
+    if (hyperLogLog == null) {
+      hyperLogLog = new DefaultAsyncHyperLogLog(name, sketchStore(), vertx, options);
+      hyperLogLogs.put(name, hyperLogLog);
+    }
+    return hyperLogLog;
+  }
+
+  @Override
+  public AsyncCountMinSketch getCountMinSketch(String name) {
+    return getCountMinSketch(name, new SketchOptions());
+  }
+
+  @Override
+  public AsyncCountMinSketch getCountMinSketch(String name, SketchOptions options) {
+    AsyncCountMinSketch sketch = countMinSketches.get(name);
+    if (sketch == null) {
+      sketch = new DefaultAsyncCountMinSketch(name, sketchStore(), vertx, options);
+      countMinSketches.put(name, sketch);
+    }
+    return sketch;
+  }
+
+  @Override
+  public AsyncBloomFilter getBloomFilter(String name) {
+    return getBloomFilter(name, new SketchOptions());
+  }
+
+  @Override
+  public AsyncBloomFilter getBloomFilter(String name, SketchOptions options) {
+    AsyncBloomFilter filter = bloomFilters.get(name);
+    if (filter == null) {
+      filter = new DefaultAsyncBloomFilter(name, sketchStore(), vertx, options);
+      bloomFilters.put(name, filter);
+    }
+    return filter;
+  }
+
+  private SketchStore sketchStore() {
+    if (sketchStore == null) {
+      sketchStore = new DefaultSketchStore(client, vertx);
+    }
+    return sketchStore;
+  }
+
+  @Override
+  public void flush(Handler<AsyncResult<Void>> doneHandler) {
+    flush(accumulatingCounters.values(), hyperLogLogs.values(), countMinSketches.values(), bloomFilters.values(), doneHandler);
+  }
+
+  /**
+   * Flushes locally accumulated counters and sketches.
+   */
+  protected static void flush(Collection<AsyncCounter> counters, Collection<AsyncHyperLogLog> hyperLogLogs,
+      Collection<AsyncCountMinSketch> countMinSketches, Collection<AsyncBloomFilter> bloomFilters, Handler<AsyncResult<Void>> doneHandler) {
+    CountingCompletionHandler<Void> completion = new CountingCompletionHandler<Void>(
+        counters.size() + hyperLogLogs.size() + countMinSketches.size() + bloomFilters.size());
+    completion.setHandler(doneHandler);
+    for (AsyncCounter counter : counters) {
+      counter.flush(completion);
+    }
+    for (AsyncHyperLogLog hyperLogLog : hyperLogLogs) {
+      hyperLogLog.flush(completion);
+    }
+    for (AsyncCountMinSketch sketch : countMinSketches) {
+      sketch.flush(completion);
+    }
+    for (AsyncBloomFilter filter : bloomFilters) {
+      filter.flush(completion);
+    }
+  }
+
   @Override
   public boolean equals(Object other) {
     return other instanceof Cluster && ((Cluster) other).address().equals(address);
@@ -18,8 +18,14 @@ package net.kuujo.vertigo.cluster.impl;
 import net.kuujo.vertigo.cluster.Cluster;
 import net.kuujo.vertigo.cluster.ClusterFactory;
 
+import org.vertx.java.core.Vertx;
+
 /**
- * Default cluster factory implementation.
+ * Default cluster factory implementation.<p>
+ *
+ * If the current Vert.x instance is not clustered then the factory creates
+ * a {@link LocalCluster} which accesses data structures directly rather than
+ * through the cluster agent.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
@@ -27,7 +33,23 @@ public class DefaultClusterFactory extends ClusterFactory {
 
   @Override
   public Cluster createCluster(String address) {
-    return new DefaultCluster(address, vertx, container);
+    if (isClustered(vertx)) {
+      return new DefaultCluster(address, vertx, container);
+    }
+    return new LocalCluster(address, vertx, container);
+  }
+
+  /**
+   * Determines whether a Vert.x instance is clustered. The cluster manager
+   * isn't exposed by the public Vert.x API, so if the instance's cluster
+   * manager can't be found the instance is assumed to be clustered.
+   */
+  static boolean isClustered(Vertx vertx) {
+    try {
+      return vertx.getClass().getMethod("clusterManager").invoke(vertx) != null;
+    } catch (Exception e) {
+      return true;
+    }
   }
 
 }
@@ -20,8 +20,10 @@ import java.util.Collection;
 import java.util.List;
 
 import net.kuujo.vertigo.Config;
+import net.kuujo.vertigo.cluster.ClusterClientOptions;
 import net.kuujo.vertigo.cluster.ClusterManager;
 import net.kuujo.vertigo.cluster.ClusterManagerException;
+import net.kuujo.vertigo.cluster.data.impl.ClusterClient;
 import net.kuujo.vertigo.network.ActiveNetwork;
 import net.kuujo.vertigo.network.NetworkConfig;
 import net.kuujo.vertigo.network.NetworkContext;
@@ -49,9 +51,9 @@ import org.vertx.java.platform.Verticle;
  */
 public class DefaultClusterManager implements ClusterManager {
   private static final String DEFAULT_CLUSTER_ADDRESS = "vertigo";
-  private static final long DEFAULT_REPLY_TIMEOUT = 30000;
   private final String address;
   private final Vertx vertx;
+  private final ClusterClient client;
 
   public DefaultClusterManager(Verticle verticle) {
     this(DEFAULT_CLUSTER_ADDRESS, verticle.getVertx(), verticle.getContainer());
@@ -66,8 +68,13 @@ public class DefaultClusterManager implements ClusterManager {
   }
 
   public DefaultClusterManager(String address, Vertx vertx, Container container) {
+    this(address, vertx, container, new ClusterClientOptions());
+  }
+
+  public DefaultClusterManager(String address, Vertx vertx, Container container, ClusterClientOptions options) {
     this.address = address;
     this.vertx = vertx;
+    this.client = new ClusterClient(address, vertx, options);
   }
 
   @Override
@@ -80,7 +87,7 @@ public class DefaultClusterManager implements ClusterManager {
     JsonObject message = new JsonObject()
         .putString("action", "list")
         .putString("type", "network");
-    vertx.eventBus().sendWithTimeout(address, message, DEFAULT_REPLY_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -126,7 +133,7 @@ public class DefaultClusterManager implements ClusterManager {
         .putString("action", "load")
         .putString("type", "network")
         .putString("network", name);
-    vertx.eventBus().sendWithTimeout(address, message, DEFAULT_REPLY_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -147,7 +154,7 @@ public class DefaultClusterManager implements ClusterManager {
         .putString("action", "check")
         .putString("type", "network")
         .putString("network", name);
-    vertx.eventBus().sendWithTimeout(address, message, DEFAULT_REPLY_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -193,7 +200,7 @@ public class DefaultClusterManager implements ClusterManager {
         .putString("action", "deploy")
         .putString("type", "network")
         .putObject("network", SerializerFactory.getSerializer(Config.class).serializeToObject(network));
-    vertx.eventBus().sendWithTimeout(address, message, DEFAULT_REPLY_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -219,7 +226,7 @@ public class DefaultClusterManager implements ClusterManager {
         .putString("action", "undeploy")
         .putString("type", "network")
         .putString("network", name);
-    vertx.eventBus().sendWithTimeout(address, message, DEFAULT_REPLY_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -255,7 +262,7 @@ public class DefaultClusterManager implements ClusterManager {
         .putString("action", "undeploy")
         .putString("type", "network")
         .putObject("network", SerializerFactory.getSerializer(Config.class).serializeToObject(network));
-    vertx.eventBus().sendWithTimeout(address, message, DEFAULT_REPLY_TIMEOUT, new Handler<AsyncResult<Message<JsonObject>>>() {
+    client.send(message, new Handler<AsyncResult<Message<JsonObject>>>() {
       @Override
       public void handle(AsyncResult<Message<JsonObject>> result) {
         if (result.failed()) {
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.cluster.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.kuujo.vertigo.cluster.data.AsyncBloomFilter;
+import net.kuujo.vertigo.cluster.data.AsyncCountMinSketch;
+import net.kuujo.vertigo.cluster.data.AsyncCounter;
+import net.kuujo.vertigo.cluster.data.AsyncHyperLogLog;
+import net.kuujo.vertigo.cluster.data.AsyncList;
+import net.kuujo.vertigo.cluster.data.AsyncLock;
+import net.kuujo.vertigo.cluster.data.AsyncMap;
+import net.kuujo.vertigo.cluster.data.AsyncQueue;
+import net.kuujo.vertigo.cluster.data.AsyncSet;
+import net.kuujo.vertigo.cluster.data.CounterAccumulatorOptions;
+import net.kuujo.vertigo.cluster.data.NearCacheOptions;
+import net.kuujo.vertigo.cluster.data.SketchOptions;
+import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncBloomFilter;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncCountMinSketch;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncHyperLogLog;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncCounter;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncList;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncLock;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncMap;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncQueue;
+import net.kuujo.vertigo.cluster.data.impl.LocalAsyncSet;
+import net.kuujo.vertigo.cluster.data.impl.LocalSketchStore;
+import net.kuujo.vertigo.cluster.data.impl.LocalStructures;
+import net.kuujo.vertigo.cluster.data.impl.SketchStore;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.platform.Container;
+
+/**
+ * Local cluster implementation.<p>
+ *
+ * In a non-clustered Vert.x instance the cluster agent's data structures
+ * are stored in Vert.x shared data, so the local cluster operates on shared
+ * data directly rather than sending each data structure operation to the
+ * agent over the event bus. Deployments are still performed by the agent.<p>
+ *
+ * Shared data has no lists or queues, so local lists and queues operate on
+ * the structures the agent registers with {@link LocalStructures}. If the
+ * cluster's agent isn't running in this Vert.x instance then lists and queues
+ * are accessed through the agent over the event bus.<p>
+ *
+ * Since local data structures are already in memory, near cached maps and
+ * accumulating counters are simply the local map or counter.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LocalCluster extends DefaultCluster {
+  private final String address;
+  private final Vertx vertx;
+  @SuppressWarnings("rawtypes")
+  private final Map<String, LocalAsyncMap> maps = new HashMap<>();
+  @SuppressWarnings("rawtypes")
+  private final Map<String, AsyncList> lists = new HashMap<>();
+  @SuppressWarnings("rawtypes")
+  private final Map<String, AsyncQueue> queues = new HashMap<>();
+  @SuppressWarnings("rawtypes")
+  private final Map<String, AsyncSet> sets = new HashMap<>();
+  private final Map<String, AsyncCounter> counters = new HashMap<>();
+  private final Map<String, AsyncLock> locks = new HashMap<>();
+  private final Map<String, AsyncHyperLogLog> hyperLogLogs = new HashMap<>();
+  private final Map<String, AsyncCountMinSketch> countMinSketches = new HashMap<>();
+  private final Map<String, AsyncBloomFilter> bloomFilters = new HashMap<>();
+  private SketchStore sketchStore;
+
+  public LocalCluster(String address, Vertx vertx, Container container) {
+    super(address, vertx, container);
+    this.address = address;
+    this.vertx = vertx;
+  }
+
+  @Override
+  public <K, V> AsyncMap<K, V> getMap(String name) {
+    return getLocalMap(name);
+  }
+
+  @Override
+  public <K, V> WatchableAsyncMap<K, V> getMap(String name, NearCacheOptions options) {
+    return getLocalMap(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <K, V> LocalAsyncMap<K, V> getLocalMap(String name) {
+    LocalAsyncMap<K, V> map = maps.get(name);
+    if (map == null) {
+      map = new LocalAsyncMap<K, V>(address, name, vertx);
+      maps.put(name, map);
+    }
+    return map;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> AsyncList<T> getList(String name) {
+    LocalStructures.Provider structures = LocalStructures.lookup(vertx, address);
+    if (structures == null) {
+      return super.getList(name);
+    }
+    AsyncList<T> list = lists.get(name);
+    if (list == null) {
+      list = new LocalAsyncList<T>(name, structures, vertx);
+      lists.put(name, list);
+    }
+    return list;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> AsyncSet<T> getSet(String name) {
+    AsyncSet<T> set = sets.get(name);
+    if (set == null) {
+      set = new LocalAsyncSet<T>(name, vertx);
+      sets.put(name, set);
+    }
+    return set;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> AsyncQueue<T> getQueue(String name) {
+    LocalStructures.Provider structures = LocalStructures.lookup(vertx, address);
+    if (structures == null) {
+      return super.getQueue(name);
+    }
+    AsyncQueue<T> queue = queues.get(name);
+    if (queue == null) {
+      queue = new LocalAsyncQueue<T>(address, name, structures, vertx);
+      queues.put(name, queue);
+    }
+    return queue;
+  }
+
+  @Override
+  public AsyncCounter getCounter(String name) {
+    AsyncCounter counter = counters.get(name);
+    if (counter == null) {
+      counter = new LocalAsyncCounter(address, name, vertx);
+      counters.put(name, counter);
+    }
+    return counter;
+  }
+
+  @Override
+  public AsyncCounter getCounter(String name, CounterAccumulatorOptions options) {
+    return getCounter(name);
+  }
+
+  @Override
+  public AsyncLock getLock(String name) {
+    AsyncLock lock = locks.get(name);
+    if (lock == null) {
+      lock = new LocalAsyncLock(address, name, vertx);
+      locks.put(name, lock);
+    }
+    return lock;
+  }
+
+  @Override
+  public AsyncHyperLogLog getHyperLogLog(String name) {
+    return getHyperLogLog(name, new SketchOptions());
+  }
+
+  @Override
+  public AsyncHyperLogLog getHyperLogLog(String name, SketchOptions options) {
+    AsyncHyperLogLog hyperLogLog = hyperLogLogs.get(name);
+    if (hyperLogLog == null) {
+      hyperLogLog = new DefaultAsyncHyperLogLog(name, sketchStore(), vertx, options);
+      hyperLogLogs.put(name, hyperLogLog);
+    }
+    return hyperLogLog;
+  }
+
+  @Override
+  public AsyncCountMinSketch getCountMinSketch(String name) {
+    return getCountMinSketch(name, new SketchOptions());
+  }
+
+  @Override
+  public AsyncCountMinSketch getCountMinSketch(String name, SketchOptions options) {
+    AsyncCountMinSketch sketch = countMinSketches.get(name);
+    if (sketch == null) {
+      sketch = new DefaultAsyncCountMinSketch(name, sketchStore(), vertx, options);
+      countMinSketches.put(name, sketch);
+    }
+    return sketch;
+  }
+
+  @Override
+  public AsyncBloomFilter getBloomFilter(String name) {
+    return getBloomFilter(name, new SketchOptions());
+  }
+
+  @Override
+  public AsyncBloomFilter getBloomFilter(String name, SketchOptions options) {
+    AsyncBloomFilter filter = bloomFilters.get(name);
+    if (filter == null) {
+      filter = new DefaultAsyncBloomFilter(name, sketchStore(), vertx, options);
+      bloomFilters.put(name, filter);
+    }
+    return filter;
+  }
+
+  private SketchStore sketchStore() {
+    if (sketchStore == null) {
+      sketchStore = new LocalSketchStore(address, vertx);
+    }
+    return sketchStore;
+  }
+
+  @Override
+  public void flush(Handler<AsyncResult<Void>> doneHandler) {
+    flush(Collections.<AsyncCounter>emptyList(), hyperLogLogs.values(), countMinSketches.values(), bloomFilters.values(), doneHandler);
+  }
+
+}
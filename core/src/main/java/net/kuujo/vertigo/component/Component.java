@@ -19,6 +19,7 @@ import net.kuujo.vertigo.cluster.Cluster;
 import net.kuujo.vertigo.io.InputCollector;
 import net.kuujo.vertigo.io.OutputCollector;
 import net.kuujo.vertigo.network.NetworkConfig;
+import net.kuujo.vertigo.state.ComponentState;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
@@ -109,6 +110,17 @@ public interface Component {
    */
   Logger logger();
 
+  /**
+   * Returns the component instance state.<p>
+   *
+   * Component state provides keyed stores which are local to the component
+   * instance and held outside of the Java heap. Stores can be written to and
+   * restored from the cluster using snapshots.
+   *
+   * @return The component instance state.
+   */
+  ComponentState state();
+
   /**
    * Starts the component.
    *
@@ -132,4 +144,27 @@ public interface Component {
    */
   Component start(Handler<AsyncResult<Component>> doneHandler);
 
+  /**
+   * Adds a handler to be called when the component is stopped.<p>
+   *
+   * Stop handlers should release any resources that are not managed by
+   * Vert.x, such as threads, since those resources would otherwise
+   * outlive the component.
+   *
+   * @param handler A handler to be called when the component is stopped.
+   * @return The component instance.
+   */
+  Component addStopHandler(Handler<Void> handler);
+
+  /**
+   * Stops the component.<p>
+   *
+   * When the component is stopped, component hooks are notified, all
+   * registered stop handlers are called and the component's state stores
+   * are closed. Components implemented as a
+   * {@link net.kuujo.vertigo.java.ComponentVerticle} are stopped
+   * automatically when the verticle is undeployed.
+   */
+  void stop();
+
 }
@@ -104,6 +104,48 @@ public interface ComponentCoordinator {
    */
   ComponentCoordinator pauseHandler(Handler<Void> handler);
 
+  /**
+   * Sets a checkpoint handler on the coordinator.<p>
+   *
+   * This handler will be called when the network manager triggers a new
+   * checkpoint. Only components without input connections need to act
+   * on the trigger. Other components are checkpointed once they have
+   * received checkpoint barriers on all their input connections.
+   *
+   * @param handler A handler to be called with the checkpoint ID.
+   * @return The component coordinator.
+   */
+  ComponentCoordinator checkpointHandler(Handler<Long> handler);
+
+  /**
+   * Sets a checkpoint completion handler on the coordinator.<p>
+   *
+   * This handler will be called when all instances in the network have
+   * completed a checkpoint.
+   *
+   * @param handler A handler to be called with the completed checkpoint ID.
+   * @return The component coordinator.
+   */
+  ComponentCoordinator checkpointCompleteHandler(Handler<Long> handler);
+
+  /**
+   * Notifies the network manager that the instance has completed a checkpoint.
+   *
+   * @param checkpoint The checkpoint ID.
+   * @return The component coordinator.
+   */
+  ComponentCoordinator checkpointComplete(long checkpoint);
+
+  /**
+   * Returns the last checkpoint completed by all instances in the network.<p>
+   *
+   * The last checkpoint is loaded when the coordinator is started.
+   *
+   * @return The last completed checkpoint ID, or <code>0</code> if no checkpoint
+   *         has been completed.
+   */
+  long lastCheckpoint();
+
   /**
    * Stops the coordinator.
    *
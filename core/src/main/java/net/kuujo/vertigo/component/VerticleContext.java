@@ -54,4 +54,16 @@ public interface VerticleContext extends ComponentContext<VerticleContext> {
    */
   boolean isMultiThreaded();
 
+  /**
+   * Returns the chain to which the verticle belongs.<p>
+   *
+   * Chained verticles are deployed together within a single verticle, and
+   * messages between them are passed by direct method call rather than
+   * over the event bus.
+   *
+   * @return The name of the component at the head of the verticle's chain,
+   *         or <code>null</code> if the verticle is not chained.
+   */
+  String chain();
+
 }
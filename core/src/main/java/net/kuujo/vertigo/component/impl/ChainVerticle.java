@@ -0,0 +1,276 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.component.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.kuujo.vertigo.util.CountingCompletionHandler;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Future;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.platform.Container;
+import org.vertx.java.platform.Verticle;
+
+/**
+ * Verticle that hosts a chain of fused component instances.<p>
+ *
+ * When components are chained, the network manager deploys a single chain
+ * verticle for each set of chained instances rather than deploying each
+ * instance separately. The chain verticle instantiates and starts each
+ * component verticle within its own context, so all chained instances share
+ * a single event loop and local connections between them can pass messages
+ * by direct method call.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ChainVerticle extends Verticle {
+  private final List<Verticle> verticles = new ArrayList<>();
+
+  @Override
+  public void start(final Future<Void> startResult) {
+    JsonArray chain = container.config().getArray("__chain__");
+    if (chain == null || chain.size() == 0) {
+      startResult.setFailure(new IllegalArgumentException("No component chain found."));
+      return;
+    }
+
+    final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(chain.size());
+    counter.setHandler(new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          startResult.setFailure(result.cause());
+        } else {
+          ChainVerticle.super.start(startResult);
+        }
+      }
+    });
+
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    if (loader == null) {
+      loader = getClass().getClassLoader();
+    }
+
+    for (Object member : chain) {
+      JsonObject info = (JsonObject) member;
+      String main = info.getString("main");
+      Verticle verticle;
+      try {
+        verticle = (Verticle) loader.loadClass(main).newInstance();
+      } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+        counter.fail(new IllegalArgumentException("Failed to instantiate chained verticle " + main, e));
+        continue;
+      }
+
+      verticle.setVertx(vertx);
+      verticle.setContainer(new ChainedContainer(container, info.getObject("config")));
+      verticles.add(verticle);
+
+      DefaultFutureResult<Void> future = new DefaultFutureResult<Void>();
+      future.setHandler(counter);
+      try {
+        verticle.start(future);
+      } catch (RuntimeException e) {
+        if (!future.complete()) {
+          future.setFailure(e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void stop() {
+    for (Verticle verticle : verticles) {
+      try {
+        verticle.stop();
+      } catch (RuntimeException e) {
+        container.logger().error("Failed to stop chained verticle", e);
+      }
+    }
+    verticles.clear();
+  }
+
+  /**
+   * Container that provides a chained verticle with its own configuration.
+   */
+  private static class ChainedContainer implements Container {
+    private final Container container;
+    private final JsonObject config;
+
+    private ChainedContainer(Container container, JsonObject config) {
+      this.container = container;
+      this.config = config != null ? config : new JsonObject();
+    }
+
+    @Override
+    public void deployWorkerVerticle(String main) {
+      container.deployWorkerVerticle(main);
+    }
+
+    @Override
+    public void deployWorkerVerticle(String main, int instances) {
+      container.deployWorkerVerticle(main, instances);
+    }
+
+    @Override
+    public void deployWorkerVerticle(String main, JsonObject config) {
+      container.deployWorkerVerticle(main, config);
+    }
+
+    @Override
+    public void deployWorkerVerticle(String main, JsonObject config, int instances) {
+      container.deployWorkerVerticle(main, config, instances);
+    }
+
+    @Override
+    public void deployWorkerVerticle(String main, JsonObject config, int instances, boolean multiThreaded) {
+      container.deployWorkerVerticle(main, config, instances, multiThreaded);
+    }
+
+    @Override
+    public void deployWorkerVerticle(String main, JsonObject config, int instances, boolean multiThreaded, Handler<AsyncResult<String>> doneHandler) {
+      container.deployWorkerVerticle(main, config, instances, multiThreaded, doneHandler);
+    }
+
+    @Override
+    public void deployModule(String moduleName) {
+      container.deployModule(moduleName);
+    }
+
+    @Override
+    public void deployModule(String moduleName, int instances) {
+      container.deployModule(moduleName, instances);
+    }
+
+    @Override
+    public void deployModule(String moduleName, JsonObject config) {
+      container.deployModule(moduleName, config);
+    }
+
+    @Override
+    public void deployModule(String moduleName, JsonObject config, int instances) {
+      container.deployModule(moduleName, config, instances);
+    }
+
+    @Override
+    public void deployModule(String moduleName, JsonObject config, int instances, Handler<AsyncResult<String>> doneHandler) {
+      container.deployModule(moduleName, config, instances, doneHandler);
+    }
+
+    @Override
+    public void deployModule(String moduleName, Handler<AsyncResult<String>> doneHandler) {
+      container.deployModule(moduleName, doneHandler);
+    }
+
+    @Override
+    public void deployModule(String moduleName, JsonObject config, Handler<AsyncResult<String>> doneHandler) {
+      container.deployModule(moduleName, config, doneHandler);
+    }
+
+    @Override
+    public void deployModule(String moduleName, int instances, Handler<AsyncResult<String>> doneHandler) {
+      container.deployModule(moduleName, instances, doneHandler);
+    }
+
+    @Override
+    public void deployVerticle(String main) {
+      container.deployVerticle(main);
+    }
+
+    @Override
+    public void deployVerticle(String main, int instances) {
+      container.deployVerticle(main, instances);
+    }
+
+    @Override
+    public void deployVerticle(String main, JsonObject config) {
+      container.deployVerticle(main, config);
+    }
+
+    @Override
+    public void deployVerticle(String main, JsonObject config, int instances) {
+      container.deployVerticle(main, config, instances);
+    }
+
+    @Override
+    public void deployVerticle(String main, JsonObject config, int instances, Handler<AsyncResult<String>> doneHandler) {
+      container.deployVerticle(main, config, instances, doneHandler);
+    }
+
+    @Override
+    public void deployVerticle(String main, Handler<AsyncResult<String>> doneHandler) {
+      container.deployVerticle(main, doneHandler);
+    }
+
+    @Override
+    public void deployVerticle(String main, JsonObject config, Handler<AsyncResult<String>> doneHandler) {
+      container.deployVerticle(main, config, doneHandler);
+    }
+
+    @Override
+    public void deployVerticle(String main, int instances, Handler<AsyncResult<String>> doneHandler) {
+      container.deployVerticle(main, instances, doneHandler);
+    }
+
+    @Override
+    public void undeployVerticle(String deploymentID) {
+      container.undeployVerticle(deploymentID);
+    }
+
+    @Override
+    public void undeployVerticle(String deploymentID, Handler<AsyncResult<Void>> doneHandler) {
+      container.undeployVerticle(deploymentID, doneHandler);
+    }
+
+    @Override
+    public void undeployModule(String deploymentID) {
+      container.undeployModule(deploymentID);
+    }
+
+    @Override
+    public void undeployModule(String deploymentID, Handler<AsyncResult<Void>> doneHandler) {
+      container.undeployModule(deploymentID, doneHandler);
+    }
+
+    @Override
+    public JsonObject config() {
+      return config;
+    }
+
+    @Override
+    public Logger logger() {
+      return container.logger();
+    }
+
+    @Override
+    public void exit() {
+      container.exit();
+    }
+
+    @Override
+    public Map<String, String> env() {
+      return container.env();
+    }
+  }
+
+}
@@ -15,7 +15,10 @@
  */
 package net.kuujo.vertigo.component.impl;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeSet;
 
 import net.kuujo.vertigo.cluster.Cluster;
 import net.kuujo.vertigo.component.Component;
@@ -27,6 +30,8 @@ import net.kuujo.vertigo.io.OutputCollector;
 import net.kuujo.vertigo.io.impl.DefaultInputCollector;
 import net.kuujo.vertigo.io.impl.DefaultOutputCollector;
 import net.kuujo.vertigo.io.logging.PortLoggerFactory;
+import net.kuujo.vertigo.state.ComponentState;
+import net.kuujo.vertigo.state.impl.DefaultComponentState;
 import net.kuujo.vertigo.util.CountingCompletionHandler;
 
 import org.vertx.java.core.AsyncResult;
@@ -35,6 +40,7 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.impl.DefaultFutureResult;
 import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.platform.Container;
 
 /**
@@ -46,16 +52,21 @@ import org.vertx.java.platform.Container;
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class DefaultComponent implements Component {
+  private static final Logger log = LoggerFactory.getLogger(DefaultComponent.class);
   protected final Vertx vertx;
   protected final Container container;
   protected final Cluster cluster;
   protected final Logger logger;
+  protected final ComponentState state;
   private final ComponentCoordinator coordinator;
   private final String address;
   protected InstanceContext context;
   protected final DefaultInputCollector input;
   protected final DefaultOutputCollector output;
+  private final TreeSet<Long> checkpoints = new TreeSet<>();
+  private final List<Handler<Void>> stopHandlers = new ArrayList<>();
   private boolean started;
+  private boolean stopped;
 
   protected DefaultComponent(InstanceContext context, Vertx vertx, Container container, Cluster cluster) {
     this.address = context.address();
@@ -67,6 +78,33 @@ public class DefaultComponent implements Component {
     this.input = new DefaultInputCollector(vertx, context.input());
     this.output = new DefaultOutputCollector(vertx, context.output());
     this.logger = PortLoggerFactory.getLogger(String.format("%s-%s", getClass().getCanonicalName(), address), output);
+    this.state = new DefaultComponentState(address);
+    this.input.checkpointHandler(new Handler<Long>() {
+      @Override
+      public void handle(Long checkpoint) {
+        doCheckpoint(checkpoint);
+      }
+    });
+    // Watermarks are forwarded downstream once they have advanced on all
+    // of the component's input connections.
+    this.input.forwardWatermarks(new Handler<Long>() {
+      @Override
+      public void handle(Long watermark) {
+        output.watermark(watermark);
+      }
+    });
+    this.coordinator.checkpointHandler(new Handler<Long>() {
+      @Override
+      public void handle(Long checkpoint) {
+        input.triggerCheckpoint(checkpoint);
+      }
+    });
+    this.coordinator.checkpointCompleteHandler(new Handler<Long>() {
+      @Override
+      public void handle(Long checkpoint) {
+        clearCheckpoints(checkpoint);
+      }
+    });
   }
 
   @Override
@@ -104,6 +142,70 @@ public class DefaultComponent implements Component {
     return logger;
   }
 
+  @Override
+  public ComponentState state() {
+    return state;
+  }
+
+  /**
+   * Returns the name of the cluster map in which a checkpoint is stored.
+   */
+  private String checkpointName(long checkpoint) {
+    return String.format("%s.__checkpoint.%d", address, checkpoint);
+  }
+
+  /**
+   * Checkpoints the component once checkpoint barriers have been aligned.
+   */
+  private void doCheckpoint(final long checkpoint) {
+    // State stores are captured synchronously when the snapshot is started,
+    // so the barrier can be forwarded and input resumed immediately while
+    // the snapshot is written to the cluster in the background.
+    checkpoints.add(checkpoint);
+    state.snapshot(cluster.<String, String>getMap(checkpointName(checkpoint)), new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          log.error("Failed to checkpoint " + address, result.cause());
+        } else {
+          coordinator.checkpointComplete(checkpoint);
+        }
+      }
+    });
+    output.checkpoint(checkpoint);
+  }
+
+  /**
+   * Removes checkpoints that have been superseded by a completed checkpoint.
+   */
+  private void clearCheckpoints(long completed) {
+    Iterator<Long> iterator = checkpoints.headSet(completed).iterator();
+    while (iterator.hasNext()) {
+      cluster.getMap(checkpointName(iterator.next())).clear();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Restores component state from the last completed checkpoint.
+   */
+  private void restoreCheckpoint(final Handler<AsyncResult<Void>> doneHandler) {
+    final long checkpoint = coordinator.lastCheckpoint();
+    if (checkpoint == 0) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+    } else {
+      state.restore(cluster.<String, String>getMap(checkpointName(checkpoint)), new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> result) {
+          if (result.succeeded()) {
+            checkpoints.add(checkpoint);
+          }
+          doneHandler.handle(result);
+        }
+      });
+    }
+  }
+
   /**
    * Sets up the component.
    */
@@ -119,25 +221,37 @@ public class DefaultComponent implements Component {
         } else {
           context = result.result();
 
-          // We have to make sure the input and output collectors are started
-          // simultaneously in order to support circular connections. If both
-          // input and output aren't started at the same time then circular
-          // connections will never open.
-          final CountingCompletionHandler<Void> ioHandler = new CountingCompletionHandler<Void>(2);
-          ioHandler.setHandler(new Handler<AsyncResult<Void>>() {
+          // If the network has completed a checkpoint then restore the
+          // component's state from the checkpoint before opening connections.
+          restoreCheckpoint(new Handler<AsyncResult<Void>>() {
             @Override
             public void handle(AsyncResult<Void> result) {
               if (result.failed()) {
                 new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
-              } else {
-                // Tell the coordinator we're ready for the network to start.
-                coordinator.resume();
+                return;
               }
+
+              // We have to make sure the input and output collectors are started
+              // simultaneously in order to support circular connections. If both
+              // input and output aren't started at the same time then circular
+              // connections will never open.
+              final CountingCompletionHandler<Void> ioHandler = new CountingCompletionHandler<Void>(2);
+              ioHandler.setHandler(new Handler<AsyncResult<Void>>() {
+                @Override
+                public void handle(AsyncResult<Void> result) {
+                  if (result.failed()) {
+                    new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+                  } else {
+                    // Tell the coordinator we're ready for the network to start.
+                    coordinator.resume();
+                  }
+                }
+              });
+
+              output.open(ioHandler);
+              input.open(ioHandler);
             }
           });
-
-          output.open(ioHandler);
-          input.open(ioHandler);
         }
       }
     });
@@ -187,4 +301,44 @@ public class DefaultComponent implements Component {
     return this;
   }
 
+  @Override
+  public Component addStopHandler(Handler<Void> handler) {
+    stopHandlers.add(handler);
+    return this;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void stop() {
+    if (!stopped) {
+      stopped = true;
+      if (started) {
+        List<ComponentHook> hooks = context.component().hooks();
+        for (ComponentHook hook : hooks) {
+          hook.handleStop(this);
+        }
+      }
+      for (Handler<Void> handler : stopHandlers) {
+        try {
+          handler.handle((Void) null);
+        } catch (RuntimeException e) {
+          log.error("Failed to stop " + address, e);
+        }
+      }
+      stopHandlers.clear();
+      state.close();
+
+      // Updates accumulated by counters and sketches since their last flush
+      // would be lost once the component is undeployed.
+      cluster.flush(new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> result) {
+          if (result.failed()) {
+            log.error("Failed to flush accumulated cluster data for " + address, result.cause());
+          }
+        }
+      });
+    }
+  }
+
 }
@@ -46,7 +46,11 @@ public class DefaultComponentCoordinator implements ComponentCoordinator {
   private InstanceContext currentContext;
   private Handler<Void> resumeHandler;
   private Handler<Void> pauseHandler;
+  private Handler<Long> checkpointHandler;
+  private Handler<Long> checkpointCompleteHandler;
   private boolean paused = true;
+  private long triggeredCheckpoint;
+  private long completedCheckpoint;
 
   private final Handler<MapEvent<String, String>> instanceHandler = new Handler<MapEvent<String, String>>() {
     @Override
@@ -70,6 +74,15 @@ public class DefaultComponentCoordinator implements ComponentCoordinator {
     }
   };
 
+  private final Handler<MapEvent<String, String>> checkpointWatcher = new Handler<MapEvent<String, String>>() {
+    @Override
+    public void handle(MapEvent<String, String> event) {
+      if (event.type().equals(MapEvent.Type.CREATE) || event.type().equals(MapEvent.Type.UPDATE)) {
+        handleCheckpoint(new JsonObject(event.value()));
+      }
+    }
+  };
+
   public DefaultComponentCoordinator(InstanceContext context, Vertx vertx, Cluster cluster) {
     this.address = context.address();
     this.vertx = vertx;
@@ -112,7 +125,7 @@ public class DefaultComponentCoordinator implements ComponentCoordinator {
                     if (result.failed()) {
                       new DefaultFutureResult<InstanceContext>(result.cause()).setHandler(doneHandler);
                     } else {
-                      new DefaultFutureResult<InstanceContext>(currentContext).setHandler(doneHandler);
+                      loadCheckpoint(doneHandler);
                     }
                   }
                 });
@@ -125,6 +138,87 @@ public class DefaultComponentCoordinator implements ComponentCoordinator {
     return this;
   }
 
+  /**
+   * Watches the network's checkpoint key and loads the last completed checkpoint.
+   */
+  private void loadCheckpoint(final Handler<AsyncResult<InstanceContext>> doneHandler) {
+    final String checkpoint = currentContext.component().network().checkpoint();
+    data.watch(checkpoint, checkpointWatcher, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<InstanceContext>(result.cause()).setHandler(doneHandler);
+        } else {
+          data.get(checkpoint, new Handler<AsyncResult<String>>() {
+            @Override
+            public void handle(AsyncResult<String> result) {
+              if (result.failed()) {
+                new DefaultFutureResult<InstanceContext>(result.cause()).setHandler(doneHandler);
+              } else {
+                // Checkpoints that were in progress before the instance was
+                // started can never complete with this instance's state, so
+                // only the completed checkpoint is loaded.
+                if (result.result() != null) {
+                  JsonObject info = new JsonObject(result.result());
+                  triggeredCheckpoint = info.getLong("id", 0);
+                  completedCheckpoint = info.getLong("completed", 0);
+                }
+                new DefaultFutureResult<InstanceContext>(currentContext).setHandler(doneHandler);
+              }
+            }
+          });
+        }
+      }
+    });
+  }
+
+  /**
+   * Handles a change to the network's checkpoint key.
+   */
+  private void handleCheckpoint(JsonObject info) {
+    long id = info.getLong("id", 0);
+    if (id > triggeredCheckpoint) {
+      triggeredCheckpoint = id;
+      if (checkpointHandler != null) {
+        checkpointHandler.handle(id);
+      }
+    }
+    long completed = info.getLong("completed", 0);
+    if (completed > completedCheckpoint) {
+      completedCheckpoint = completed;
+      if (checkpointCompleteHandler != null) {
+        checkpointCompleteHandler.handle(completed);
+      }
+    }
+  }
+
+  @Override
+  public ComponentCoordinator checkpointHandler(Handler<Long> handler) {
+    checkpointHandler = handler;
+    return this;
+  }
+
+  @Override
+  public ComponentCoordinator checkpointCompleteHandler(Handler<Long> handler) {
+    checkpointCompleteHandler = handler;
+    return this;
+  }
+
+  @Override
+  public ComponentCoordinator checkpointComplete(long checkpoint) {
+    if (currentContext != null) {
+      vertx.eventBus().send(currentContext.component().network().checkpoint(), new JsonObject()
+          .putString("instance", address)
+          .putNumber("id", checkpoint));
+    }
+    return this;
+  }
+
+  @Override
+  public long lastCheckpoint() {
+    return completedCheckpoint;
+  }
+
   @Override
   public ComponentCoordinator resume() {
     return resume(null);
@@ -211,6 +305,7 @@ public class DefaultComponentCoordinator implements ComponentCoordinator {
   @Override
   public void stop(final Handler<AsyncResult<Void>> doneHandler) {
     if (currentContext != null && data != null) {
+      data.unwatch(currentContext.component().network().checkpoint(), checkpointWatcher);
       data.unwatch(currentContext.component().network().status(), statusHandler, new Handler<AsyncResult<Void>>() {
         @Override
         public void handle(AsyncResult<Void> result) {
@@ -40,6 +40,7 @@ public class DefaultVerticleContext extends DefaultComponentContext<VerticleCont
   private boolean worker;
   @JsonProperty("multi-threaded")
   private boolean multiThreaded;
+  private String chain;
 
   @Override
   protected String type() {
@@ -66,6 +67,11 @@ public class DefaultVerticleContext extends DefaultComponentContext<VerticleCont
     return isWorker() && multiThreaded;
   }
 
+  @Override
+  public String chain() {
+    return chain;
+  }
+
   /**
    * Verticle context builder.
    *
@@ -180,6 +186,17 @@ public class DefaultVerticleContext extends DefaultComponentContext<VerticleCont
       return this;
     }
 
+    /**
+     * Sets the chain to which the verticle belongs.
+     *
+     * @param chain The name of the component at the head of the chain.
+     * @return The context builder.
+     */
+    public Builder setChain(String chain) {
+      context.chain = chain;
+      return this;
+    }
+
     /**
      * Sets the component deployment group.
      *
@@ -17,6 +17,7 @@ package net.kuujo.vertigo.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -53,6 +54,7 @@ import net.kuujo.vertigo.network.impl.DefaultNetworkContext;
  */
 public final class ContextBuilder {
   private static final String COMPONENT_ADDRESS_PATTERN = System.getProperty("vertigo.component.address", "%1$s.%2$s.%3$s");
+  private static final boolean AUTO_CHAIN = Boolean.valueOf(System.getProperty("vertigo.chain.auto", "false"));
 
   /**
    * Builds a network context from a network definition.
@@ -71,10 +73,12 @@ public final class ContextBuilder {
     context.setAddress(String.format("%s.%s", cluster, network.getName()));
     context.setConfig(network);
     context.setStatusAddress(String.format("%s.%s.__status", cluster, network.getName()));
+    context.setCheckpointAddress(String.format("%s.%s.__checkpoint", cluster, network.getName()));
 
     // Set up network components without inputs. Inputs are stored in a map so
     // that they can be set up after all component instances have been set up.
     Map<String, DefaultComponentContext<?>> components = new HashMap<>();
+    Map<String, String> chains = buildChains(network);
     for (ComponentConfig<?> component : network.getComponents()) {
       if (component.getType().equals(ComponentConfig.Type.MODULE)) {
         // Set up basic module configuration options.
@@ -112,6 +116,7 @@ public final class ContextBuilder {
         verticle.setMain(((VerticleConfig) component).getMain());
         verticle.setWorker(((VerticleConfig) component).isWorker());
         verticle.setMultiThreaded(((VerticleConfig) component).isMultiThreaded());
+        verticle.setChain(chains.get(component.getName()));
         verticle.setConfig(component.getConfig());
         verticle.setGroup(component.getGroup());
         verticle.setHooks(component.getHooks());
@@ -149,6 +154,7 @@ public final class ContextBuilder {
       // If a component is added to the configuration later then the context will need to
       // be rebuilt.
       if (source != null && target != null) {
+        boolean local = isChainable(connection, network);
         for (InstanceContext sourceInstance : source.instances()) {
           // Check if the port already exists on the source's output.
           DefaultOutputPortContext.Builder output = null;
@@ -177,6 +183,12 @@ public final class ContextBuilder {
 
           // For each target instance, add a unique input connection for the output.
           for (InstanceContext targetInstance : target.instances()) {
+            // Chained component instances are only connected to the instance
+            // with the same instance number, with which they're deployed.
+            if (local && targetInstance.number() != sourceInstance.number()) {
+              continue;
+            }
+
             // Check if the port already exists on the target's input.
             DefaultInputPortContext.Builder input = null;
             for (InputPortContext port : targetInstance.input().ports()) {
@@ -201,6 +213,7 @@ public final class ContextBuilder {
             DefaultInputConnectionContext.Builder inConnection = DefaultInputConnectionContext.Builder.newBuilder();
             String address = String.format("out:%s@%s.%s.%s[%d]->in:%s@%s.%s.%s[%d]", connection.getSource().getPort(), cluster, network.getName(), source.name(), sourceInstance.number(), connection.getTarget().getPort(), cluster, network.getName(), target.name(), targetInstance.number());
             inConnection.setAddress(address);
+            inConnection.setLocal(local);
 
             // Add input level hooks to the input.
             inConnection.setHooks(connection.getTarget().getHooks());
@@ -218,6 +231,7 @@ public final class ContextBuilder {
             // connections maintain a many-to-one relationship with output connections.
             DefaultOutputConnectionContext.Builder outConnection = DefaultOutputConnectionContext.Builder.newBuilder();
             outConnection.setAddress(address);
+            outConnection.setLocal(local);
 
             // Add output level hooks to the output.
             outConnection.setHooks(connection.getSource().getHooks());
@@ -240,4 +254,91 @@ public final class ContextBuilder {
     return context.build();
   }
 
+  /**
+   * Groups chained components, returning a map of component names to the
+   * name of the component at the head of each component's chain.
+   */
+  private static Map<String, String> buildChains(NetworkConfig network) {
+    Map<String, String> parents = new HashMap<>();
+    for (ConnectionConfig connection : network.getConnections()) {
+      if (isChainable(connection, network)) {
+        String source = findChain(parents, connection.getSource().getComponent());
+        String target = findChain(parents, connection.getTarget().getComponent());
+        // Always use the lesser name as the head so that rebuilding the
+        // context for an updated network results in the same chain heads.
+        if (source.compareTo(target) < 0) {
+          parents.put(target, source);
+        } else if (source.compareTo(target) > 0) {
+          parents.put(source, target);
+        }
+      }
+    }
+
+    Map<String, String> chains = new HashMap<>();
+    for (String component : parents.keySet()) {
+      chains.put(component, findChain(parents, component));
+    }
+    for (String head : new HashSet<>(chains.values())) {
+      chains.put(head, head);
+    }
+    return chains;
+  }
+
+  /**
+   * Finds the head of the given component's chain.
+   */
+  private static String findChain(Map<String, String> parents, String component) {
+    while (parents.containsKey(component)) {
+      component = parents.get(component);
+    }
+    return component;
+  }
+
+  /**
+   * Indicates whether the given verticle main is a compiled Java class.
+   * Only compiled Java verticles can be instantiated by a chain verticle.
+   */
+  private static boolean isJavaClass(String main) {
+    return main != null && !main.contains(":") && !main.matches(".*\\.(js|py|rb|groovy|java|scala|clj)$");
+  }
+
+  /**
+   * Indicates whether the given connection can be chained.
+   */
+  private static boolean isChainable(ConnectionConfig connection, NetworkConfig network) {
+    if (!connection.isChained() && !AUTO_CHAIN) {
+      return false;
+    }
+
+    String sourceName = connection.getSource().getComponent();
+    String targetName = connection.getTarget().getComponent();
+    if (sourceName == null || targetName == null || sourceName.equals(targetName)
+        || !network.hasComponent(sourceName) || !network.hasComponent(targetName)) {
+      return false;
+    }
+
+    ComponentConfig<?> source = network.getComponent(sourceName);
+    ComponentConfig<?> target = network.getComponent(targetName);
+    if (!source.getType().equals(ComponentConfig.Type.VERTICLE) || !target.getType().equals(ComponentConfig.Type.VERTICLE)) {
+      return false;
+    }
+    if (((VerticleConfig) source).isWorker() || ((VerticleConfig) target).isWorker()) {
+      return false;
+    }
+    if (!isJavaClass(((VerticleConfig) source).getMain()) || !isJavaClass(((VerticleConfig) target).getMain())) {
+      return false;
+    }
+    if (source.getInstances() != target.getInstances()) {
+      return false;
+    }
+    // Chaining pins each source instance to the target instance with the same
+    // number, bypassing the connection's selector, so connections are only
+    // chained automatically between single instance components, where every
+    // selector already sends all messages to the one target instance.
+    if (!connection.isChained() && source.getInstances() != 1) {
+      return false;
+    }
+    return source.getGroup() == null ? target.getGroup() == null : source.getGroup().equals(target.getGroup());
+  }
+
 }
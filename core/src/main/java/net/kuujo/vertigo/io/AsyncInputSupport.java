@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Support for asynchronously completing input messages.<p>
+ *
+ * When an async message handler is registered, messages are no longer
+ * acknowledged when the handler returns. Instead, each message must be
+ * completed via {@link AsyncMessage#complete()}. The input acknowledges
+ * messages only up to the last message for which it and all previous
+ * messages have been completed, and the number of outstanding messages
+ * is limited to a configurable window. Once the window is full the input
+ * will stop receiving messages until outstanding messages are completed.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The type to which the support belongs.
+ */
+public interface AsyncInputSupport<T extends AsyncInputSupport<T>> {
+
+  /**
+   * Registers an async message handler.
+   *
+   * @param handler The handler to register. This handler will be called
+   *        with an {@link AsyncMessage} for each message received on the
+   *        input. Passing <code>null</code> will return the input to
+   *        synchronous acknowledgement.
+   * @return The called object.
+   */
+  <U> T asyncMessageHandler(Handler<AsyncMessage<U>> handler);
+
+  /**
+   * Sets the maximum number of outstanding async messages.
+   *
+   * @param max The maximum number of messages that may be outstanding on
+   *        each connection at any given time.
+   * @return The called object.
+   */
+  T setMaxOutstanding(int max);
+
+  /**
+   * Returns the maximum number of outstanding async messages.
+   *
+   * @return The maximum number of messages that may be outstanding on
+   *         each connection at any given time.
+   */
+  int getMaxOutstanding();
+
+}
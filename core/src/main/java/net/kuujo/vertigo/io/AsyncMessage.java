@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io;
+
+/**
+ * Asynchronously completed input message.<p>
+ *
+ * Async messages are passed to handlers registered via
+ * {@link AsyncInputSupport#asyncMessageHandler(org.vertx.java.core.Handler)}.
+ * Unlike normal messages, which are considered received as soon as the
+ * message handler returns, an async message is only considered received
+ * once it has been explicitly completed. If the message is failed then
+ * the message and all messages after it will be redelivered.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The message body type.
+ */
+public interface AsyncMessage<T> {
+
+  /**
+   * Returns the message body.
+   *
+   * @return The message body.
+   */
+  T body();
+
+  /**
+   * Completes processing of the message.<p>
+   *
+   * Completing a message allows the input to acknowledge the message
+   * once all messages preceding it have also been completed.
+   */
+  void complete();
+
+  /**
+   * Fails processing of the message.<p>
+   *
+   * Failing a message causes the message and any messages received after
+   * it to be redelivered.
+   */
+  void fail();
+
+}
@@ -20,7 +20,13 @@ import org.vertx.java.core.Vertx;
 
 /**
  * Provides an interface for feeding outputs using a handler that will
- * be called whenever the given output is prepared to accept a single message.
+ * be called whenever the given output is prepared to accept a single message.<p>
+ *
+ * By default the feeder polls the output on a timer. When the feeder is
+ * {@link #setDrainDriven(boolean) drain driven} it instead calls the feed
+ * handler in quanta of up to {@link #getFeedQuantum()} calls until the
+ * output's send queue is full and then waits for the output's drain handler.
+ * Timers are only used to back off when the feed handler produces nothing.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  *
@@ -28,16 +34,24 @@ import org.vertx.java.core.Vertx;
  */
 public class Feeder<T extends Output<T>> {
   private static final long DEFAULT_FEED_DELAY = 10L;
+  private static final int DEFAULT_FEED_QUANTUM = 100;
   private final T output;
   private final Vertx vertx;
   private Handler<T> feedHandler;
   private boolean fed;
   private long feedDelay = DEFAULT_FEED_DELAY;
-  private long feedTimer;
+  private long feedTimer = -1;
+  private boolean drainDriven;
+  private int feedQuantum = DEFAULT_FEED_QUANTUM;
+  private boolean running;
+  private boolean scheduled;
 
   private final Handler<Void> feedRunner = new Handler<Void>() {
     @Override
     public void handle(Void _) {
+      if (!running) {
+        return;
+      }
       int before = output.size();
       feedHandler.handle(output);
       int after = output.size();
@@ -49,10 +63,42 @@ public class Feeder<T extends Output<T>> {
   private final Handler<Long> recursiveRunner = new Handler<Long>() {
     @Override
     public void handle(Long timerID) {
+      feedTimer = -1;
       doFeed();
     }
   };
 
+  private final Handler<Void> quantumRunner = new Handler<Void>() {
+    @Override
+    public void handle(Void _) {
+      scheduled = false;
+      if (running) {
+        doFeedQuantum();
+      }
+    }
+  };
+
+  private final Handler<Long> backoffRunner = new Handler<Long>() {
+    @Override
+    public void handle(Long timerID) {
+      feedTimer = -1;
+      if (running) {
+        doFeedQuantum();
+      }
+    }
+  };
+
+  private final Handler<Void> drainRunner = new Handler<Void>() {
+    @Override
+    public void handle(Void _) {
+      // If the feeder is backing off then the feed handler has nothing
+      // to feed, so there's no need to wake it up early.
+      if (running && !scheduled && feedTimer == -1) {
+        scheduleQuantum();
+      }
+    }
+  };
+
   /**
    * Creates a new feeder.
    *
@@ -101,17 +147,110 @@ public class Feeder<T extends Output<T>> {
     return feedDelay;
   }
 
+  /**
+   * Sets whether the feeder is driven by the output's drain handler rather
+   * than by polling on a timer.
+   *
+   * @param drainDriven Whether the feeder is drain driven.
+   * @return The feeder.
+   */
+  public Feeder<T> setDrainDriven(boolean drainDriven) {
+    this.drainDriven = drainDriven;
+    return this;
+  }
+
+  /**
+   * Returns whether the feeder is driven by the output's drain handler.
+   *
+   * @return Whether the feeder is drain driven. Defaults to <code>false</code>.
+   */
+  public boolean isDrainDriven() {
+    return drainDriven;
+  }
+
+  /**
+   * Sets the maximum number of times the feed handler will be called before
+   * the feeder yields to the event loop. This applies only to drain driven feeders.
+   *
+   * @param feedQuantum The feed quantum.
+   * @return The feeder.
+   */
+  public Feeder<T> setFeedQuantum(int feedQuantum) {
+    if (feedQuantum < 1) {
+      throw new IllegalArgumentException("Feed quantum must be a positive integer.");
+    }
+    this.feedQuantum = feedQuantum;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of feed handler calls per event loop iteration.
+   *
+   * @return The feed quantum. Defaults to <code>100</code>.
+   */
+  public int getFeedQuantum() {
+    return feedQuantum;
+  }
+
   /**
    * Starts the feeder.
    */
   public void start() {
-    doFeed();
+    running = true;
+    if (drainDriven) {
+      output.drainHandler(drainRunner);
+      scheduleQuantum();
+    } else {
+      doFeed();
+    }
+  }
+
+  /**
+   * Schedules the next feed quantum on the event loop.
+   */
+  private void scheduleQuantum() {
+    scheduled = true;
+    vertx.runOnContext(quantumRunner);
+  }
+
+  /**
+   * Calls the feed handler until the output is full or the quantum is used up.
+   */
+  private void doFeedQuantum() {
+    // Note that the output size is compared across the entire quantum rather
+    // than per call since the size of a port is the size of its largest
+    // connection, which doesn't necessarily grow with every message.
+    int before = output.size();
+    int count = 0;
+    while (count < feedQuantum && running && !output.sendQueueFull()) {
+      feedHandler.handle(output);
+      count++;
+    }
+
+    // The feed handler may have stopped the feeder.
+    if (!running) {
+      return;
+    }
+
+    // If the output is full then the drain handler will resume feeding.
+    // If the feed handler produced nothing then back off for the feed delay,
+    // otherwise yield to the event loop and continue feeding.
+    if (!output.sendQueueFull()) {
+      if (output.size() > before) {
+        scheduleQuantum();
+      } else {
+        feedTimer = vertx.setTimer(feedDelay, backoffRunner);
+      }
+    }
   }
 
   /**
    * Feeds the next message.
    */
   private void doFeed() {
+    if (!running) {
+      return;
+    }
     if (fed && !output.sendQueueFull()) {
       fed = false;
       vertx.runOnContext(feedRunner);
@@ -124,8 +263,13 @@ public class Feeder<T extends Output<T>> {
    * Stops the feeder.
    */
   public void stop() {
-    if (feedTimer > 0) {
+    running = false;
+    if (feedTimer != -1) {
       vertx.cancelTimer(feedTimer);
+      feedTimer = -1;
+    }
+    if (drainDriven) {
+      output.drainHandler(null);
     }
   }
 
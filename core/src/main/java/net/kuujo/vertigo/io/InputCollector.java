@@ -27,7 +27,7 @@ import net.kuujo.vertigo.io.port.InputPort;
  * 
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
-public interface InputCollector extends IOCollector<InputCollector> {
+public interface InputCollector extends IOCollector<InputCollector>, InputWatermarkSupport<InputCollector> {
 
   /**
    * Returns a collection of input ports.
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Support for receiving event time watermarks.<p>
+ *
+ * A watermark is an assertion by an upstream component that no further
+ * messages with an event time earlier than the watermark will be sent.
+ * The watermark of an input is the minimum of the watermarks received on
+ * each of its connections, so an input's watermark only advances once all
+ * of its sources have advanced.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The type to which the support belongs.
+ */
+public interface InputWatermarkSupport<T extends InputWatermarkSupport<T>> {
+
+  /**
+   * Returns the current watermark.
+   *
+   * @return The current event time watermark, or {@link Long#MIN_VALUE} if
+   *         no watermark has been received on one or more connections.
+   */
+  long watermark();
+
+  /**
+   * Registers a watermark handler.
+   *
+   * @param handler A handler to be called with the new watermark each time
+   *        the input's watermark advances.
+   * @return The called object.
+   */
+  T watermarkHandler(Handler<Long> handler);
+
+}
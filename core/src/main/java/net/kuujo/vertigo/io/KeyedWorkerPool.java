@@ -0,0 +1,358 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.kuujo.vertigo.component.Component;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+
+/**
+ * Key ordered worker pool for processing input messages in parallel.<p>
+ *
+ * The worker pool registers an async message handler on an input and
+ * processes each message on one of a fixed number of worker threads.
+ * Messages are assigned to workers by a user provided key, so messages
+ * with the same key are always processed in the order in which they were
+ * received. Once a message has been processed, the result is passed back
+ * to the component's context where it is passed to the result handler and
+ * the message is completed. Since messages are only acked once they and all
+ * preceding messages have been completed, ack tracking remains in order
+ * per connection regardless of the order in which workers finish.<p>
+ *
+ * Processors are called on worker threads and therefore must not access
+ * Vert.x or Vertigo objects. Any output should be performed in the result
+ * handler, which is always called on the component's context. If a processor
+ * throws an exception then the message is retried on the same worker up to
+ * the maximum number of retries, after which the message is passed to the
+ * dead letter handler and completed.<p>
+ *
+ * Worker threads are not managed by Vert.x. Pools created for a
+ * {@link Component} are stopped automatically when the component is stopped,
+ * otherwise the pool must be stopped by calling {@link KeyedWorkerPool#stop()}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The input message type.
+ * @param <R> The processing result type.
+ */
+public class KeyedWorkerPool<T, R> {
+  private static final Logger log = LoggerFactory.getLogger(KeyedWorkerPool.class);
+  private static final int DEFAULT_MAX_RETRIES = 3;
+  private static final AtomicInteger poolCounter = new AtomicInteger();
+  private final AsyncInputSupport<?> input;
+  private final Vertx vertx;
+  private final int workers;
+  private ExecutorService[] executors;
+  private KeyExtractor<T> keyExtractor;
+  private Processor<T, R> processor;
+  private Handler<R> resultHandler;
+  private Handler<T> deadLetterHandler;
+  private int maxRetries = DEFAULT_MAX_RETRIES;
+  private int processed;
+  private int failed;
+
+  /**
+   * Processes a message on a worker thread.
+   *
+   * @param <T> The message type.
+   * @param <R> The result type.
+   */
+  public static interface Processor<T, R> {
+
+    /**
+     * Processes a message.
+     *
+     * @param message The message to process.
+     * @return The processing result. If the processor throws an exception the
+     *         message will be retried up to the pool's maximum number of retries.
+     */
+    R process(T message);
+
+  }
+
+  /**
+   * Creates a new worker pool.<p>
+   *
+   * The pool must be stopped by calling {@link KeyedWorkerPool#stop()} once
+   * it's no longer needed, otherwise its worker threads will not be released.
+   *
+   * @param input The input port from which to read messages.
+   * @param workers The number of worker threads.
+   * @return A new worker pool.
+   */
+  public static <T, R> KeyedWorkerPool<T, R> createPool(Input<?> input, int workers) {
+    if (!(input instanceof AsyncInputSupport)) {
+      throw new IllegalArgumentException("Input does not support async messages.");
+    }
+    return new KeyedWorkerPool<T, R>(input.vertx(), (AsyncInputSupport<?>) input, workers);
+  }
+
+  /**
+   * Creates a new worker pool that is stopped when the component is stopped.
+   *
+   * @param component The component to which the input belongs.
+   * @param input The input port from which to read messages.
+   * @param workers The number of worker threads.
+   * @return A new worker pool.
+   */
+  public static <T, R> KeyedWorkerPool<T, R> createPool(Component component, Input<?> input, int workers) {
+    final KeyedWorkerPool<T, R> pool = createPool(input, workers);
+    component.addStopHandler(new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        pool.stop();
+      }
+    });
+    return pool;
+  }
+
+  private KeyedWorkerPool(Vertx vertx, AsyncInputSupport<?> input, int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Worker pool must have at least one worker.");
+    }
+    this.vertx = vertx;
+    this.input = input;
+    this.workers = workers;
+  }
+
+  /**
+   * Sets the key extractor.<p>
+   *
+   * Messages with equal keys are processed in order. If no key extractor
+   * is set then all messages are considered to have the same key and are
+   * processed in order on a single worker.
+   *
+   * @param extractor The key extractor.
+   * @return The worker pool.
+   */
+  public KeyedWorkerPool<T, R> keyExtractor(KeyExtractor<T> extractor) {
+    this.keyExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the message processor.
+   *
+   * @param processor The processor to call on worker threads.
+   * @return The worker pool.
+   */
+  public KeyedWorkerPool<T, R> processor(Processor<T, R> processor) {
+    this.processor = processor;
+    return this;
+  }
+
+  /**
+   * Sets the result handler.
+   *
+   * @param handler A handler to be called on the component's context with
+   *        the result of each processed message.
+   * @return The worker pool.
+   */
+  public KeyedWorkerPool<T, R> resultHandler(Handler<R> handler) {
+    this.resultHandler = handler;
+    return this;
+  }
+
+  /**
+   * Sets the dead letter handler.<p>
+   *
+   * Messages for which processing failed on every attempt are passed to the
+   * dead letter handler on the component's context and then completed. If no
+   * dead letter handler is set then failed messages are logged and discarded.
+   *
+   * @param handler A handler to be called with messages that could not be processed.
+   * @return The worker pool.
+   */
+  public KeyedWorkerPool<T, R> deadLetterHandler(Handler<T> handler) {
+    this.deadLetterHandler = handler;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of times processing of a message is retried.
+   *
+   * @param retries The maximum number of retries after the first attempt.
+   * @return The worker pool.
+   */
+  public KeyedWorkerPool<T, R> setMaxRetries(int retries) {
+    if (retries < 0) {
+      throw new IllegalArgumentException("Maximum retries cannot be negative.");
+    }
+    this.maxRetries = retries;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of times processing of a message is retried.
+   *
+   * @return The maximum number of retries after the first attempt.
+   */
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Returns the number of worker threads.
+   *
+   * @return The number of worker threads.
+   */
+  public int workers() {
+    return workers;
+  }
+
+  /**
+   * Returns the number of messages processed.
+   *
+   * @return The number of messages processed by the pool.
+   */
+  public int messagesProcessed() {
+    return processed;
+  }
+
+  /**
+   * Returns the number of messages that could not be processed.
+   *
+   * @return The number of messages passed to the dead letter handler.
+   */
+  public int messagesFailed() {
+    return failed;
+  }
+
+  /**
+   * Starts the worker pool.<p>
+   *
+   * This method must be called from the component's context.
+   */
+  public void start() {
+    if (processor == null) {
+      throw new IllegalStateException("No processor has been set.");
+    }
+    if (executors != null) {
+      return;
+    }
+
+    // Results are passed back to the context on which the pool is started,
+    // so the pool cannot be started from a thread without a context.
+    final Context context = vertx != null ? vertx.currentContext() : null;
+    if (context == null) {
+      throw new IllegalStateException("Worker pool must be started from a Vert.x context.");
+    }
+    final int maxRetries = this.maxRetries;
+    final int poolID = poolCounter.incrementAndGet();
+    executors = new ExecutorService[workers];
+    for (int i = 0; i < workers; i++) {
+      final int workerID = i;
+      executors[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, String.format("vertigo-worker-%d-%d", poolID, workerID));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+
+    final ExecutorService[] executors = this.executors;
+    input.asyncMessageHandler(new Handler<AsyncMessage<T>>() {
+      @Override
+      public void handle(final AsyncMessage<T> message) {
+        executors[workerFor(message.body())].execute(new Runnable() {
+          @Override
+          public void run() {
+            R result = null;
+            Throwable error = null;
+            for (int i = 0; i <= maxRetries; i++) {
+              try {
+                result = processor.process(message.body());
+                error = null;
+                break;
+              } catch (Throwable t) {
+                // Errors are caught as well since otherwise the message would
+                // never be completed and would hold its outstanding slot.
+                error = t;
+              }
+            }
+            final R finalResult = result;
+            final Throwable finalError = error;
+
+            // Completion must always happen on the component's context since
+            // the input connection is not thread safe. Results from the same
+            // worker are queued on the context in the order they were processed.
+            context.runOnContext(new Handler<Void>() {
+              @Override
+              public void handle(Void _) {
+                if (finalError != null) {
+                  // Failing the message would redeliver it and every message
+                  // after it indefinitely, so the message is completed instead.
+                  failed++;
+                  if (deadLetterHandler != null) {
+                    deadLetterHandler.handle(message.body());
+                  } else {
+                    log.error("Failed to process message " + message.body(), finalError);
+                  }
+                  message.complete();
+                } else {
+                  processed++;
+                  if (resultHandler != null) {
+                    resultHandler.handle(finalResult);
+                  }
+                  message.complete();
+                }
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Stops the worker pool.<p>
+   *
+   * Messages that are still being processed will not be completed and
+   * will therefore be redelivered if the input is restarted.
+   */
+  public void stop() {
+    input.asyncMessageHandler(null);
+    if (executors != null) {
+      for (ExecutorService executor : executors) {
+        executor.shutdownNow();
+      }
+      executors = null;
+    }
+  }
+
+  /**
+   * Returns the index of the worker that processes the given message.
+   */
+  private int workerFor(T message) {
+    if (keyExtractor == null || workers == 1) {
+      return 0;
+    }
+    Object key = keyExtractor.key(message);
+    return key != null ? (key.hashCode() & Integer.MAX_VALUE) % workers : 0;
+  }
+
+}
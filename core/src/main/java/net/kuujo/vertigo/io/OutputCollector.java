@@ -27,7 +27,7 @@ import net.kuujo.vertigo.io.port.OutputPort;
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
-public interface OutputCollector extends IOCollector<OutputCollector> {
+public interface OutputCollector extends IOCollector<OutputCollector>, OutputWatermarkSupport<OutputCollector> {
 
   /**
    * Returns a collection of output ports.
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io;
+
+/**
+ * Support for sending event time watermarks.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The type to which the support belongs.
+ */
+public interface OutputWatermarkSupport<T extends OutputWatermarkSupport<T>> {
+
+  /**
+   * Sends an event time watermark.<p>
+   *
+   * The watermark indicates that no further messages with an event time
+   * earlier than the watermark will be sent. Watermarks are ordered with
+   * messages, and watermarks that do not advance the current watermark
+   * are ignored.
+   *
+   * @param watermark The event time watermark.
+   * @return The called object.
+   */
+  T watermark(long watermark);
+
+}
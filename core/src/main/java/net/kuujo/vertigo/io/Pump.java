@@ -15,17 +15,46 @@
  */
 package net.kuujo.vertigo.io;
 
+import net.kuujo.vertigo.io.batch.InputBatch;
+import net.kuujo.vertigo.io.batch.OutputBatch;
+import net.kuujo.vertigo.io.group.InputGroup;
+import net.kuujo.vertigo.io.group.OutputGroup;
+
 import org.vertx.java.core.Handler;
 
 /**
- * A Vertigo message pump similar to the Vert.x stream pump.
+ * A Vertigo message pump similar to the Vert.x stream pump.<p>
+ *
+ * The pump is backpressure aware. Whenever the output's send queue
+ * becomes full the pump pauses the input, and once the output drains
+ * the input is resumed. Optionally, the pump can also forward input
+ * groups and batches to the output, in which case each input group or
+ * batch will only be started once the corresponding output group or
+ * batch has been created.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class Pump {
+  private static final long RATE_INTERVAL = 1000;
   private final Input<?> input;
   private final Output<?> output;
+  private boolean forwardGroups;
+  private boolean forwardBatches;
+  private boolean paused;
   private int pumped;
+  private long rateStart;
+  private int ratePumped;
+  private double rate;
+
+  private final Handler<Void> drainHandler = new Handler<Void>() {
+    @Override
+    public void handle(Void _) {
+      if (paused) {
+        paused = false;
+        input.resume();
+      }
+    }
+  };
 
   /**
    * Creates a new pump.
@@ -43,6 +72,55 @@ public class Pump {
     this.output = output;
   }
 
+  /**
+   * Sets whether input groups should be forwarded to the output.<p>
+   *
+   * Group forwarding is only supported when the input supports groups
+   * and the output supports groups, e.g. when pumping from an
+   * {@link net.kuujo.vertigo.io.port.InputPort} to an
+   * {@link net.kuujo.vertigo.io.port.OutputPort}. Otherwise this option
+   * has no effect.
+   *
+   * @param forward Whether to forward groups.
+   * @return The pump.
+   */
+  public Pump setForwardGroups(boolean forward) {
+    this.forwardGroups = forward;
+    return this;
+  }
+
+  /**
+   * Returns whether input groups are forwarded to the output.
+   *
+   * @return Whether input groups are forwarded to the output.
+   */
+  public boolean isForwardGroups() {
+    return forwardGroups;
+  }
+
+  /**
+   * Sets whether input batches should be forwarded to the output.<p>
+   *
+   * Batch forwarding is only supported when the input supports batches
+   * and the output supports batches. Otherwise this option has no effect.
+   *
+   * @param forward Whether to forward batches.
+   * @return The pump.
+   */
+  public Pump setForwardBatches(boolean forward) {
+    this.forwardBatches = forward;
+    return this;
+  }
+
+  /**
+   * Returns whether input batches are forwarded to the output.
+   *
+   * @return Whether input batches are forwarded to the output.
+   */
+  public boolean isForwardBatches() {
+    return forwardBatches;
+  }
+
   /**
    * Returns the number of messages pumped.
    *
@@ -52,25 +130,159 @@ public class Pump {
     return pumped;
   }
 
+  /**
+   * Returns the rate at which messages are being pumped.<p>
+   *
+   * The rate is calculated over the most recently completed interval
+   * of at least one second.
+   *
+   * @return The number of messages pumped per second.
+   */
+  public double messagesPerSecond() {
+    updateRate(System.currentTimeMillis());
+    return rate;
+  }
+
   /**
    * Starts the pump.
    */
-  @SuppressWarnings("rawtypes")
   public void start() {
-    input.messageHandler(new Handler() {
+    pumped = 0;
+    ratePumped = 0;
+    rate = 0;
+    rateStart = System.currentTimeMillis();
+    output.drainHandler(drainHandler);
+    input.messageHandler(createMessageHandler(output));
+
+    if (forwardGroups && input instanceof InputGroupSupport && output instanceof OutputGroupSupport) {
+      ((InputGroupSupport<?>) input).groupHandler(new Handler<InputGroup>() {
+        @Override
+        public void handle(InputGroup group) {
+          pumpGroup(group, (OutputGroupSupport<?>) output);
+        }
+      });
+    }
+
+    if (forwardBatches && input instanceof InputBatchSupport && output instanceof OutputBatchSupport) {
+      ((InputBatchSupport<?>) input).batchHandler(new Handler<InputBatch>() {
+        @Override
+        public void handle(InputBatch batch) {
+          pumpBatch(batch, (OutputBatchSupport<?>) output);
+        }
+      });
+    }
+  }
+
+  /**
+   * Stops the pump.
+   */
+  public void stop() {
+    input.messageHandler(null);
+    if (forwardGroups && input instanceof InputGroupSupport) {
+      ((InputGroupSupport<?>) input).groupHandler(null);
+    }
+    if (forwardBatches && input instanceof InputBatchSupport) {
+      ((InputBatchSupport<?>) input).batchHandler(null);
+    }
+    output.drainHandler(null);
+    if (paused) {
+      paused = false;
+      input.resume();
+    }
+  }
+
+  /**
+   * Pumps an input group to a new output group.
+   */
+  private void pumpGroup(final InputGroup group, OutputGroupSupport<?> output) {
+    // The input group's message handler is not registered until the output
+    // group has been created. Since input groups are not started until a
+    // handler is registered, this prevents the source from sending group
+    // messages before the output group is ready to receive them.
+    output.group(group.name(), new Handler<OutputGroup>() {
+      @Override
+      public void handle(final OutputGroup outGroup) {
+        group.endHandler(new Handler<Void>() {
+          @Override
+          public void handle(Void _) {
+            outGroup.end();
+          }
+        });
+        group.groupHandler(new Handler<InputGroup>() {
+          @Override
+          public void handle(InputGroup child) {
+            pumpGroup(child, outGroup);
+          }
+        });
+        group.messageHandler(createMessageHandler(outGroup));
+      }
+    });
+  }
+
+  /**
+   * Pumps an input batch to a new output batch.
+   */
+  private void pumpBatch(final InputBatch batch, OutputBatchSupport<?> output) {
+    output.batch(batch.id(), new Handler<OutputBatch>() {
+      @Override
+      public void handle(final OutputBatch outBatch) {
+        batch.endHandler(new Handler<Void>() {
+          @Override
+          public void handle(Void _) {
+            outBatch.end();
+          }
+        });
+        if (forwardGroups) {
+          batch.groupHandler(new Handler<InputGroup>() {
+            @Override
+            public void handle(InputGroup group) {
+              pumpGroup(group, outBatch);
+            }
+          });
+        }
+        batch.messageHandler(createMessageHandler(outBatch));
+      }
+    });
+  }
+
+  /**
+   * Creates a message handler that forwards messages to the given output.
+   */
+  @SuppressWarnings("rawtypes")
+  private Handler createMessageHandler(final Output<?> target) {
+    return new Handler() {
       @Override
       public void handle(Object message) {
-        output.send(message);
+        target.send(message);
         pumped++;
+        checkFull(target);
       }
-    });
+    };
   }
 
   /**
-   * Stops the pump.
+   * Pauses the input if the given output's send queue is full.
    */
-  public void stop() {
-    input.messageHandler(null);
+  private void checkFull(Output<?> target) {
+    if (!paused && (target.sendQueueFull() || (target != output && output.sendQueueFull()))) {
+      paused = true;
+      input.pause();
+    }
+    if ((pumped & 0xff) == 0) {
+      updateRate(System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Updates the pump rate if a full interval has passed.
+   */
+  private void updateRate(long now) {
+    long elapsed = now - rateStart;
+    if (elapsed >= RATE_INTERVAL) {
+      rate = (pumped - ratePumped) * 1000.0 / elapsed;
+      rateStart = now;
+      ratePumped = pumped;
+    }
   }
 
 }
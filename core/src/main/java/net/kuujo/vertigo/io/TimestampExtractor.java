@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io;
+
+/**
+ * Extracts an event time from an input message.<p>
+ *
+ * Timestamp extractors are used by event time windows to assign messages
+ * to windows based on when events occurred rather than when they were
+ * received.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The message type.
+ */
+public interface TimestampExtractor<T> {
+
+  /**
+   * Returns the event time for the given message.
+   *
+   * @param message The message.
+   * @return The message event time in milliseconds.
+   */
+  long timestamp(T message);
+
+}
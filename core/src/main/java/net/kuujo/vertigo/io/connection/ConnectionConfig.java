@@ -160,6 +160,29 @@ public interface ConnectionConfig extends Config<ConnectionConfig> {
    */
   ConnectionConfig customSelect(Selector selector);
 
+  /**
+   * Sets whether the connection should be chained.<p>
+   *
+   * Chained connections fuse the source and target components into a single
+   * verticle where messages are passed by direct method call on the same event
+   * loop rather than over the event bus. Each instance of the source component
+   * sends only to the instance of the target component with the same instance
+   * number. Connections can only be chained between non-worker verticles with
+   * the same number of instances in the same deployment group. If the connection
+   * cannot be chained then it will be deployed as a normal connection.
+   *
+   * @param chained Whether to chain the connection.
+   * @return The connection configuration.
+   */
+  ConnectionConfig setChained(boolean chained);
+
+  /**
+   * Returns whether the connection should be chained.
+   *
+   * @return Whether the connection should be chained.
+   */
+  boolean isChained();
+
   /**
    * Connection source.
    *
@@ -25,4 +25,16 @@ import net.kuujo.vertigo.Context;
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public interface ConnectionContext<T extends ConnectionContext<T>> extends Context<T> {
+
+  /**
+   * Returns whether the connection is local.<p>
+   *
+   * Local connections are created for chained components. When both sides
+   * of a local connection are running on the same context, messages are
+   * passed by direct method call rather than over the event bus.
+   *
+   * @return Whether the connection is local.
+   */
+  boolean isLocal();
+
 }
@@ -15,6 +15,7 @@
  */
 package net.kuujo.vertigo.io.connection;
 
+import net.kuujo.vertigo.io.AsyncInputSupport;
 import net.kuujo.vertigo.io.Input;
 import net.kuujo.vertigo.io.InputBatchSupport;
 import net.kuujo.vertigo.io.InputGroupSupport;
@@ -40,7 +41,7 @@ import org.vertx.java.core.Handler;
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
-public interface InputConnection extends Connection<InputConnection>, Input<InputConnection>, InputGroupSupport<InputConnection>, InputBatchSupport<InputConnection> {
+public interface InputConnection extends Connection<InputConnection>, Input<InputConnection>, InputGroupSupport<InputConnection>, InputBatchSupport<InputConnection>, AsyncInputSupport<InputConnection> {
 
   /**
    * Registers an input batch handler.
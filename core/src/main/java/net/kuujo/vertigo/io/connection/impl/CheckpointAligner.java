@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.connection.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Aligns checkpoint barriers across all input connections of a component.<p>
+ *
+ * When a barrier for a new checkpoint is received on a connection, that
+ * connection is blocked until the same barrier has been received on all
+ * other connections. Once all barriers have been received the checkpoint
+ * handler is called and the connections are unblocked. This ensures that
+ * the state captured by the checkpoint reflects exactly the messages sent
+ * before the barrier on each connection.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CheckpointAligner {
+  private final Set<DefaultInputConnection> connections = new HashSet<>();
+  private final Set<DefaultInputConnection> received = new HashSet<>();
+  private Handler<Long> checkpointHandler;
+  private long currentCheckpoint;
+  private boolean aligning;
+
+  /**
+   * Sets the handler to be called once a checkpoint has been aligned.
+   *
+   * @param handler A handler to be called with the checkpoint ID.
+   * @return The aligner.
+   */
+  public CheckpointAligner checkpointHandler(Handler<Long> handler) {
+    this.checkpointHandler = handler;
+    return this;
+  }
+
+  /**
+   * Registers a connection with the aligner.
+   *
+   * @param connection The connection to register.
+   */
+  public void register(DefaultInputConnection connection) {
+    connections.add(connection);
+  }
+
+  /**
+   * Unregisters a connection from the aligner.
+   *
+   * @param connection The connection to unregister.
+   */
+  public void unregister(DefaultInputConnection connection) {
+    if (connections.remove(connection)) {
+      if (received.remove(connection)) {
+        connection.unblock();
+      }
+      checkAligned();
+    }
+  }
+
+  /**
+   * Triggers a checkpoint for a component with no input connections.<p>
+   *
+   * Components that have input connections are only checkpointed once
+   * barriers have been received on all connections, so the trigger is
+   * ignored for them.
+   *
+   * @param checkpoint The checkpoint ID.
+   */
+  public void trigger(long checkpoint) {
+    if (connections.isEmpty() && checkpoint > currentCheckpoint) {
+      currentCheckpoint = checkpoint;
+      if (checkpointHandler != null) {
+        checkpointHandler.handle(checkpoint);
+      }
+    }
+  }
+
+  /**
+   * Handles a barrier received on a connection.
+   */
+  void handleBarrier(DefaultInputConnection connection, long checkpoint) {
+    if (checkpoint < currentCheckpoint || (checkpoint == currentCheckpoint && !aligning)) {
+      return;
+    }
+
+    // If a barrier for a newer checkpoint is received while still aligning
+    // then the current checkpoint must have been abandoned upstream.
+    if (checkpoint > currentCheckpoint) {
+      release();
+      currentCheckpoint = checkpoint;
+      aligning = true;
+    }
+
+    if (received.add(connection) && !checkAligned()) {
+      connection.block();
+    }
+  }
+
+  /**
+   * Checks whether barriers have been received on all connections.
+   */
+  private boolean checkAligned() {
+    if (aligning && received.containsAll(connections)) {
+      aligning = false;
+      if (checkpointHandler != null) {
+        checkpointHandler.handle(currentCheckpoint);
+      }
+      release();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Unblocks all connections on which barriers have been received.
+   */
+  private void release() {
+    // Unblocked connections handle their buffered messages immediately,
+    // which may include barriers for the next checkpoint.
+    List<DefaultInputConnection> blocked = new ArrayList<>(received);
+    received.clear();
+    for (DefaultInputConnection connection : blocked) {
+      connection.unblock();
+    }
+  }
+
+}
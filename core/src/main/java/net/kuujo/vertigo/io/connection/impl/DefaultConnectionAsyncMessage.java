@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.connection.impl;
+
+import net.kuujo.vertigo.io.AsyncMessage;
+
+/**
+ * Connection level async message.<p>
+ *
+ * This message is created directly by a {@link DefaultInputConnection} when
+ * the connection receives a message while an async message handler is registered.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultConnectionAsyncMessage<T> implements AsyncMessage<T> {
+  private final long id;
+  private final long generation;
+  private final T body;
+  private final DefaultInputConnection connection;
+  private boolean done;
+
+  public DefaultConnectionAsyncMessage(long id, long generation, T body, DefaultInputConnection connection) {
+    this.id = id;
+    this.generation = generation;
+    this.body = body;
+    this.connection = connection;
+  }
+
+  @Override
+  public T body() {
+    return body;
+  }
+
+  @Override
+  public void complete() {
+    if (!done) {
+      done = true;
+      connection.messageComplete(id, generation);
+    }
+  }
+
+  @Override
+  public void fail() {
+    if (!done) {
+      done = true;
+      connection.messageFail(id, generation);
+    }
+  }
+
+}
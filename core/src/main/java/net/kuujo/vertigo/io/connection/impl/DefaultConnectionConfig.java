@@ -44,6 +44,7 @@ public class DefaultConnectionConfig implements ConnectionConfig {
   private Target target = new DefaultTarget();
   private List<IOHook> hooks = new ArrayList<>();
   private Selector selector;
+  private boolean chained;
 
   public DefaultConnectionConfig() {
     super();
@@ -104,6 +105,17 @@ public class DefaultConnectionConfig implements ConnectionConfig {
     return customSelect(selector);
   }
 
+  @Override
+  public ConnectionConfig setChained(boolean chained) {
+    this.chained = chained;
+    return this;
+  }
+
+  @Override
+  public boolean isChained() {
+    return chained;
+  }
+
   @Override
   public ConnectionConfig roundSelect() {
     this.selector = new RoundRobinSelector();
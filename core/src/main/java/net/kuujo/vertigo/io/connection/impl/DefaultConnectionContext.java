@@ -25,4 +25,15 @@ import net.kuujo.vertigo.io.connection.ConnectionContext;
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public abstract class DefaultConnectionContext<T extends ConnectionContext<T>> extends BaseContext<T> {
+  protected boolean local;
+
+  /**
+   * Returns whether the connection is local.
+   *
+   * @return Whether the connection is local.
+   */
+  public boolean isLocal() {
+    return local;
+  }
+
 }
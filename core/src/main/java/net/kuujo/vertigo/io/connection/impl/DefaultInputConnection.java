@@ -17,10 +17,13 @@ package net.kuujo.vertigo.io.connection.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.kuujo.vertigo.hook.InputHook;
+import net.kuujo.vertigo.io.AsyncMessage;
 import net.kuujo.vertigo.io.batch.InputBatch;
 import net.kuujo.vertigo.io.connection.InputConnection;
 import net.kuujo.vertigo.io.connection.InputConnectionContext;
@@ -28,6 +31,7 @@ import net.kuujo.vertigo.io.group.InputGroup;
 import net.kuujo.vertigo.io.impl.InputDeserializer;
 
 import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.eventbus.EventBus;
@@ -42,6 +46,7 @@ import org.vertx.java.core.json.JsonObject;
 public class DefaultInputConnection implements InputConnection {
   private static final long BATCH_SIZE = 1000;
   private static final long MAX_BATCH_TIME = 100;
+  public static final int DEFAULT_MAX_OUTSTANDING = 1000;
   private final Vertx vertx;
   private final EventBus eventBus;
   private final InputConnectionContext context;
@@ -54,6 +59,7 @@ public class DefaultInputConnection implements InputConnection {
   private final InputDeserializer deserializer = new InputDeserializer();
   @SuppressWarnings("rawtypes")
   private Handler messageHandler;
+  private Handler<AsyncMessage<Object>> asyncMessageHandler;
   private Handler<InputBatch> batchHandler;
   private DefaultConnectionInputBatch currentBatch;
   private long lastReceived;
@@ -62,6 +68,19 @@ public class DefaultInputConnection implements InputConnection {
   private boolean open;
   private boolean connected;
   private boolean paused;
+  private int maxOutstanding = DEFAULT_MAX_OUTSTANDING;
+  private int outstanding;
+  private long lastCompleted;
+  private long generation;
+  private final Set<Long> completed = new HashSet<>();
+  private boolean windowFull;
+  private boolean aligning;
+  private List<JsonObject> blockedMessages = new ArrayList<>();
+  private boolean dropped;
+  private CheckpointAligner aligner;
+  private long watermark = Long.MIN_VALUE;
+  private Handler<Long> watermarkHandler;
+  private Context localContext;
 
   private final Handler<Long> internalTimer = new Handler<Long>() {
     @Override
@@ -82,47 +101,15 @@ public class DefaultInputConnection implements InputConnection {
       if (open && !paused) {
         String action = message.body().getString("action");
         switch (action) {
-          case "message":
-            if (checkID(message.body().getLong("id"))) {
-              doMessage(message.body());
-            }
-            break;
-          case "startGroup":
-            if (checkID(message.body().getLong("id"))) {
-              doGroupStart(message.body());
-            }
-            break;
-          case "group":
-            if (checkID(message.body().getLong("id"))) {
-              doGroupMessage(message.body());
-            }
-            break;
-          case "endGroup":
-            if (checkID(message.body().getLong("id"))) {
-              doGroupEnd(message.body());
-            }
-            break;
-          case "startBatch":
-            if (checkID(message.body().getLong("id"))) {
-              doBatchStart(message.body());
-            }
-            break;
-          case "batch":
-            if (checkID(message.body().getLong("id"))) {
-              doBatchMessage(message.body());
-            }
-            break;
-          case "endBatch":
-            if (checkID(message.body().getLong("id"))) {
-              doBatchEnd(message.body());
-            }
-            break;
           case "connect":
             doConnect(message);
             break;
           case "disconnect":
             doDisconnect(message);
             break;
+          default:
+            doAction(action, message.body());
+            break;
         }
       }
     }
@@ -171,6 +158,10 @@ public class DefaultInputConnection implements InputConnection {
             feedbackTimerID = vertx.setPeriodic(MAX_BATCH_TIME, internalTimer);
           }
           open = true;
+          if (context.isLocal()) {
+            localContext = vertx.currentContext();
+            LocalConnections.register(vertx, context.address(), DefaultInputConnection.this);
+          }
         }
         doneHandler.handle(result);
       }
@@ -178,14 +169,117 @@ public class DefaultInputConnection implements InputConnection {
     return this;
   }
 
+  /**
+   * Handles a message action.
+   */
+  private void doAction(String action, JsonObject message) {
+    // Messages received while the connection is blocked for checkpoint
+    // alignment are buffered rather than dropped, so a blocked connection
+    // never has to wait for messages to be resent before it can receive
+    // the next barrier. The other side of the connection is paused while
+    // blocked, so only messages that were already in flight are buffered.
+    if (aligning) {
+      blockedMessages.add(message);
+      return;
+    }
+
+    switch (action) {
+      case "message":
+        if (checkID(message.getLong("id"))) {
+          doMessage(message);
+        }
+        break;
+      case "startGroup":
+        if (checkID(message.getLong("id"))) {
+          doGroupStart(message);
+          doComplete(message.getLong("id"));
+        }
+        break;
+      case "group":
+        if (checkID(message.getLong("id"))) {
+          doGroupMessage(message);
+          doComplete(message.getLong("id"));
+        }
+        break;
+      case "endGroup":
+        if (checkID(message.getLong("id"))) {
+          doGroupEnd(message);
+          doComplete(message.getLong("id"));
+        }
+        break;
+      case "startBatch":
+        if (checkID(message.getLong("id"))) {
+          doBatchStart(message);
+          doComplete(message.getLong("id"));
+        }
+        break;
+      case "batch":
+        if (checkID(message.getLong("id"))) {
+          doBatchMessage(message);
+          doComplete(message.getLong("id"));
+        }
+        break;
+      case "endBatch":
+        if (checkID(message.getLong("id"))) {
+          doBatchEnd(message);
+          doComplete(message.getLong("id"));
+        }
+        break;
+      case "checkpoint":
+        if (checkID(message.getLong("id"))) {
+          doComplete(message.getLong("id"));
+          if (aligner != null) {
+            aligner.handleBarrier(this, message.getLong("checkpoint"));
+          }
+        }
+        break;
+      case "watermark":
+        if (checkID(message.getLong("id"))) {
+          doComplete(message.getLong("id"));
+          doWatermark(message.getLong("watermark"));
+        }
+        break;
+    }
+  }
+
+  /**
+   * Handles a message from a local output connection.<p>
+   *
+   * Local messages can only be handled if the local output connection is
+   * running on the same context as this connection. The output connection
+   * is responsible for ensuring that the message doesn't share any mutable
+   * state with the message held in its resend buffer.
+   *
+   * @return Whether the message was handled.
+   */
+  boolean handleLocal(JsonObject message) {
+    if (localContext == null || vertx.currentContext() != localContext) {
+      return false;
+    }
+    if (open && !paused) {
+      doAction(message.getString("action"), message);
+    }
+    return true;
+  }
+
   /**
    * Checks that the given ID is valid.
    */
   private boolean checkID(long id) {
+    // If the window of outstanding async messages is full then drop the
+    // message. Dropped messages will be resent once the window has room.
+    if (windowFull) {
+      dropped = true;
+      return false;
+    }
+
     // Ensure that the given ID is a monotonically increasing ID.
     // If the ID is less than the last received ID then reset the
     // last received ID since the connection must have been reset.
     if (lastReceived == 0 || id == lastReceived + 1 || id < lastReceived) {
+      if (id != lastReceived + 1 && asyncMessageHandler != null && id - 1 != lastCompleted) {
+        resetCompleted(id - 1);
+      }
       lastReceived = id;
       // If the ID reaches the end of the current batch then tell the data
       // source that it's okay to remove all previous messages.
@@ -206,8 +300,11 @@ public class DefaultInputConnection implements InputConnection {
     // Send a message to the other side of the connection indicating the
     // last message that we received in order. This will allow it to
     // purge messages we've already received from its queue.
+    // When async messages are enabled, only messages that have been completed
+    // in order can be acked, otherwise they could never be redelivered.
     if (open && connected) {
-      eventBus.send(outAddress, new JsonObject().putString("action", "ack").putNumber("id", lastReceived));
+      long id = asyncMessageHandler != null ? lastCompleted : lastReceived;
+      eventBus.send(outAddress, new JsonObject().putString("action", "ack").putNumber("id", id));
       lastFeedbackTime = System.currentTimeMillis();
     }
   }
@@ -228,10 +325,9 @@ public class DefaultInputConnection implements InputConnection {
   @Override
   public InputConnection pause() {
     if (!paused) {
+      boolean wasBlocked = isBlocked();
       paused = true;
-      if (open && connected) {
-        eventBus.send(outAddress, new JsonObject().putString("action", "pause").putNumber("id", lastReceived));
-      }
+      updateFlow(wasBlocked);
     }
     return this;
   }
@@ -239,14 +335,131 @@ public class DefaultInputConnection implements InputConnection {
   @Override
   public InputConnection resume() {
     if (paused) {
+      boolean wasBlocked = isBlocked();
       paused = false;
-      if (open && connected) {
-        eventBus.send(outAddress, new JsonObject().putString("action", "resume").putNumber("id", lastReceived));
-      }
+      updateFlow(wasBlocked);
     }
     return this;
   }
 
+  /**
+   * Sets the checkpoint aligner to which to pass checkpoint barriers.
+   *
+   * @param aligner The checkpoint aligner.
+   * @return The input connection.
+   */
+  public InputConnection setCheckpointAligner(CheckpointAligner aligner) {
+    this.aligner = aligner;
+    return this;
+  }
+
+  /**
+   * Returns the last watermark received on the connection.
+   *
+   * @return The connection's watermark, or {@link Long#MIN_VALUE} if no
+   *         watermark has been received.
+   */
+  public long watermark() {
+    return watermark;
+  }
+
+  /**
+   * Sets a handler to be called when the connection's watermark advances.
+   *
+   * @param handler A handler to be called with the new watermark.
+   * @return The input connection.
+   */
+  public InputConnection watermarkHandler(Handler<Long> handler) {
+    this.watermarkHandler = handler;
+    return this;
+  }
+
+  /**
+   * Handles a watermark.
+   */
+  private void doWatermark(long watermark) {
+    if (watermark > this.watermark) {
+      this.watermark = watermark;
+      if (watermarkHandler != null) {
+        watermarkHandler.handle(watermark);
+      }
+    }
+  }
+
+  /**
+   * Blocks the connection while checkpoint barriers are aligned.
+   */
+  void block() {
+    if (!aligning) {
+      boolean wasBlocked = isBlocked();
+      aligning = true;
+      updateFlow(wasBlocked);
+    }
+  }
+
+  /**
+   * Unblocks the connection once checkpoint barriers have been aligned.
+   */
+  void unblock() {
+    if (aligning) {
+      boolean wasBlocked = isBlocked();
+      aligning = false;
+
+      // Handle messages buffered while the connection was blocked. If a
+      // buffered barrier blocks the connection again then the remaining
+      // messages are buffered again in order.
+      List<JsonObject> messages = blockedMessages;
+      blockedMessages = new ArrayList<>();
+      for (JsonObject message : messages) {
+        doAction(message.getString("action"), message);
+      }
+      updateFlow(wasBlocked);
+      checkDropped();
+    }
+  }
+
+  /**
+   * Discards messages buffered while blocked, requesting that they be
+   * resent once the connection is unblocked.
+   */
+  private void clearBlocked() {
+    if (!blockedMessages.isEmpty()) {
+      blockedMessages.clear();
+      dropped = true;
+    }
+  }
+
+  /**
+   * Returns a boolean indicating whether the other side of the connection
+   * should be paused.
+   */
+  private boolean isBlocked() {
+    return paused || windowFull || aligning;
+  }
+
+  /**
+   * Pauses or resumes the other side of the connection if the connection
+   * has been blocked or unblocked.
+   */
+  private void updateFlow(boolean wasBlocked) {
+    boolean blocked = isBlocked();
+    if (blocked != wasBlocked && open && connected) {
+      eventBus.send(outAddress, new JsonObject().putString("action", blocked ? "pause" : "resume").putNumber("id", lastReceived));
+    }
+  }
+
+  /**
+   * Requests that dropped messages be resent once the connection is unblocked.
+   */
+  private void checkDropped() {
+    // If any messages were dropped while the connection was blocked then
+    // request that they be resent from the last received message.
+    if (dropped && !windowFull && !aligning) {
+      dropped = false;
+      fail();
+    }
+  }
+
   @Override
   @SuppressWarnings("rawtypes")
   public InputConnection messageHandler(Handler handler) {
@@ -254,6 +467,31 @@ public class DefaultInputConnection implements InputConnection {
     return this;
   }
 
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <U> InputConnection asyncMessageHandler(Handler<AsyncMessage<U>> handler) {
+    // Start tracking completions from the last received message. Messages
+    // that are still outstanding from a previous handler are ignored.
+    this.asyncMessageHandler = (Handler) handler;
+    resetCompleted(lastReceived);
+    return this;
+  }
+
+  @Override
+  public InputConnection setMaxOutstanding(int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException("Maximum outstanding messages must be positive.");
+    }
+    this.maxOutstanding = max;
+    checkWindow();
+    return this;
+  }
+
+  @Override
+  public int getMaxOutstanding() {
+    return maxOutstanding;
+  }
+
   @Override
   public InputConnection batchHandler(Handler<InputBatch> handler) {
     batchHandler = handler;
@@ -278,7 +516,16 @@ public class DefaultInputConnection implements InputConnection {
   @SuppressWarnings("unchecked")
   private void doMessage(final JsonObject message) {
     Object value = deserializer.deserialize(message);
-    if (value != null && messageHandler != null) {
+    if (asyncMessageHandler != null) {
+      long id = message.getLong("id");
+      if (value != null) {
+        outstanding++;
+        checkWindow();
+        asyncMessageHandler.handle(new DefaultConnectionAsyncMessage<Object>(id, generation, value, this));
+      } else {
+        doComplete(id);
+      }
+    } else if (value != null && messageHandler != null) {
       messageHandler.handle(value);
     }
     for (InputHook hook : hooks) {
@@ -286,6 +533,93 @@ public class DefaultInputConnection implements InputConnection {
     }
   }
 
+  /**
+   * Called when an async message is completed.
+   */
+  void messageComplete(long id, long generation) {
+    // Messages count against the window until they're done, whatever their
+    // generation. Messages from a previous generation have already been
+    // redelivered or belong to a reset connection, so they're not acked.
+    outstanding--;
+    if (generation == this.generation) {
+      doComplete(id);
+    }
+    checkWindow();
+  }
+
+  /**
+   * Called when an async message is failed.
+   */
+  void messageFail(long id, long generation) {
+    // Failing a message resets the connection to the last message that was
+    // completed in order. All messages after that point will be resent and
+    // any completions of outstanding messages will be ignored.
+    outstanding--;
+    if (generation == this.generation) {
+      lastReceived = lastCompleted;
+      dropped = false;
+      resetCompleted(lastCompleted);
+      fail();
+    }
+    checkWindow();
+  }
+
+  /**
+   * Marks a message as complete, advancing the last in order completed ID.
+   */
+  private void doComplete(long id) {
+    if (asyncMessageHandler == null || id <= lastCompleted) {
+      return;
+    }
+
+    long previous = lastCompleted;
+    if (id == lastCompleted + 1 && completed.isEmpty()) {
+      lastCompleted = id;
+    } else {
+      completed.add(id);
+      while (completed.remove(lastCompleted + 1)) {
+        lastCompleted++;
+      }
+    }
+
+    // Ack completed messages at the same interval as synchronous messages.
+    if (lastCompleted / BATCH_SIZE > previous / BATCH_SIZE) {
+      ack();
+    }
+  }
+
+  /**
+   * Resets completion tracking to the given ID.<p>
+   *
+   * Messages that are still being processed from the previous generation
+   * keep counting against the outstanding message window until they're
+   * completed or failed, so a reset never allows more than the maximum
+   * number of messages to be in progress at once.
+   */
+  private void resetCompleted(long id) {
+    lastCompleted = id;
+    completed.clear();
+    generation++;
+    checkWindow();
+  }
+
+  /**
+   * Pauses or resumes the connection according to the outstanding message window.
+   */
+  private void checkWindow() {
+    if (!windowFull && outstanding >= maxOutstanding) {
+      boolean wasBlocked = isBlocked();
+      windowFull = true;
+      updateFlow(wasBlocked);
+    } else if (windowFull && outstanding < maxOutstanding) {
+      boolean wasBlocked = isBlocked();
+      windowFull = false;
+      ack();
+      updateFlow(wasBlocked);
+      checkDropped();
+    }
+  }
+
   /**
    * Handles a group start.
    */
@@ -403,6 +737,7 @@ public class DefaultInputConnection implements InputConnection {
     if (open) {
       if (!connected) {
         groups.clear();
+        clearBlocked();
         connected = true;
       }
       message.reply(true);
@@ -433,6 +768,12 @@ public class DefaultInputConnection implements InputConnection {
 
   @Override
   public void close(final Handler<AsyncResult<Void>> doneHandler) {
+    // The local connection is unregistered immediately so that it's removed
+    // from the registry even if the event bus handler can't be unregistered.
+    if (localContext != null) {
+      LocalConnections.unregister(vertx, context.address(), this);
+      localContext = null;
+    }
     eventBus.unregisterHandler(inAddress, internalMessageHandler, new Handler<AsyncResult<Void>>() {
       @Override
       public void handle(AsyncResult<Void> result) {
@@ -440,8 +781,11 @@ public class DefaultInputConnection implements InputConnection {
           vertx.cancelTimer(feedbackTimerID);
           feedbackTimerID = 0;
         }
+        blockedMessages.clear();
         open = false;
-        doneHandler.handle(result);
+        if (doneHandler != null) {
+          doneHandler.handle(result);
+        }
       }
     });
   }
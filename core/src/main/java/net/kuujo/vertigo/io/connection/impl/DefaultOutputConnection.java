@@ -58,12 +58,15 @@ public class DefaultOutputConnection implements OutputConnection {
   private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
   private Handler<Void> drainHandler;
   private long currentMessage = 1;
+  private long pausedMessage;
   private final TreeMap<Long, JsonObject> messages = new TreeMap<>();
   private final Map<String, DefaultConnectionOutputGroup> groups = new HashMap<>();
   private DefaultConnectionOutputBatch currentBatch;
   private boolean open;
   private boolean full;
   private boolean paused;
+  private DefaultInputConnection localInput;
+  private long localVersion = -1;
 
   private final Handler<Message<JsonObject>> internalMessageHandler = new Handler<Message<JsonObject>>() {
     @Override
@@ -239,6 +242,8 @@ public class DefaultOutputConnection implements OutputConnection {
 
   @Override
   public void close(final Handler<AsyncResult<Void>> doneHandler) {
+    localInput = null;
+    localVersion = -1;
     eventBus.unregisterHandler(outAddress, internalMessageHandler, new Handler<AsyncResult<Void>>() {
       @Override
       public void handle(AsyncResult<Void> result) {
@@ -328,11 +333,7 @@ public class DefaultOutputConnection implements OutputConnection {
   private void doAck(long id) {
     // The other side of the connection has sent a message indicating which
     // messages it has seen. We can clear any messages before the indicated ID.
-    if (messages.containsKey(id+1)) {
-      messages.tailMap(id+1);
-    } else {
-      messages.clear();
-    }
+    messages.headMap(id, true).clear();
     checkDrain();
   }
 
@@ -345,7 +346,7 @@ public class DefaultOutputConnection implements OutputConnection {
     // after that point in order.
     if (messages.containsKey(id+1)) {
       for (long i = id+1; i <= messages.lastKey(); i++) {
-        eventBus.send(inAddress, messages.get(i));
+        transmit(messages.get(i));
       }
     }
   }
@@ -354,7 +355,13 @@ public class DefaultOutputConnection implements OutputConnection {
    * Handles a connection pause.
    */
   private void doPause(long id) {
+    // Mark the connection as full so that the drain handler will be
+    // called once the connection is resumed and the queue is drained.
+    if (!paused) {
+      pausedMessage = currentMessage;
+    }
     paused = true;
+    full = true;
   }
 
   /**
@@ -363,10 +370,68 @@ public class DefaultOutputConnection implements OutputConnection {
   private void doResume(long id) {
     if (paused) {
       paused = false;
+      // Messages created while the connection was paused were never
+      // transmitted, so transmit them now rather than waiting for the
+      // other side of the connection to detect the gap.
+      for (JsonObject message : messages.tailMap(pausedMessage, true).values()) {
+        transmit(message);
+      }
       checkDrain();
     }
   }
 
+  /**
+   * Transmits a message to the other side of the connection.
+   */
+  private void transmit(JsonObject message) {
+    // If this is a local connection then attempt to pass the message directly
+    // to the input connection. This will only succeed if the input connection
+    // is running on the same context, otherwise fall back to the event bus.
+    if (context.isLocal()) {
+      DefaultInputConnection input = localInput();
+      if (input != null && input.handleLocal(localCopy(message))) {
+        return;
+      }
+    }
+    eventBus.send(inAddress, message);
+  }
+
+  /**
+   * Returns the local input connection, if any.<p>
+   *
+   * The input connection is resolved once and cached until a local connection
+   * is registered or unregistered, so sending a message doesn't take the
+   * registry lock. The version must be read before the lookup so that a
+   * change made during the lookup causes it to be resolved again.
+   */
+  private DefaultInputConnection localInput() {
+    long version = LocalConnections.version();
+    if (version != localVersion) {
+      localInput = LocalConnections.lookup(vertx, context.address());
+      localVersion = version;
+    }
+    return localInput;
+  }
+
+  /**
+   * Copies a message for a local input connection.<p>
+   *
+   * Messages sent over the event bus are always copied, so the receiver can
+   * never modify a message that's held for resending. Local messages are
+   * copied only if the message value is mutable. Java serialized values are
+   * deserialized to a new object by the receiver and immutable values can be
+   * safely shared, so neither needs to be copied.
+   */
+  private JsonObject localCopy(JsonObject message) {
+    if (!message.getBoolean("serialized", false)) {
+      Object value = message.getValue("value");
+      if (value instanceof JsonObject || value instanceof JsonArray || value instanceof Buffer || value instanceof byte[]) {
+        return message.copy();
+      }
+    }
+    return message;
+  }
+
   /**
    * Sends a message.
    */
@@ -375,7 +440,7 @@ public class DefaultOutputConnection implements OutputConnection {
     JsonObject message = createMessage(value)
         .putString("action", "message");
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     for (OutputHook hook : hooks) {
       hook.handleSend(value);
@@ -395,7 +460,7 @@ public class DefaultOutputConnection implements OutputConnection {
         .putString("parent", parent)
         .putString("action", "startGroup");
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     checkFull();
   }
@@ -409,7 +474,7 @@ public class DefaultOutputConnection implements OutputConnection {
         .putString("action", "group")
         .putString("group", group);
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     for (OutputHook hook : hooks) {
       hook.handleSend(value);
@@ -426,7 +491,7 @@ public class DefaultOutputConnection implements OutputConnection {
         .putString("action", "endGroup")
         .putString("group", group);
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     groups.remove(group);
   }
@@ -440,7 +505,7 @@ public class DefaultOutputConnection implements OutputConnection {
         .putString("batch", batch)
         .putString("action", "startBatch");
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     checkFull();
   }
@@ -454,7 +519,7 @@ public class DefaultOutputConnection implements OutputConnection {
         .putString("action", "batch")
         .putString("batch", batch);
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     for (OutputHook hook : hooks) {
       hook.handleSend(value);
@@ -471,13 +536,55 @@ public class DefaultOutputConnection implements OutputConnection {
         .putString("action", "endBatch")
         .putString("batch", batch);
     if (open && !paused) {
-      eventBus.send(inAddress, message);
+      transmit(message);
     }
     if (currentBatch != null && currentBatch.id().equals(batch)) {
       currentBatch = null;
     }
   }
 
+  /**
+   * Sends a checkpoint barrier.<p>
+   *
+   * Barriers are ordered with messages on the connection, so all messages
+   * sent prior to the barrier are received prior to the barrier. If the
+   * connection is not open then the barrier is skipped and the checkpoint
+   * will not be completed.
+   *
+   * @param checkpoint The checkpoint ID.
+   */
+  public void checkpoint(long checkpoint) {
+    if (!open) {
+      return;
+    }
+    JsonObject message = createMessage()
+        .putString("action", "checkpoint")
+        .putNumber("checkpoint", checkpoint);
+    if (open && !paused) {
+      transmit(message);
+    }
+  }
+
+  /**
+   * Sends an event time watermark.<p>
+   *
+   * Watermarks are ordered with messages, so the watermark will not be
+   * received prior to any message sent before it.
+   *
+   * @param watermark The event time watermark.
+   */
+  public void watermark(long watermark) {
+    if (!open) {
+      return;
+    }
+    JsonObject message = createMessage()
+        .putString("action", "watermark")
+        .putNumber("watermark", watermark);
+    if (!paused) {
+      transmit(message);
+    }
+  }
+
   /**
    * Creates an empty message.
    */
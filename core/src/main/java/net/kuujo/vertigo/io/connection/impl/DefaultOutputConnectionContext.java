@@ -90,6 +90,17 @@ public class DefaultOutputConnectionContext extends DefaultConnectionContext<Out
       return new Builder(context);
     }
 
+    /**
+     * Sets whether the connection is local.
+     *
+     * @param local Whether the connection is local.
+     * @return The context builder.
+     */
+    public Builder setLocal(boolean local) {
+      context.local = local;
+      return this;
+    }
+
     /**
      * Sets the output hooks.
      *
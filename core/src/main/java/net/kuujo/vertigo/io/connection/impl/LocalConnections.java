@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.connection.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.vertx.java.core.Vertx;
+
+/**
+ * Registry of open local input connections.<p>
+ *
+ * Input connections for chained components register themselves by address
+ * when opened, allowing output connections in the same verticle to pass
+ * messages to them by direct method call rather than over the event bus.
+ * Connections are registered separately for each Vert.x instance so that
+ * networks running in separate Vert.x instances within the same JVM never
+ * see each other's connections. Since connections reference their Vert.x
+ * instance, entries are removed explicitly when connections are closed
+ * rather than relying on weak keys.<p>
+ *
+ * The registry is versioned so that output connections can cache the
+ * connection they resolve and only look it up again once a connection has
+ * been registered or unregistered, rather than taking the registry lock
+ * for every message.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class LocalConnections {
+  private static final Map<Vertx, Map<String, DefaultInputConnection>> connections = new HashMap<>();
+  private static volatile long version;
+
+  private LocalConnections() {
+  }
+
+  /**
+   * Registers a local input connection.
+   */
+  static synchronized void register(Vertx vertx, String address, DefaultInputConnection connection) {
+    Map<String, DefaultInputConnection> addresses = connections.get(vertx);
+    if (addresses == null) {
+      addresses = new HashMap<>();
+      connections.put(vertx, addresses);
+    }
+    addresses.put(address, connection);
+    version++;
+  }
+
+  /**
+   * Unregisters a local input connection.
+   */
+  static synchronized void unregister(Vertx vertx, String address, DefaultInputConnection connection) {
+    Map<String, DefaultInputConnection> addresses = connections.get(vertx);
+    if (addresses != null && addresses.get(address) == connection) {
+      addresses.remove(address);
+      if (addresses.isEmpty()) {
+        connections.remove(vertx);
+      }
+      version++;
+    }
+  }
+
+  /**
+   * Returns the current registry version. The version changes whenever
+   * a connection is registered or unregistered.
+   */
+  static long version() {
+    return version;
+  }
+
+  /**
+   * Looks up a local input connection.
+   */
+  static synchronized DefaultInputConnection lookup(Vertx vertx, String address) {
+    Map<String, DefaultInputConnection> addresses = connections.get(vertx);
+    return addresses != null ? addresses.get(address) : null;
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.connection.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Tracks the minimum event time watermark across a set of input connections.<p>
+ *
+ * Each input port tracks the watermark of its own connections, and the
+ * input collector tracks the watermark of all connections on all ports.
+ * A connection that has not yet received a watermark holds back the
+ * watermark of the tracker until it does.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class WatermarkTracker {
+  private final Set<DefaultInputConnection> connections = new HashSet<>();
+  private Handler<Long> watermarkHandler;
+  private long watermark = Long.MIN_VALUE;
+
+  /**
+   * Sets the handler to be called when the watermark advances.
+   *
+   * @param handler A handler to be called with the new watermark.
+   * @return The tracker.
+   */
+  public WatermarkTracker watermarkHandler(Handler<Long> handler) {
+    this.watermarkHandler = handler;
+    return this;
+  }
+
+  /**
+   * Returns the current watermark.
+   *
+   * @return The minimum watermark of all registered connections.
+   */
+  public long watermark() {
+    return watermark;
+  }
+
+  /**
+   * Registers a connection with the tracker.
+   *
+   * @param connection The connection to register.
+   */
+  public void register(DefaultInputConnection connection) {
+    connections.add(connection);
+  }
+
+  /**
+   * Unregisters a connection from the tracker.<p>
+   *
+   * If the connection was holding back the watermark then the watermark
+   * may advance once the connection is removed.
+   *
+   * @param connection The connection to unregister.
+   */
+  public void unregister(DefaultInputConnection connection) {
+    if (connections.remove(connection)) {
+      update();
+    }
+  }
+
+  /**
+   * Recalculates the watermark, calling the watermark handler if it advanced.
+   */
+  public void update() {
+    if (connections.isEmpty()) {
+      return;
+    }
+    long min = Long.MAX_VALUE;
+    for (DefaultInputConnection connection : connections) {
+      min = Math.min(min, connection.watermark());
+    }
+    if (min > watermark) {
+      watermark = min;
+      if (watermarkHandler != null) {
+        watermarkHandler.handle(watermark);
+      }
+    }
+  }
+
+}
@@ -24,6 +24,8 @@ import java.util.UUID;
 
 import net.kuujo.vertigo.io.InputCollector;
 import net.kuujo.vertigo.io.InputContext;
+import net.kuujo.vertigo.io.connection.impl.CheckpointAligner;
+import net.kuujo.vertigo.io.connection.impl.WatermarkTracker;
 import net.kuujo.vertigo.io.port.InputPort;
 import net.kuujo.vertigo.io.port.InputPortContext;
 import net.kuujo.vertigo.io.port.impl.DefaultInputPort;
@@ -51,15 +53,33 @@ public class DefaultInputCollector implements InputCollector, Observer<InputCont
   private InputContext context;
   private final Map<String, InputPort> ports = new HashMap<>();
   private final TaskRunner tasks = new TaskRunner();
+  private final CheckpointAligner aligner = new CheckpointAligner();
+  private final WatermarkTracker watermarks = new WatermarkTracker();
+  private Handler<Long> watermarkHandler;
+  private Handler<Long> forwardHandler;
   private boolean started;
 
+  private final Handler<Long> internalWatermarkHandler = new Handler<Long>() {
+    @Override
+    public void handle(Long watermark) {
+      if (watermarkHandler != null) {
+        watermarkHandler.handle(watermark);
+      }
+      if (forwardHandler != null) {
+        forwardHandler.handle(watermark);
+      }
+    }
+  };
+
   public DefaultInputCollector(Vertx vertx) {
     this.vertx = vertx;
+    watermarks.watermarkHandler(internalWatermarkHandler);
   }
 
   public DefaultInputCollector(Vertx vertx, InputContext context) {
     this.vertx = vertx;
     this.context = context;
+    watermarks.watermarkHandler(internalWatermarkHandler);
     context.registerObserver(this);
   }
 
@@ -89,12 +109,58 @@ public class DefaultInputCollector implements InputCollector, Observer<InputCont
             .build();
         DefaultInputContext.Builder.newBuilder((DefaultInputContext) context).addPort((DefaultInputPortContext) portContext);
       }
-      port = new DefaultInputPort(vertx, portContext);
+      port = new DefaultInputPort(vertx, portContext, aligner, watermarks);
       ports.put(name, port.open());
     }
     return port;
   }
 
+  /**
+   * Sets a handler to be called once checkpoint barriers have been
+   * received on all input connections.
+   *
+   * @param handler A handler to be called with the checkpoint ID.
+   * @return The input collector.
+   */
+  public DefaultInputCollector checkpointHandler(Handler<Long> handler) {
+    aligner.checkpointHandler(handler);
+    return this;
+  }
+
+  /**
+   * Triggers a checkpoint if the collector has no input connections.
+   *
+   * @param checkpoint The checkpoint ID.
+   */
+  public void triggerCheckpoint(long checkpoint) {
+    aligner.trigger(checkpoint);
+  }
+
+  @Override
+  public long watermark() {
+    return watermarks.watermark();
+  }
+
+  @Override
+  public InputCollector watermarkHandler(Handler<Long> handler) {
+    this.watermarkHandler = handler;
+    return this;
+  }
+
+  /**
+   * Sets a handler to which to forward the watermark of all input ports.<p>
+   *
+   * This is used by the component to forward watermarks downstream
+   * independently of any user registered watermark handler.
+   *
+   * @param handler A handler to be called with the new watermark.
+   * @return The input collector.
+   */
+  public DefaultInputCollector forwardWatermarks(Handler<Long> handler) {
+    this.forwardHandler = handler;
+    return this;
+  }
+
   @Override
   public void update(final InputContext update) {
     // All updates are run sequentially to prevent race conditions
@@ -114,7 +180,7 @@ public class DefaultInputCollector implements InputCollector, Observer<InputCont
             }
           }
           if (!exists) {
-            newPorts.add(new DefaultInputPort(vertx, input));
+            newPorts.add(new DefaultInputPort(vertx, input, aligner, watermarks));
           }
         }
 
@@ -197,7 +263,7 @@ public class DefaultInputCollector implements InputCollector, Observer<InputCont
                 }
               });
             } else {
-              ports.put(port.name(), new DefaultInputPort(vertx, port).open(new Handler<AsyncResult<Void>>() {
+              ports.put(port.name(), new DefaultInputPort(vertx, port, aligner, watermarks).open(new Handler<AsyncResult<Void>>() {
                 @Override
                 public void handle(AsyncResult<Void> result) {
                   if (result.failed()) {
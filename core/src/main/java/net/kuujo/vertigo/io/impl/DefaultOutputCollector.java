@@ -95,6 +95,25 @@ public class DefaultOutputCollector implements OutputCollector, Observer<OutputC
     return port;
   }
 
+  /**
+   * Sends a checkpoint barrier on all output ports.
+   *
+   * @param checkpoint The checkpoint ID.
+   */
+  public void checkpoint(long checkpoint) {
+    for (OutputPort port : ports.values()) {
+      ((DefaultOutputPort) port).checkpoint(checkpoint);
+    }
+  }
+
+  @Override
+  public OutputCollector watermark(long watermark) {
+    for (OutputPort port : ports.values()) {
+      port.watermark(watermark);
+    }
+    return this;
+  }
+
   @Override
   public void update(final OutputContext update) {
     // All updates are run sequentially to prevent race conditions
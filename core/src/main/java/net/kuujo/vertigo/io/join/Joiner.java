@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.join;
+
+/**
+ * Combines a pair of joined messages.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <L> The left message type.
+ * @param <R> The right message type.
+ * @param <J> The joined message type.
+ */
+public interface Joiner<L, R, J> {
+
+  /**
+   * Joins two messages.
+   *
+   * @param left The left message.
+   * @param right The right message. For left joins this will be
+   *        <code>null</code> if no right message was matched before
+   *        the left message was evicted from the join window.
+   * @return The joined message.
+   */
+  J join(L left, R right);
+
+}
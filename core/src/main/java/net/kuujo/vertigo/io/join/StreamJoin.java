@@ -0,0 +1,599 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.join;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.kuujo.vertigo.io.InputCollector;
+import net.kuujo.vertigo.io.KeyExtractor;
+import net.kuujo.vertigo.io.TimestampExtractor;
+import net.kuujo.vertigo.util.TimerWheel;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Windowed join of two input ports.<p>
+ *
+ * The stream join registers message handlers on two ports of an input
+ * collector and joins messages with equal keys that arrive within a
+ * bounded window of one another. The window may be bounded by time, by
+ * the number of messages held for each key, or by both. Messages are
+ * held in per-key ring buffers of primitive arrays and are evicted once
+ * they fall outside of the time window, so the state held by the join is
+ * bounded regardless of how long the join runs.<p>
+ *
+ * By default the join window is measured in processing time and expired
+ * messages are evicted in arrival order by the context's shared
+ * {@link TimerWheel}. If timestamp extractors are set for both ports then
+ * the window is measured in event time and messages are evicted by their
+ * timestamps as the other port's watermark advances, so messages that
+ * arrive out of order are evicted with the messages around them. A late
+ * message that's already behind the other port's watermark is joined with
+ * any buffered messages it matches but is not held.<p>
+ *
+ * <pre>
+ * StreamJoin.create(input, "orders", "payments", joiner)
+ *     .leftKeyExtractor(orderIdExtractor)
+ *     .rightKeyExtractor(paymentOrderIdExtractor)
+ *     .within(60000)
+ *     .resultHandler(resultHandler)
+ *     .start();
+ * </pre>
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <L> The left message type.
+ * @param <R> The right message type.
+ * @param <J> The joined message type.
+ */
+public class StreamJoin<L, R, J> {
+
+  /**
+   * Join type.
+   */
+  public static enum Type {
+
+    /**
+     * Emits only pairs of matched messages.
+     */
+    INNER,
+
+    /**
+     * Emits pairs of matched messages and additionally emits each left
+     * message that was never matched once it's evicted from the window.
+     */
+    LEFT;
+
+  }
+
+  private final InputCollector input;
+  private final String leftPort;
+  private final String rightPort;
+  private final Joiner<L, R, J> joiner;
+  private final Side left = new Side(true);
+  private final Side right = new Side(false);
+  private Type type = Type.INNER;
+  private long within;
+  private int maxCount;
+  private KeyExtractor<L> leftKeyExtractor;
+  private KeyExtractor<R> rightKeyExtractor;
+  private TimestampExtractor<L> leftTimestampExtractor;
+  private TimestampExtractor<R> rightTimestampExtractor;
+  private Handler<J> resultHandler;
+  private long leftWatermark = Long.MIN_VALUE;
+  private long rightWatermark = Long.MIN_VALUE;
+  private TimerWheel wheel;
+  private long timerID = -1;
+  private boolean eventTime;
+  private boolean running;
+
+  private final Handler<Void> evictHandler = new Handler<Void>() {
+    @Override
+    public void handle(Void _) {
+      timerID = -1;
+      if (running) {
+        long cutoff = System.currentTimeMillis() - within;
+        left.evict(cutoff);
+        right.evict(cutoff);
+        timerID = wheel.schedule(within, evictHandler);
+      }
+    }
+  };
+
+  /**
+   * Creates a stream join.
+   *
+   * @param input The input collector from which to read messages.
+   * @param leftPort The name of the left input port.
+   * @param rightPort The name of the right input port.
+   * @param joiner The joiner with which to combine matched messages.
+   * @return A new stream join.
+   */
+  public static <L, R, J> StreamJoin<L, R, J> create(InputCollector input, String leftPort, String rightPort, Joiner<L, R, J> joiner) {
+    return new StreamJoin<L, R, J>(input, leftPort, rightPort, joiner);
+  }
+
+  private StreamJoin(InputCollector input, String leftPort, String rightPort, Joiner<L, R, J> joiner) {
+    if (leftPort.equals(rightPort)) {
+      throw new IllegalArgumentException("Cannot join a port with itself.");
+    }
+    this.input = input;
+    this.leftPort = leftPort;
+    this.rightPort = rightPort;
+    this.joiner = joiner;
+  }
+
+  /**
+   * Sets the join type.
+   *
+   * @param type The join type. Defaults to {@link Type#INNER}.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> type(Type type) {
+    this.type = type;
+    return this;
+  }
+
+  /**
+   * Bounds the join window by time.
+   *
+   * @param millis The maximum difference in milliseconds between the times
+   *        of two messages for the messages to be joined.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> within(long millis) {
+    if (millis < 1) {
+      throw new IllegalArgumentException("Join window must be positive.");
+    }
+    this.within = millis;
+    return this;
+  }
+
+  /**
+   * Bounds the join window by count.
+   *
+   * @param count The maximum number of messages held for each key on each
+   *        port. Once the limit is reached the oldest message for the key
+   *        is evicted.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> withinCount(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("Join window must be positive.");
+    }
+    this.maxCount = count;
+    return this;
+  }
+
+  /**
+   * Sets the left key extractor.
+   *
+   * @param extractor The key extractor for messages on the left port.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> leftKeyExtractor(KeyExtractor<L> extractor) {
+    this.leftKeyExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the right key extractor.
+   *
+   * @param extractor The key extractor for messages on the right port.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> rightKeyExtractor(KeyExtractor<R> extractor) {
+    this.rightKeyExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the left timestamp extractor.
+   *
+   * @param extractor The timestamp extractor for messages on the left port.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> leftTimestampExtractor(TimestampExtractor<L> extractor) {
+    this.leftTimestampExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the right timestamp extractor.
+   *
+   * @param extractor The timestamp extractor for messages on the right port.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> rightTimestampExtractor(TimestampExtractor<R> extractor) {
+    this.rightTimestampExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the result handler.
+   *
+   * @param handler A handler to be called with each joined message.
+   * @return The stream join.
+   */
+  public StreamJoin<L, R, J> resultHandler(Handler<J> handler) {
+    this.resultHandler = handler;
+    return this;
+  }
+
+  /**
+   * Returns the number of messages currently held by the join.
+   *
+   * @return The number of messages held for both ports.
+   */
+  public int size() {
+    return left.size + right.size;
+  }
+
+  /**
+   * Starts joining messages.<p>
+   *
+   * Any message handlers registered on the joined ports are replaced. In
+   * event time, watermark handlers registered on the ports are also replaced.
+   */
+  public void start() {
+    if (running) {
+      return;
+    }
+    if (within == 0 && maxCount == 0) {
+      throw new IllegalStateException("Join window must be bounded by time or count.");
+    }
+    if (leftKeyExtractor == null || rightKeyExtractor == null) {
+      throw new IllegalStateException("Key extractors must be set for both ports.");
+    }
+    if ((leftTimestampExtractor == null) != (rightTimestampExtractor == null)) {
+      throw new IllegalStateException("Timestamp extractors must be set for both ports.");
+    }
+    eventTime = leftTimestampExtractor != null;
+    leftWatermark = Long.MIN_VALUE;
+    rightWatermark = Long.MIN_VALUE;
+    running = true;
+
+    input.port(leftPort).messageHandler(new Handler<L>() {
+      @Override
+      public void handle(L message) {
+        long timestamp = eventTime ? leftTimestampExtractor.timestamp(message) : System.currentTimeMillis();
+        doLeft(leftKeyExtractor.key(message), timestamp, message);
+      }
+    });
+    input.port(rightPort).messageHandler(new Handler<R>() {
+      @Override
+      public void handle(R message) {
+        long timestamp = eventTime ? rightTimestampExtractor.timestamp(message) : System.currentTimeMillis();
+        doRight(rightKeyExtractor.key(message), timestamp, message);
+      }
+    });
+
+    if (within > 0) {
+      if (eventTime) {
+        input.port(leftPort).watermarkHandler(new Handler<Long>() {
+          @Override
+          public void handle(Long watermark) {
+            leftWatermark = watermark;
+            right.evictBefore(watermark - within);
+          }
+        });
+        input.port(rightPort).watermarkHandler(new Handler<Long>() {
+          @Override
+          public void handle(Long watermark) {
+            rightWatermark = watermark;
+            left.evictBefore(watermark - within);
+          }
+        });
+      } else {
+        wheel = TimerWheel.getInstance(input.port(leftPort).vertx());
+        timerID = wheel.schedule(within, evictHandler);
+      }
+    }
+  }
+
+  /**
+   * Stops joining messages.<p>
+   *
+   * Any messages held by the join are discarded.
+   */
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    input.port(leftPort).messageHandler(null);
+    input.port(rightPort).messageHandler(null);
+    if (leftTimestampExtractor != null) {
+      input.port(leftPort).watermarkHandler(null);
+      input.port(rightPort).watermarkHandler(null);
+    }
+    if (timerID != -1) {
+      wheel.cancel(timerID);
+      timerID = -1;
+    }
+    left.clear();
+    right.clear();
+  }
+
+  /**
+   * Handles a message on the left port.
+   */
+  private void doLeft(Object key, long timestamp, L message) {
+    // In event time, a message that's already behind the watermark of the
+    // other port may still match buffered messages, but it can't match any
+    // later messages on the other port so it's not held.
+    boolean matched = right.match(key, timestamp, message);
+    if (isLate(timestamp, rightWatermark)) {
+      if (type == Type.LEFT && !matched) {
+        emit(message, null);
+      }
+    } else {
+      left.add(key, timestamp, message, matched);
+    }
+  }
+
+  /**
+   * Handles a message on the right port.
+   */
+  private void doRight(Object key, long timestamp, R message) {
+    boolean matched = left.match(key, timestamp, message);
+    if (!isLate(timestamp, leftWatermark)) {
+      right.add(key, timestamp, message, matched);
+    }
+  }
+
+  /**
+   * Returns a boolean indicating whether an event time message is already
+   * outside of the window of the other port's watermark.
+   */
+  private boolean isLate(long timestamp, long watermark) {
+    return eventTime && within > 0 && watermark != Long.MIN_VALUE && timestamp < watermark - within;
+  }
+
+  /**
+   * Emits a joined message.
+   */
+  @SuppressWarnings("unchecked")
+  private void emit(Object left, Object right) {
+    if (resultHandler != null) {
+      resultHandler.handle(joiner.join((L) left, (R) right));
+    }
+  }
+
+  /**
+   * Join state for one side of the join.
+   */
+  private class Side {
+    private final boolean isLeft;
+    private final Map<Object, Entries> buffers = new HashMap<>();
+    private final Entries evictions = new Entries();
+    private long sequence;
+    private int size;
+
+    private Side(boolean isLeft) {
+      this.isLeft = isLeft;
+    }
+
+    /**
+     * Adds a message to the side.
+     */
+    private void add(Object key, long timestamp, Object message, boolean matched) {
+      Entries buffer = buffers.get(key);
+      if (buffer == null) {
+        buffer = new Entries();
+        buffers.put(key, buffer);
+      } else if (maxCount > 0 && buffer.size == maxCount) {
+        evictFirst(key, buffer);
+      }
+      long seq = sequence++;
+      buffer.add(message, seq, timestamp, matched);
+      if (within > 0 && !eventTime) {
+        evictions.add(key, seq, timestamp, false);
+      }
+      size++;
+    }
+
+    /**
+     * Joins a message from the other side with any matching messages on this side.
+     */
+    private boolean match(Object key, long timestamp, Object message) {
+      Entries buffer = buffers.get(key);
+      if (buffer == null) {
+        return false;
+      }
+      boolean matched = false;
+      for (int i = 0; i < buffer.size; i++) {
+        int index = buffer.index(i);
+        if (within == 0 || Math.abs(buffer.timestamps[index] - timestamp) <= within) {
+          if (isLeft) {
+            emit(buffer.objects[index], message);
+          } else {
+            emit(message, buffer.objects[index]);
+          }
+          buffer.flags[index] = true;
+          matched = true;
+        }
+      }
+      return matched;
+    }
+
+    /**
+     * Evicts all messages that arrived before the first message newer than the cutoff.<p>
+     *
+     * This is only used in processing time, where messages arrive in timestamp order.
+     */
+    private void evict(long cutoff) {
+      while (evictions.size > 0 && evictions.timestamps[evictions.head] < cutoff) {
+        Object key = evictions.objects[evictions.head];
+        long seq = evictions.sequences[evictions.head];
+        evictions.removeFirst();
+
+        // If the message was already evicted by count then the first message
+        // in the key's buffer will be a later message.
+        Entries buffer = buffers.get(key);
+        if (buffer != null && buffer.size > 0 && buffer.sequences[buffer.head] == seq) {
+          evictFirst(key, buffer);
+        }
+      }
+    }
+
+    /**
+     * Evicts all messages with timestamps older than the cutoff regardless
+     * of the order in which they arrived.
+     */
+    private void evictBefore(long cutoff) {
+      List<Object> unmatched = isLeft && type == Type.LEFT ? new ArrayList<Object>() : null;
+      Iterator<Entries> iterator = buffers.values().iterator();
+      while (iterator.hasNext()) {
+        Entries buffer = iterator.next();
+        size -= buffer.removeBefore(cutoff, unmatched);
+        if (buffer.size == 0) {
+          iterator.remove();
+        }
+      }
+
+      // Unmatched messages are emitted once the buffers are consistent since
+      // the result handler may stop the join.
+      if (unmatched != null) {
+        for (Object message : unmatched) {
+          emit(message, null);
+        }
+      }
+    }
+
+    /**
+     * Evicts the first message in a key's buffer.
+     */
+    private void evictFirst(Object key, Entries buffer) {
+      Object message = buffer.objects[buffer.head];
+      boolean matched = buffer.flags[buffer.head];
+      buffer.removeFirst();
+      size--;
+      if (buffer.size == 0) {
+        buffers.remove(key);
+      }
+      if (isLeft && type == Type.LEFT && !matched) {
+        emit(message, null);
+      }
+    }
+
+    private void clear() {
+      buffers.clear();
+      evictions.clear();
+      size = 0;
+    }
+  }
+
+  /**
+   * Growable ring buffer of entries stored in parallel arrays.
+   */
+  private static class Entries {
+    private Object[] objects = new Object[4];
+    private long[] sequences = new long[4];
+    private long[] timestamps = new long[4];
+    private boolean[] flags = new boolean[4];
+    private int head;
+    private int size;
+
+    private int index(int i) {
+      return (head + i) & (objects.length - 1);
+    }
+
+    private void add(Object object, long sequence, long timestamp, boolean flag) {
+      if (size == objects.length) {
+        grow();
+      }
+      int index = index(size);
+      objects[index] = object;
+      sequences[index] = sequence;
+      timestamps[index] = timestamp;
+      flags[index] = flag;
+      size++;
+    }
+
+    private void removeFirst() {
+      objects[head] = null;
+      head = (head + 1) & (objects.length - 1);
+      size--;
+    }
+
+    /**
+     * Removes all entries with timestamps older than the cutoff, keeping the
+     * remaining entries in order.
+     *
+     * @param unmatched A list to which to add removed entries that were never
+     *        flagged, or <code>null</code> if they're not needed.
+     * @return The number of removed entries.
+     */
+    private int removeBefore(long cutoff, List<Object> unmatched) {
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        int index = index(i);
+        if (timestamps[index] < cutoff) {
+          if (unmatched != null && !flags[index]) {
+            unmatched.add(objects[index]);
+          }
+        } else {
+          int target = index(kept++);
+          objects[target] = objects[index];
+          sequences[target] = sequences[index];
+          timestamps[target] = timestamps[index];
+          flags[target] = flags[index];
+        }
+      }
+      for (int i = kept; i < size; i++) {
+        objects[index(i)] = null;
+      }
+      int removed = size - kept;
+      size = kept;
+      return removed;
+    }
+
+    private void grow() {
+      int capacity = objects.length * 2;
+      Object[] newObjects = new Object[capacity];
+      long[] newSequences = new long[capacity];
+      long[] newTimestamps = new long[capacity];
+      boolean[] newFlags = new boolean[capacity];
+      for (int i = 0; i < size; i++) {
+        int index = index(i);
+        newObjects[i] = objects[index];
+        newSequences[i] = sequences[index];
+        newTimestamps[i] = timestamps[index];
+        newFlags[i] = flags[index];
+      }
+      objects = newObjects;
+      sequences = newSequences;
+      timestamps = newTimestamps;
+      flags = newFlags;
+      head = 0;
+    }
+
+    private void clear() {
+      objects = new Object[4];
+      sequences = new long[4];
+      timestamps = new long[4];
+      flags = new boolean[4];
+      head = 0;
+      size = 0;
+    }
+  }
+
+}
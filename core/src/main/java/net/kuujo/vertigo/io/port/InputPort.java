@@ -15,9 +15,11 @@
  */
 package net.kuujo.vertigo.io.port;
 
+import net.kuujo.vertigo.io.AsyncInputSupport;
 import net.kuujo.vertigo.io.Input;
 import net.kuujo.vertigo.io.InputBatchSupport;
 import net.kuujo.vertigo.io.InputGroupSupport;
+import net.kuujo.vertigo.io.InputWatermarkSupport;
 
 /**
  * Input port on which messages are received.<p>
@@ -29,5 +31,5 @@ import net.kuujo.vertigo.io.InputGroupSupport;
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
-public interface InputPort extends Port<InputPort>, Input<InputPort>, InputGroupSupport<InputPort>, InputBatchSupport<InputPort> {
+public interface InputPort extends Port<InputPort>, Input<InputPort>, InputGroupSupport<InputPort>, InputBatchSupport<InputPort>, AsyncInputSupport<InputPort>, InputWatermarkSupport<InputPort> {
 }
@@ -18,6 +18,7 @@ package net.kuujo.vertigo.io.port;
 import net.kuujo.vertigo.io.Output;
 import net.kuujo.vertigo.io.OutputBatchSupport;
 import net.kuujo.vertigo.io.OutputGroupSupport;
+import net.kuujo.vertigo.io.OutputWatermarkSupport;
 import net.kuujo.vertigo.io.batch.OutputBatch;
 
 import org.vertx.java.core.Handler;
@@ -36,7 +37,7 @@ import org.vertx.java.core.Handler;
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
-public interface OutputPort extends Port<OutputPort>, Output<OutputPort>, OutputBatchSupport<OutputPort>, OutputGroupSupport<OutputPort> {
+public interface OutputPort extends Port<OutputPort>, Output<OutputPort>, OutputBatchSupport<OutputPort>, OutputGroupSupport<OutputPort>, OutputWatermarkSupport<OutputPort> {
 
   /**
    * Creates a new batch.
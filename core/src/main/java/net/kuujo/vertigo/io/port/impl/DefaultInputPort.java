@@ -25,10 +25,13 @@ import java.util.Set;
 
 import net.kuujo.vertigo.hook.ComponentHook;
 import net.kuujo.vertigo.hook.InputHook;
+import net.kuujo.vertigo.io.AsyncMessage;
 import net.kuujo.vertigo.io.batch.InputBatch;
 import net.kuujo.vertigo.io.connection.InputConnection;
 import net.kuujo.vertigo.io.connection.InputConnectionContext;
+import net.kuujo.vertigo.io.connection.impl.CheckpointAligner;
 import net.kuujo.vertigo.io.connection.impl.DefaultInputConnection;
+import net.kuujo.vertigo.io.connection.impl.WatermarkTracker;
 import net.kuujo.vertigo.io.group.InputGroup;
 import net.kuujo.vertigo.io.port.InputPort;
 import net.kuujo.vertigo.io.port.InputPortContext;
@@ -52,20 +55,41 @@ import org.vertx.java.core.logging.impl.LoggerFactory;
 public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
   private static final Logger log = LoggerFactory.getLogger(DefaultInputPort.class);
   private final Vertx vertx;
+  private final CheckpointAligner aligner;
+  private final WatermarkTracker inputWatermarks;
+  private final WatermarkTracker watermarks = new WatermarkTracker();
   private InputPortContext context;
   private final List<InputConnection> connections = new ArrayList<>();
   private List<InputHook> hooks = new ArrayList<>();
   private final TaskRunner tasks = new TaskRunner();
   @SuppressWarnings("rawtypes")
   private Handler messageHandler;
+  private Handler<AsyncMessage<Object>> asyncMessageHandler;
+  private int maxOutstanding = DefaultInputConnection.DEFAULT_MAX_OUTSTANDING;
   private final Set<Handler<InputBatch>> batchHandlers = new HashSet<>();
   private Handler<InputGroup> groupHandler;
   private final Map<String, Handler<InputGroup>> groupHandlers = new HashMap<>();
   private boolean open;
   private boolean paused;
 
+  private final Handler<Long> connectionWatermarkHandler = new Handler<Long>() {
+    @Override
+    public void handle(Long watermark) {
+      watermarks.update();
+      if (inputWatermarks != null) {
+        inputWatermarks.update();
+      }
+    }
+  };
+
   public DefaultInputPort(Vertx vertx, InputPortContext context) {
+    this(vertx, context, null, null);
+  }
+
+  public DefaultInputPort(Vertx vertx, InputPortContext context, CheckpointAligner aligner, WatermarkTracker inputWatermarks) {
     this.vertx = vertx;
+    this.aligner = aligner;
+    this.inputWatermarks = inputWatermarks;
     this.context = context;
     this.hooks = context.hooks();
     for (Object hook : context.input().instance().component().hooks()) {
@@ -118,6 +142,10 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
                 }
               }
             });
+            if (aligner != null) {
+              aligner.unregister((DefaultInputConnection) connection);
+            }
+            unregisterWatermarks(connection);
             iter.remove();
           }
         }
@@ -133,7 +161,7 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
             }
           }
           if (!exists) {
-            newConnections.add(new DefaultInputConnection(vertx, input));
+            newConnections.add(registerWatermarks(new DefaultInputConnection(vertx, input)));
           }
         }
 
@@ -163,6 +191,7 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
               public void handle(AsyncResult<Void> result) {
                 if (result.failed()) {
                   log.error("Failed to open input connection " + connection.address());
+                  unregisterWatermarks(connection);
                 } else {
                   connections.add(setupConnection(connection));
                 }
@@ -219,6 +248,45 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
     return this;
   }
 
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <U> InputPort asyncMessageHandler(final Handler<AsyncMessage<U>> handler) {
+    if (handler != null) {
+      this.asyncMessageHandler = new Handler<AsyncMessage<Object>>() {
+        @Override
+        public void handle(AsyncMessage<Object> message) {
+          ((Handler) handler).handle(message);
+          for (InputHook hook : hooks) {
+            hook.handleReceive(message.body());
+          }
+        }
+      };
+    } else {
+      this.asyncMessageHandler = null;
+    }
+    for (InputConnection connection : connections) {
+      connection.asyncMessageHandler(asyncMessageHandler);
+    }
+    return this;
+  }
+
+  @Override
+  public InputPort setMaxOutstanding(int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException("Maximum outstanding messages must be positive.");
+    }
+    this.maxOutstanding = max;
+    for (InputConnection connection : connections) {
+      connection.setMaxOutstanding(max);
+    }
+    return this;
+  }
+
+  @Override
+  public int getMaxOutstanding() {
+    return maxOutstanding;
+  }
+
   @Override
   public InputPort batchHandler(Handler<InputBatch> handler) {
     if (this.batchHandlers.add(handler)) {
@@ -280,12 +348,15 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
           // on a close connection.
           connections.clear();
           for (InputConnectionContext connectionContext : context.connections()) {
-            final InputConnection connection = new DefaultInputConnection(vertx, connectionContext);
+            // Connections are registered for watermarks before they're opened so
+            // that the watermark cannot advance before all connections are open.
+            final InputConnection connection = registerWatermarks(new DefaultInputConnection(vertx, connectionContext));
             connection.open(new Handler<AsyncResult<Void>>() {
               @Override
               public void handle(AsyncResult<Void> result) {
                 if (result.failed()) {
                   log.error("Failed to open input connection " + connection.address());
+                  unregisterWatermarks(connection);
                   startCounter.fail(result.cause());
                 } else {
                   connections.add(setupConnection(connection));
@@ -308,6 +379,10 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
    */
   private InputConnection setupConnection(InputConnection connection) {
     connection.messageHandler(messageHandler);
+    connection.setMaxOutstanding(maxOutstanding);
+    if (asyncMessageHandler != null) {
+      connection.asyncMessageHandler(asyncMessageHandler);
+    }
     for (Handler<InputBatch> handler : batchHandlers) {
       connection.batchHandler(handler);
     }
@@ -320,9 +395,46 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
     if (paused) {
       connection.pause();
     }
+    if (aligner != null) {
+      ((DefaultInputConnection) connection).setCheckpointAligner(aligner);
+      aligner.register((DefaultInputConnection) connection);
+    }
+    return connection;
+  }
+
+  /**
+   * Registers a connection with the port's watermark trackers.
+   */
+  private InputConnection registerWatermarks(DefaultInputConnection connection) {
+    connection.watermarkHandler(connectionWatermarkHandler);
+    watermarks.register(connection);
+    if (inputWatermarks != null) {
+      inputWatermarks.register(connection);
+    }
     return connection;
   }
 
+  /**
+   * Unregisters a connection from the port's watermark trackers.
+   */
+  private void unregisterWatermarks(InputConnection connection) {
+    watermarks.unregister((DefaultInputConnection) connection);
+    if (inputWatermarks != null) {
+      inputWatermarks.unregister((DefaultInputConnection) connection);
+    }
+  }
+
+  @Override
+  public long watermark() {
+    return watermarks.watermark();
+  }
+
+  @Override
+  public InputPort watermarkHandler(Handler<Long> handler) {
+    watermarks.watermarkHandler(handler);
+    return this;
+  }
+
   @Override
   public void close() {
     close(null);
@@ -343,6 +455,12 @@ public class DefaultInputPort implements InputPort, Observer<InputPortContext> {
               if (result.failed()) {
                 new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
               } else {
+                for (InputConnection connection : connections) {
+                  if (aligner != null) {
+                    aligner.unregister((DefaultInputConnection) connection);
+                  }
+                  unregisterWatermarks(connection);
+                }
                 connections.clear();
                 new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
               }
@@ -61,6 +61,7 @@ public class DefaultOutputPort implements OutputPort, Observer<OutputPortContext
   private final TaskRunner tasks = new TaskRunner();
   private int maxQueueSize = DEFAULT_SEND_QUEUE_MAX_SIZE;
   private Handler<Void> drainHandler;
+  private long watermark = Long.MIN_VALUE;
   private boolean open;
 
   public DefaultOutputPort(Vertx vertx, OutputPortContext context) {
@@ -172,6 +173,11 @@ public class DefaultOutputPort implements OutputPort, Observer<OutputPortContext
                   log.error("Failed to open output stream " + stream.address());
                 } else {
                   streams.add(stream);
+                  // Bring the new stream's connections up to date with the
+                  // port's current watermark.
+                  if (watermark > Long.MIN_VALUE) {
+                    ((DefaultOutputStream) stream).watermark(watermark);
+                  }
                 }
               }
             });
@@ -378,6 +384,28 @@ public class DefaultOutputPort implements OutputPort, Observer<OutputPortContext
     return this;
   }
 
+  /**
+   * Sends a checkpoint barrier on all streams.
+   *
+   * @param checkpoint The checkpoint ID.
+   */
+  public void checkpoint(long checkpoint) {
+    for (OutputStream stream : streams) {
+      ((DefaultOutputStream) stream).checkpoint(checkpoint);
+    }
+  }
+
+  @Override
+  public OutputPort watermark(long watermark) {
+    if (watermark > this.watermark) {
+      this.watermark = watermark;
+      for (OutputStream stream : streams) {
+        ((DefaultOutputStream) stream).watermark(watermark);
+      }
+    }
+    return this;
+  }
+
   /**
    * Triggers send hooks.
    */
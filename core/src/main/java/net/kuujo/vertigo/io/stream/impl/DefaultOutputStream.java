@@ -124,6 +124,28 @@ public class DefaultOutputStream implements OutputStream {
     return this;
   }
 
+  /**
+   * Sends a checkpoint barrier on all connections in the stream.
+   *
+   * @param checkpoint The checkpoint ID.
+   */
+  public void checkpoint(long checkpoint) {
+    for (OutputConnection connection : connections) {
+      ((DefaultOutputConnection) connection).checkpoint(checkpoint);
+    }
+  }
+
+  /**
+   * Sends an event time watermark on all connections in the stream.
+   *
+   * @param watermark The event time watermark.
+   */
+  public void watermark(long watermark) {
+    for (OutputConnection connection : connections) {
+      ((DefaultOutputConnection) connection).watermark(watermark);
+    }
+  }
+
   @Override
   public OutputStream batch(final Handler<OutputBatch> handler) {
     return batch(UUID.randomUUID().toString(), handler);
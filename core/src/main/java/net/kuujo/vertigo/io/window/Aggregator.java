@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.window;
+
+/**
+ * Incremental window aggregation function.<p>
+ *
+ * Aggregators update an accumulator with each message as it arrives so
+ * that window state does not grow with the number of messages in the
+ * window. Sliding windows are computed by merging the accumulators of
+ * each slide within the window.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The message type.
+ * @param <A> The accumulator type.
+ * @param <R> The result type.
+ */
+public interface Aggregator<T, A, R> {
+
+  /**
+   * Creates a new empty accumulator.
+   *
+   * @return A new accumulator.
+   */
+  A create();
+
+  /**
+   * Adds a message to an accumulator.
+   *
+   * @param accumulator The accumulator to update.
+   * @param message The message to add.
+   * @return The updated accumulator. This may be the given accumulator.
+   */
+  A add(A accumulator, T message);
+
+  /**
+   * Merges two accumulators.
+   *
+   * @param accumulator The accumulator into which to merge. This accumulator
+   *        may be modified and returned.
+   * @param other The accumulator to merge. This accumulator must not be modified.
+   * @return The merged accumulator.
+   */
+  A merge(A accumulator, A other);
+
+  /**
+   * Returns the result of an accumulator.
+   *
+   * @param accumulator The accumulator.
+   * @return The aggregated result.
+   */
+  R result(A accumulator);
+
+}
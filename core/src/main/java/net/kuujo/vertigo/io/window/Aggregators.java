@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.window;
+
+/**
+ * Common window aggregators.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class Aggregators {
+
+  private Aggregators() {
+  }
+
+  /**
+   * Returns an aggregator that counts messages.
+   *
+   * @return A counting aggregator.
+   */
+  public static <T> Aggregator<T, long[], Long> count() {
+    return new Aggregator<T, long[], Long>() {
+      @Override
+      public long[] create() {
+        return new long[1];
+      }
+      @Override
+      public long[] add(long[] accumulator, T message) {
+        accumulator[0]++;
+        return accumulator;
+      }
+      @Override
+      public long[] merge(long[] accumulator, long[] other) {
+        accumulator[0] += other[0];
+        return accumulator;
+      }
+      @Override
+      public Long result(long[] accumulator) {
+        return accumulator[0];
+      }
+    };
+  }
+
+  /**
+   * Returns an aggregator that sums numeric messages.
+   *
+   * @return A summing aggregator.
+   */
+  public static <T extends Number> Aggregator<T, double[], Double> sum() {
+    return new Aggregator<T, double[], Double>() {
+      @Override
+      public double[] create() {
+        return new double[1];
+      }
+      @Override
+      public double[] add(double[] accumulator, T message) {
+        accumulator[0] += message.doubleValue();
+        return accumulator;
+      }
+      @Override
+      public double[] merge(double[] accumulator, double[] other) {
+        accumulator[0] += other[0];
+        return accumulator;
+      }
+      @Override
+      public Double result(double[] accumulator) {
+        return accumulator[0];
+      }
+    };
+  }
+
+}
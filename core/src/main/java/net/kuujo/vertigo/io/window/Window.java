@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.window;
+
+/**
+ * Window definition.<p>
+ *
+ * Windows define how messages received on an input are divided into
+ * finite sets over which results are aggregated. Windows are created
+ * via the static factory methods on this class, e.g.
+ * <code>Window.tumbling(1000)</code> for one second tumbling windows.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class Window {
+
+  /**
+   * Window type.
+   */
+  public static enum Type {
+
+    /**
+     * Fixed size, non-overlapping windows.
+     */
+    TUMBLING,
+
+    /**
+     * Fixed size windows that advance by a fixed slide and may overlap.
+     */
+    SLIDING,
+
+    /**
+     * Windows that close after a gap of inactivity.
+     */
+    SESSION,
+
+    /**
+     * Windows defined by input groups.
+     */
+    GROUP,
+
+    /**
+     * Windows defined by input batches.
+     */
+    BATCH;
+
+  }
+
+  private final Type type;
+  private final boolean count;
+  private final long size;
+  private final long slide;
+
+  private Window(Type type, boolean count, long size, long slide) {
+    this.type = type;
+    this.count = count;
+    this.size = size;
+    this.slide = slide;
+  }
+
+  /**
+   * Creates a time based tumbling window.
+   *
+   * @param millis The window size in milliseconds.
+   * @return A tumbling window definition.
+   */
+  public static Window tumbling(long millis) {
+    checkPositive(millis, "Window size");
+    return new Window(Type.TUMBLING, false, millis, millis);
+  }
+
+  /**
+   * Creates a count based tumbling window.
+   *
+   * @param count The number of messages in each window.
+   * @return A tumbling window definition.
+   */
+  public static Window tumblingCount(long count) {
+    checkPositive(count, "Window size");
+    return new Window(Type.TUMBLING, true, count, count);
+  }
+
+  /**
+   * Creates a time based sliding window.
+   *
+   * @param millis The window size in milliseconds.
+   * @param slide The interval in milliseconds at which windows are emitted.
+   *        The window size must be a multiple of the slide.
+   * @return A sliding window definition.
+   */
+  public static Window sliding(long millis, long slide) {
+    checkSliding(millis, slide);
+    return new Window(Type.SLIDING, false, millis, slide);
+  }
+
+  /**
+   * Creates a count based sliding window.
+   *
+   * @param count The number of messages in each window.
+   * @param slide The number of messages after which windows are emitted.
+   *        The window size must be a multiple of the slide.
+   * @return A sliding window definition.
+   */
+  public static Window slidingCount(long count, long slide) {
+    checkSliding(count, slide);
+    return new Window(Type.SLIDING, true, count, slide);
+  }
+
+  /**
+   * Creates a session window.
+   *
+   * @param gap The period of inactivity in milliseconds after which a
+   *        session window is closed.
+   * @return A session window definition.
+   */
+  public static Window session(long gap) {
+    checkPositive(gap, "Session gap");
+    return new Window(Type.SESSION, false, gap, gap);
+  }
+
+  /**
+   * Creates a group window.<p>
+   *
+   * Each input group, including any of its descendants, forms a window
+   * that is closed when the group is ended.
+   *
+   * @return A group window definition.
+   */
+  public static Window group() {
+    return new Window(Type.GROUP, false, 0, 0);
+  }
+
+  /**
+   * Creates a batch window.<p>
+   *
+   * Each input batch, including any groups within it, forms a window that
+   * is closed when the batch is ended.
+   *
+   * @return A batch window definition.
+   */
+  public static Window batch() {
+    return new Window(Type.BATCH, false, 0, 0);
+  }
+
+  private static void checkPositive(long value, String name) {
+    if (value < 1) {
+      throw new IllegalArgumentException(name + " must be positive.");
+    }
+  }
+
+  private static void checkSliding(long size, long slide) {
+    checkPositive(size, "Window size");
+    checkPositive(slide, "Window slide");
+    if (slide > size || size % slide != 0) {
+      throw new IllegalArgumentException("Window size must be a multiple of the window slide.");
+    }
+  }
+
+  /**
+   * Returns the window type.
+   *
+   * @return The window type.
+   */
+  public Type type() {
+    return type;
+  }
+
+  /**
+   * Returns whether the window is count based.
+   *
+   * @return Whether the window size and slide are message counts rather
+   *         than milliseconds.
+   */
+  public boolean isCountBased() {
+    return count;
+  }
+
+  /**
+   * Returns the window size.
+   *
+   * @return The window size in milliseconds or messages. For session
+   *         windows this is the session gap.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the window slide.
+   *
+   * @return The window slide in milliseconds or messages.
+   */
+  public long slide() {
+    return slide;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Window[type=%s, count=%s, size=%d, slide=%d]", type, count, size, slide);
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.window;
+
+/**
+ * Aggregated window result.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <R> The result type.
+ */
+public class WindowResult<R> {
+  private final Object key;
+  private final long start;
+  private final long end;
+  private final R result;
+
+  public WindowResult(Object key, long start, long end, R result) {
+    this.key = key;
+    this.start = start;
+    this.end = end;
+    this.result = result;
+  }
+
+  /**
+   * Returns the window key.
+   *
+   * @return The key of the messages in the window, or <code>null</code>
+   *         if the window is not keyed.
+   */
+  public Object key() {
+    return key;
+  }
+
+  /**
+   * Returns the window start time.
+   *
+   * @return The time at which the window started in milliseconds.
+   */
+  public long start() {
+    return start;
+  }
+
+  /**
+   * Returns the window end time.
+   *
+   * @return The time at which the window ended in milliseconds.
+   */
+  public long end() {
+    return end;
+  }
+
+  /**
+   * Returns the aggregated result.
+   *
+   * @return The window result.
+   */
+  public R result() {
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("WindowResult[key=%s, start=%d, end=%d, result=%s]", key, start, end, result);
+  }
+
+}
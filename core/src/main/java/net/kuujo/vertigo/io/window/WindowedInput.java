@@ -0,0 +1,683 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.io.window;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import net.kuujo.vertigo.io.Input;
+import net.kuujo.vertigo.io.InputBatchSupport;
+import net.kuujo.vertigo.io.InputGroupSupport;
+import net.kuujo.vertigo.io.InputWatermarkSupport;
+import net.kuujo.vertigo.io.KeyExtractor;
+import net.kuujo.vertigo.io.TimestampExtractor;
+import net.kuujo.vertigo.io.batch.InputBatch;
+import net.kuujo.vertigo.io.group.InputGroup;
+import net.kuujo.vertigo.util.TimerWheel;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Windowed aggregation over an input.<p>
+ *
+ * The windowed input registers handlers on an input and incrementally
+ * aggregates messages into windows as defined by a {@link Window}. Each
+ * message updates the accumulator for its key and window in constant time,
+ * and results are only passed to the result handler once a window is
+ * complete. Time based windows are driven by the context's shared
+ * {@link TimerWheel} rather than by a timer per window or key.<p>
+ *
+ * If a {@link TimestampExtractor} is set then time based windows are
+ * computed in event time rather than processing time. Messages are
+ * assigned to windows by their event time regardless of the order in
+ * which they're received, and windows are completed as soon as the
+ * input's watermark passes the end of the window. Messages that arrive
+ * after all windows to which they belong have been completed are
+ * discarded.<p>
+ *
+ * <pre>
+ * WindowedInput.create(input.port("in"), Window.tumbling(1000), Aggregators.count())
+ *     .keyExtractor(wordExtractor)
+ *     .resultHandler(resultHandler)
+ *     .start();
+ * </pre>
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The input message type.
+ * @param <A> The accumulator type.
+ * @param <R> The result type.
+ */
+public class WindowedInput<T, A, R> {
+  private final Input<?> input;
+  private final Window window;
+  private final Aggregator<T, A, R> aggregator;
+  private final Map<Object, WindowState> windows = new HashMap<>();
+  private final TreeMap<Long, Map<Object, A>> panes = new TreeMap<>();
+  private final Map<Object, TreeMap<Long, Session>> sessions = new HashMap<>();
+  private KeyExtractor<T> keyExtractor;
+  private TimestampExtractor<T> timestampExtractor;
+  private long watermark = Long.MIN_VALUE;
+  private long nextEnd = Long.MIN_VALUE;
+  private Handler<WindowResult<R>> resultHandler;
+  private TimerWheel wheel;
+  private boolean running;
+  private long windowStart;
+  private long boundaryID = -1;
+  private int currentPane;
+
+  private final Handler<Void> boundaryHandler = new Handler<Void>() {
+    @Override
+    public void handle(Void _) {
+      boundaryID = -1;
+      if (running) {
+        doBoundary();
+      }
+    }
+  };
+
+  /**
+   * Creates a windowed input.
+   *
+   * @param input The input from which to read messages.
+   * @param window The window definition.
+   * @param aggregator The aggregator with which to aggregate windows.
+   * @return A new windowed input.
+   */
+  public static <T, A, R> WindowedInput<T, A, R> create(Input<?> input, Window window, Aggregator<T, A, R> aggregator) {
+    return new WindowedInput<T, A, R>(input, window, aggregator);
+  }
+
+  private WindowedInput(Input<?> input, Window window, Aggregator<T, A, R> aggregator) {
+    if (window.type() == Window.Type.GROUP && !(input instanceof InputGroupSupport)) {
+      throw new IllegalArgumentException("Input does not support groups.");
+    }
+    if (window.type() == Window.Type.BATCH && !(input instanceof InputBatchSupport)) {
+      throw new IllegalArgumentException("Input does not support batches.");
+    }
+    this.input = input;
+    this.window = window;
+    this.aggregator = aggregator;
+  }
+
+  /**
+   * Sets the key extractor.<p>
+   *
+   * When a key extractor is set, windows are aggregated separately for
+   * each key. Otherwise all messages are aggregated into a single window.
+   *
+   * @param extractor The key extractor.
+   * @return The windowed input.
+   */
+  public WindowedInput<T, A, R> keyExtractor(KeyExtractor<T> extractor) {
+    this.keyExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the timestamp extractor.<p>
+   *
+   * When a timestamp extractor is set, time based windows are computed in
+   * event time and are completed by the input's watermark. The input must
+   * support watermarks, and any watermark handler registered on the input
+   * will be replaced when the windowed input is started.
+   *
+   * @param extractor The timestamp extractor.
+   * @return The windowed input.
+   */
+  public WindowedInput<T, A, R> timestampExtractor(TimestampExtractor<T> extractor) {
+    this.timestampExtractor = extractor;
+    return this;
+  }
+
+  /**
+   * Sets the result handler.
+   *
+   * @param handler A handler to be called with the result of each window.
+   * @return The windowed input.
+   */
+  public WindowedInput<T, A, R> resultHandler(Handler<WindowResult<R>> handler) {
+    this.resultHandler = handler;
+    return this;
+  }
+
+  /**
+   * Returns the window definition.
+   *
+   * @return The window definition.
+   */
+  public Window window() {
+    return window;
+  }
+
+  /**
+   * Starts windowing messages.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void start() {
+    if (running) {
+      return;
+    }
+    if (timestampExtractor != null) {
+      startEventTime();
+      return;
+    }
+    running = true;
+    wheel = TimerWheel.getInstance(input.vertx());
+
+    switch (window.type()) {
+      case GROUP:
+        ((InputGroupSupport<?>) input).groupHandler(new Handler<InputGroup>() {
+          @Override
+          public void handle(InputGroup group) {
+            final long start = System.currentTimeMillis();
+            final Map<Object, A> accumulators = new HashMap<>();
+            collectGroup(group, accumulators);
+            group.endHandler(new Handler<Void>() {
+              @Override
+              public void handle(Void _) {
+                emitAll(accumulators, start, System.currentTimeMillis());
+              }
+            });
+          }
+        });
+        break;
+      case BATCH:
+        ((InputBatchSupport<?>) input).batchHandler(new Handler<InputBatch>() {
+          @Override
+          public void handle(InputBatch batch) {
+            final long start = System.currentTimeMillis();
+            final Map<Object, A> accumulators = new HashMap<>();
+            batch.groupHandler(new Handler<InputGroup>() {
+              @Override
+              public void handle(InputGroup group) {
+                collectGroup(group, accumulators);
+              }
+            });
+            batch.messageHandler(new Handler<T>() {
+              @Override
+              public void handle(T message) {
+                accumulate(accumulators, message);
+              }
+            });
+            batch.endHandler(new Handler<Void>() {
+              @Override
+              public void handle(Void _) {
+                emitAll(accumulators, start, System.currentTimeMillis());
+              }
+            });
+          }
+        });
+        break;
+      default:
+        input.messageHandler(new Handler<T>() {
+          @Override
+          public void handle(T message) {
+            doMessage(message);
+          }
+        });
+        if (!window.isCountBased() && window.type() != Window.Type.SESSION) {
+          long now = System.currentTimeMillis();
+          windowStart = now - now % window.slide();
+          scheduleBoundary(now);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Starts windowing messages in event time.
+   */
+  @SuppressWarnings("unchecked")
+  private void startEventTime() {
+    if (window.isCountBased() || window.type() == Window.Type.GROUP || window.type() == Window.Type.BATCH) {
+      throw new IllegalStateException("Event time is only supported for time based windows.");
+    }
+    if (!(input instanceof InputWatermarkSupport)) {
+      throw new IllegalArgumentException("Input does not support watermarks.");
+    }
+    running = true;
+    input.messageHandler(new Handler<T>() {
+      @Override
+      public void handle(T message) {
+        doEventMessage(message);
+      }
+    });
+    ((InputWatermarkSupport<?>) input).watermarkHandler(new Handler<Long>() {
+      @Override
+      public void handle(Long watermark) {
+        doWatermark(watermark);
+      }
+    });
+  }
+
+  /**
+   * Stops windowing messages.<p>
+   *
+   * Any incomplete windows are discarded.
+   */
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (timestampExtractor != null) {
+      input.messageHandler(null);
+      ((InputWatermarkSupport<?>) input).watermarkHandler(null);
+      panes.clear();
+      sessions.clear();
+      return;
+    }
+    switch (window.type()) {
+      case GROUP:
+        ((InputGroupSupport<?>) input).groupHandler(null);
+        break;
+      case BATCH:
+        ((InputBatchSupport<?>) input).batchHandler(null);
+        break;
+      default:
+        input.messageHandler(null);
+        break;
+    }
+    if (boundaryID != -1) {
+      wheel.cancel(boundaryID);
+      boundaryID = -1;
+    }
+    for (WindowState state : windows.values()) {
+      if (state.timeoutID != -1) {
+        wheel.cancel(state.timeoutID);
+      }
+    }
+    windows.clear();
+  }
+
+  /**
+   * Returns the key for the given message.
+   */
+  private Object keyOf(T message) {
+    return keyExtractor != null ? keyExtractor.key(message) : null;
+  }
+
+  /**
+   * Collects messages from a group and its descendants into a set of accumulators.
+   */
+  @SuppressWarnings("unchecked")
+  private void collectGroup(InputGroup group, final Map<Object, A> accumulators) {
+    group.groupHandler(new Handler<InputGroup>() {
+      @Override
+      public void handle(InputGroup child) {
+        collectGroup(child, accumulators);
+      }
+    });
+    group.messageHandler(new Handler<T>() {
+      @Override
+      public void handle(T message) {
+        accumulate(accumulators, message);
+      }
+    });
+  }
+
+  /**
+   * Adds a message to a set of keyed accumulators.
+   */
+  private void accumulate(Map<Object, A> accumulators, T message) {
+    Object key = keyOf(message);
+    A accumulator = accumulators.get(key);
+    if (accumulator == null) {
+      accumulator = aggregator.create();
+    }
+    accumulators.put(key, aggregator.add(accumulator, message));
+  }
+
+  /**
+   * Emits results for a set of keyed accumulators.
+   */
+  private void emitAll(Map<Object, A> accumulators, long start, long end) {
+    for (Map.Entry<Object, A> entry : accumulators.entrySet()) {
+      emit(entry.getKey(), start, end, entry.getValue());
+    }
+    accumulators.clear();
+  }
+
+  /**
+   * Emits a single window result.
+   */
+  private void emit(Object key, long start, long end, A accumulator) {
+    if (resultHandler != null) {
+      resultHandler.handle(new WindowResult<R>(key, start, end, aggregator.result(accumulator)));
+    }
+  }
+
+  /**
+   * Handles a message for tumbling, sliding, and session windows.
+   */
+  private void doMessage(T message) {
+    Object key = keyOf(message);
+    long now = System.currentTimeMillis();
+    WindowState state = windows.get(key);
+    if (state == null) {
+      state = new WindowState(key, now);
+      windows.put(key, state);
+    }
+
+    switch (window.type()) {
+      case TUMBLING:
+        state.accumulator = aggregator.add(state.accumulator(), message);
+        if (window.isCountBased() && ++state.count >= window.size()) {
+          emit(key, state.start, now, state.accumulator);
+          windows.remove(key);
+        }
+        break;
+      case SLIDING:
+        int pane = window.isCountBased() ? state.pane : currentPane;
+        state.panes[pane] = aggregator.add(state.pane(pane), message);
+        if (window.isCountBased() && ++state.count % window.slide() == 0) {
+          emit(key, state.start, now, state.merge(state.pane));
+          state.pane = (state.pane + 1) % state.panes.length;
+          state.panes[state.pane] = null;
+          state.start = now;
+        }
+        break;
+      case SESSION:
+        state.accumulator = aggregator.add(state.accumulator(), message);
+        state.lastSeen = now;
+        if (state.timeoutID == -1) {
+          scheduleSession(state, window.size());
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Handles a message for event time windows.
+   */
+  private void doEventMessage(T message) {
+    Object key = keyOf(message);
+    long timestamp = timestampExtractor.timestamp(message);
+
+    if (window.type() == Window.Type.SESSION) {
+      if (timestamp + window.size() <= watermark) {
+        return;
+      }
+      TreeMap<Long, Session> keySessions = sessions.get(key);
+      if (keySessions == null) {
+        keySessions = new TreeMap<>();
+        sessions.put(key, keySessions);
+      }
+
+      // Merge the message's session with any existing sessions that it
+      // overlaps. Sessions for a key never overlap, so overlapping sessions
+      // are adjacent to one another in start order.
+      Session session = new Session(key, timestamp, timestamp + window.size(), aggregator.add(aggregator.create(), message));
+      Iterator<Session> iterator = keySessions.headMap(session.end, false).descendingMap().values().iterator();
+      while (iterator.hasNext()) {
+        Session existing = iterator.next();
+        if (existing.end < session.start) {
+          break;
+        }
+        session.start = Math.min(session.start, existing.start);
+        session.end = Math.max(session.end, existing.end);
+        session.accumulator = aggregator.merge(existing.accumulator, session.accumulator);
+        iterator.remove();
+      }
+      keySessions.put(session.start, session);
+    } else {
+      long paneStart = timestamp - ((timestamp % window.slide()) + window.slide()) % window.slide();
+      if (paneStart + window.size() <= watermark) {
+        return;
+      }
+      Map<Object, A> pane = panes.get(paneStart);
+      if (pane == null) {
+        pane = new HashMap<>();
+        panes.put(paneStart, pane);
+      }
+      A accumulator = pane.get(key);
+      if (accumulator == null) {
+        accumulator = aggregator.create();
+      }
+      pane.put(key, aggregator.add(accumulator, message));
+    }
+  }
+
+  /**
+   * Handles an advance of the input's watermark, completing all event
+   * time windows that end at or before the watermark.
+   */
+  private void doWatermark(long watermark) {
+    if (!running || watermark <= this.watermark) {
+      return;
+    }
+    this.watermark = watermark;
+
+    if (window.type() == Window.Type.SESSION) {
+      Iterator<TreeMap<Long, Session>> iterator = sessions.values().iterator();
+      while (iterator.hasNext()) {
+        TreeMap<Long, Session> keySessions = iterator.next();
+        Iterator<Session> sessionIterator = keySessions.values().iterator();
+        while (sessionIterator.hasNext()) {
+          Session session = sessionIterator.next();
+          if (session.end > watermark) {
+            break;
+          }
+          sessionIterator.remove();
+          emit(session.key, session.start, session.end, session.accumulator);
+        }
+        if (keySessions.isEmpty()) {
+          iterator.remove();
+        }
+      }
+      return;
+    }
+
+    while (!panes.isEmpty()) {
+      // Skip any windows for which no messages were received.
+      long first = panes.firstKey();
+      if (nextEnd <= first) {
+        nextEnd = first + window.slide();
+      }
+      if (nextEnd > watermark) {
+        break;
+      }
+
+      long start = nextEnd - window.size();
+      NavigableMap<Long, Map<Object, A>> windowPanes = panes.subMap(start, true, nextEnd, false);
+      if (window.size() == window.slide()) {
+        for (Map<Object, A> pane : windowPanes.values()) {
+          for (Map.Entry<Object, A> entry : pane.entrySet()) {
+            emit(entry.getKey(), start, nextEnd, entry.getValue());
+          }
+        }
+      } else {
+        Map<Object, A> merged = new HashMap<>();
+        for (Map<Object, A> pane : windowPanes.values()) {
+          for (Map.Entry<Object, A> entry : pane.entrySet()) {
+            A accumulator = merged.get(entry.getKey());
+            if (accumulator == null) {
+              accumulator = aggregator.create();
+            }
+            merged.put(entry.getKey(), aggregator.merge(accumulator, entry.getValue()));
+          }
+        }
+        emitAll(merged, start, nextEnd);
+      }
+
+      // Remove panes that are no longer part of any incomplete window.
+      nextEnd += window.slide();
+      panes.headMap(nextEnd - window.size(), false).clear();
+    }
+  }
+
+  /**
+   * Schedules the next time based window boundary.
+   */
+  private void scheduleBoundary(long now) {
+    boundaryID = wheel.schedule(windowStart + window.slide() - now, boundaryHandler);
+  }
+
+  /**
+   * Handles a time based window boundary.
+   */
+  private void doBoundary() {
+    // If the timer fell behind then close each missed window in turn so
+    // that every pane is cleared as it slides out of the window. Once no
+    // state remains skip directly to the current window.
+    long now = System.currentTimeMillis();
+    do {
+      closeWindow();
+    } while (now - windowStart >= window.slide() && !windows.isEmpty());
+    if (now - windowStart >= window.slide()) {
+      windowStart = now - now % window.slide();
+    }
+    scheduleBoundary(now);
+  }
+
+  /**
+   * Closes the current time based window and advances to the next slide.
+   */
+  private void closeWindow() {
+    long end = windowStart + window.slide();
+    if (window.type() == Window.Type.TUMBLING) {
+      for (WindowState state : windows.values()) {
+        emit(state.key, windowStart, end, state.accumulator);
+      }
+      windows.clear();
+    } else {
+      // Emit the merged panes for each key and advance to the next pane.
+      // Keys for which no messages were received in any pane of the
+      // window are removed.
+      int nextPane = (currentPane + 1) % (int) (window.size() / window.slide());
+      Iterator<WindowState> iterator = windows.values().iterator();
+      while (iterator.hasNext()) {
+        WindowState state = iterator.next();
+        if (state.isEmpty()) {
+          iterator.remove();
+        } else {
+          emit(state.key, end - window.size(), end, state.merge(currentPane));
+          state.panes[nextPane] = null;
+        }
+      }
+      currentPane = nextPane;
+    }
+    windowStart = end;
+  }
+
+  /**
+   * Schedules a session timeout check.
+   */
+  private void scheduleSession(final WindowState state, long delay) {
+    state.timeoutID = wheel.schedule(delay, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        state.timeoutID = -1;
+        if (!running || windows.get(state.key) != state) {
+          return;
+        }
+        // Rather than rescheduling the timeout on every message, the timeout
+        // is checked when it expires and rescheduled if the session was active.
+        long now = System.currentTimeMillis();
+        long remaining = state.lastSeen + window.size() - now;
+        if (remaining > 0) {
+          scheduleSession(state, remaining);
+        } else {
+          windows.remove(state.key);
+          emit(state.key, state.start, state.lastSeen + window.size(), state.accumulator);
+        }
+      }
+    });
+  }
+
+  /**
+   * Event time session for a single key.
+   */
+  private class Session {
+    private final Object key;
+    private long start;
+    private long end;
+    private A accumulator;
+
+    private Session(Object key, long start, long end, A accumulator) {
+      this.key = key;
+      this.start = start;
+      this.end = end;
+      this.accumulator = accumulator;
+    }
+  }
+
+  /**
+   * Window state for a single key.
+   */
+  private class WindowState {
+    private final Object key;
+    private long start;
+    private long lastSeen;
+    private long count;
+    private long timeoutID = -1;
+    private A accumulator;
+    private final Object[] panes;
+    private int pane;
+
+    private WindowState(Object key, long start) {
+      this.key = key;
+      this.start = start;
+      this.panes = window.type() == Window.Type.SLIDING ? new Object[(int) (window.size() / window.slide())] : null;
+    }
+
+    private A accumulator() {
+      if (accumulator == null) {
+        accumulator = aggregator.create();
+      }
+      return accumulator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private A pane(int index) {
+      if (panes[index] == null) {
+        panes[index] = aggregator.create();
+      }
+      return (A) panes[index];
+    }
+
+    private boolean isEmpty() {
+      for (Object pane : panes) {
+        if (pane != null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Merges all panes, ending with the given pane.
+     */
+    @SuppressWarnings("unchecked")
+    private A merge(int last) {
+      A result = aggregator.create();
+      for (int i = 1; i <= panes.length; i++) {
+        Object pane = panes[(last + i) % panes.length];
+        if (pane != null) {
+          result = aggregator.merge(result, (A) pane);
+        }
+      }
+      return result;
+    }
+  }
+
+}
@@ -22,6 +22,7 @@ import net.kuujo.vertigo.component.Component;
 import net.kuujo.vertigo.component.InstanceContext;
 import net.kuujo.vertigo.io.InputCollector;
 import net.kuujo.vertigo.io.OutputCollector;
+import net.kuujo.vertigo.state.ComponentState;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Future;
@@ -61,16 +62,24 @@ import org.vertx.java.platform.Verticle;
  * {@link net.kuujo.vertigo.io.logging.logger.PortLogger} that is specific to
  * the component instance. The port logger will log any messages to
  * the underlying Vert.x {@link org.vertx.java.core.logging.Logger}
- * as well as the corresponding output port.
+ * as well as the corresponding output port.<p>
+ *
+ * The component's <code>state</code> provides local keyed stores held
+ * outside of the Java heap. See {@link ComponentState}.<p>
+ *
+ * The component is stopped when the verticle is undeployed. Subclasses
+ * that override {@link ComponentVerticle#stop()} must call the super
+ * method so that resources registered with the component are released.
  * 
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public abstract class ComponentVerticle extends Verticle {
-  private Component component;
+  protected Component component;
   protected Vertigo vertigo;
   protected InstanceContext context;
   protected Cluster cluster;
   protected Logger logger;
+  protected ComponentState state;
   protected InputCollector input;
   protected OutputCollector output;
 
@@ -80,6 +89,7 @@ public abstract class ComponentVerticle extends Verticle {
     context = component.context();
     cluster = component.cluster();
     logger = component.logger();
+    state = component.state();
     input = component.input();
     output = component.output();
     vertigo = new Vertigo(this);
@@ -96,4 +106,11 @@ public abstract class ComponentVerticle extends Verticle {
     });
   }
 
+  @Override
+  public void stop() {
+    if (component != null) {
+      component.stop();
+    }
+  }
+
 }
@@ -61,6 +61,13 @@ public interface NetworkConfig extends Config<NetworkConfig> {
    */
   public static final String NETWORK_COMPONENTS = "components";
 
+  /**
+   * <code>checkpoint-interval</code> is the interval in milliseconds at which the
+   * network takes consistent checkpoints of component state. Defaults to <code>0</code>,
+   * meaning checkpoints are disabled.
+   */
+  public static final String NETWORK_CHECKPOINT_INTERVAL = "checkpoint-interval";
+
   /**
    * Returns the network name.<p>
    *
@@ -70,6 +77,33 @@ public interface NetworkConfig extends Config<NetworkConfig> {
    */
   String getName();
 
+  /**
+   * Sets the network checkpoint interval.<p>
+   *
+   * When a checkpoint interval is set, the network manager periodically
+   * injects checkpoint barriers at the network's source components. Once a
+   * barrier has been received on all of a component's input connections the
+   * component snapshots its state stores to the cluster and forwards the
+   * barrier, and once all instances have completed the snapshot the
+   * checkpoint is recorded in the cluster.<p>
+   *
+   * Only Java verticle components can take part in checkpoints. If the
+   * network contains any module or non-Java verticle components then
+   * checkpoints are disabled and a warning is logged.
+   *
+   * @param interval The checkpoint interval in milliseconds, or <code>0</code>
+   *        to disable checkpoints.
+   * @return The network configuration.
+   */
+  NetworkConfig setCheckpointInterval(long interval);
+
+  /**
+   * Returns the network checkpoint interval.
+   *
+   * @return The checkpoint interval in milliseconds.
+   */
+  long getCheckpointInterval();
+
   /**
    * Gets a list of network components.
    * 
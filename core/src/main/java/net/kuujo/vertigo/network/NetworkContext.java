@@ -79,6 +79,17 @@ public interface NetworkContext extends Context<NetworkContext> {
    */
   String status();
 
+  /**
+   * Returns the network checkpoint address.<p>
+   *
+   * This is the address of a shared-data key that is monitored by all component
+   * instances in the cluster. The network manager sets the key to trigger
+   * checkpoints and to record completed checkpoints.
+   *
+   * @return The network checkpoint address.
+   */
+  String checkpoint();
+
   /**
    * Returns a list of network component contexts.
    * 
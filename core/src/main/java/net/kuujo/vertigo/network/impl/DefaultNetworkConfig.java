@@ -37,6 +37,8 @@ import net.kuujo.vertigo.network.NetworkConfig;
 
 import org.vertx.java.core.json.JsonObject;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Default network configuration implementation.
  *
@@ -44,6 +46,8 @@ import org.vertx.java.core.json.JsonObject;
  */
 public class DefaultNetworkConfig implements NetworkConfig {
   private String name;
+  @JsonProperty("checkpoint-interval")
+  private long checkpointInterval;
   private Map<String, ComponentConfig<?>> components = new HashMap<String, ComponentConfig<?>>();
   private List<ConnectionConfig> connections = new ArrayList<>();
 
@@ -60,6 +64,20 @@ public class DefaultNetworkConfig implements NetworkConfig {
     return name;
   }
 
+  @Override
+  public NetworkConfig setCheckpointInterval(long interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("Checkpoint interval must not be negative.");
+    }
+    this.checkpointInterval = interval;
+    return this;
+  }
+
+  @Override
+  public long getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
   @Override
   public List<ComponentConfig<?>> getComponents() {
     List<ComponentConfig<?>> components = new ArrayList<ComponentConfig<?>>();
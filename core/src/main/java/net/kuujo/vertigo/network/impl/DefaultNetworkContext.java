@@ -43,6 +43,7 @@ public class DefaultNetworkContext extends BaseContext<NetworkContext> implement
   private String version;
   private NetworkConfig config;
   private String status;
+  private String checkpoint;
   private Map<String, ComponentContext<?>> components = new HashMap<>();
 
   private DefaultNetworkContext() {
@@ -94,6 +95,11 @@ public class DefaultNetworkContext extends BaseContext<NetworkContext> implement
     return status;
   }
 
+  @Override
+  public String checkpoint() {
+    return checkpoint;
+  }
+
   @Override
   @SuppressWarnings("rawtypes")
   public List<ComponentContext<?>> components() {
@@ -251,6 +257,17 @@ public class DefaultNetworkContext extends BaseContext<NetworkContext> implement
       return this;
     }
 
+    /**
+     * Sets the network checkpoint address.
+     *
+     * @param address The network checkpoint address.
+     * @return The context builder.
+     */
+    public Builder setCheckpointAddress(String address) {
+      context.checkpoint = address;
+      return this;
+    }
+
     /**
      * Set the network components.
      *
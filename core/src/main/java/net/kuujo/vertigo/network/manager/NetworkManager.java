@@ -15,9 +15,11 @@
  */
 package net.kuujo.vertigo.network.manager;
 
+import static net.kuujo.vertigo.util.Components.isJavaVerticleMain;
 import static net.kuujo.vertigo.util.Config.buildConfig;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,6 +33,7 @@ import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
 import net.kuujo.vertigo.cluster.data.impl.WrappedWatchableAsyncMap;
 import net.kuujo.vertigo.component.ComponentContext;
 import net.kuujo.vertigo.component.InstanceContext;
+import net.kuujo.vertigo.component.impl.ChainVerticle;
 import net.kuujo.vertigo.component.impl.DefaultComponentContext;
 import net.kuujo.vertigo.component.impl.DefaultInstanceContext;
 import net.kuujo.vertigo.network.NetworkContext;
@@ -42,7 +45,9 @@ import net.kuujo.vertigo.util.TaskRunner;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Future;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
@@ -85,14 +90,24 @@ import org.vertx.java.platform.Verticle;
  */
 public class NetworkManager extends Verticle {
   private static final Logger log = LoggerFactory.getLogger(NetworkManager.class);
+  private static final int CHECKPOINT_TIMEOUT_INTERVALS = 10;
   private String address;
   private Cluster cluster;
   private WatchableAsyncMap<String, String> data;
   private Set<String> ready = new HashSet<>();
   private NetworkContext currentContext;
   private final TaskRunner tasks = new TaskRunner();
+  private String checkpointAddress;
+  private long checkpointInterval;
+  private long checkpointTimer = -1;
+  private long checkpointStarted;
+  private long currentCheckpoint;
+  private long completedCheckpoint;
+  private String uncheckpointable;
+  private final Set<String> checkpointAcks = new HashSet<>();
 
   private final Map<String, Handler<MapEvent<String, String>>> watchHandlers = new HashMap<>();
+  private final Map<String, List<CountingCompletionHandler<Void>>> deployingChains = new HashMap<>();
 
   private final Handler<MapEvent<String, String>> watchHandler = new Handler<MapEvent<String, String>>() {
     @Override
@@ -107,6 +122,20 @@ public class NetworkManager extends Verticle {
     }
   };
 
+  private final Handler<Message<JsonObject>> checkpointHandler = new Handler<Message<JsonObject>>() {
+    @Override
+    public void handle(Message<JsonObject> message) {
+      handleCheckpointComplete(message.body().getString("instance"), message.body().getLong("id"));
+    }
+  };
+
+  private final Handler<Long> checkpointTimerHandler = new Handler<Long>() {
+    @Override
+    public void handle(Long timerID) {
+      triggerCheckpoint();
+    }
+  };
+
   @Override
   public void start(final Future<Void> startResult) {
     address = container.config().getString("address");
@@ -269,24 +298,42 @@ public class NetworkManager extends Verticle {
                     if (result.failed()) {
                       log.error(result.cause());
                     } else {
-                      undeployRemovedComponents(currentContext, runningContext, new Handler<AsyncResult<Void>>() {
+                      // Chains whose membership changed are torn down before
+                      // removed components are undeployed and rebuilt once added
+                      // components have been deployed.
+                      final Set<String> changedChains = changedDeployments(currentContext, runningContext);
+                      undeployDeployments(changedChains, new Handler<AsyncResult<Void>>() {
                         @Override
                         public void handle(AsyncResult<Void> result) {
-                          if (result.failed()) {
-                            log.error(result.cause());
-                          } else {
-                            deployAddedComponents(currentContext, runningContext, new Handler<AsyncResult<Void>>() {
-                              @Override
-                              public void handle(AsyncResult<Void> result) {
-                                if (result.failed()) {
-                                  log.error(result.cause());
-                                } else {
-                                  task.complete();
-                                  checkReady();
-                                }
+                          undeployRemovedComponents(currentContext, runningContext, new Handler<AsyncResult<Void>>() {
+                            @Override
+                            public void handle(AsyncResult<Void> result) {
+                              if (result.failed()) {
+                                log.error(result.cause());
+                              } else {
+                                deployAddedComponents(currentContext, runningContext, new Handler<AsyncResult<Void>>() {
+                                  @Override
+                                  public void handle(AsyncResult<Void> result) {
+                                    if (result.failed()) {
+                                      log.error(result.cause());
+                                    } else {
+                                      redeployInstances(currentContext, runningContext, changedChains, new Handler<AsyncResult<Void>>() {
+                                        @Override
+                                        public void handle(AsyncResult<Void> result) {
+                                          if (result.failed()) {
+                                            log.error(result.cause());
+                                          } else {
+                                            task.complete();
+                                            checkReady();
+                                          }
+                                        }
+                                      });
+                                    }
+                                  }
+                                });
                               }
-                            });
-                          }
+                            }
+                          });
                         }
                       });
                     }
@@ -378,6 +425,118 @@ public class NetworkManager extends Verticle {
     }
   }
 
+  /**
+   * Returns the instance at the head of the given instance's chain.<p>
+   *
+   * If the instance is not chained then the instance itself is returned.
+   */
+  private static InstanceContext chainHead(InstanceContext instance) {
+    if (instance.component().isVerticle() && instance.component().asVerticle().chain() != null) {
+      ComponentContext<?> head = instance.component().network().component(instance.component().asVerticle().chain());
+      if (head != null) {
+        for (InstanceContext member : head.instances()) {
+          if (member.number() == instance.number()) {
+            return member;
+          }
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the deployment ID of a component instance.<p>
+   *
+   * Chained instances are deployed together by a single chain verticle
+   * using the address of the instance at the head of the chain.
+   */
+  private static String deploymentID(InstanceContext instance) {
+    return chainHead(instance).address();
+  }
+
+  /**
+   * Returns the addresses of the instances deployed by each deployment in a network.
+   */
+  private static Map<String, Set<String>> deployments(NetworkContext context) {
+    Map<String, Set<String>> deployments = new HashMap<>();
+    for (ComponentContext<?> component : context.components()) {
+      for (InstanceContext instance : component.instances()) {
+        String deploymentID = deploymentID(instance);
+        Set<String> instances = deployments.get(deploymentID);
+        if (instances == null) {
+          instances = new HashSet<>();
+          deployments.put(deploymentID, instances);
+        }
+        instances.add(instance.address());
+      }
+    }
+    return deployments;
+  }
+
+  /**
+   * Returns the IDs of running deployments that must be rebuilt for an updated network.<p>
+   *
+   * A deployment must be rebuilt if the set of instances it deploys changed
+   * and at least one of those instances is still in the network. Deployments
+   * whose instances were all removed are undeployed with removed components.
+   */
+  private static Set<String> changedDeployments(NetworkContext context, NetworkContext runningContext) {
+    Map<String, Set<String>> deployments = deployments(context);
+    Set<String> instances = new HashSet<>();
+    for (Set<String> members : deployments.values()) {
+      instances.addAll(members);
+    }
+    Set<String> changed = new HashSet<>();
+    for (Map.Entry<String, Set<String>> entry : deployments(runningContext).entrySet()) {
+      if (!entry.getValue().equals(deployments.get(entry.getKey())) && !Collections.disjoint(entry.getValue(), instances)) {
+        changed.add(entry.getKey());
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Undeploys a set of deployments.
+   */
+  private void undeployDeployments(Set<String> deploymentIDs, final Handler<AsyncResult<Void>> doneHandler) {
+    final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(deploymentIDs.size());
+    counter.setHandler(doneHandler);
+    for (final String deploymentID : deploymentIDs) {
+      log.info(String.format("Undeploying %s for reconfiguration", deploymentID));
+      cluster.undeployVerticle(deploymentID, new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> result) {
+          if (result.failed()) {
+            log.error(result.cause());
+          }
+          counter.succeed();
+        }
+      });
+    }
+  }
+
+  /**
+   * Redeploys instances that remain in the network after their deployments were undeployed.
+   */
+  private void redeployInstances(NetworkContext context, NetworkContext runningContext, Set<String> deploymentIDs, final Handler<AsyncResult<Void>> doneHandler) {
+    Map<String, Set<String>> deployments = deployments(runningContext);
+    Set<String> addresses = new HashSet<>();
+    for (String deploymentID : deploymentIDs) {
+      addresses.addAll(deployments.get(deploymentID));
+    }
+    List<InstanceContext> instances = new ArrayList<>();
+    for (ComponentContext<?> component : context.components()) {
+      for (InstanceContext instance : component.instances()) {
+        if (addresses.contains(instance.address())) {
+          instances.add(instance);
+        }
+      }
+    }
+    final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(instances.size());
+    counter.setHandler(doneHandler);
+    deployInstances(instances, counter);
+  }
+
   /**
    * Handles the deletion of the network.
    */
@@ -391,6 +550,7 @@ public class NetworkManager extends Verticle {
             if (result.failed()) {
               log.error(result.cause());
             }
+            stopCheckpoints();
             if (currentContext != null) {
               undeployNetwork(currentContext, new Handler<AsyncResult<Void>>() {
                 @Override
@@ -452,6 +612,7 @@ public class NetworkManager extends Verticle {
    */
   private void checkReady() {
     if (allReady()) {
+      checkCheckpoints();
       // Set the network's status key to the current context version. This
       // can be used by listeners to determine when a configuration change is complete.
       data.put(currentContext.status(), currentContext.version(), new Handler<AsyncResult<String>>() {
@@ -465,6 +626,152 @@ public class NetworkManager extends Verticle {
     }
   }
 
+  /**
+   * Starts, stops, or updates periodic checkpoints according to the
+   * current network configuration.
+   */
+  private void checkCheckpoints() {
+    long interval = currentContext.config().getCheckpointInterval();
+
+    // Only Java verticle components take part in checkpoints. Checkpoints
+    // would never complete if any component can't forward barriers and
+    // acknowledge snapshots, so they're disabled for such networks.
+    if (interval > 0) {
+      String component = findUncheckpointableComponent();
+      if (component != null) {
+        if (!component.equals(uncheckpointable)) {
+          log.warn("Checkpoints are disabled for network " + currentContext.address() + " because component " + component + " is not a Java verticle");
+        }
+        interval = 0;
+      }
+      uncheckpointable = component;
+    }
+
+    if (interval == checkpointInterval) {
+      return;
+    }
+
+    if (checkpointTimer != -1) {
+      vertx.cancelTimer(checkpointTimer);
+      checkpointTimer = -1;
+    }
+    checkpointInterval = interval;
+    if (interval == 0) {
+      return;
+    }
+
+    if (checkpointAddress == null) {
+      checkpointAddress = currentContext.checkpoint();
+      vertx.eventBus().registerHandler(checkpointAddress, checkpointHandler);
+
+      // Continue numbering from the last checkpoint recorded in the cluster
+      // so checkpoint IDs remain unique if the manager is redeployed.
+      data.get(checkpointAddress, new Handler<AsyncResult<String>>() {
+        @Override
+        public void handle(AsyncResult<String> result) {
+          if (result.failed()) {
+            log.error(result.cause());
+          } else if (result.result() != null) {
+            JsonObject info = new JsonObject(result.result());
+            currentCheckpoint = Math.max(currentCheckpoint, info.getLong("id", 0));
+            completedCheckpoint = Math.max(completedCheckpoint, info.getLong("completed", 0));
+          }
+          if (checkpointInterval > 0 && checkpointTimer == -1) {
+            checkpointTimer = vertx.setPeriodic(checkpointInterval, checkpointTimerHandler);
+          }
+        }
+      });
+    } else {
+      checkpointTimer = vertx.setPeriodic(interval, checkpointTimerHandler);
+    }
+  }
+
+  /**
+   * Returns the name of a component that can't take part in checkpoints, if any.
+   */
+  private String findUncheckpointableComponent() {
+    for (ComponentContext<?> component : currentContext.components()) {
+      if (component.isModule() || !isJavaVerticleMain(component.asVerticle().main())) {
+        return component.name();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Triggers a new checkpoint.
+   */
+  private void triggerCheckpoint() {
+    // Checkpoints are not triggered during configuration changes. If the
+    // previous checkpoint is still in progress then the new checkpoint is
+    // skipped unless the previous checkpoint has timed out, e.g. because
+    // an instance failed while the checkpoint was in progress.
+    if (!allReady()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (currentCheckpoint > completedCheckpoint && now - checkpointStarted < checkpointInterval * CHECKPOINT_TIMEOUT_INTERVALS) {
+      return;
+    }
+    currentCheckpoint++;
+    checkpointStarted = now;
+    checkpointAcks.clear();
+    updateCheckpoint();
+  }
+
+  /**
+   * Handles an instance completing a checkpoint.
+   */
+  private void handleCheckpointComplete(String instance, long checkpoint) {
+    if (checkpoint != currentCheckpoint || checkpoint <= completedCheckpoint || currentContext == null) {
+      return;
+    }
+    checkpointAcks.add(instance);
+    for (ComponentContext<?> component : currentContext.components()) {
+      for (InstanceContext context : component.instances()) {
+        if (!checkpointAcks.contains(context.address())) {
+          return;
+        }
+      }
+    }
+    completedCheckpoint = checkpoint;
+    updateCheckpoint();
+    log.info("Completed checkpoint " + checkpoint + " of network " + currentContext.address());
+  }
+
+  /**
+   * Updates the network's checkpoint key in the cluster.
+   */
+  private void updateCheckpoint() {
+    JsonObject info = new JsonObject()
+        .putNumber("id", currentCheckpoint)
+        .putNumber("completed", completedCheckpoint);
+    data.put(checkpointAddress, info.encode(), new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          log.error(result.cause());
+        }
+      }
+    });
+  }
+
+  /**
+   * Stops checkpoints and removes the network's checkpoint key.
+   */
+  private void stopCheckpoints() {
+    if (checkpointTimer != -1) {
+      vertx.cancelTimer(checkpointTimer);
+      checkpointTimer = -1;
+    }
+    checkpointInterval = 0;
+    if (checkpointAddress != null) {
+      vertx.eventBus().unregisterHandler(checkpointAddress, checkpointHandler);
+      data.remove(checkpointAddress);
+      checkpointAddress = null;
+    }
+  }
+
   /**
    * Called when a component instance is unready.
    */
@@ -561,8 +868,8 @@ public class NetworkManager extends Verticle {
   private void deployInstances(List<InstanceContext> instances, final CountingCompletionHandler<Void> counter) {
     for (final InstanceContext instance : instances) {
       // Before deploying the instance, check if the instance is already deployed in
-      // the network's cluster.
-      cluster.isDeployed(instance.address(), new Handler<AsyncResult<Boolean>>() {
+      // the network's cluster. Chained instances are deployed by their chain.
+      cluster.isDeployed(deploymentID(instance), new Handler<AsyncResult<Boolean>>() {
         @Override
         public void handle(AsyncResult<Boolean> result) {
           if (result.failed()) {
@@ -623,30 +930,97 @@ public class NetworkManager extends Verticle {
                   counter.fail(result.cause());
                 } else {
                   watchHandlers.put(instance.address(), watchHandler);
-                  if (instance.component().isModule()) {
-                    deployModule(instance, counter);
-                  } else if (instance.component().isVerticle() && !instance.component().asVerticle().isWorker()) {
-                    deployVerticle(instance, counter);
-                  } else if (instance.component().isVerticle() && instance.component().asVerticle().isWorker()) {
-                    deployWorkerVerticle(instance, counter);
-                  }
+                  doDeployInstance(instance, counter);
                 }
               }
             });
           } else {
-            if (instance.component().isModule()) {
-              deployModule(instance, counter);
-            } else if (instance.component().isVerticle() && !instance.component().asVerticle().isWorker()) {
-              deployVerticle(instance, counter);
-            } else if (instance.component().isVerticle() && instance.component().asVerticle().isWorker()) {
-              deployWorkerVerticle(instance, counter);
+            doDeployInstance(instance, counter);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Deploys a component instance according to its type.
+   */
+  private void doDeployInstance(final InstanceContext instance, final CountingCompletionHandler<Void> counter) {
+    if (instance.component().isModule()) {
+      deployModule(instance, counter);
+    } else if (instance.component().isVerticle() && instance.component().asVerticle().chain() != null) {
+      deployChain(instance, counter);
+    } else if (instance.component().isVerticle() && !instance.component().asVerticle().isWorker()) {
+      deployVerticle(instance, counter);
+    } else if (instance.component().isVerticle() && instance.component().asVerticle().isWorker()) {
+      deployWorkerVerticle(instance, counter);
+    }
+  }
+
+  /**
+   * Deploys a chained component instance in the network's cluster.
+   */
+  private void deployChain(final InstanceContext instance, final CountingCompletionHandler<Void> counter) {
+    // All the instances in a chain are deployed together by a single chain
+    // verticle. The first instance of the chain to be deployed deploys the
+    // chain verticle, and any other instances of the chain that are deployed
+    // in the meantime complete once the same deployment has completed.
+    final String deploymentID = deploymentID(instance);
+    List<CountingCompletionHandler<Void>> counters = deployingChains.get(deploymentID);
+    if (counters != null) {
+      counters.add(counter);
+      return;
+    }
+    counters = new ArrayList<>();
+    counters.add(counter);
+    deployingChains.put(deploymentID, counters);
+
+    cluster.isDeployed(deploymentID, new Handler<AsyncResult<Boolean>>() {
+      @Override
+      public void handle(AsyncResult<Boolean> result) {
+        if (result.failed()) {
+          completeChain(deploymentID, result.cause());
+        } else if (result.result()) {
+          completeChain(deploymentID, null);
+        } else {
+          InstanceContext head = chainHead(instance);
+          JsonArray chain = new JsonArray();
+          for (ComponentContext<?> component : head.component().network().components()) {
+            if (component.isVerticle() && head.component().name().equals(component.asVerticle().chain())) {
+              for (InstanceContext member : component.instances()) {
+                if (member.number() == head.number()) {
+                  chain.addObject(new JsonObject()
+                      .putString("main", component.asVerticle().main())
+                      .putObject("config", buildConfig(member, cluster)));
+                }
+              }
             }
           }
+
+          cluster.deployVerticleTo(deploymentID, head.component().group(), ChainVerticle.class.getName(), new JsonObject().putArray("__chain__", chain), 1, true, new Handler<AsyncResult<String>>() {
+            @Override
+            public void handle(AsyncResult<String> result) {
+              completeChain(deploymentID, result.failed() ? result.cause() : null);
+            }
+          });
         }
       }
     });
   }
 
+  /**
+   * Completes the deployment of all instances waiting on a chain deployment.
+   */
+  private void completeChain(String deploymentID, Throwable cause) {
+    for (CountingCompletionHandler<Void> counter : deployingChains.remove(deploymentID)) {
+      if (cause != null) {
+        counter.fail(cause);
+      } else {
+        counter.succeed();
+      }
+    }
+  }
+
   /**
    * Deploys a module component instance in the network's cluster.
    */
@@ -748,7 +1122,9 @@ public class NetworkManager extends Verticle {
    */
   private void undeployInstances(List<InstanceContext> instances, final CountingCompletionHandler<Void> counter) {
     for (final InstanceContext instance : instances) {
-      cluster.isDeployed(instance.address(), new Handler<AsyncResult<Boolean>>() {
+      // Chained instances are undeployed by undeploying their chain, which
+      // stops all the instances in the chain.
+      cluster.isDeployed(deploymentID(instance), new Handler<AsyncResult<Boolean>>() {
         @Override
         public void handle(AsyncResult<Boolean> result) {
           if (result.failed()) {
@@ -818,7 +1194,7 @@ public class NetworkManager extends Verticle {
    * Undeploys a verticle component instance.
    */
   private void undeployVerticle(final InstanceContext instance, final CountingCompletionHandler<Void> counter) {
-    cluster.undeployVerticle(instance.address(), new Handler<AsyncResult<Void>>() {
+    cluster.undeployVerticle(deploymentID(instance), new Handler<AsyncResult<Void>>() {
       @Override
       public void handle(AsyncResult<Void> result) {
         unwatchInstance(instance, counter);
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state;
+
+import net.kuujo.vertigo.cluster.data.AsyncMap;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Component instance state.<p>
+ *
+ * Component state provides named local stores for a single component
+ * instance. Stores are created lazily the first time they're referenced.
+ * By default stores are held in direct memory. If the
+ * <code>vertigo.state.dir</code> system property is set then stores are
+ * instead backed by memory-mapped files in that directory, allowing stores
+ * to exceed available memory.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface ComponentState {
+
+  /**
+   * Returns a named state store.
+   *
+   * @param name The store name.
+   * @return The state store.
+   * @throws IllegalArgumentException If the name is reserved or is the name of
+   *         a store of a different type.
+   */
+  StateStore getStateStore(String name);
+
+  /**
+   * Returns a named counter store.
+   *
+   * @param name The store name.
+   * @return The counter store.
+   * @throws IllegalArgumentException If the name is reserved or is the name of
+   *         a store of a different type.
+   */
+  CounterStore getCounterStore(String name);
+
+  /**
+   * Writes a snapshot of all stores to a cluster map.<p>
+   *
+   * The contents of all stores are captured when this method is called,
+   * so stores may continue to be modified while the snapshot is written.
+   *
+   * @param map The map to which to write the snapshot.
+   * @param doneHandler An asynchronous handler to be called once the snapshot
+   *        has been written.
+   */
+  void snapshot(AsyncMap<String, String> map, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Restores all stores from a snapshot in a cluster map.<p>
+   *
+   * Stores that exist in the snapshot are created if necessary.
+   *
+   * @param map The map from which to read the snapshot.
+   * @param doneHandler An asynchronous handler to be called once the snapshot
+   *        has been restored.
+   */
+  void restore(AsyncMap<String, String> map, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Closes all stores, releasing their memory.
+   */
+  void close();
+
+}
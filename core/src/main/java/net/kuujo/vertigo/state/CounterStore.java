@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state;
+
+/**
+ * Local keyed counter store.<p>
+ *
+ * The counter store is a state store specialized for <code>long</code>
+ * values. Counters are updated in place, so updating a counter never
+ * allocates memory on or off the heap. Keys that don't exist in the
+ * store have a value of <code>0</code>.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface CounterStore extends Store {
+
+  /**
+   * Gets the value of a counter.
+   *
+   * @param key The counter key.
+   * @return The counter value.
+   */
+  long get(String key);
+
+  /**
+   * Sets the value of a counter.
+   *
+   * @param key The counter key.
+   * @param value The counter value.
+   * @return The counter store.
+   */
+  CounterStore set(String key, long value);
+
+  /**
+   * Increments a counter.
+   *
+   * @param key The counter key.
+   * @return The new counter value.
+   */
+  long increment(String key);
+
+  /**
+   * Decrements a counter.
+   *
+   * @param key The counter key.
+   * @return The new counter value.
+   */
+  long decrement(String key);
+
+  /**
+   * Adds a value to a counter.
+   *
+   * @param key The counter key.
+   * @param delta The value to add.
+   * @return The new counter value.
+   */
+  long add(String key, long delta);
+
+}
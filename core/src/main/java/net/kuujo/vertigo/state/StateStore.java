@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state;
+
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Local keyed state store.<p>
+ *
+ * The state store maps string keys to binary, string, or JSON values.
+ * Values are encoded when they're written to the store and decoded when
+ * they're read, so values returned by the store are always copies.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface StateStore extends Store {
+
+  /**
+   * Gets a binary value from the store.
+   *
+   * @param key The key to get.
+   * @return The value or <code>null</code> if the key doesn't exist.
+   */
+  byte[] getBinary(String key);
+
+  /**
+   * Puts a binary value in the store.
+   *
+   * @param key The key to put.
+   * @param value The value to put.
+   * @return The state store.
+   */
+  StateStore putBinary(String key, byte[] value);
+
+  /**
+   * Gets a string value from the store.
+   *
+   * @param key The key to get.
+   * @return The value or <code>null</code> if the key doesn't exist.
+   */
+  String getString(String key);
+
+  /**
+   * Puts a string value in the store.
+   *
+   * @param key The key to put.
+   * @param value The value to put.
+   * @return The state store.
+   */
+  StateStore putString(String key, String value);
+
+  /**
+   * Gets a JSON value from the store.
+   *
+   * @param key The key to get.
+   * @return The value or <code>null</code> if the key doesn't exist.
+   */
+  JsonObject getObject(String key);
+
+  /**
+   * Puts a JSON value in the store.
+   *
+   * @param key The key to put.
+   * @param value The value to put.
+   * @return The state store.
+   */
+  StateStore putObject(String key, JsonObject value);
+
+}
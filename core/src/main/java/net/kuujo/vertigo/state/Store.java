@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state;
+
+import net.kuujo.vertigo.cluster.data.AsyncMap;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+
+/**
+ * Base interface for local component state stores.<p>
+ *
+ * Stores are local to a single component instance and must only be
+ * accessed from the component's context. Keys and values are held
+ * outside of the Java heap, so the size of a store has little effect
+ * on garbage collection. Because stores are local, their contents are
+ * lost when the instance is redeployed unless a snapshot has been
+ * written to the cluster with {@link #snapshot(AsyncMap, Handler)}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface Store {
+
+  /**
+   * Returns the store name.
+   *
+   * @return The store name.
+   */
+  String name();
+
+  /**
+   * Returns the number of keys in the store.
+   *
+   * @return The number of keys in the store.
+   */
+  int size();
+
+  /**
+   * Returns a boolean indicating whether the store is empty.
+   *
+   * @return Indicates whether the store is empty.
+   */
+  boolean isEmpty();
+
+  /**
+   * Returns a boolean indicating whether the store contains a key.
+   *
+   * @param key The key to check.
+   * @return Indicates whether the store contains the key.
+   */
+  boolean containsKey(String key);
+
+  /**
+   * Removes a key from the store.
+   *
+   * @param key The key to remove.
+   * @return Indicates whether the key existed.
+   */
+  boolean remove(String key);
+
+  /**
+   * Removes all keys from the store.
+   */
+  void clear();
+
+  /**
+   * Returns the number of bytes of memory held by the store.
+   *
+   * @return The number of bytes of memory held by the store.
+   */
+  long memoryUsage();
+
+  /**
+   * Writes a snapshot of the store to a cluster map.<p>
+   *
+   * The snapshot is taken synchronously into off-heap memory when this
+   * method is called, so later changes to the store are not included in
+   * the snapshot. The snapshot is then written to the map in chunks under
+   * keys prefixed with the store name.
+   *
+   * @param map The map to which to write the snapshot.
+   * @param doneHandler An asynchronous handler to be called once the snapshot
+   *        has been written.
+   */
+  void snapshot(AsyncMap<String, String> map, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Restores the store from a snapshot in a cluster map.<p>
+   *
+   * The contents of the store are replaced by the contents of the snapshot,
+   * so keys added since the snapshot was taken are removed. If no snapshot
+   * exists the store is unchanged.
+   *
+   * @param map The map from which to read the snapshot.
+   * @param doneHandler An asynchronous handler to be called once the snapshot
+   *        has been restored.
+   */
+  void restore(AsyncMap<String, String> map, Handler<AsyncResult<Void>> doneHandler);
+
+  /**
+   * Closes the store, releasing its memory.
+   */
+  void close();
+
+}
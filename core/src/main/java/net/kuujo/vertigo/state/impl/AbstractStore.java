@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import net.kuujo.vertigo.cluster.data.AsyncMap;
+import net.kuujo.vertigo.state.StateException;
+import net.kuujo.vertigo.state.Store;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.json.impl.Base64;
+
+/**
+ * Base class for off-heap stores.<p>
+ *
+ * Keys are hashed to one of a fixed number of {@link OffHeapSegment}s
+ * so that no single segment must be resized or compacted at once.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+abstract class AbstractStore implements Store {
+  private static final int SEGMENT_BITS = 4;
+  private static final int CHUNK_SIZE = 1024 * 256;
+  private final String name;
+  private final BufferAllocator allocator;
+  private OffHeapSegment[] segments;
+
+  protected AbstractStore(String name, BufferAllocator allocator) {
+    this.name = name;
+    this.allocator = allocator;
+    this.segments = new OffHeapSegment[1 << SEGMENT_BITS];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new OffHeapSegment(allocator);
+    }
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Encodes a key.
+   */
+  protected static byte[] encodeKey(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Hashes an encoded key. The hash is never <code>0</code>.
+   */
+  protected static int hash(byte[] key) {
+    int hash = Arrays.hashCode(key);
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash != 0 ? hash : 1;
+  }
+
+  /**
+   * Returns the segment for a key hash.
+   */
+  protected OffHeapSegment segment(int hash) {
+    return segments()[hash >>> (32 - SEGMENT_BITS)];
+  }
+
+  private OffHeapSegment[] segments() {
+    if (segments == null) {
+      throw new IllegalStateException("Store " + name + " is closed");
+    }
+    return segments;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (OffHeapSegment segment : segments()) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    byte[] bytes = encodeKey(key);
+    int hash = hash(bytes);
+    return segment(hash).find(bytes, hash) >= 0;
+  }
+
+  @Override
+  public boolean remove(String key) {
+    byte[] bytes = encodeKey(key);
+    int hash = hash(bytes);
+    return segment(hash).remove(bytes, hash);
+  }
+
+  @Override
+  public void clear() {
+    for (OffHeapSegment segment : segments()) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public long memoryUsage() {
+    long usage = 0;
+    for (OffHeapSegment segment : segments()) {
+      usage += segment.memoryUsage();
+    }
+    return usage;
+  }
+
+  @Override
+  public void close() {
+    if (segments != null) {
+      for (OffHeapSegment segment : segments) {
+        segment.close();
+      }
+      segments = null;
+    }
+  }
+
+  @Override
+  public void snapshot(final AsyncMap<String, String> map, final Handler<AsyncResult<Void>> doneHandler) {
+    long size = 0;
+    for (OffHeapSegment segment : segments()) {
+      size += segment.liveBytes();
+    }
+    if (size > Integer.MAX_VALUE) {
+      new DefaultFutureResult<Void>(new StateException("Store " + name + " is too large to snapshot")).setHandler(doneHandler);
+      return;
+    }
+
+    // Copy the store into off-heap memory so the snapshot is consistent
+    // without holding the complete snapshot on the heap while it's written.
+    final ByteBuffer snapshot = allocator.allocate(Math.max((int) size, 1));
+    for (OffHeapSegment segment : segments()) {
+      segment.copyTo(snapshot);
+    }
+    snapshot.flip();
+
+    // Chunks are written under a unique snapshot ID and the manifest is
+    // only updated once all chunks have been written, so a failure while
+    // writing a snapshot never corrupts the previous snapshot.
+    final String id = UUID.randomUUID().toString();
+    map.get(name, new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          allocator.release(snapshot);
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else {
+          final JsonObject previous = result.result() != null ? new JsonObject(result.result()) : null;
+          writeChunk(map, snapshot, id, 0, new Handler<AsyncResult<Integer>>() {
+            @Override
+            public void handle(AsyncResult<Integer> result) {
+              allocator.release(snapshot);
+              if (result.failed()) {
+                new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+              } else {
+                JsonObject manifest = new JsonObject().putString("id", id).putNumber("chunks", result.result());
+                map.put(name, manifest.encode(), new Handler<AsyncResult<String>>() {
+                  @Override
+                  public void handle(AsyncResult<String> result) {
+                    if (result.failed()) {
+                      new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+                    } else {
+                      if (previous != null) {
+                        String previousId = previous.getString("id");
+                        int chunks = previous.getInteger("chunks");
+                        for (int i = 0; i < chunks; i++) {
+                          map.remove(chunkKey(previousId, i));
+                        }
+                      }
+                      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+                    }
+                  }
+                });
+              }
+            }
+          });
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes snapshot chunks recursively, calling the done handler with
+   * the total number of chunks written.
+   */
+  private void writeChunk(final AsyncMap<String, String> map, final ByteBuffer snapshot, final String id, final int chunk, final Handler<AsyncResult<Integer>> doneHandler) {
+    if (!snapshot.hasRemaining()) {
+      new DefaultFutureResult<Integer>(chunk).setHandler(doneHandler);
+      return;
+    }
+
+    // Chunks always end on an entry boundary so each chunk can be
+    // restored independently of the others.
+    int start = snapshot.position();
+    int end = start;
+    while (end < snapshot.limit()) {
+      int entrySize = OffHeapSegment.ENTRY_HEADER_SIZE + snapshot.getInt(end) + snapshot.getInt(end + 4);
+      if (end > start && end - start + entrySize > CHUNK_SIZE) {
+        break;
+      }
+      end += entrySize;
+    }
+
+    byte[] bytes = new byte[end - start];
+    snapshot.get(bytes);
+    map.put(chunkKey(id, chunk), Base64.encodeBytes(bytes), new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Integer>(result.cause()).setHandler(doneHandler);
+        } else {
+          writeChunk(map, snapshot, id, chunk+1, doneHandler);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void restore(final AsyncMap<String, String> map, final Handler<AsyncResult<Void>> doneHandler) {
+    map.get(name, new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result() == null) {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        } else {
+          // Keys that were added after the snapshot was taken must not
+          // survive the restore, so the store is cleared first.
+          clear();
+          JsonObject manifest = new JsonObject(result.result());
+          readChunk(map, manifest.getString("id"), 0, manifest.getInteger("chunks"), doneHandler);
+        }
+      }
+    });
+  }
+
+  /**
+   * Reads and restores snapshot chunks recursively.
+   */
+  private void readChunk(final AsyncMap<String, String> map, final String id, final int chunk, final int chunks, final Handler<AsyncResult<Void>> doneHandler) {
+    if (chunk == chunks) {
+      new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+      return;
+    }
+
+    map.get(chunkKey(id, chunk), new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result() == null) {
+          new DefaultFutureResult<Void>(new StateException("Snapshot chunk " + chunk + " of store " + name + " is missing")).setHandler(doneHandler);
+        } else {
+          byte[] bytes = Base64.decode(result.result());
+          if (bytes == null) {
+            new DefaultFutureResult<Void>(new StateException("Snapshot chunk " + chunk + " of store " + name + " is corrupt")).setHandler(doneHandler);
+            return;
+          }
+          ByteBuffer buffer = ByteBuffer.wrap(bytes);
+          while (buffer.hasRemaining()) {
+            byte[] key = new byte[buffer.getInt()];
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(key);
+            buffer.get(value);
+            int hash = hash(key);
+            segment(hash).put(key, hash, value);
+          }
+          readChunk(map, id, chunk+1, chunks, doneHandler);
+        }
+      }
+    });
+  }
+
+  private String chunkKey(String id, int chunk) {
+    return String.format("%s.%s.%d", name, id, chunk);
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.kuujo.vertigo.state.StateException;
+
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+
+/**
+ * Off-heap buffer allocator.<p>
+ *
+ * Buffers should be {@link #release(ByteBuffer) released} once they're no
+ * longer used. Since the heap footprint of a direct or mapped buffer is
+ * tiny, the garbage collector can't be relied on to free the memory or
+ * unmap the file backing a buffer in a timely manner. If a buffer can't
+ * be released explicitly it's released once garbage collected.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public abstract class BufferAllocator {
+  private static final Logger log = LoggerFactory.getLogger(BufferAllocator.class);
+  private static final AtomicBoolean unsupported = new AtomicBoolean();
+  private static final Object unsafe;
+  private static final Method invokeCleaner;
+
+  static {
+    Object theUnsafe = null;
+    Method method = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      theUnsafe = field.get(null);
+    } catch (Exception e) {
+      // Unsafe.invokeCleaner only exists on Java 9 and later.
+      method = null;
+    }
+    unsafe = method != null ? theUnsafe : null;
+    invokeCleaner = method;
+  }
+
+  /**
+   * Returns an allocator that allocates direct buffers.
+   *
+   * @return A direct buffer allocator.
+   */
+  public static BufferAllocator direct() {
+    return new DirectBufferAllocator();
+  }
+
+  /**
+   * Returns an allocator that allocates memory-mapped buffers.
+   *
+   * @param directory The directory in which to create mapped files.
+   * @return A mapped buffer allocator.
+   */
+  public static BufferAllocator mapped(File directory) {
+    return new MappedBufferAllocator(directory);
+  }
+
+  /**
+   * Allocates a buffer.
+   *
+   * @param size The buffer size.
+   * @return The allocated buffer.
+   */
+  public abstract ByteBuffer allocate(int size);
+
+  /**
+   * Releases a buffer allocated by this allocator.<p>
+   *
+   * The buffer and any views of it must not be used once released. If the
+   * JVM doesn't support releasing buffers explicitly, a warning is logged
+   * once and the buffer is released once garbage collected.
+   *
+   * @param buffer The buffer to release.
+   */
+  public void release(ByteBuffer buffer) {
+    if (buffer == null || !buffer.isDirect()) {
+      return;
+    }
+    // Direct and mapped buffers are freed by their cleaner. The cleaner is
+    // not part of the public API, so it's invoked through Unsafe on Java 9
+    // and later and through the buffer's cleaner method on earlier versions.
+    try {
+      if (unsafe != null) {
+        invokeCleaner.invoke(unsafe, buffer);
+      } else {
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          Method cleanMethod = cleaner.getClass().getMethod("clean");
+          cleanMethod.setAccessible(true);
+          cleanMethod.invoke(cleaner);
+        }
+      }
+    } catch (Exception e) {
+      if (unsupported.compareAndSet(false, true)) {
+        log.warn("Buffers cannot be released explicitly and will be released once garbage collected", e);
+      }
+    }
+  }
+
+  /**
+   * Allocator for direct buffers.
+   */
+  private static class DirectBufferAllocator extends BufferAllocator {
+    @Override
+    public ByteBuffer allocate(int size) {
+      return ByteBuffer.allocateDirect(size);
+    }
+  }
+
+  /**
+   * Allocator for memory-mapped file buffers.
+   */
+  private static class MappedBufferAllocator extends BufferAllocator {
+    private final File directory;
+
+    private MappedBufferAllocator(File directory) {
+      this.directory = directory;
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+      try {
+        directory.mkdirs();
+        File file = File.createTempFile("vertigo-state-", ".dat", directory);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+          raf.setLength(size);
+          // The mapping remains valid after the channel is closed, and the
+          // file can be removed immediately on systems that allow it.
+          return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+          if (!file.delete()) {
+            file.deleteOnExit();
+          }
+        }
+      } catch (IOException e) {
+        throw new StateException(e);
+      }
+    }
+  }
+
+}
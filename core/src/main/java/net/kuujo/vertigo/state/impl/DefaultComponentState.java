@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state.impl;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.kuujo.vertigo.cluster.data.AsyncMap;
+import net.kuujo.vertigo.state.ComponentState;
+import net.kuujo.vertigo.state.CounterStore;
+import net.kuujo.vertigo.state.StateStore;
+import net.kuujo.vertigo.state.Store;
+import net.kuujo.vertigo.util.CountingCompletionHandler;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Default component state implementation.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultComponentState implements ComponentState {
+  private static final String STATE_DIRECTORY_PROPERTY_NAME = "vertigo.state.dir";
+  private static final String STORES_KEY = "__stores__";
+  private final BufferAllocator allocator;
+  private final Map<String, Store> stores = new HashMap<>();
+
+  public DefaultComponentState(String address) {
+    String directory = System.getProperty(STATE_DIRECTORY_PROPERTY_NAME);
+    this.allocator = directory != null ? BufferAllocator.mapped(new File(directory, address)) : BufferAllocator.direct();
+  }
+
+  @Override
+  public StateStore getStateStore(String name) {
+    checkName(name);
+    Store store = stores.get(name);
+    if (store == null) {
+      store = new DefaultStateStore(name, allocator);
+      stores.put(name, store);
+    } else if (!(store instanceof StateStore)) {
+      throw new IllegalArgumentException("Store " + name + " is not a state store");
+    }
+    return (StateStore) store;
+  }
+
+  @Override
+  public CounterStore getCounterStore(String name) {
+    checkName(name);
+    Store store = stores.get(name);
+    if (store == null) {
+      store = new DefaultCounterStore(name, allocator);
+      stores.put(name, store);
+    } else if (!(store instanceof CounterStore)) {
+      throw new IllegalArgumentException("Store " + name + " is not a counter store");
+    }
+    return (CounterStore) store;
+  }
+
+  /**
+   * Checks that a store name doesn't collide with the key of the stores registry.
+   */
+  private void checkName(String name) {
+    if (name.equals(STORES_KEY)) {
+      throw new IllegalArgumentException("Store name " + STORES_KEY + " is reserved");
+    }
+  }
+
+  @Override
+  public void snapshot(final AsyncMap<String, String> map, final Handler<AsyncResult<Void>> doneHandler) {
+    // Capture all stores synchronously before writing the list of stores,
+    // since the snapshot of each store is taken when snapshot() is called.
+    final JsonObject types = new JsonObject();
+    final CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(stores.size() + 1);
+    counter.setHandler(doneHandler);
+    for (Store store : stores.values()) {
+      types.putString(store.name(), store instanceof CounterStore ? "counter" : "state");
+      store.snapshot(map, counter);
+    }
+    map.put(STORES_KEY, types.encode(), new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          counter.fail(result.cause());
+        } else {
+          counter.succeed();
+        }
+      }
+    });
+  }
+
+  @Override
+  public void restore(final AsyncMap<String, String> map, final Handler<AsyncResult<Void>> doneHandler) {
+    map.get(STORES_KEY, new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        if (result.failed()) {
+          new DefaultFutureResult<Void>(result.cause()).setHandler(doneHandler);
+        } else if (result.result() == null) {
+          new DefaultFutureResult<Void>((Void) null).setHandler(doneHandler);
+        } else {
+          JsonObject types = new JsonObject(result.result());
+          // Stores that didn't exist when the snapshot was taken are cleared
+          // so that no state newer than the snapshot survives the restore.
+          for (Store store : stores.values()) {
+            if (!types.containsField(store.name())) {
+              store.clear();
+            }
+          }
+          CountingCompletionHandler<Void> counter = new CountingCompletionHandler<Void>(types.size());
+          counter.setHandler(doneHandler);
+          for (String name : types.getFieldNames()) {
+            Store store = types.getString(name).equals("counter") ? getCounterStore(name) : getStateStore(name);
+            store.restore(map, counter);
+          }
+        }
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+    for (Store store : stores.values()) {
+      store.close();
+    }
+    stores.clear();
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state.impl;
+
+import net.kuujo.vertigo.state.CounterStore;
+
+/**
+ * Default off-heap counter store implementation.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultCounterStore extends AbstractStore implements CounterStore {
+
+  public DefaultCounterStore(String name, BufferAllocator allocator) {
+    super(name, allocator);
+  }
+
+  @Override
+  public long get(String key) {
+    byte[] bytes = encodeKey(key);
+    int hash = hash(bytes);
+    return segment(hash).getLong(bytes, hash);
+  }
+
+  @Override
+  public CounterStore set(String key, long value) {
+    byte[] bytes = encodeKey(key);
+    int hash = hash(bytes);
+    segment(hash).addLong(bytes, hash, value, true);
+    return this;
+  }
+
+  @Override
+  public long increment(String key) {
+    return add(key, 1);
+  }
+
+  @Override
+  public long decrement(String key) {
+    return add(key, -1);
+  }
+
+  @Override
+  public long add(String key, long delta) {
+    byte[] bytes = encodeKey(key);
+    int hash = hash(bytes);
+    return segment(hash).addLong(bytes, hash, delta, false);
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state.impl;
+
+import java.nio.charset.StandardCharsets;
+
+import net.kuujo.vertigo.state.StateStore;
+
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Default off-heap state store implementation.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultStateStore extends AbstractStore implements StateStore {
+
+  public DefaultStateStore(String name, BufferAllocator allocator) {
+    super(name, allocator);
+  }
+
+  @Override
+  public byte[] getBinary(String key) {
+    byte[] bytes = encodeKey(key);
+    int hash = hash(bytes);
+    return segment(hash).get(bytes, hash);
+  }
+
+  @Override
+  public StateStore putBinary(String key, byte[] value) {
+    if (value == null) {
+      remove(key);
+    } else {
+      byte[] bytes = encodeKey(key);
+      int hash = hash(bytes);
+      segment(hash).put(bytes, hash, value);
+    }
+    return this;
+  }
+
+  @Override
+  public String getString(String key) {
+    byte[] value = getBinary(key);
+    return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+  }
+
+  @Override
+  public StateStore putString(String key, String value) {
+    return putBinary(key, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+  }
+
+  @Override
+  public JsonObject getObject(String key) {
+    String value = getString(key);
+    return value != null ? new JsonObject(value) : null;
+  }
+
+  @Override
+  public StateStore putObject(String key, JsonObject value) {
+    return putString(key, value != null ? value.encode() : null);
+  }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.state.impl;
+
+import java.nio.ByteBuffer;
+
+import net.kuujo.vertigo.state.StateException;
+
+/**
+ * Off-heap hash table segment.<p>
+ *
+ * The segment consists of two off-heap buffers. The index buffer is an
+ * open addressing hash table with linear probing, each slot holding the
+ * key hash and the offset of the entry in the data buffer. The data buffer
+ * holds entries as <code>[key length][value length][key][value]</code>.
+ * Values of the same length are overwritten in place. Otherwise new entries
+ * are appended to the data buffer and the data buffer is compacted once it's
+ * full. No state other than a few counters is held on the heap.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class OffHeapSegment {
+  static final int ENTRY_HEADER_SIZE = 8;
+  private static final int SLOT_SIZE = 8;
+  private static final int INITIAL_SLOTS = 1024;
+  private static final int INITIAL_DATA_SIZE = 1024 * 64;
+  private static final int MAX_DATA_SIZE = 1 << 30;
+  private final BufferAllocator allocator;
+  private ByteBuffer index;
+  private ByteBuffer data;
+  private int mask;
+  private int size;
+  private int position;
+  private int garbage;
+
+  public OffHeapSegment(BufferAllocator allocator) {
+    this.allocator = allocator;
+    clear();
+  }
+
+  /**
+   * Returns the number of entries in the segment.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes held by the segment.
+   */
+  public long memoryUsage() {
+    return (long) index.capacity() + data.capacity();
+  }
+
+  /**
+   * Returns the number of bytes of live entries in the segment.
+   */
+  public int liveBytes() {
+    return position - garbage;
+  }
+
+  /**
+   * Clears the segment.
+   */
+  public void clear() {
+    release();
+    index = allocator.allocate(INITIAL_SLOTS * SLOT_SIZE);
+    data = allocator.allocate(INITIAL_DATA_SIZE);
+    mask = INITIAL_SLOTS - 1;
+    size = 0;
+    position = 0;
+    garbage = 0;
+  }
+
+  /**
+   * Closes the segment, releasing its buffers.
+   */
+  public void close() {
+    release();
+    size = 0;
+    position = 0;
+    garbage = 0;
+  }
+
+  private void release() {
+    allocator.release(index);
+    allocator.release(data);
+    index = null;
+    data = null;
+  }
+
+  /**
+   * Returns the data offset of the entry for the given key, or <code>-1</code>.
+   */
+  public int find(byte[] key, int hash) {
+    int slot = findSlot(key, hash);
+    return slot >= 0 ? index.getInt(slot * SLOT_SIZE + 4) : -1;
+  }
+
+  /**
+   * Gets the value for a key.
+   */
+  public byte[] get(byte[] key, int hash) {
+    int offset = find(key, hash);
+    if (offset < 0) {
+      return null;
+    }
+    byte[] value = new byte[data.getInt(offset + 4)];
+    ByteBuffer buffer = data.duplicate();
+    buffer.position(offset + ENTRY_HEADER_SIZE + key.length);
+    buffer.get(value);
+    return value;
+  }
+
+  /**
+   * Gets a <code>long</code> value for a key.
+   */
+  public long getLong(byte[] key, int hash) {
+    int offset = find(key, hash);
+    return offset >= 0 ? data.getLong(offset + ENTRY_HEADER_SIZE + key.length) : 0;
+  }
+
+  /**
+   * Puts a value for a key.
+   */
+  public void put(byte[] key, int hash, byte[] value) {
+    int offset = prepare(key, hash, value.length);
+    ByteBuffer buffer = data.duplicate();
+    buffer.position(offset + ENTRY_HEADER_SIZE + key.length);
+    buffer.put(value);
+  }
+
+  /**
+   * Adds to the <code>long</code> value for a key.
+   *
+   * @return The new value.
+   */
+  public long addLong(byte[] key, int hash, long delta, boolean replace) {
+    int offset = find(key, hash);
+    if (offset < 0) {
+      offset = prepare(key, hash, 8);
+      data.putLong(offset + ENTRY_HEADER_SIZE + key.length, delta);
+      return delta;
+    }
+    int valueOffset = offset + ENTRY_HEADER_SIZE + key.length;
+    long value = replace ? delta : data.getLong(valueOffset) + delta;
+    data.putLong(valueOffset, value);
+    return value;
+  }
+
+  /**
+   * Prepares an entry for a value of the given length, returning the
+   * data offset of the entry.
+   */
+  private int prepare(byte[] key, int hash, int length) {
+    if (size + 1 > (mask + 1) / 4 * 3) {
+      resizeIndex();
+    }
+
+    int slot = findSlot(key, hash);
+    if (slot >= 0) {
+      int offset = index.getInt(slot * SLOT_SIZE + 4);
+      if (data.getInt(offset + 4) == length) {
+        return offset;
+      }
+      // Compaction may move the existing entry, so the offset must be
+      // read again once space has been allocated.
+      ensureCapacity(ENTRY_HEADER_SIZE + key.length + length);
+      offset = index.getInt(slot * SLOT_SIZE + 4);
+      garbage += entrySize(offset);
+      offset = append(key, length);
+      index.putInt(slot * SLOT_SIZE + 4, offset);
+      return offset;
+    } else {
+      slot = -slot - 1;
+      ensureCapacity(ENTRY_HEADER_SIZE + key.length + length);
+      int offset = append(key, length);
+      index.putInt(slot * SLOT_SIZE, hash);
+      index.putInt(slot * SLOT_SIZE + 4, offset);
+      size++;
+      return offset;
+    }
+  }
+
+  /**
+   * Removes a key.
+   *
+   * @return Indicates whether the key existed.
+   */
+  public boolean remove(byte[] key, int hash) {
+    int slot = findSlot(key, hash);
+    if (slot < 0) {
+      return false;
+    }
+    garbage += entrySize(index.getInt(slot * SLOT_SIZE + 4));
+    size--;
+
+    // Shift following entries in the probe sequence back rather than
+    // leaving a tombstone, so lookups never degrade after removals.
+    int next = (slot + 1) & mask;
+    while (true) {
+      int nextHash = index.getInt(next * SLOT_SIZE);
+      if (nextHash == 0) {
+        break;
+      }
+      int ideal = nextHash & mask;
+      if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+        index.putInt(slot * SLOT_SIZE, nextHash);
+        index.putInt(slot * SLOT_SIZE + 4, index.getInt(next * SLOT_SIZE + 4));
+        slot = next;
+      }
+      next = (next + 1) & mask;
+    }
+    index.putInt(slot * SLOT_SIZE, 0);
+    index.putInt(slot * SLOT_SIZE + 4, 0);
+    return true;
+  }
+
+  /**
+   * Copies all live entries to the given buffer.
+   */
+  public void copyTo(ByteBuffer target) {
+    ByteBuffer buffer = data.duplicate();
+    for (int slot = 0; slot <= mask; slot++) {
+      if (index.getInt(slot * SLOT_SIZE) != 0) {
+        int offset = index.getInt(slot * SLOT_SIZE + 4);
+        buffer.limit(offset + entrySize(offset));
+        buffer.position(offset);
+        target.put(buffer);
+      }
+    }
+  }
+
+  /**
+   * Finds the slot for a key, returning <code>-(insertion slot) - 1</code>
+   * if the key doesn't exist.
+   */
+  private int findSlot(byte[] key, int hash) {
+    int slot = hash & mask;
+    while (true) {
+      int slotHash = index.getInt(slot * SLOT_SIZE);
+      if (slotHash == 0) {
+        return -slot - 1;
+      } else if (slotHash == hash && keyEquals(index.getInt(slot * SLOT_SIZE + 4), key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean keyEquals(int offset, byte[] key) {
+    if (data.getInt(offset) != key.length) {
+      return false;
+    }
+    int keyOffset = offset + ENTRY_HEADER_SIZE;
+    for (int i = 0; i < key.length; i++) {
+      if (data.get(keyOffset + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int entrySize(int offset) {
+    return ENTRY_HEADER_SIZE + data.getInt(offset) + data.getInt(offset + 4);
+  }
+
+  /**
+   * Appends an entry header and key, returning the entry offset.
+   */
+  private int append(byte[] key, int length) {
+    int offset = position;
+    data.putInt(offset, key.length);
+    data.putInt(offset + 4, length);
+    ByteBuffer buffer = data.duplicate();
+    buffer.position(offset + ENTRY_HEADER_SIZE);
+    buffer.put(key);
+    position += ENTRY_HEADER_SIZE + key.length + length;
+    return offset;
+  }
+
+  /**
+   * Ensures the data buffer has room for an entry of the given size,
+   * compacting and growing the buffer as necessary.
+   */
+  private void ensureCapacity(int entrySize) {
+    if ((long) position + entrySize <= data.capacity()) {
+      return;
+    }
+
+    long required = (long) liveBytes() + entrySize;
+    if (required > MAX_DATA_SIZE) {
+      throw new StateException("State store segment is full");
+    }
+
+    // If at least half the buffer is garbage then compact into a buffer of
+    // the same size, otherwise double the buffer until it's at most half full.
+    long capacity = data.capacity();
+    while (capacity < required * 2 && capacity < MAX_DATA_SIZE) {
+      capacity *= 2;
+    }
+
+    ByteBuffer compacted = allocator.allocate((int) capacity);
+    ByteBuffer buffer = data.duplicate();
+    int newPosition = 0;
+    for (int slot = 0; slot <= mask; slot++) {
+      if (index.getInt(slot * SLOT_SIZE) != 0) {
+        int offset = index.getInt(slot * SLOT_SIZE + 4);
+        buffer.limit(offset + entrySize(offset));
+        buffer.position(offset);
+        compacted.position(newPosition);
+        compacted.put(buffer);
+        index.putInt(slot * SLOT_SIZE + 4, newPosition);
+        newPosition = compacted.position();
+      }
+    }
+    allocator.release(data);
+    data = compacted;
+    position = newPosition;
+    garbage = 0;
+  }
+
+  /**
+   * Doubles the size of the index.
+   */
+  private void resizeIndex() {
+    int slots = (mask + 1) * 2;
+    if ((long) slots * SLOT_SIZE > Integer.MAX_VALUE) {
+      throw new StateException("State store segment is full");
+    }
+    ByteBuffer newIndex = allocator.allocate(slots * SLOT_SIZE);
+    int newMask = slots - 1;
+    for (int slot = 0; slot <= mask; slot++) {
+      int hash = index.getInt(slot * SLOT_SIZE);
+      if (hash != 0) {
+        int newSlot = hash & newMask;
+        while (newIndex.getInt(newSlot * SLOT_SIZE) != 0) {
+          newSlot = (newSlot + 1) & newMask;
+        }
+        newIndex.putInt(newSlot * SLOT_SIZE, hash);
+        newIndex.putInt(newSlot * SLOT_SIZE + 4, index.getInt(slot * SLOT_SIZE + 4));
+      }
+    }
+    allocator.release(index);
+    index = newIndex;
+    mask = newMask;
+  }
+
+}
@@ -15,6 +15,10 @@
  */
 package net.kuujo.vertigo.util;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.vertx.java.platform.impl.ModuleIdentifier;
 
 /**
@@ -23,6 +27,7 @@ import org.vertx.java.platform.impl.ModuleIdentifier;
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public final class Components {
+  private static final Set<String> SCRIPT_EXTENSIONS = new HashSet<>(Arrays.asList("js", "coffee", "rb", "py", "groovy", "scala", "clj", "php"));
 
   /**
    * Indicates whether the given name is a module name.
@@ -59,4 +64,25 @@ public final class Components {
     return !isModuleName(verticleMain);
   }
 
+  /**
+   * Indicates whether the given verticle main is a Java verticle.
+   *
+   * Vert.x selects a verticle's language module by its <code>lang:</code>
+   * prefix or by its file extension, and mains without a known script
+   * extension are treated as Java class names.
+   *
+   * @param verticleMain
+   *   The verticle main to check.
+   * @return
+   *   Indicates whether the main is a Java verticle.
+   */
+  public static boolean isJavaVerticleMain(String verticleMain) {
+    int prefix = verticleMain.indexOf(':');
+    if (prefix != -1) {
+      return verticleMain.substring(0, prefix).equals("java");
+    }
+    int extension = verticleMain.lastIndexOf('.');
+    return extension == -1 || !SCRIPT_EXTENSIONS.contains(verticleMain.substring(extension + 1));
+  }
+
 }
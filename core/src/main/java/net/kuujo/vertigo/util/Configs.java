@@ -75,6 +75,10 @@ public final class Configs {
       throw new IllegalArgumentException("Cannot merge networks of different names.");
     }
 
+    if (merge.getCheckpointInterval() > 0) {
+      base.setCheckpointInterval(merge.getCheckpointInterval());
+    }
+
     for (ComponentConfig<?> component : merge.getComponents()) {
       if (!base.hasComponent(component.getName())) {
         base.addComponent(component);
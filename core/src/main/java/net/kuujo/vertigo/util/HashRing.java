@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring.<p>
+ *
+ * Each member is placed on the ring at a number of virtual points so that
+ * keys are spread evenly and adding or removing a member only moves the
+ * keys owned by that member.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ *
+ * @param <T> The member type.
+ */
+public class HashRing<T> {
+  private static final int DEFAULT_VIRTUAL_NODES = 100;
+  private final TreeMap<Integer, T> ring = new TreeMap<>();
+  private final List<T> members;
+
+  public HashRing(Collection<T> members) {
+    this(members, DEFAULT_VIRTUAL_NODES);
+  }
+
+  public HashRing(Collection<T> members, int virtualNodes) {
+    if (virtualNodes < 1) {
+      throw new IllegalArgumentException("Virtual nodes must be positive.");
+    }
+    this.members = Collections.unmodifiableList(new ArrayList<>(members));
+    for (T member : members) {
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(hash(String.format("%s#%d", member, i)), member);
+      }
+    }
+  }
+
+  /**
+   * Returns the ring members.
+   */
+  public List<T> members() {
+    return members;
+  }
+
+  /**
+   * Returns a boolean indicating whether the ring has no members.
+   */
+  public boolean isEmpty() {
+    return members.isEmpty();
+  }
+
+  /**
+   * Returns the member that owns a key.
+   *
+   * @param key The key to look up.
+   * @return The owning member, or <code>null</code> if the ring is empty.
+   */
+  public T get(Object key) {
+    if (ring.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Integer, T> entry = ring.ceilingEntry(hash(key));
+    return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+  }
+
+  /**
+   * Hashes a key, mixing the bits of the key's string hash code since
+   * string hash codes of similar keys are poorly distributed.
+   */
+  private static int hash(Object key) {
+    int h = String.valueOf(key).hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Atomic operations on shared data maps.<p>
+ *
+ * Cluster data may be stored in Hazelcast maps, which are concurrent maps,
+ * or in local shared maps, which may not be. Operations are performed
+ * atomically by the map if it's a {@link ConcurrentMap} and otherwise by
+ * synchronizing on the map.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class SharedMaps {
+
+  /**
+   * Puts a value if the key is not already set.
+   *
+   * @param map The map to update.
+   * @param key The key to set.
+   * @param value The value to set.
+   * @return The current value, or <code>null</code> if the value was set.
+   */
+  public static <K, V> V putIfAbsent(Map<K, V> map, K key, V value) {
+    if (map instanceof ConcurrentMap) {
+      return ((ConcurrentMap<K, V>) map).putIfAbsent(key, value);
+    }
+    synchronized (map) {
+      V current = map.get(key);
+      if (current == null) {
+        map.put(key, value);
+      }
+      return current;
+    }
+  }
+
+  /**
+   * Replaces a value if the current value is the expected value.
+   *
+   * @param map The map to update.
+   * @param key The key to set.
+   * @param expect The expected current value.
+   * @param value The value to set.
+   * @return Indicates whether the value was replaced.
+   */
+  public static <K, V> boolean replace(Map<K, V> map, K key, V expect, V value) {
+    if (map instanceof ConcurrentMap) {
+      return ((ConcurrentMap<K, V>) map).replace(key, expect, value);
+    }
+    synchronized (map) {
+      if (expect.equals(map.get(key))) {
+        map.put(key, value);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Removes a value if the current value is the expected value.
+   *
+   * @param map The map to update.
+   * @param key The key to remove.
+   * @param expect The expected current value.
+   * @return Indicates whether the value was removed.
+   */
+  public static <K, V> boolean remove(Map<K, V> map, K key, V expect) {
+    if (map instanceof ConcurrentMap) {
+      return ((ConcurrentMap<K, V>) map).remove(key, expect);
+    }
+    synchronized (map) {
+      if (expect.equals(map.get(key))) {
+        map.remove(key);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Sets a value if the current value is the expected value.
+   *
+   * @param map The map to update.
+   * @param key The key to set.
+   * @param expect The expected current value, or <code>null</code> if the
+   *        key is expected not to be set.
+   * @param value The value to set.
+   * @return Indicates whether the value was set.
+   */
+  public static <K, V> boolean compareAndSet(Map<K, V> map, K key, V expect, V value) {
+    return expect == null ? putIfAbsent(map, key, value) == null : replace(map, key, expect, value);
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Hashed timer wheel for large numbers of coarse grained timeouts.<p>
+ *
+ * Rather than registering a Vert.x timer for every timeout, the timer wheel
+ * runs a single periodic timer per context and buckets timeouts into slots
+ * by deadline. Scheduling and cancelling timeouts are constant time operations.
+ * The periodic timer is only running while timeouts are scheduled.<p>
+ *
+ * Timer wheels are shared by all users on the same context, so handlers are
+ * always called on the context from which the wheel was retrieved.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class TimerWheel {
+  private static final long DEFAULT_TICK = 10;
+  private static final int DEFAULT_SLOTS = 512;
+  private static final Map<Context, TimerWheel> wheels = new WeakHashMap<>();
+  private final Vertx vertx;
+  private final long tick;
+  private final List<Timeout>[] slots;
+  private final Map<Long, Timeout> timeouts = new HashMap<>();
+  private long timeoutID;
+  private long timerID = -1;
+  private long currentTick;
+
+  private final Handler<Long> tickHandler = new Handler<Long>() {
+    @Override
+    public void handle(Long timerID) {
+      doTick(System.currentTimeMillis());
+    }
+  };
+
+  /**
+   * Returns the timer wheel for the current context.
+   *
+   * @param vertx The current Vert.x instance.
+   * @return The shared timer wheel for the current context.
+   */
+  public static TimerWheel getInstance(Vertx vertx) {
+    Context context = vertx.currentContext();
+    synchronized (wheels) {
+      TimerWheel wheel = wheels.get(context);
+      if (wheel == null) {
+        wheel = new TimerWheel(vertx);
+        wheels.put(context, wheel);
+      }
+      return wheel;
+    }
+  }
+
+  public TimerWheel(Vertx vertx) {
+    this(vertx, DEFAULT_TICK, DEFAULT_SLOTS);
+  }
+
+  @SuppressWarnings("unchecked")
+  public TimerWheel(Vertx vertx, long tick, int slots) {
+    if (tick < 1 || slots < 1) {
+      throw new IllegalArgumentException("Tick and slots must be positive.");
+    }
+    this.vertx = vertx;
+    this.tick = tick;
+    this.slots = new List[slots];
+    for (int i = 0; i < slots; i++) {
+      this.slots[i] = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Schedules a timeout.
+   *
+   * @param delay The delay in milliseconds after which to call the handler.
+   *        The handler will be called within one tick of the deadline.
+   * @param handler The handler to call once the timeout expires.
+   * @return The unique timeout identifier.
+   */
+  public long schedule(long delay, Handler<Void> handler) {
+    long now = System.currentTimeMillis();
+    if (timerID == -1) {
+      currentTick = now / tick;
+      timerID = vertx.setPeriodic(tick, tickHandler);
+    }
+
+    // The deadline tick is always at least the next tick so that timeouts
+    // scheduled from within a handler are never run during the same tick.
+    long deadlineTick = Math.max((now + Math.max(delay, 0) + tick - 1) / tick, currentTick + 1);
+    Timeout timeout = new Timeout(++timeoutID, deadlineTick, handler);
+    slots[(int) (deadlineTick % slots.length)].add(timeout);
+    timeouts.put(timeout.id, timeout);
+    return timeout.id;
+  }
+
+  /**
+   * Cancels a timeout.
+   *
+   * @param id The timeout identifier.
+   * @return Indicates whether the timeout was cancelled.
+   */
+  public boolean cancel(long id) {
+    Timeout timeout = timeouts.remove(id);
+    if (timeout != null) {
+      timeout.cancelled = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of pending timeouts.
+   *
+   * @return The number of pending timeouts.
+   */
+  public int size() {
+    return timeouts.size();
+  }
+
+  /**
+   * Advances the wheel to the given time, expiring timeouts.
+   */
+  private void doTick(long now) {
+    long targetTick = now / tick;
+    while (currentTick < targetTick) {
+      currentTick++;
+      List<Timeout> slot = slots[(int) (currentTick % slots.length)];
+      if (slot.isEmpty()) {
+        continue;
+      }
+
+      List<Timeout> expired = null;
+      Iterator<Timeout> iterator = slot.iterator();
+      while (iterator.hasNext()) {
+        Timeout timeout = iterator.next();
+        if (timeout.cancelled) {
+          iterator.remove();
+        } else if (timeout.deadline <= currentTick) {
+          iterator.remove();
+          if (expired == null) {
+            expired = new ArrayList<>();
+          }
+          expired.add(timeout);
+        }
+      }
+
+      // Handlers are called after the slot has been updated since
+      // handlers may schedule new timeouts in the same slot. Expired
+      // timeouts stay registered until their handler is called so that
+      // an earlier handler in the same tick can still cancel them.
+      if (expired != null) {
+        for (Timeout timeout : expired) {
+          timeouts.remove(timeout.id);
+          if (!timeout.cancelled) {
+            timeout.handler.handle((Void) null);
+          }
+        }
+      }
+    }
+
+    if (timeouts.isEmpty() && timerID != -1) {
+      vertx.cancelTimer(timerID);
+      timerID = -1;
+      for (List<Timeout> slot : slots) {
+        slot.clear();
+      }
+    }
+  }
+
+  /**
+   * A single scheduled timeout.
+   */
+  private static class Timeout {
+    private final long id;
+    private final long deadline;
+    private final Handler<Void> handler;
+    private boolean cancelled;
+
+    private Timeout(long id, long deadline, Handler<Void> handler) {
+      this.id = id;
+      this.deadline = deadline;
+      this.handler = handler;
+    }
+  }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import net.kuujo.vertigo.Vertigo;
+import net.kuujo.vertigo.cluster.ClusterManager;
+import net.kuujo.vertigo.java.ComponentVerticle;
+import net.kuujo.vertigo.network.ActiveNetwork;
+import net.kuujo.vertigo.network.NetworkConfig;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Future;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.platform.Verticle;
+
+/**
+ * Benchmark driver verticle.<p>
+ *
+ * The driver deploys a Vertigo cluster and a parameterized benchmark
+ * network, collects throughput and latency statistics from the network's
+ * sink components, and publishes a JSON result to the address given in
+ * the <code>result</code> configuration field once the run is complete.<p>
+ *
+ * Supported topologies are:
+ * <ul>
+ * <li><code>wordcount</code> - source -&gt; hash selected counter -&gt; sink</li>
+ * <li><code>fanout</code> - source -&gt; <code>depth</code> sink components</li>
+ * <li><code>pipeline</code> - source -&gt; <code>depth</code> relays -&gt; sink</li>
+ * </ul>
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class BenchmarkVerticle extends Verticle {
+  private static final String[] WORDS = new String[]{
+    "foo", "bar", "baz", "foobar", "foobaz", "barfoo", "barbaz", "bazfoo", "bazbar"
+  };
+
+  /**
+   * Benchmark source.<p>
+   *
+   * With a <code>rate</code> of <code>0</code> the source runs closed-loop,
+   * sending whenever the output queue has room. Otherwise the source runs
+   * open-loop, sending <code>rate</code> messages per second on a 1 ms
+   * tick regardless of whether the network keeps up. Open-loop messages
+   * are stamped with the time at which they were scheduled to be sent
+   * rather than the time at which they were actually sent so that any
+   * delay from the source falling behind is included in the measured
+   * latency.
+   */
+  public static class BenchmarkSource extends ComponentVerticle {
+    private long sent;
+
+    @Override
+    public void start() {
+      final long rate = context.component().config().getLong("rate", 0);
+      if (rate > 0) {
+        final long start = System.nanoTime();
+        vertx.setPeriodic(1, new Handler<Long>() {
+          @Override
+          public void handle(Long timerID) {
+            long expected = (System.nanoTime() - start) / 1000000 * rate / 1000;
+            while (sent < expected) {
+              doSend(start + sent * 1000000000 / rate);
+            }
+          }
+        });
+      } else {
+        doFill();
+      }
+    }
+
+    private void doFill() {
+      while (!output.port("out").sendQueueFull()) {
+        doSend(System.nanoTime());
+      }
+      output.port("out").drainHandler(new Handler<Void>() {
+        @Override
+        public void handle(Void _) {
+          doFill();
+        }
+      });
+    }
+
+    private void doSend(long time) {
+      output.port("out").send(new JsonObject()
+          .putString("word", WORDS[(int) (sent++ % WORDS.length)])
+          .putNumber("time", time));
+    }
+  }
+
+  /**
+   * Pass-through relay for pipeline stages.
+   */
+  public static class BenchmarkRelay extends ComponentVerticle {
+    @Override
+    public void start() {
+      input.port("in").messageHandler(new Handler<JsonObject>() {
+        @Override
+        public void handle(JsonObject message) {
+          output.port("out").send(message);
+        }
+      });
+    }
+  }
+
+  /**
+   * Word counter matching the word count example.
+   */
+  public static class BenchmarkCounter extends ComponentVerticle {
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    @Override
+    public void start() {
+      input.port("in").messageHandler(new Handler<JsonObject>() {
+        @Override
+        public void handle(JsonObject message) {
+          String word = message.getString("word");
+          Integer count = counts.get(word);
+          if (count == null) count = 0;
+          counts.put(word, ++count);
+          output.port("out").send(message.putNumber("count", count));
+        }
+      });
+    }
+  }
+
+  /**
+   * Benchmark sink.<p>
+   *
+   * Records end-to-end latency of each message and reports counts and
+   * latency histograms to the driver once per second. The driver can also
+   * request a report of the counts recorded since the last report so that
+   * a partial interval isn't lost at either end of the measured window.
+   */
+  public static class BenchmarkSink extends ComponentVerticle {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Override
+    public void start() {
+      final String stats = context.component().config().getString("stats");
+      input.port("in").messageHandler(new Handler<JsonObject>() {
+        @Override
+        public void handle(JsonObject message) {
+          histogram.record((System.nanoTime() - message.getLong("time")) / 1000);
+        }
+      });
+      vertx.eventBus().registerHandler(flushAddress(stats), new Handler<Message<Boolean>>() {
+        @Override
+        public void handle(Message<Boolean> message) {
+          report(stats, true);
+        }
+      });
+      vertx.setPeriodic(1000, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          report(stats, false);
+        }
+      });
+    }
+
+    private void report(String stats, boolean flush) {
+      vertx.eventBus().send(stats, new JsonObject()
+          .putNumber("count", histogram.count())
+          .putArray("histogram", histogram.toJson())
+          .putBoolean("flush", flush));
+      histogram.reset();
+    }
+  }
+
+  private static String flushAddress(String stats) {
+    return String.format("%s.flush", stats);
+  }
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private long received;
+  private boolean measuring;
+  private int flushes;
+  private Handler<Void> flushHandler;
+
+  @Override
+  public void start(final Future<Void> startResult) {
+    final JsonObject config = container.config();
+    final String topology = config.getString("topology", "pipeline");
+    final int instances = config.getInteger("instances", 1);
+    final int depth = config.getInteger("depth", 1);
+    final long rate = config.getLong("rate", 0);
+    final long warmup = config.getLong("warmup", 5000);
+    final long duration = config.getLong("duration", 30000);
+    final String cluster = config.getString("cluster", UUID.randomUUID().toString());
+    final String stats = UUID.randomUUID().toString();
+
+    vertx.eventBus().registerHandler(stats, new Handler<Message<JsonObject>>() {
+      @Override
+      public void handle(Message<JsonObject> message) {
+        if (measuring) {
+          received += message.body().getLong("count");
+          histogram.merge(LatencyHistogram.fromJson(message.body().getArray("histogram")));
+        }
+        if (message.body().getBoolean("flush", false) && --flushes == 0) {
+          flushHandler.handle((Void) null);
+        }
+      }
+    });
+
+    // Each message sent by the source is received once by every sink
+    // component in the fan-out topology.
+    final int sinks = topology.equals("fanout") ? depth : 1;
+
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(cluster, new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        if (result.failed()) {
+          startResult.setFailure(result.cause());
+          return;
+        }
+
+        NetworkConfig network = createNetwork(vertigo, topology, instances, depth, rate, stats);
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              startResult.setFailure(result.cause());
+              return;
+            }
+            startResult.setResult((Void) null);
+
+            // Discard statistics until the warmup period has passed, then
+            // measure for the configured duration and publish the results.
+            // Sinks are flushed at both ends of the measured window so that
+            // the counts recorded within it are neither dropped nor mixed
+            // with counts recorded outside it.
+            vertx.setTimer(warmup, new Handler<Long>() {
+              @Override
+              public void handle(Long timerID) {
+                flush(stats, sinks * instances, new Handler<Void>() {
+                  @Override
+                  public void handle(Void _) {
+                    measuring = true;
+                    vertx.setTimer(duration, new Handler<Long>() {
+                      @Override
+                      public void handle(Long timerID) {
+                        flush(stats, sinks * instances, new Handler<Void>() {
+                          @Override
+                          public void handle(Void _) {
+                            measuring = false;
+                            publishResult(config.getString("result"), topology, instances, depth, rate, duration, sinks);
+                          }
+                        });
+                      }
+                    });
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Requests a report from every sink instance, calling the handler once
+   * all of the reports have been received.
+   */
+  private void flush(String stats, int instances, Handler<Void> doneHandler) {
+    flushes = instances;
+    flushHandler = doneHandler;
+    vertx.eventBus().publish(flushAddress(stats), true);
+  }
+
+  /**
+   * Publishes the results of the measured window. The number of receipts
+   * is reported as deliveries and divided by the fan-out to get source
+   * throughput.
+   */
+  private void publishResult(String address, String topology, int instances, int depth, long rate, long duration, int sinks) {
+    vertx.eventBus().publish(address, new JsonObject()
+        .putString("topology", topology)
+        .putNumber("instances", instances)
+        .putNumber("depth", depth)
+        .putNumber("rate", rate)
+        .putNumber("duration", duration)
+        .putNumber("messages", received / sinks)
+        .putNumber("deliveries", received)
+        .putNumber("throughput", received * 1000.0 / sinks / duration)
+        .putNumber("deliveryThroughput", received * 1000.0 / duration)
+        .putNumber("p50", histogram.percentile(50))
+        .putNumber("p99", histogram.percentile(99))
+        .putNumber("p999", histogram.percentile(99.9))
+        .putNumber("max", histogram.max()));
+  }
+
+  /**
+   * Creates the benchmark network for the given topology.
+   */
+  private static NetworkConfig createNetwork(Vertigo vertigo, String topology, int instances, int depth, long rate, String stats) {
+    NetworkConfig network = vertigo.createNetwork(String.format("benchmark-%s", topology));
+    JsonObject sinkConfig = new JsonObject().putString("stats", stats);
+    network.addVerticle("source", BenchmarkSource.class.getName(), new JsonObject().putNumber("rate", rate));
+    switch (topology) {
+      case "wordcount":
+        network.addVerticle("counter", BenchmarkCounter.class.getName(), instances);
+        network.addVerticle("sink", BenchmarkSink.class.getName(), sinkConfig, instances);
+        network.createConnection("source", "out", "counter", "in").hashSelect();
+        network.createConnection("counter", "out", "sink", "in");
+        break;
+      case "fanout":
+        for (int i = 0; i < depth; i++) {
+          network.addVerticle(String.format("sink-%d", i), BenchmarkSink.class.getName(), sinkConfig, instances);
+          network.createConnection("source", "out", String.format("sink-%d", i), "in");
+        }
+        break;
+      case "pipeline":
+        String previous = "source";
+        for (int i = 0; i < depth; i++) {
+          String relay = String.format("relay-%d", i);
+          network.addVerticle(relay, BenchmarkRelay.class.getName(), instances);
+          network.createConnection(previous, "out", relay, "in");
+          previous = relay;
+        }
+        network.addVerticle("sink", BenchmarkSink.class.getName(), sinkConfig, instances);
+        network.createConnection(previous, "out", "sink", "in");
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown benchmark topology " + topology);
+    }
+    return network;
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.benchmark;
+
+import org.vertx.java.core.json.JsonArray;
+
+/**
+ * Fixed size log-linear latency histogram.<p>
+ *
+ * Latencies are recorded in microseconds. Each power of two is split
+ * into a fixed number of linear sub-buckets, so recorded values are
+ * accurate to within roughly 3% regardless of magnitude. Histograms
+ * can be encoded as sparse JSON arrays so that sink components can
+ * ship them over the event bus to be merged by the benchmark.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAGNITUDES = 64 - SUB_BUCKET_BITS;
+  private final long[] counts = new long[(MAGNITUDES + 1) * SUB_BUCKETS];
+  private long total;
+  private long max;
+
+  /**
+   * Records a latency.
+   *
+   * @param micros The latency in microseconds.
+   */
+  public void record(long micros) {
+    if (micros < 0) micros = 0;
+    counts[indexOf(micros)]++;
+    total++;
+    if (micros > max) max = micros;
+  }
+
+  /**
+   * Returns the total number of recorded latencies.
+   */
+  public long count() {
+    return total;
+  }
+
+  /**
+   * Returns the maximum recorded latency.
+   */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * Returns the latency at the given percentile.
+   *
+   * @param percentile The percentile, e.g. <code>99.9</code>.
+   * @return The latency at the percentile in microseconds.
+   */
+  public long percentile(double percentile) {
+    if (total == 0) return 0;
+    long target = (long) Math.ceil(total * (percentile / 100.0));
+    if (target < 1) target = 1;
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        return Math.min(upperBoundOf(i), max);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Merges another histogram into this histogram.
+   */
+  public LatencyHistogram merge(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+    if (other.max > max) max = other.max;
+    return this;
+  }
+
+  /**
+   * Clears the histogram.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = 0;
+    }
+    total = 0;
+    max = 0;
+  }
+
+  /**
+   * Encodes the histogram as a sparse array of <code>[index, count]</code> pairs.
+   */
+  public JsonArray toJson() {
+    JsonArray json = new JsonArray();
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        json.addArray(new JsonArray().addNumber(i).addNumber(counts[i]));
+      }
+    }
+    return json;
+  }
+
+  /**
+   * Decodes a sparse histogram array.
+   */
+  public static LatencyHistogram fromJson(JsonArray json) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (Object entry : json) {
+      JsonArray pair = (JsonArray) entry;
+      int index = ((Number) pair.get(0)).intValue();
+      long count = ((Number) pair.get(1)).longValue();
+      histogram.counts[index] += count;
+      histogram.total += count;
+      long upper = upperBoundOf(index);
+      if (upper > histogram.max) histogram.max = upper;
+    }
+    return histogram;
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+    int sub = (int) (value >>> magnitude) - SUB_BUCKETS / 2;
+    return magnitude * SUB_BUCKETS / 2 + SUB_BUCKETS / 2 + sub;
+  }
+
+  private static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int magnitude = (index - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+    int sub = (index - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+    return (((long) sub + 1) << magnitude) - 1;
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.kuujo.vertigo.cluster.impl.ClusterAgent;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.platform.PlatformLocator;
+import org.vertx.java.platform.PlatformManager;
+
+/**
+ * End-to-end network benchmark harness.<p>
+ *
+ * Starts an embedded Vert.x platform in the same manner as the
+ * {@link net.kuujo.vertigo.test.VertigoClassRunner}, runs a
+ * {@link BenchmarkVerticle} for each configured topology, and writes
+ * the collected results as a JSON array. The harness is configured
+ * through system properties:
+ * <ul>
+ * <li><code>vertigo.benchmark.topologies</code> - comma separated topologies, defaults to <code>wordcount,fanout,pipeline</code></li>
+ * <li><code>vertigo.benchmark.instances</code> - instances per component, defaults to <code>1</code></li>
+ * <li><code>vertigo.benchmark.depth</code> - fan-out width or pipeline depth, defaults to <code>3</code></li>
+ * <li><code>vertigo.benchmark.rate</code> - open-loop messages per second, <code>0</code> for closed-loop</li>
+ * <li><code>vertigo.benchmark.warmup</code> - warmup in milliseconds, defaults to <code>5000</code></li>
+ * <li><code>vertigo.benchmark.duration</code> - measurement in milliseconds, defaults to <code>30000</code></li>
+ * <li><code>vertigo.benchmark.nodes</code> - number of clustered platforms to simulate, defaults to <code>1</code> (local mode)</li>
+ * <li><code>vertigo.benchmark.output</code> - results file, defaults to <code>target/benchmark-results.json</code></li>
+ * </ul>
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class NetworkBenchmark {
+  private static final String PROPERTY_PREFIX = "vertigo.benchmark.";
+
+  public static void main(String[] args) throws Exception {
+    String[] topologies = property("topologies", "wordcount,fanout,pipeline").split(",");
+    int nodes = Integer.valueOf(property("nodes", "1"));
+    long warmup = Long.valueOf(property("warmup", "5000"));
+    long duration = Long.valueOf(property("duration", "30000"));
+
+    JsonArray results = new JsonArray();
+    for (String topology : topologies) {
+      JsonObject config = new JsonObject()
+          .putString("topology", topology.trim())
+          .putNumber("instances", Integer.valueOf(property("instances", "1")))
+          .putNumber("depth", Integer.valueOf(property("depth", "3")))
+          .putNumber("rate", Long.valueOf(property("rate", "0")))
+          .putNumber("warmup", warmup)
+          .putNumber("duration", duration)
+          .putString("cluster", UUID.randomUUID().toString())
+          .putString("result", UUID.randomUUID().toString());
+      JsonObject result = run(config, nodes, warmup + duration);
+      result.putNumber("nodes", nodes);
+      System.out.println(result.encode());
+      results.addObject(result);
+    }
+
+    File output = new File(property("output", "target/benchmark-results.json"));
+    if (output.getParentFile() != null) {
+      output.getParentFile().mkdirs();
+    }
+    try (Writer writer = new FileWriter(output)) {
+      writer.write(results.encodePrettily());
+    }
+  }
+
+  /**
+   * Runs a single benchmark on a fresh set of platform managers.
+   */
+  private static JsonObject run(final JsonObject config, int nodes, long runTime) throws Exception {
+    // In local mode a single non-clustered platform is used. Otherwise
+    // start a clustered platform per simulated node and deploy an
+    // additional cluster agent to each so that the network's components
+    // are spread across the nodes.
+    List<PlatformManager> managers = new ArrayList<>();
+    if (nodes > 1) {
+      System.setProperty("vertx.clusterManagerFactory", "org.vertx.java.spi.cluster.impl.hazelcast.HazelcastClusterManagerFactory");
+      for (int i = 0; i < nodes; i++) {
+        managers.add(PlatformLocator.factory.createPlatformManager(0, "localhost"));
+      }
+    } else {
+      managers.add(PlatformLocator.factory.createPlatformManager());
+    }
+
+    try {
+      URL[] classpath = getClassPath();
+      for (int i = 1; i < managers.size(); i++) {
+        final CountDownLatch agentLatch = new CountDownLatch(1);
+        final AtomicReference<Throwable> agentFailure = new AtomicReference<>();
+        managers.get(i).deployWorkerVerticle(false, ClusterAgent.class.getName(), new JsonObject().putString("cluster", config.getString("cluster")),
+            classpath, 1, null, new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            if (result.failed()) {
+              agentFailure.set(result.cause());
+            }
+            agentLatch.countDown();
+          }
+        });
+        await(agentLatch, 60000);
+        if (agentFailure.get() != null) {
+          throw new IllegalStateException("Failed to deploy cluster agent", agentFailure.get());
+        }
+      }
+
+      final CountDownLatch resultLatch = new CountDownLatch(1);
+      final AtomicReference<JsonObject> result = new AtomicReference<>();
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+      managers.get(0).vertx().eventBus().registerHandler(config.getString("result"), new Handler<Message<JsonObject>>() {
+        @Override
+        public void handle(Message<JsonObject> message) {
+          result.set(message.body());
+          resultLatch.countDown();
+        }
+      });
+
+      managers.get(0).deployVerticle(BenchmarkVerticle.class.getName(), config, classpath, 1, null, new Handler<AsyncResult<String>>() {
+        @Override
+        public void handle(AsyncResult<String> result) {
+          if (result.failed()) {
+            failure.set(result.cause());
+            resultLatch.countDown();
+          }
+        }
+      });
+
+      await(resultLatch, runTime + 120000);
+      if (failure.get() != null) {
+        throw new IllegalStateException("Benchmark failed", failure.get());
+      }
+      return result.get();
+    } finally {
+      for (PlatformManager manager : managers) {
+        manager.stop();
+      }
+    }
+  }
+
+  /**
+   * Returns the non-jar class path entries of the context class loader.
+   * See {@link net.kuujo.vertigo.test.VertigoClassRunner} for why these are needed.
+   */
+  private static URL[] getClassPath() {
+    List<URL> urls = new ArrayList<>();
+    ClassLoader pcl = Thread.currentThread().getContextClassLoader();
+    if (pcl != null && pcl instanceof URLClassLoader) {
+      for (URL url : ((URLClassLoader) pcl).getURLs()) {
+        String surl = url.toString();
+        if (!surl.endsWith(".jar") && !surl.endsWith(".zip")) {
+          urls.add(url);
+        }
+      }
+    }
+    return urls.toArray(new URL[urls.size()]);
+  }
+
+  private static void await(CountDownLatch latch, long timeout) throws InterruptedException {
+    if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+      throw new IllegalStateException("Timed out waiting for benchmark");
+    }
+  }
+
+  private static String property(String name, String defaultValue) {
+    return System.getProperty(PROPERTY_PREFIX + name, defaultValue);
+  }
+
+}
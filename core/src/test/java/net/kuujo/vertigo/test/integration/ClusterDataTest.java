@@ -20,22 +20,43 @@ import static org.vertx.testtools.VertxAssert.assertFalse;
 import static org.vertx.testtools.VertxAssert.assertNull;
 import static org.vertx.testtools.VertxAssert.assertTrue;
 import static org.vertx.testtools.VertxAssert.testComplete;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import net.kuujo.vertigo.Vertigo;
 import net.kuujo.vertigo.cluster.Cluster;
+import net.kuujo.vertigo.cluster.ClusterClientOptions;
 import net.kuujo.vertigo.cluster.ClusterFactory;
 import net.kuujo.vertigo.cluster.ClusterManager;
+import net.kuujo.vertigo.cluster.data.AsyncCountMinSketch;
 import net.kuujo.vertigo.cluster.data.AsyncCounter;
+import net.kuujo.vertigo.cluster.data.AsyncCursor;
+import net.kuujo.vertigo.cluster.data.AsyncHyperLogLog;
 import net.kuujo.vertigo.cluster.data.AsyncList;
+import net.kuujo.vertigo.cluster.data.AsyncLock;
 import net.kuujo.vertigo.cluster.data.AsyncMap;
+import net.kuujo.vertigo.cluster.data.AsyncQueue;
 import net.kuujo.vertigo.cluster.data.AsyncSet;
+import net.kuujo.vertigo.cluster.data.CounterAccumulatorOptions;
 import net.kuujo.vertigo.cluster.data.MapEvent;
+import net.kuujo.vertigo.cluster.data.NearCacheOptions;
 import net.kuujo.vertigo.cluster.data.WatchableAsyncMap;
 import net.kuujo.vertigo.cluster.data.impl.WrappedWatchableAsyncMap;
+import net.kuujo.vertigo.cluster.impl.DefaultCluster;
+import net.kuujo.vertigo.cluster.impl.LocalCluster;
 import net.kuujo.vertigo.test.VertigoTestVerticle;
 
 import org.junit.Test;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonObject;
 
 /**
  * A remote cluster test.
@@ -51,7 +72,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncMap<String, String> data = cluster.getMap("test-map-put");
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -79,7 +100,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncMap<String, String> data = cluster.getMap("test-map-get");
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -107,7 +128,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncMap<String, String> data = cluster.getMap("test-map-remove");
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -136,13 +157,285 @@ public class ClusterDataTest extends VertigoTestVerticle {
   }
 
   @Test
-  public void testMapContainsKey() {
+  public void testMapNearCache() {
     Vertigo vertigo = new Vertigo(this);
     vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncMap<String, String> cached = cluster.getMap("test-near-cache", new NearCacheOptions().setMaxSize(10));
+        final AsyncMap<String, String> writer = new WrappedWatchableAsyncMap<String, String>(cluster.<String, String>getMap("test-near-cache"), vertx);
+        writer.put("foo", "bar", new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            assertTrue(result.succeeded());
+            cached.get("foo", new Handler<AsyncResult<String>>() {
+              @Override
+              public void handle(AsyncResult<String> result) {
+                assertTrue(result.succeeded());
+                assertEquals("bar", result.result());
+                writer.put("foo", "baz", new Handler<AsyncResult<String>>() {
+                  @Override
+                  public void handle(AsyncResult<String> result) {
+                    assertTrue(result.succeeded());
+                    vertx.setTimer(100, new Handler<Long>() {
+                      @Override
+                      public void handle(Long timerID) {
+                        cached.get("foo", new Handler<AsyncResult<String>>() {
+                          @Override
+                          public void handle(AsyncResult<String> result) {
+                            assertTrue(result.succeeded());
+                            assertEquals("baz", result.result());
+                            testComplete();
+                          }
+                        });
+                      }
+                    });
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testLocalMap() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        // Local maps must see the same data as the cluster agent.
         final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        assertTrue(cluster instanceof LocalCluster);
+        final AsyncMap<String, String> local = cluster.getMap("test-local-map");
+        final AsyncMap<String, String> remote = new DefaultCluster("test", vertx, container).getMap("test-local-map");
+        remote.put("foo", "bar", new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            assertTrue(result.succeeded());
+            local.get("foo", new Handler<AsyncResult<String>>() {
+              @Override
+              public void handle(AsyncResult<String> result) {
+                assertTrue(result.succeeded());
+                assertEquals("bar", result.result());
+                local.put("bar", "baz", new Handler<AsyncResult<String>>() {
+                  @Override
+                  public void handle(AsyncResult<String> result) {
+                    assertTrue(result.succeeded());
+                    remote.get("bar", new Handler<AsyncResult<String>>() {
+                      @Override
+                      public void handle(AsyncResult<String> result) {
+                        assertTrue(result.succeeded());
+                        assertEquals("baz", result.result());
+                        testComplete();
+                      }
+                    });
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testLocalMapPutTtl() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final AsyncMap<String, String> data = new LocalCluster("test", vertx, container).getMap("test-local-map-put-ttl");
+        data.put("foo", "bar", 100, new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            assertTrue(result.succeeded());
+            vertx.setTimer(500, new Handler<Long>() {
+              @Override
+              public void handle(Long timerID) {
+                data.get("foo", new Handler<AsyncResult<String>>() {
+                  @Override
+                  public void handle(AsyncResult<String> result) {
+                    assertTrue(result.succeeded());
+                    assertNull(result.result());
+                    testComplete();
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testLocalMapScan() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final AsyncMap<String, String> data = new LocalCluster("test", vertx, container).getMap("test-local-map-scan");
+        final Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+          entries.put("key" + i, "value" + i);
+        }
+        data.putAll(entries, new Handler<AsyncResult<Void>>() {
+          @Override
+          public void handle(AsyncResult<Void> result) {
+            assertTrue(result.succeeded());
+            final Map<String, String> scanned = new HashMap<>();
+            AsyncCursor<Map.Entry<String, String>> cursor = data.scan(2);
+            cursor.handler(new Handler<Map.Entry<String, String>>() {
+              @Override
+              public void handle(Map.Entry<String, String> entry) {
+                scanned.put(entry.getKey(), entry.getValue());
+              }
+            });
+            cursor.endHandler(new Handler<AsyncResult<Void>>() {
+              @Override
+              public void handle(AsyncResult<Void> result) {
+                assertTrue(result.succeeded());
+                assertEquals(entries, scanned);
+                testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testLocalQueueDrain() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final AsyncQueue<String> data = new LocalCluster("test", vertx, container).getQueue("test-local-queue-drain");
+        data.offer("foo");
+        data.offer("bar", new Handler<AsyncResult<Boolean>>() {
+          @Override
+          public void handle(AsyncResult<Boolean> result) {
+            assertTrue(result.succeeded());
+            data.drain(10, new Handler<AsyncResult<List<String>>>() {
+              @Override
+              public void handle(AsyncResult<List<String>> result) {
+                assertTrue(result.succeeded());
+                assertEquals(Arrays.asList("foo", "bar"), result.result());
+                data.poll(10000, new Handler<AsyncResult<String>>() {
+                  @Override
+                  public void handle(AsyncResult<String> result) {
+                    assertTrue(result.succeeded());
+                    assertEquals("baz", result.result());
+                    testComplete();
+                  }
+                });
+                vertx.setTimer(100, new Handler<Long>() {
+                  @Override
+                  public void handle(Long timerID) {
+                    data.offer("baz");
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testLocalCounter() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final AsyncCounter data = new LocalCluster("test", vertx, container).getCounter("test-local-counter");
+        data.incrementAndGet(new Handler<AsyncResult<Long>>() {
+          @Override
+          public void handle(AsyncResult<Long> result) {
+            assertTrue(result.succeeded());
+            assertTrue(result.result() == 1);
+            data.addAndGet(-3, new Handler<AsyncResult<Long>>() {
+              @Override
+              public void handle(AsyncResult<Long> result) {
+                assertTrue(result.succeeded());
+                assertTrue(result.result() == -2);
+                testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapBatch() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncMap<String, String> data = cluster.getMap("test-map-batch");
+        Map<String, String> entries = new HashMap<>();
+        entries.put("foo", "bar");
+        entries.put("bar", "baz");
+        data.putAll(entries, new Handler<AsyncResult<Void>>() {
+          @Override
+          public void handle(AsyncResult<Void> result) {
+            assertTrue(result.succeeded());
+            data.getAll(Arrays.asList("foo", "bar", "baz"), new Handler<AsyncResult<Map<String, String>>>() {
+              @Override
+              public void handle(AsyncResult<Map<String, String>> result) {
+                assertTrue(result.succeeded());
+                assertEquals(2, result.result().size());
+                assertEquals("bar", result.result().get("foo"));
+                assertEquals("baz", result.result().get("bar"));
+                data.removeAll(Arrays.asList("foo", "baz"), new Handler<AsyncResult<Map<String, String>>>() {
+                  @Override
+                  public void handle(AsyncResult<Map<String, String>> result) {
+                    assertTrue(result.succeeded());
+                    assertEquals(1, result.result().size());
+                    assertEquals("bar", result.result().get("foo"));
+                    data.size(new Handler<AsyncResult<Integer>>() {
+                      @Override
+                      public void handle(AsyncResult<Integer> result) {
+                        assertTrue(result.succeeded());
+                        assertEquals(1, (int) result.result());
+                        testComplete();
+                      }
+                    });
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapContainsKey() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncMap<String, String> data = cluster.getMap("test-map-contains-key");
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -183,7 +476,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncMap<String, String> data = cluster.getMap("test-map-size");
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -217,7 +510,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncMap<String, String> data = cluster.getMap("test-map-clear");
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -264,7 +557,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final WatchableAsyncMap<String, String> data = new WrappedWatchableAsyncMap<String, String>(cluster.<String, String>getMap("test-watch-create"), vertx);
         data.watch("foo", new Handler<MapEvent<String, String>>() {
           @Override
@@ -293,7 +586,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final WatchableAsyncMap<String, String> data = new WrappedWatchableAsyncMap<String, String>(cluster.<String, String>getMap("test-watch-update"), vertx);
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -328,7 +621,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final WatchableAsyncMap<String, String> data = new WrappedWatchableAsyncMap<String, String>(cluster.<String, String>getMap("test-watch-delete"), vertx);
         data.put("foo", "bar", new Handler<AsyncResult<String>>() {
           @Override
@@ -356,6 +649,189 @@ public class ClusterDataTest extends VertigoTestVerticle {
     });
   }
 
+  @Test
+  public void testMapWatchPrefix() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final WatchableAsyncMap<String, String> data = new WrappedWatchableAsyncMap<String, String>(cluster.<String, String>getMap("test-watch-prefix"), vertx);
+        data.watchPrefix("foo.", new Handler<MapEvent<String, String>>() {
+          @Override
+          public void handle(MapEvent<String, String> event) {
+            assertEquals(MapEvent.Type.CREATE, event.type());
+            assertEquals("foo.bar", event.key());
+            assertEquals("baz", event.value());
+            testComplete();
+          }
+        }, new Handler<AsyncResult<Void>>() {
+          @Override
+          public void handle(AsyncResult<Void> result) {
+            assertTrue(result.succeeded());
+            data.put("bar.baz", "foo");
+            data.put("foo.bar", "baz");
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapPutIfAbsent() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncMap<String, String> data = cluster.getMap("test-map-put-if-absent");
+        data.putIfAbsent("foo", "bar", new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            assertTrue(result.succeeded());
+            assertNull(result.result());
+            data.putIfAbsent("foo", "baz", new Handler<AsyncResult<String>>() {
+              @Override
+              public void handle(AsyncResult<String> result) {
+                assertTrue(result.succeeded());
+                assertEquals("bar", result.result());
+                testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapReplace() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncMap<String, String> data = cluster.getMap("test-map-replace");
+        data.put("foo", "bar", new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            assertTrue(result.succeeded());
+            data.replace("foo", "baz", "foo", new Handler<AsyncResult<Boolean>>() {
+              @Override
+              public void handle(AsyncResult<Boolean> result) {
+                assertTrue(result.succeeded());
+                assertFalse(result.result());
+                data.replace("foo", "bar", "baz", new Handler<AsyncResult<Boolean>>() {
+                  @Override
+                  public void handle(AsyncResult<Boolean> result) {
+                    assertTrue(result.succeeded());
+                    assertTrue(result.result());
+                    data.get("foo", new Handler<AsyncResult<String>>() {
+                      @Override
+                      public void handle(AsyncResult<String> result) {
+                        assertTrue(result.succeeded());
+                        assertEquals("baz", result.result());
+                        testComplete();
+                      }
+                    });
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapPutTtl() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final WatchableAsyncMap<String, String> data = new WrappedWatchableAsyncMap<String, String>(cluster.<String, String>getMap("test-map-put-ttl"), vertx);
+        data.watch("foo", MapEvent.Type.DELETE, new Handler<MapEvent<String, String>>() {
+          @Override
+          public void handle(MapEvent<String, String> event) {
+            assertEquals("foo", event.key());
+            assertEquals("bar", event.value());
+            data.get("foo", new Handler<AsyncResult<String>>() {
+              @Override
+              public void handle(AsyncResult<String> result) {
+                assertTrue(result.succeeded());
+                assertNull(result.result());
+                testComplete();
+              }
+            });
+          }
+        }, new Handler<AsyncResult<Void>>() {
+          @Override
+          public void handle(AsyncResult<Void> result) {
+            assertTrue(result.succeeded());
+            data.put("foo", "bar", 500, new Handler<AsyncResult<String>>() {
+              @Override
+              public void handle(AsyncResult<String> result) {
+                assertTrue(result.succeeded());
+                data.get("foo", new Handler<AsyncResult<String>>() {
+                  @Override
+                  public void handle(AsyncResult<String> result) {
+                    assertTrue(result.succeeded());
+                    assertEquals("bar", result.result());
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapScan() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncMap<String, String> data = cluster.getMap("test-map-scan");
+        final Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+          entries.put("key" + i, "value" + i);
+        }
+        data.putAll(entries, new Handler<AsyncResult<Void>>() {
+          @Override
+          public void handle(AsyncResult<Void> result) {
+            assertTrue(result.succeeded());
+            final Map<String, String> scanned = new HashMap<>();
+            AsyncCursor<Map.Entry<String, String>> cursor = data.scan(2);
+            cursor.handler(new Handler<Map.Entry<String, String>>() {
+              @Override
+              public void handle(Map.Entry<String, String> entry) {
+                scanned.put(entry.getKey(), entry.getValue());
+              }
+            });
+            cursor.endHandler(new Handler<AsyncResult<Void>>() {
+              @Override
+              public void handle(AsyncResult<Void> result) {
+                assertTrue(result.succeeded());
+                assertEquals(entries, scanned);
+                testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
   @Test
   public void testSetAdd() {
     Vertigo vertigo = new Vertigo(this);
@@ -363,7 +839,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncSet<String> data = cluster.getSet("test-set-add");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -391,7 +867,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncSet<String> data = cluster.getSet("test-set-contains");
         data.contains("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -426,7 +902,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncSet<String> data = cluster.getSet("test-set-remove");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -461,7 +937,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncSet<String> data = cluster.getSet("test-set-size");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -503,7 +979,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncSet<String> data = cluster.getSet("test-set-clear");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -558,7 +1034,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncSet<String> data = cluster.getSet("test-set-is-empty");
         data.isEmpty(new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -593,7 +1069,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-add");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -621,7 +1097,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-get");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -663,7 +1139,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-contains");
         data.contains("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -698,7 +1174,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-size");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -740,7 +1216,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-remove-by-value");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -782,7 +1258,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-remove-by-index");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -817,7 +1293,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-clear");
         data.add("foo", new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -872,7 +1348,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncList<String> data = cluster.getList("test-list-is-empty");
         data.isEmpty(new Handler<AsyncResult<Boolean>>() {
           @Override
@@ -900,6 +1376,55 @@ public class ClusterDataTest extends VertigoTestVerticle {
     });
   }
 
+  @Test
+  public void testQueueDrain() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncQueue<String> data = cluster.getQueue("test-queue-drain");
+        data.offer("foo");
+        data.offer("bar");
+        data.offer("baz", new Handler<AsyncResult<Boolean>>() {
+          @Override
+          public void handle(AsyncResult<Boolean> result) {
+            assertTrue(result.succeeded());
+            data.drain(2, new Handler<AsyncResult<List<String>>>() {
+              @Override
+              public void handle(AsyncResult<List<String>> result) {
+                assertTrue(result.succeeded());
+                assertEquals(Arrays.asList("foo", "bar"), result.result());
+                data.drain(10, new Handler<AsyncResult<List<String>>>() {
+                  @Override
+                  public void handle(AsyncResult<List<String>> result) {
+                    assertTrue(result.succeeded());
+                    assertEquals(Arrays.asList("baz"), result.result());
+                    data.poll(10000, new Handler<AsyncResult<String>>() {
+                      @Override
+                      public void handle(AsyncResult<String> result) {
+                        assertTrue(result.succeeded());
+                        assertEquals("foo", result.result());
+                        testComplete();
+                      }
+                    });
+                    vertx.setTimer(100, new Handler<Long>() {
+                      @Override
+                      public void handle(Long timerID) {
+                        data.offer("foo");
+                      }
+                    });
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
   @Test
   public void testCounterIncrement() {
     Vertigo vertigo = new Vertigo(this);
@@ -907,7 +1432,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncCounter data = cluster.getCounter("test-counter-increment");
         data.incrementAndGet(new Handler<AsyncResult<Long>>() {
           @Override
@@ -941,7 +1466,7 @@ public class ClusterDataTest extends VertigoTestVerticle {
       @Override
       public void handle(AsyncResult<ClusterManager> result) {
         assertTrue(result.succeeded());
-        final Cluster cluster = ClusterFactory.getCluster("test", vertx, container);
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
         final AsyncCounter data = cluster.getCounter("test-counter-decrement");
         data.decrementAndGet(new Handler<AsyncResult<Long>>() {
           @Override
@@ -968,4 +1493,192 @@ public class ClusterDataTest extends VertigoTestVerticle {
     });
   }
 
+  @Test
+  public void testCounterAccumulate() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncCounter data = cluster.getCounter("test-counter-accumulate", new CounterAccumulatorOptions().setFlushThreshold(3));
+        data.increment();
+        data.increment();
+        data.increment();
+        data.add(5);
+        data.get(new Handler<AsyncResult<Long>>() {
+          @Override
+          public void handle(AsyncResult<Long> result) {
+            assertTrue(result.succeeded());
+            assertTrue(result.result() == 8);
+            testComplete();
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testCounterAccumulateFlush() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncCounter data = cluster.getCounter("test-counter-accumulate-flush", new CounterAccumulatorOptions()
+            .setFlushThreshold(100)
+            .setFlushInterval(60000));
+        data.increment();
+        data.increment();
+        data.increment();
+        cluster.flush(new Handler<AsyncResult<Void>>() {
+          @Override
+          public void handle(AsyncResult<Void> result) {
+            assertTrue(result.succeeded());
+            cluster.getCounter("test-counter-accumulate-flush").get(new Handler<AsyncResult<Long>>() {
+              @Override
+              public void handle(AsyncResult<Long> result) {
+                assertTrue(result.succeeded());
+                assertTrue(result.result() == 3);
+                testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testMapPersistence() {
+    final File directory = new File("target/test-persistence");
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test-persistence", new JsonObject().putObject("persistence", new JsonObject().putString("directory", directory.getPath())), 1, new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final AsyncMap<String, String> data = new DefaultCluster("test-persistence", vertx, container).getMap("test-persistent-map");
+        data.put("foo", "bar", new Handler<AsyncResult<String>>() {
+          @Override
+          public void handle(AsyncResult<String> result) {
+            assertTrue(result.succeeded());
+            // The put must have been appended to the agent's operation log.
+            boolean logged = false;
+            for (File file : directory.listFiles()) {
+              if (file.getName().endsWith(".log")) {
+                try {
+                  for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    JsonObject operation = new JsonObject(line);
+                    if ("test-persistent-map".equals(operation.getString("name")) && "bar".equals(operation.getString("value"))) {
+                      logged = true;
+                    }
+                  }
+                } catch (IOException e) {
+                  assertTrue(e.getMessage(), false);
+                }
+              }
+            }
+            assertTrue(logged);
+            testComplete();
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testLock() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final AsyncLock lock = new DefaultCluster("test", vertx, container).getLock("test-lock");
+        lock.acquire(10000, new Handler<AsyncResult<Long>>() {
+          @Override
+          public void handle(AsyncResult<Long> result) {
+            assertTrue(result.succeeded());
+            final long token = result.result();
+            lock.tryAcquire(10000, new Handler<AsyncResult<Long>>() {
+              @Override
+              public void handle(AsyncResult<Long> result) {
+                assertTrue(result.succeeded());
+                assertNull(result.result());
+                // The waiting request must be granted the lock with a greater
+                // fencing token as soon as the lock is released.
+                lock.acquire(10000, 5000, new Handler<AsyncResult<Long>>() {
+                  @Override
+                  public void handle(AsyncResult<Long> result) {
+                    assertTrue(result.succeeded());
+                    assertTrue(result.result() > token);
+                    testComplete();
+                  }
+                });
+                lock.release(token, new Handler<AsyncResult<Boolean>>() {
+                  @Override
+                  public void handle(AsyncResult<Boolean> result) {
+                    assertTrue(result.succeeded());
+                    assertTrue(result.result());
+                  }
+                });
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testSketches() {
+    Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster("test", new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        Cluster cluster = new DefaultCluster("test", vertx, container);
+        final AsyncHyperLogLog hyperLogLog = cluster.getHyperLogLog("test-hll");
+        final AsyncCountMinSketch sketch = cluster.getCountMinSketch("test-cms");
+        for (int i = 0; i < 1000; i++) {
+          hyperLogLog.add("item" + (i % 100));
+          sketch.add("item" + (i % 10));
+        }
+        hyperLogLog.count(new Handler<AsyncResult<Long>>() {
+          @Override
+          public void handle(AsyncResult<Long> result) {
+            assertTrue(result.succeeded());
+            assertTrue(result.result() >= 95 && result.result() <= 105);
+            sketch.estimate("item1", new Handler<AsyncResult<Long>>() {
+              @Override
+              public void handle(AsyncResult<Long> result) {
+                assertTrue(result.succeeded());
+                assertTrue(result.result() >= 100);
+                testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testClientFailsFast() {
+    // No agent is deployed at this address, so the request must fail once
+    // its retries are exhausted rather than waiting for the timeout.
+    final long start = System.currentTimeMillis();
+    Cluster cluster = new DefaultCluster("test-missing", vertx, container, new ClusterClientOptions()
+        .setRetries(2)
+        .setRetryDelay(10));
+    cluster.<String, String>getMap("test-fail-fast").get("foo", new Handler<AsyncResult<String>>() {
+      @Override
+      public void handle(AsyncResult<String> result) {
+        assertTrue(result.failed());
+        assertTrue(System.currentTimeMillis() - start < ClusterClientOptions.DEFAULT_TIMEOUT);
+        testComplete();
+      }
+    });
+  }
+
 }
@@ -20,11 +20,18 @@ import static org.vertx.testtools.VertxAssert.assertTrue;
 import static org.vertx.testtools.VertxAssert.fail;
 import static org.vertx.testtools.VertxAssert.testComplete;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.kuujo.vertigo.Vertigo;
 import net.kuujo.vertigo.cluster.ClusterManager;
@@ -36,13 +43,23 @@ import net.kuujo.vertigo.hook.EventBusHookListener;
 import net.kuujo.vertigo.hook.IOHook;
 import net.kuujo.vertigo.hook.InputHook;
 import net.kuujo.vertigo.hook.OutputHook;
+import net.kuujo.vertigo.io.AsyncMessage;
+import net.kuujo.vertigo.io.Feeder;
+import net.kuujo.vertigo.io.KeyExtractor;
+import net.kuujo.vertigo.io.KeyedWorkerPool;
+import net.kuujo.vertigo.io.Output;
+import net.kuujo.vertigo.io.Pump;
 import net.kuujo.vertigo.io.batch.InputBatch;
 import net.kuujo.vertigo.io.batch.OutputBatch;
 import net.kuujo.vertigo.io.group.InputGroup;
 import net.kuujo.vertigo.io.group.OutputGroup;
+import net.kuujo.vertigo.io.port.OutputPort;
 import net.kuujo.vertigo.java.ComponentVerticle;
 import net.kuujo.vertigo.network.ActiveNetwork;
 import net.kuujo.vertigo.network.NetworkConfig;
+import net.kuujo.vertigo.state.CounterStore;
+import net.kuujo.vertigo.state.impl.BufferAllocator;
+import net.kuujo.vertigo.state.impl.DefaultCounterStore;
 import net.kuujo.vertigo.test.VertigoTestVerticle;
 
 import org.junit.Test;
@@ -50,6 +67,7 @@ import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Future;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonObject;
 
 /**
  * A network messaging test.
@@ -516,6 +534,970 @@ public class NetworkTest extends VertigoTestVerticle {
     });
   }
 
+  public static class TestDrainDrivenFeederSender extends ComponentVerticle {
+    private int sent;
+    private int calls;
+
+    @Override
+    public void start() {
+      Feeder.createFeeder(output.port("out").setSendQueueMaxSize(10))
+          .setDrainDriven(true)
+          .setFeedQuantum(5)
+          .feedHandler(new Handler<OutputPort>() {
+            @Override
+            public void handle(OutputPort output) {
+              // The feed handler is never called while the output is full.
+              assertTrue(!output.sendQueueFull());
+
+              // The feed handler is called at most once per quantum before the
+              // feeder yields to the event loop, after which the quantum is
+              // refilled.
+              if (calls++ == 0) {
+                vertx.runOnContext(new Handler<Void>() {
+                  @Override
+                  public void handle(Void _) {
+                    calls = 0;
+                  }
+                });
+              }
+              assertTrue(calls <= 5);
+
+              if (sent < 100) {
+                output.send(sent++);
+              }
+            }
+          }).start();
+    }
+  }
+
+  public static class TestFeederReceiver extends ComponentVerticle {
+    private int received;
+
+    @Override
+    public void start() {
+      input.port("in").messageHandler(new Handler<Integer>() {
+        @Override
+        public void handle(Integer message) {
+          assertEquals(received++, (int) message);
+          if (received == 100) {
+            testComplete();
+          }
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testDrainDrivenFeeder() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestDrainDrivenFeederSender.class.getName());
+        network.addVerticle("receiver", TestFeederReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestFeederBackoffSender extends ComponentVerticle {
+    private final List<Long> calls = new ArrayList<>();
+    private boolean stopped;
+
+    @Override
+    public void start() {
+      final Feeder<OutputPort> feeder = Feeder.createFeeder(output.port("out"))
+          .setDrainDriven(true)
+          .setFeedQuantum(1)
+          .setFeedDelay(100);
+      feeder.feedHandler(new Handler<OutputPort>() {
+        @Override
+        public void handle(OutputPort output) {
+          assertTrue(!stopped);
+          calls.add(System.currentTimeMillis());
+
+          // Nothing is ever fed, so the feeder backs off for the feed delay
+          // between calls rather than calling the handler continuously.
+          if (calls.size() > 1) {
+            assertTrue(calls.get(calls.size() - 1) - calls.get(calls.size() - 2) >= 90);
+          }
+
+          // Once the feeder is stopped the handler must never be called again.
+          if (calls.size() == 3) {
+            stopped = true;
+            feeder.stop();
+            vertx.setTimer(500, new Handler<Long>() {
+              @Override
+              public void handle(Long timerID) {
+                assertEquals(3, calls.size());
+                testComplete();
+              }
+            });
+          }
+        }
+      }).start();
+    }
+  }
+
+  @Test
+  public void testDrainDrivenFeederBackoff() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestFeederBackoffSender.class.getName());
+        network.addVerticle("receiver", TestFeederReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestPumpSender extends ComponentVerticle {
+    @Override
+    public void start() {
+      for (int i = 0; i < 50; i++) {
+        output.port("out").send(i);
+      }
+    }
+  }
+
+  public static class TestPumpForwarder extends ComponentVerticle {
+    @Override
+    public void start() {
+      final OutputPort out = output.port("out").setSendQueueMaxSize(5);
+
+      // The pump pauses its input as soon as the output is full, so messages
+      // are never sent to a full output.
+      Output<?> checked = (Output<?>) Proxy.newProxyInstance(Output.class.getClassLoader(), new Class<?>[]{Output.class}, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          if (method.getName().equals("send")) {
+            assertTrue(out.size() < 5);
+          }
+          try {
+            return method.invoke(out, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        }
+      });
+
+      final Pump pump = Pump.createPump(input.port("in"), checked);
+      final long started = System.currentTimeMillis();
+      pump.start();
+      assertTrue(pump.messagesPerSecond() == 0);
+
+      vertx.eventBus().registerHandler("test.pump", new Handler<Message<Void>>() {
+        @Override
+        public void handle(Message<Void> message) {
+          // Rates are reported once a full interval of a second has passed.
+          vertx.setTimer(Math.max(1000 - (System.currentTimeMillis() - started), 1), new Handler<Long>() {
+            @Override
+            public void handle(Long timerID) {
+              assertEquals(50, pump.messagesPumped());
+              double rate = pump.messagesPerSecond();
+              assertTrue(rate > 0 && rate <= 50);
+              testComplete();
+            }
+          });
+        }
+      });
+    }
+  }
+
+  public static class TestPumpReceiver extends ComponentVerticle {
+    private int received;
+
+    @Override
+    public void start() {
+      input.port("in").messageHandler(new Handler<Integer>() {
+        @Override
+        public void handle(Integer message) {
+          assertEquals(received++, (int) message);
+          if (received == 50) {
+            vertx.eventBus().send("test.pump", "done");
+          }
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testPumpPauseResume() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestPumpSender.class.getName());
+        network.addVerticle("forwarder", TestPumpForwarder.class.getName());
+        network.addVerticle("receiver", TestPumpReceiver.class.getName());
+        network.createConnection("sender", "out", "forwarder", "in");
+        network.createConnection("forwarder", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestPumpGroupForwarder extends ComponentVerticle {
+    @Override
+    public void start() {
+      Pump.createPump(input.port("in"), output.port("out")).setForwardGroups(true).start();
+    }
+  }
+
+  @Test
+  public void testPumpGroupForward() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestGroupForwardSender.class.getName());
+        network.addVerticle("forwarder", TestPumpGroupForwarder.class.getName());
+        network.addVerticle("receiver", TestGroupForwardReceiver.class.getName());
+        network.createConnection("sender", "out", "forwarder", "in");
+        network.createConnection("forwarder", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestPumpBatchForwarder extends ComponentVerticle {
+    @Override
+    public void start() {
+      Pump.createPump(input.port("in"), output.port("out")).setForwardBatches(true).start();
+    }
+  }
+
+  @Test
+  public void testPumpBatchForward() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestBatchForwardSender.class.getName());
+        network.addVerticle("forwarder", TestPumpBatchForwarder.class.getName());
+        network.addVerticle("receiver", TestBatchForwardReceiver.class.getName());
+        network.createConnection("sender", "out", "forwarder", "in");
+        network.createConnection("forwarder", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestAsyncSender extends ComponentVerticle {
+    @Override
+    public void start() {
+      for (int i = 0; i < 20; i++) {
+        output.port("out").send(i);
+      }
+    }
+  }
+
+  public static class TestAsyncRedeliveryReceiver extends ComponentVerticle {
+    private boolean failed;
+    private boolean complete;
+
+    @Override
+    public void start() {
+      input.port("in").asyncMessageHandler(new Handler<AsyncMessage<Integer>>() {
+        @Override
+        public void handle(AsyncMessage<Integer> message) {
+          if (message.body() == 0) {
+            if (!failed) {
+              failed = true;
+              message.fail();
+            } else {
+              message.complete();
+              if (!complete) {
+                complete = true;
+                testComplete();
+              }
+            }
+          } else {
+            message.complete();
+          }
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testAsyncRedelivery() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestAsyncSender.class.getName());
+        network.addVerticle("receiver", TestAsyncRedeliveryReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestAsyncOutOfOrderReceiver extends ComponentVerticle {
+    private AsyncMessage<Integer> first;
+    private boolean failed;
+    private final List<Integer> redelivered = new ArrayList<>();
+
+    @Override
+    public void start() {
+      input.port("in").asyncMessageHandler(new Handler<AsyncMessage<Integer>>() {
+        @Override
+        public void handle(AsyncMessage<Integer> message) {
+          if (first == null) {
+            // Hold the first message and complete all the others out of order.
+            // Feedback is sent every 100 milliseconds, so once a second has passed
+            // the sender has been told which messages were completed. Only the
+            // messages completed in order may be acked, so failing the first
+            // message must cause every message to be redelivered.
+            first = message;
+            vertx.setTimer(1500, new Handler<Long>() {
+              @Override
+              public void handle(Long timerID) {
+                failed = true;
+                first.fail();
+              }
+            });
+          } else if (failed) {
+            redelivered.add(message.body());
+            message.complete();
+            if (redelivered.size() == 20) {
+              for (int i = 0; i < 20; i++) {
+                assertEquals(i, (int) redelivered.get(i));
+              }
+              testComplete();
+            }
+          } else {
+            message.complete();
+          }
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testAsyncOutOfOrderCompletion() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestAsyncSender.class.getName());
+        network.addVerticle("receiver", TestAsyncOutOfOrderReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestMaxOutstandingReceiver extends ComponentVerticle {
+    private final List<AsyncMessage<Integer>> held = new ArrayList<>();
+    private final Set<Integer> received = new HashSet<>();
+    private boolean holding = true;
+    private boolean complete;
+
+    @Override
+    public void start() {
+      input.port("in").setMaxOutstanding(5);
+      input.port("in").asyncMessageHandler(new Handler<AsyncMessage<Integer>>() {
+        @Override
+        public void handle(AsyncMessage<Integer> message) {
+          received.add(message.body());
+          if (holding) {
+            held.add(message);
+            assertTrue(held.size() <= 5);
+          } else {
+            message.complete();
+            if (received.size() == 20 && !complete) {
+              complete = true;
+              testComplete();
+            }
+          }
+        }
+      });
+
+      // Once the window has been full for a while, check that no more than the
+      // maximum number of messages were delivered and then release them.
+      vertx.setTimer(1000, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          assertEquals(5, held.size());
+          holding = false;
+          for (AsyncMessage<Integer> message : held) {
+            message.complete();
+          }
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testAsyncMaxOutstanding() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestAsyncSender.class.getName());
+        network.addVerticle("receiver", TestMaxOutstandingReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestMaxOutstandingFailReceiver extends ComponentVerticle {
+    private final List<AsyncMessage<Integer>> held = new ArrayList<>();
+    private final List<AsyncMessage<Integer>> redelivered = new ArrayList<>();
+    private final Set<Integer> received = new HashSet<>();
+    private int inProgress;
+    private boolean failed;
+    private boolean releasing;
+    private boolean complete;
+
+    @Override
+    public void start() {
+      input.port("in").setMaxOutstanding(5);
+      input.port("in").asyncMessageHandler(new Handler<AsyncMessage<Integer>>() {
+        @Override
+        public void handle(AsyncMessage<Integer> message) {
+          inProgress++;
+          assertTrue(inProgress <= 5);
+          if (releasing) {
+            complete(message);
+          } else if (failed) {
+            redelivered.add(message);
+          } else {
+            held.add(message);
+          }
+        }
+      });
+
+      // Fail one of the held messages while the others are still in progress.
+      vertx.setTimer(1000, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          assertEquals(5, held.size());
+          failed = true;
+          inProgress--;
+          held.remove(0).fail();
+
+          // Messages from before the failure still count against the window,
+          // so only one redelivered message may be in progress.
+          vertx.setTimer(1000, new Handler<Long>() {
+            @Override
+            public void handle(Long timerID) {
+              assertEquals(1, redelivered.size());
+              releasing = true;
+              for (AsyncMessage<Integer> message : held) {
+                inProgress--;
+                message.complete();
+              }
+              for (AsyncMessage<Integer> message : redelivered) {
+                complete(message);
+              }
+            }
+          });
+        }
+      });
+    }
+
+    private void complete(AsyncMessage<Integer> message) {
+      inProgress--;
+      received.add(message.body());
+      message.complete();
+      if (received.size() == 20 && !complete) {
+        complete = true;
+        testComplete();
+      }
+    }
+  }
+
+  @Test
+  public void testAsyncMaxOutstandingAfterFailure() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestAsyncSender.class.getName());
+        network.addVerticle("receiver", TestMaxOutstandingFailReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestWorkerPoolSender extends ComponentVerticle {
+    @Override
+    public void start() {
+      for (int i = 0; i < 10; i++) {
+        output.port("out").send("a" + i);
+      }
+      output.port("out").send("b0");
+    }
+  }
+
+  public static class TestWorkerPoolReceiver extends ComponentVerticle {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final List<String> results = new ArrayList<>();
+    private volatile boolean parallel;
+
+    @Override
+    public void start() {
+      KeyedWorkerPool<String, String> pool = KeyedWorkerPool.createPool(component, input.port("in"), 2);
+      pool.keyExtractor(new KeyExtractor<String>() {
+        @Override
+        public Object key(String message) {
+          return message.substring(0, 1);
+        }
+      }).processor(new KeyedWorkerPool.Processor<String, String>() {
+        @Override
+        public String process(String message) {
+          // The first message with key "a" blocks until the message with key
+          // "b" has been processed, which can only happen if the two keys are
+          // processed on separate workers.
+          if (message.equals("a0")) {
+            try {
+              parallel = latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          } else if (message.equals("b0")) {
+            latch.countDown();
+          }
+          return message;
+        }
+      }).resultHandler(new Handler<String>() {
+        @Override
+        public void handle(String result) {
+          if (result.startsWith("a")) {
+            assertEquals("a" + results.size(), result);
+            results.add(result);
+            if (results.size() == 10) {
+              assertTrue(parallel);
+              testComplete();
+            }
+          }
+        }
+      }).start();
+    }
+  }
+
+  @Test
+  public void testWorkerPool() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestWorkerPoolSender.class.getName());
+        network.addVerticle("receiver", TestWorkerPoolReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestWorkerPoolDeadLetterReceiver extends ComponentVerticle {
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Override
+    public void start() {
+      KeyedWorkerPool<String, String> pool = KeyedWorkerPool.createPool(component, input.port("in"), 1);
+      pool.setMaxRetries(2).processor(new KeyedWorkerPool.Processor<String, String>() {
+        @Override
+        public String process(String message) {
+          attempts.incrementAndGet();
+          throw new IllegalStateException("Failed to process " + message);
+        }
+      }).deadLetterHandler(new Handler<String>() {
+        @Override
+        public void handle(String message) {
+          assertEquals("Hello world!", message);
+          assertEquals(3, attempts.get());
+          testComplete();
+        }
+      }).start();
+    }
+  }
+
+  @Test
+  public void testWorkerPoolDeadLetter() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.addVerticle("sender", TestSender.class.getName());
+        network.addVerticle("receiver", TestWorkerPoolDeadLetterReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public static class TestChainSender extends ComponentVerticle {
+    private boolean acked;
+
+    @Override
+    public void start() {
+      vertx.eventBus().registerHandler("chain-sender", new Handler<Message<Boolean>>() {
+        @Override
+        public void handle(Message<Boolean> message) {
+          message.reply(true);
+        }
+      });
+      for (int i = 0; i < 2000; i++) {
+        output.port("out").send(new JsonObject().putNumber("count", i));
+      }
+      // Once the receiver has acked every message the send queue is empty.
+      vertx.setPeriodic(100, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          if (!acked && output.port("out").size() == 0) {
+            acked = true;
+            vertx.cancelTimer(timerID);
+            vertx.eventBus().send("chain-acked", true);
+          }
+        }
+      });
+    }
+  }
+
+  public static class TestChainReceiver extends ComponentVerticle {
+    private int count;
+
+    @Override
+    public void start() {
+      vertx.eventBus().registerHandler("chain-receiver", new Handler<Message<Boolean>>() {
+        @Override
+        public void handle(Message<Boolean> message) {
+          message.reply(true);
+        }
+      });
+      input.port("in").messageHandler(new Handler<JsonObject>() {
+        @Override
+        public void handle(JsonObject message) {
+          assertEquals(count++, (int) message.getInteger("count"));
+          // Modifying a received message must not modify the message held by
+          // the sender for resending.
+          message.putBoolean("received", true);
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testChainedConnection() {
+    final String name = UUID.randomUUID().toString();
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        final ClusterManager cluster = result.result();
+        vertx.eventBus().registerHandler("chain-acked", new Handler<Message<Boolean>>() {
+          @Override
+          public void handle(Message<Boolean> message) {
+            vertx.eventBus().unregisterHandler("chain-acked", this);
+            // Remove only the chained receiver. The chain must be rebuilt so
+            // that the receiver is stopped while the sender keeps running.
+            NetworkConfig network = vertigo.createNetwork(name);
+            network.addComponent("receiver", TestChainReceiver.class.getName());
+            cluster.undeployNetwork(network, new Handler<AsyncResult<Void>>() {
+              @Override
+              public void handle(AsyncResult<Void> result) {
+                assertTrue(result.succeeded());
+                pingChainSender(50);
+              }
+            });
+          }
+        });
+
+        NetworkConfig network = vertigo.createNetwork(name);
+        network.addVerticle("sender", TestChainSender.class.getName());
+        network.addVerticle("receiver", TestChainReceiver.class.getName());
+        network.createConnection("sender", "out", "receiver", "in").setChained(true);
+        cluster.deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+              assertTrue(result.result().getConfig().getConnections().iterator().next().isChained());
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Waits for the chained sender to be redeployed and checks that the receiver is gone.
+   */
+  private void pingChainSender(final int attempts) {
+    vertx.eventBus().sendWithTimeout("chain-sender", true, 1000, new Handler<AsyncResult<Message<Boolean>>>() {
+      @Override
+      public void handle(AsyncResult<Message<Boolean>> result) {
+        if (result.succeeded()) {
+          vertx.eventBus().sendWithTimeout("chain-receiver", true, 1000, new Handler<AsyncResult<Message<Boolean>>>() {
+            @Override
+            public void handle(AsyncResult<Message<Boolean>> result) {
+              assertTrue(result.failed());
+              testComplete();
+            }
+          });
+        } else if (attempts > 0) {
+          vertx.setTimer(100, new Handler<Long>() {
+            @Override
+            public void handle(Long timerID) {
+              pingChainSender(attempts - 1);
+            }
+          });
+        } else {
+          fail("Chained sender was not redeployed");
+        }
+      }
+    });
+  }
+
+  public static class TestCheckpointSender extends ComponentVerticle {
+    @Override
+    public void start() {
+      final CounterStore sent = state.getCounterStore("sent");
+      vertx.setPeriodic(1, new Handler<Long>() {
+        @Override
+        public void handle(Long timerID) {
+          // Several messages are sent at a time so that messages are always
+          // in flight when a checkpoint barrier is sent.
+          for (int i = 0; i < 5; i++) {
+            output.port("out").send(new JsonObject().putString("sender", context.address()));
+            sent.increment("count");
+          }
+        }
+      });
+    }
+  }
+
+  public static class TestCheckpointReceiver extends ComponentVerticle {
+    private final Set<String> senders = new HashSet<>();
+    private boolean checking;
+
+    @Override
+    public void start() {
+      final CounterStore received = state.getCounterStore("received");
+      input.port("in").messageHandler(new Handler<JsonObject>() {
+        @Override
+        public void handle(JsonObject message) {
+          senders.add(message.getString("sender"));
+          received.increment(message.getString("sender"));
+        }
+      });
+      vertx.setPeriodic(50, new Handler<Long>() {
+        @Override
+        public void handle(final Long timerID) {
+          cluster.<String, String>getMap(context.component().network().address()).get(context.component().network().checkpoint(), new Handler<AsyncResult<String>>() {
+            @Override
+            public void handle(AsyncResult<String> result) {
+              if (!checking && result.succeeded() && result.result() != null) {
+                long completed = new JsonObject(result.result()).getLong("completed", 0);
+                if (completed > 0) {
+                  checking = true;
+                  vertx.cancelTimer(timerID);
+                  checkCheckpoint(completed);
+                }
+              }
+            }
+          });
+        }
+      });
+    }
+
+    /**
+     * Checks that the receiver's snapshot counted exactly the messages that
+     * each sender had sent when it took its own snapshot.
+     */
+    private void checkCheckpoint(final long checkpoint) {
+      assertEquals(2, senders.size());
+      final CounterStore received = new DefaultCounterStore("received", BufferAllocator.direct());
+      received.restore(cluster.<String, String>getMap(checkpointName(context.address(), checkpoint)), new Handler<AsyncResult<Void>>() {
+        @Override
+        public void handle(AsyncResult<Void> result) {
+          assertTrue(result.succeeded());
+          final AtomicInteger counter = new AtomicInteger(senders.size());
+          for (final String sender : senders) {
+            final long count = received.get(sender);
+            final CounterStore sent = new DefaultCounterStore("sent", BufferAllocator.direct());
+            sent.restore(cluster.<String, String>getMap(checkpointName(sender, checkpoint)), new Handler<AsyncResult<Void>>() {
+              @Override
+              public void handle(AsyncResult<Void> result) {
+                assertTrue(result.succeeded());
+                assertTrue(count > 0);
+                assertEquals(sent.get("count"), count);
+                if (counter.decrementAndGet() == 0) {
+                  testComplete();
+                }
+              }
+            });
+          }
+        }
+      });
+    }
+
+    private String checkpointName(String address, long checkpoint) {
+      return String.format("%s.__checkpoint.%d", address, checkpoint);
+    }
+  }
+
+  @Test
+  public void testCheckpointAlignment() {
+    final Vertigo vertigo = new Vertigo(this);
+    vertigo.deployCluster(UUID.randomUUID().toString(), new Handler<AsyncResult<ClusterManager>>() {
+      @Override
+      public void handle(AsyncResult<ClusterManager> result) {
+        assertTrue(result.succeeded());
+        NetworkConfig network = vertigo.createNetwork(UUID.randomUUID().toString());
+        network.setCheckpointInterval(500);
+        network.addVerticle("sender1", TestCheckpointSender.class.getName());
+        network.addVerticle("sender2", TestCheckpointSender.class.getName());
+        network.addVerticle("receiver", TestCheckpointReceiver.class.getName());
+        network.createConnection("sender1", "out", "receiver", "in");
+        network.createConnection("sender2", "out", "receiver", "in");
+        result.result().deployNetwork(network, new Handler<AsyncResult<ActiveNetwork>>() {
+          @Override
+          public void handle(AsyncResult<ActiveNetwork> result) {
+            if (result.failed()) {
+              assertTrue(result.cause().getMessage(), result.succeeded());
+            } else {
+              assertTrue(result.succeeded());
+            }
+          }
+        });
+      }
+    });
+  }
+
   public static class TestOneToNoneBatchSender extends ComponentVerticle {
     @Override
     public void start() {
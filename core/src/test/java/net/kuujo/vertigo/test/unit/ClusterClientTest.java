@@ -0,0 +1,269 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.kuujo.vertigo.cluster.ClusterClientOptions;
+import net.kuujo.vertigo.cluster.data.impl.ClusterClient;
+import net.kuujo.vertigo.cluster.data.impl.PartitionRouter;
+import net.kuujo.vertigo.util.HashRing;
+
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.EventBus;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.ReplyException;
+import org.vertx.java.core.eventbus.ReplyFailure;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Cluster client tests.<p>
+ *
+ * Requests are answered synchronously by a fake event bus with scripted
+ * replies, and retry timers fire immediately.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ClusterClientTest {
+  private static final String CLUSTER = "test";
+  private static final List<String> PARTITIONS = Arrays.asList("test.a", "test.b", "test.c");
+
+  private static JsonObject request(String type, String action) {
+    return new JsonObject().putString("type", type).putString("name", "foo").putString("action", action);
+  }
+
+  @Test
+  public void testRequestTimeouts() {
+    TestEventBus eventBus = new TestEventBus();
+    ClusterClient client = new ClusterClient(CLUSTER, eventBus.vertx(), new ClusterClientOptions()
+        .setTimeout(1000)
+        .setTimeout("get", 200));
+
+    client.send(request("map", "get"), null);
+    client.send(request("map", "put"), null);
+    client.send(CLUSTER, request("lock", "acquire"), 500, null);
+    client.send(request("network", "deploy"), null);
+    assertEquals(Arrays.asList(200L, 1000L, 1500L, ClusterClientOptions.DEFAULT_DEPLOY_TIMEOUT), eventBus.timeouts);
+  }
+
+  @Test
+  public void testRetryNoHandlers() {
+    TestEventBus eventBus = new TestEventBus();
+    ClusterClient client = new ClusterClient(CLUSTER, eventBus.vertx(), new ClusterClientOptions()
+        .setRetries(2)
+        .setRetryDelay(100));
+
+    eventBus.fail(CLUSTER, ReplyFailure.NO_HANDLERS);
+    eventBus.fail(CLUSTER, ReplyFailure.NO_HANDLERS);
+    TestResult result = new TestResult();
+    client.send(request("map", "put"), result);
+    assertTrue(result.result.succeeded());
+    assertEquals(3, eventBus.sent.size());
+
+    // The retry delay doubles with each retry.
+    assertEquals(Arrays.asList(100L, 200L), eventBus.delays);
+  }
+
+  @Test
+  public void testRetriesExhausted() {
+    TestEventBus eventBus = new TestEventBus();
+    ClusterClient client = new ClusterClient(CLUSTER, eventBus.vertx(), new ClusterClientOptions()
+        .setRetries(1));
+
+    eventBus.fail(CLUSTER, ReplyFailure.NO_HANDLERS);
+    eventBus.fail(CLUSTER, ReplyFailure.NO_HANDLERS);
+    TestResult result = new TestResult();
+    client.send(request("map", "put"), result);
+    assertTrue(result.result.failed());
+    assertEquals(ReplyFailure.NO_HANDLERS, ((ReplyException) result.result.cause()).failureType());
+    assertEquals(2, eventBus.sent.size());
+  }
+
+  @Test
+  public void testTimeoutRetries() {
+    TestEventBus eventBus = new TestEventBus();
+    ClusterClient client = new ClusterClient(CLUSTER, eventBus.vertx());
+
+    // A write may have been applied before it timed out, so it's not retried.
+    eventBus.fail(CLUSTER, ReplyFailure.TIMEOUT);
+    TestResult write = new TestResult();
+    client.send(request("map", "put"), write);
+    assertTrue(write.result.failed());
+    assertEquals(1, eventBus.sent.size());
+
+    // Reads that time out on a partition are retried on any agent.
+    String partition = PartitionRouter.getInstance(CLUSTER, eventBus.vertx()).route("foo");
+    eventBus.sent.clear();
+    eventBus.fail(partition, ReplyFailure.TIMEOUT);
+    TestResult read = new TestResult();
+    client.send(partition, request("map", "get"), read);
+    assertTrue(read.result.succeeded());
+    assertEquals(Arrays.asList(partition, CLUSTER), eventBus.sent);
+  }
+
+  @Test
+  public void testPartitionRetry() {
+    TestEventBus eventBus = new TestEventBus();
+    ClusterClient client = new ClusterClient(CLUSTER, eventBus.vertx());
+    PartitionRouter partitions = PartitionRouter.getInstance(CLUSTER, eventBus.vertx());
+
+    String owner = partitions.route("foo");
+    assertEquals(new HashRing<String>(PARTITIONS).get("foo"), owner);
+    List<String> remaining = new ArrayList<>(PARTITIONS);
+    remaining.remove(owner);
+    String next = new HashRing<String>(remaining).get("foo");
+
+    // A request that wasn't received by its partition is retried against
+    // the partition that owns the data once the failed partition is gone,
+    // not an arbitrary agent.
+    eventBus.fail(owner, ReplyFailure.NO_HANDLERS);
+    TestResult result = new TestResult();
+    client.send(owner, request("lock", "acquire"), 1000, result);
+    assertTrue(result.result.succeeded());
+    assertEquals(Arrays.asList(owner, next), eventBus.sent);
+
+    // The failed partition stays excluded although the cluster still
+    // lists it until its registration expires.
+    assertEquals(2, eventBus.listed);
+    assertEquals(next, partitions.route("foo"));
+    assertEquals(next, partitions.route(request("lock", "acquire")));
+  }
+
+  @Test
+  public void testCoalescedReads() {
+    TestEventBus eventBus = new TestEventBus();
+    ClusterClient client = new ClusterClient(CLUSTER, eventBus.vertx());
+
+    // Identical reads sent while the first is pending share its reply.
+    eventBus.held = new ArrayList<>();
+    TestResult first = new TestResult();
+    TestResult second = new TestResult();
+    client.send(request("map", "get"), first);
+    client.send(request("map", "get"), second);
+    assertEquals(1, eventBus.sent.size());
+    eventBus.held.get(0).run();
+    assertTrue(first.result.succeeded());
+    assertTrue(second.result.succeeded());
+
+    // Each caller gets its own copy of the reply body.
+    first.result.result().body().putString("status", "changed");
+    assertEquals("ok", second.result.result().body().getString("status"));
+  }
+
+  /**
+   * Records the result of a request.
+   */
+  private static class TestResult implements Handler<AsyncResult<Message<JsonObject>>> {
+    private AsyncResult<Message<JsonObject>> result;
+
+    @Override
+    public void handle(AsyncResult<Message<JsonObject>> result) {
+      this.result = result;
+    }
+  }
+
+  /**
+   * Event bus that replies to requests synchronously.<p>
+   *
+   * Requests succeed unless a failure has been scripted for the address.
+   * Successful replies can be held until the test releases them.
+   * Partition list requests are answered with all the test partitions.
+   */
+  private static class TestEventBus extends Fake {
+    private final Map<String, Deque<ReplyFailure>> failures = new HashMap<>();
+    private final List<String> sent = new ArrayList<>();
+    private final List<Long> timeouts = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final Vertx vertx = proxy(Vertx.class);
+    private final EventBus eventBus = proxy(EventBus.class);
+    private List<Runnable> held;
+    private int listed;
+
+    private Vertx vertx() {
+      return vertx;
+    }
+
+    private void fail(String address, ReplyFailure failure) {
+      if (!failures.containsKey(address)) {
+        failures.put(address, new ArrayDeque<ReplyFailure>());
+      }
+      failures.get(address).add(failure);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object call(Object proxy, String method, Object[] args) {
+      switch (method) {
+        case "eventBus":
+          return eventBus;
+        case "currentContext":
+          return null;
+        case "setTimer":
+          delays.add((Long) args[0]);
+          ((Handler<Long>) args[1]).handle(0L);
+          return 0L;
+        case "sendWithTimeout":
+          reply((String) args[0], (JsonObject) args[1], (Long) args[2], (Handler<AsyncResult<Message<JsonObject>>>) args[3]);
+          return proxy;
+        default:
+          return super.call(proxy, method, args);
+      }
+    }
+
+    private void reply(String address, JsonObject request, long timeout, Handler<AsyncResult<Message<JsonObject>>> replyHandler) {
+      if ("partition".equals(request.getString("type"))) {
+        listed++;
+        JsonObject body = new JsonObject().putString("status", "ok").putArray("result", new JsonArray(PARTITIONS.toArray()));
+        new DefaultFutureResult<Message<JsonObject>>(message(body)).setHandler(replyHandler);
+        return;
+      }
+
+      sent.add(address);
+      timeouts.add(timeout);
+      Deque<ReplyFailure> addressFailures = failures.get(address);
+      if (addressFailures != null && !addressFailures.isEmpty()) {
+        ReplyFailure failure = addressFailures.poll();
+        new DefaultFutureResult<Message<JsonObject>>(new ReplyException(failure, failure.toString())).setHandler(replyHandler);
+      } else if (replyHandler != null && held != null) {
+        // Replies are held until the test releases them.
+        final Handler<AsyncResult<Message<JsonObject>>> handler = replyHandler;
+        held.add(new Runnable() {
+          @Override
+          public void run() {
+            new DefaultFutureResult<Message<JsonObject>>(message(new JsonObject().putString("status", "ok"))).setHandler(handler);
+          }
+        });
+      } else if (replyHandler != null) {
+        new DefaultFutureResult<Message<JsonObject>>(message(new JsonObject().putString("status", "ok"))).setHandler(replyHandler);
+      }
+    }
+  }
+
+}
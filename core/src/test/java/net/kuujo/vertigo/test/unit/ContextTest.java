@@ -18,12 +18,15 @@ package net.kuujo.vertigo.test.unit;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import net.kuujo.vertigo.component.ModuleConfig;
 import net.kuujo.vertigo.component.ModuleContext;
 import net.kuujo.vertigo.component.VerticleConfig;
 import net.kuujo.vertigo.component.VerticleContext;
 import net.kuujo.vertigo.impl.ContextBuilder;
+import net.kuujo.vertigo.io.connection.InputConnectionContext;
+import net.kuujo.vertigo.io.port.InputPortContext;
 import net.kuujo.vertigo.network.NetworkConfig;
 import net.kuujo.vertigo.network.NetworkContext;
 import net.kuujo.vertigo.network.impl.DefaultNetworkConfig;
@@ -255,4 +258,34 @@ public class ContextTest {
     assertNotNull(context.component("receiver"));
   }
 
+  @Test
+  public void testChainedVerticleContext() {
+    DefaultNetworkConfig network = new DefaultNetworkConfig("test");
+    network.addVerticle("parser", "com.test.Parser", 2);
+    network.addVerticle("filter", "com.test.Filter", 2);
+    network.addVerticle("sink", "sink.py", 2);
+    network.createConnection("parser", "out", "filter", "in").setChained(true);
+    network.createConnection("filter", "out", "sink", "in").setChained(true);
+    NetworkContext context = ContextBuilder.buildContext(network, "vertigo");
+    VerticleContext parser = context.component("parser");
+    VerticleContext filter = context.component("filter");
+    VerticleContext sink = context.component("sink");
+    assertEquals("filter", parser.chain());
+    assertEquals("filter", filter.chain());
+    assertNull(sink.chain());
+    for (InputPortContext port : filter.instance(1).input().ports()) {
+      assertEquals(1, port.connections().size());
+      for (InputConnectionContext connection : port.connections()) {
+        assertTrue(connection.isLocal());
+        assertTrue(connection.address().contains("parser[1]"));
+      }
+    }
+    for (InputPortContext port : sink.instance(1).input().ports()) {
+      assertEquals(2, port.connections().size());
+      for (InputConnectionContext connection : port.connections()) {
+        assertFalse(connection.isLocal());
+      }
+    }
+  }
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.vertx.java.core.eventbus.Message;
+
+/**
+ * Proxy based fake for unit testing against Vert.x interfaces.<p>
+ *
+ * Object methods are implemented by identity. Any other method which
+ * the fake doesn't handle fails with an {@link UnsupportedOperationException}
+ * so that tests break loudly when the code under test starts using
+ * something the fake doesn't support.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+abstract class Fake implements InvocationHandler {
+
+  /**
+   * Creates a proxy of the given interface backed by this fake.
+   *
+   * @param type The interface to proxy.
+   * @return A proxy of the interface.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T proxy(Class<T> type) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, this);
+  }
+
+  @Override
+  public final Object invoke(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return proxy.getClass().getInterfaces()[0].getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+      default:
+        return call(proxy, method.getName(), args);
+    }
+  }
+
+  /**
+   * Handles a method call on the proxy.
+   *
+   * @param proxy The proxy on which the method was called.
+   * @param method The name of the called method.
+   * @param args The method arguments.
+   * @return The method result.
+   */
+  protected Object call(Object proxy, String method, Object[] args) {
+    throw new UnsupportedOperationException(method);
+  }
+
+  /**
+   * Creates a message which supports only reading its body.
+   *
+   * @param body The message body.
+   * @return The message.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Message<T> message(final T body) {
+    return new Fake() {
+      @Override
+      protected Object call(Object proxy, String method, Object[] args) {
+        if (method.equals("body")) {
+          return body;
+        }
+        return super.call(proxy, method, args);
+      }
+    }.proxy(Message.class);
+  }
+
+}
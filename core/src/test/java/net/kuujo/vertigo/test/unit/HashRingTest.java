@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.kuujo.vertigo.util.HashRing;
+
+import org.junit.Test;
+
+/**
+ * Hash ring tests.
+ *
+ * @author Jordan Halterman
+ */
+public class HashRingTest {
+
+  @Test
+  public void testEmptyRing() {
+    HashRing<String> ring = new HashRing<String>(Collections.<String>emptyList());
+    assertTrue(ring.isEmpty());
+    assertNull(ring.get("foo"));
+  }
+
+  @Test
+  public void testKeysAreSpread() {
+    HashRing<String> ring = new HashRing<String>(Arrays.asList("a", "b", "c"));
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      String member = ring.get("key" + i);
+      counts.put(member, counts.containsKey(member) ? counts.get(member) + 1 : 1);
+    }
+    assertEquals(3, counts.size());
+    for (int count : counts.values()) {
+      assertTrue(count > 500);
+    }
+  }
+
+  @Test
+  public void testRemovingMemberOnlyMovesItsKeys() {
+    HashRing<String> ring = new HashRing<String>(Arrays.asList("a", "b", "c"));
+    HashRing<String> smaller = new HashRing<String>(Arrays.asList("a", "b"));
+    for (int i = 0; i < 1000; i++) {
+      String member = ring.get("key" + i);
+      if (!member.equals("c")) {
+        assertEquals(member, smaller.get("key" + i));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.kuujo.vertigo.io.InputCollector;
+import net.kuujo.vertigo.io.KeyExtractor;
+import net.kuujo.vertigo.io.TimestampExtractor;
+import net.kuujo.vertigo.io.join.Joiner;
+import net.kuujo.vertigo.io.join.StreamJoin;
+import net.kuujo.vertigo.io.port.InputPort;
+
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+
+/**
+ * Stream join tests.<p>
+ *
+ * Messages are strings of the form <code>key:timestamp</code> and joined
+ * messages are strings of the form <code>left|right</code>.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class JoinTest {
+
+  private static final KeyExtractor<String> KEY = new KeyExtractor<String>() {
+    @Override
+    public Object key(String message) {
+      return message.substring(0, message.indexOf(':'));
+    }
+  };
+
+  private static final TimestampExtractor<String> TIMESTAMP = new TimestampExtractor<String>() {
+    @Override
+    public long timestamp(String message) {
+      return Long.parseLong(message.substring(message.indexOf(':') + 1));
+    }
+  };
+
+  private static final Joiner<String, String, String> JOINER = new Joiner<String, String, String>() {
+    @Override
+    public String join(String left, String right) {
+      return left + "|" + right;
+    }
+  };
+
+  /**
+   * Creates an event time join of the "left" and "right" ports.
+   */
+  private static StreamJoin<String, String, String> createJoin(TestInput input, final List<String> results) {
+    return StreamJoin.create(input.collector(), "left", "right", JOINER)
+        .leftKeyExtractor(KEY)
+        .rightKeyExtractor(KEY)
+        .leftTimestampExtractor(TIMESTAMP)
+        .rightTimestampExtractor(TIMESTAMP)
+        .resultHandler(new Handler<String>() {
+          @Override
+          public void handle(String result) {
+            results.add(result);
+          }
+        });
+  }
+
+  @Test
+  public void testInvalidJoin() {
+    TestInput input = new TestInput();
+    try {
+      createJoin(input, new ArrayList<String>()).start();
+      fail("Expected unbounded join to fail");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+  @Test
+  public void testInnerJoin() {
+    TestInput input = new TestInput();
+    List<String> results = new ArrayList<>();
+    StreamJoin<String, String, String> join = createJoin(input, results).within(100);
+    join.start();
+
+    input.send("left", "a:0");
+    input.send("right", "b:10");
+    assertEquals(0, results.size());
+
+    // Messages are only joined with messages of the same key.
+    input.send("right", "a:50");
+    assertEquals(Arrays.asList("a:0|a:50"), results);
+
+    // Messages are joined with all matching messages on the other port.
+    input.send("left", "a:60");
+    input.send("right", "a:70");
+    assertEquals(Arrays.asList("a:0|a:50", "a:60|a:50", "a:0|a:70", "a:60|a:70"), results);
+    assertEquals(5, join.size());
+  }
+
+  @Test
+  public void testOutOfOrderJoin() {
+    TestInput input = new TestInput();
+    List<String> results = new ArrayList<>();
+    createJoin(input, results).within(50).start();
+
+    input.send("right", "a:100");
+    input.send("right", "a:20");
+
+    // Messages are matched by timestamp rather than by arrival order.
+    input.send("left", "a:110");
+    assertEquals(Arrays.asList("a:110|a:100"), results);
+    input.send("left", "a:30");
+    assertEquals(Arrays.asList("a:110|a:100", "a:30|a:20"), results);
+  }
+
+  @Test
+  public void testLateJoin() {
+    TestInput input = new TestInput();
+    List<String> results = new ArrayList<>();
+    StreamJoin<String, String, String> join = createJoin(input, results).within(100);
+    join.start();
+
+    input.send("right", "a:450");
+    input.watermark("left", 500);
+    input.watermark("right", 500);
+    assertEquals(1, join.size());
+
+    // A message that's behind the watermark is still joined with messages
+    // that remain in the window, but it's not held.
+    input.send("left", "a:380");
+    input.send("left", "a:300");
+    assertEquals(Arrays.asList("a:380|a:450"), results);
+    assertEquals(1, join.size());
+  }
+
+  @Test
+  public void testOutOfOrderEviction() {
+    TestInput input = new TestInput();
+    List<String> results = new ArrayList<>();
+    StreamJoin<String, String, String> join = createJoin(input, results).within(100).type(StreamJoin.Type.LEFT);
+    join.start();
+
+    // Messages are evicted by timestamp, so a message that arrived after a
+    // newer message is still evicted once the watermark passes it.
+    input.send("left", "a:100");
+    input.send("left", "b:10");
+    input.send("left", "a:120");
+    input.watermark("right", 150);
+    assertEquals(Arrays.asList("b:10|null"), results);
+    assertEquals(2, join.size());
+
+    input.send("right", "a:130");
+    assertEquals(Arrays.asList("b:10|null", "a:100|a:130", "a:120|a:130"), results);
+  }
+
+  @Test
+  public void testEviction() {
+    TestInput input = new TestInput();
+    List<String> results = new ArrayList<>();
+    StreamJoin<String, String, String> join = createJoin(input, results).within(100).type(StreamJoin.Type.LEFT);
+    join.start();
+
+    input.send("left", "a:0");
+    input.send("left", "b:50");
+    input.send("right", "b:60");
+    assertEquals(Arrays.asList("b:50|b:60"), results);
+
+    // Once the right port's watermark passes the window, left messages are
+    // evicted. Unmatched left messages are emitted by left joins.
+    input.watermark("right", 120);
+    assertEquals(Arrays.asList("b:50|b:60", "a:0|null"), results);
+    assertEquals(2, join.size());
+    input.watermark("right", 200);
+    assertEquals(2, results.size());
+    assertEquals(1, join.size());
+
+    // Evicted messages are never joined.
+    input.send("right", "a:90");
+    assertEquals(2, results.size());
+
+    input.watermark("left", 300);
+    assertEquals(0, join.size());
+  }
+
+  @Test
+  public void testCountBoundedJoin() {
+    TestInput input = new TestInput();
+    List<String> results = new ArrayList<>();
+    StreamJoin<String, String, String> join = createJoin(input, results).withinCount(3);
+    join.start();
+
+    // The state held by the join is bounded by the count for each key
+    // on each port no matter how many messages are received.
+    for (int i = 0; i < 10000; i++) {
+      input.send("left", "a:" + i);
+      input.send("left", "b:" + i);
+    }
+    assertEquals(6, join.size());
+    assertEquals(0, results.size());
+
+    input.send("right", "a:0");
+    assertEquals(Arrays.asList("a:9997|a:0", "a:9998|a:0", "a:9999|a:0"), results);
+    assertEquals(7, join.size());
+  }
+
+  /**
+   * Input collector whose port handlers can be called directly.
+   */
+  private static class TestInput {
+    @SuppressWarnings("rawtypes")
+    private final Map<String, Handler> messageHandlers = new HashMap<>();
+    private final Map<String, Handler<Long>> watermarkHandlers = new HashMap<>();
+
+    private InputCollector collector() {
+      return new Fake() {
+        @Override
+        protected Object call(Object proxy, String method, Object[] args) {
+          if (method.equals("port")) {
+            return port((String) args[0]);
+          }
+          return super.call(proxy, method, args);
+        }
+      }.proxy(InputCollector.class);
+    }
+
+    private InputPort port(final String name) {
+      return new Fake() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected Object call(Object proxy, String method, Object[] args) {
+          switch (method) {
+            case "messageHandler":
+              messageHandlers.put(name, (Handler) args[0]);
+              return proxy;
+            case "watermarkHandler":
+              watermarkHandlers.put(name, (Handler<Long>) args[0]);
+              return proxy;
+            default:
+              return super.call(proxy, method, args);
+          }
+        }
+      }.proxy(InputPort.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void send(String port, String message) {
+      messageHandlers.get(port).handle(message);
+    }
+
+    private void watermark(String port, long watermark) {
+      watermarkHandlers.get(port).handle(watermark);
+    }
+  }
+
+}
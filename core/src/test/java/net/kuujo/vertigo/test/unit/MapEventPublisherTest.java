@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.kuujo.vertigo.cluster.data.MapEvent;
+import net.kuujo.vertigo.cluster.data.impl.DefaultAsyncMap;
+import net.kuujo.vertigo.cluster.data.impl.MapEventPublisher;
+
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.EventBus;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Map event publisher tests.<p>
+ *
+ * Each publisher represents a cluster agent. All publishers share the same
+ * registry maps and event bus, and events are delivered synchronously.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MapEventPublisherTest {
+
+  @Test
+  public void testPublishWatchedMap() {
+    TestCluster cluster = new TestCluster();
+    MapEventPublisher publisher = cluster.publisher();
+
+    publisher.publish("test", "foo", MapEvent.Type.CREATE, "bar");
+    assertEquals(0, cluster.events("test").size());
+
+    publisher.watch("test", "a");
+    publisher.publish("test", "foo", MapEvent.Type.CREATE, "bar");
+    publisher.publish("test", "baz", MapEvent.Type.CREATE, "bar");
+    assertEquals(2, cluster.events("test").size());
+    assertEquals("foo", cluster.events("test").get(0).getString("key"));
+    assertEquals("baz", cluster.events("test").get(1).getString("key"));
+
+    // Events for other maps are not published.
+    publisher.publish("other", "foo", MapEvent.Type.CREATE, "bar");
+    assertEquals(0, cluster.events("other").size());
+
+    publisher.unwatch("test", "a");
+    publisher.publish("test", "foo", MapEvent.Type.UPDATE, "baz");
+    assertEquals(2, cluster.events("test").size());
+  }
+
+  @Test
+  public void testWatchNotifiesPublishers() {
+    TestCluster cluster = new TestCluster();
+    MapEventPublisher first = cluster.publisher();
+    MapEventPublisher second = cluster.publisher();
+
+    // Once the second publisher has found the map isn't watched it doesn't
+    // read the registry again until the refresh interval has passed.
+    assertFalse(second.isWatched("test"));
+    cluster.registry("test").put("a", System.currentTimeMillis() + 10000);
+    assertFalse(second.isWatched("test"));
+
+    // Watches registered through another publisher are seen immediately.
+    first.watch("test", "b");
+    assertTrue(second.isWatched("test"));
+
+    first.unwatch("test", "b");
+    assertTrue(second.isWatched("test"));
+    cluster.registry("test").remove("a");
+    first.watch("test", "b");
+    first.unwatch("test", "b");
+    assertFalse(second.isWatched("test"));
+  }
+
+  @Test
+  public void testWatchExpires() {
+    TestCluster cluster = new TestCluster();
+    MapEventPublisher publisher = cluster.publisher();
+
+    // A watcher that failed without unwatching leaves an expired lease
+    // in the registry, which is removed once it's found.
+    cluster.registry("test").put("a", System.currentTimeMillis() - 1);
+    assertFalse(publisher.isWatched("test"));
+    assertTrue(cluster.registry("test").isEmpty());
+    publisher.publish("test", "foo", MapEvent.Type.CREATE, "bar");
+    assertEquals(0, cluster.events("test").size());
+  }
+
+  @Test
+  public void testLocalWatch() {
+    TestCluster cluster = new TestCluster();
+    MapEventPublisher publisher = cluster.publisher();
+
+    publisher.addLocalWatch("test");
+    publisher.addLocalWatch("test");
+    assertEquals(1, cluster.registry("test").size());
+    assertEquals(1, cluster.timers.size());
+
+    // Local watches are renewed by the publisher.
+    String owner = cluster.registry("test").keySet().iterator().next();
+    cluster.registry("test").put(owner, 0L);
+    cluster.fireTimers();
+    assertTrue(cluster.registry("test").get(owner).longValue() > System.currentTimeMillis());
+
+    publisher.removeLocalWatch("test");
+    assertEquals(1, cluster.registry("test").size());
+    publisher.removeLocalWatch("test");
+    assertTrue(cluster.registry("test").isEmpty());
+    assertEquals(0, cluster.timers.size());
+
+    publisher.addLocalWatch("test");
+    publisher.close();
+    assertTrue(cluster.registry("test").isEmpty());
+    assertEquals(0, cluster.timers.size());
+  }
+
+  /**
+   * Shared maps, event bus and timers for a set of publishers.
+   */
+  private static class TestCluster extends Fake {
+    private final Map<String, Map<Object, Object>> maps = new HashMap<>();
+    private final Map<String, List<Handler<Message<JsonObject>>>> handlers = new HashMap<>();
+    private final Map<String, List<JsonObject>> published = new HashMap<>();
+    private final Map<Long, Handler<Long>> timers = new HashMap<>();
+    private final Vertx vertx = proxy(Vertx.class);
+    private final EventBus eventBus = proxy(EventBus.class);
+    private long timerID;
+
+    private MapEventPublisher publisher() {
+      return new MapEventPublisher(vertx) {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected <K, V> Map<K, V> getMap(String name) {
+          Map<Object, Object> map = maps.get(name);
+          if (map == null) {
+            map = new ConcurrentHashMap<>();
+            maps.put(name, map);
+          }
+          return (Map<K, V>) map;
+        }
+      };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Number> registry(String name) {
+      String mapName = "__vertigo.watches." + name;
+      if (!maps.containsKey(mapName)) {
+        maps.put(mapName, new ConcurrentHashMap<>());
+      }
+      return (Map<String, Number>) (Map<?, ?>) maps.get(mapName);
+    }
+
+    private List<JsonObject> events(String name) {
+      List<JsonObject> events = published.get(DefaultAsyncMap.eventAddress(name));
+      return events != null ? events : new ArrayList<JsonObject>();
+    }
+
+    private void fireTimers() {
+      for (Map.Entry<Long, Handler<Long>> entry : new ArrayList<>(timers.entrySet())) {
+        entry.getValue().handle(entry.getKey());
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object call(Object proxy, String method, Object[] args) {
+      switch (method) {
+        case "eventBus":
+          return eventBus;
+        case "runOnContext":
+          ((Handler<Void>) args[0]).handle(null);
+          return null;
+        case "setPeriodic":
+          timers.put(timerID, (Handler<Long>) args[1]);
+          return timerID++;
+        case "cancelTimer":
+          return timers.remove(args[0]) != null;
+        case "registerHandler":
+          if (!handlers.containsKey(args[0])) {
+            handlers.put((String) args[0], new ArrayList<Handler<Message<JsonObject>>>());
+          }
+          handlers.get(args[0]).add((Handler<Message<JsonObject>>) args[1]);
+          return proxy;
+        case "unregisterHandler":
+          if (handlers.containsKey(args[0])) {
+            handlers.get(args[0]).remove(args[1]);
+          }
+          return proxy;
+        case "publish":
+          if (!published.containsKey(args[0])) {
+            published.put((String) args[0], new ArrayList<JsonObject>());
+          }
+          published.get(args[0]).add((JsonObject) args[1]);
+          if (handlers.containsKey(args[0])) {
+            for (Handler<Message<JsonObject>> handler : new ArrayList<>(handlers.get(args[0]))) {
+              handler.handle(message((JsonObject) args[1]));
+            }
+          }
+          return proxy;
+        default:
+          return super.call(proxy, method, args);
+      }
+    }
+  }
+
+}
@@ -459,6 +459,15 @@ public class NetworkTest {
     assertEquals("test", network.getName());
   }
 
+  @Test
+  public void testCheckpointIntervalFromJson() {
+    JsonObject json = new JsonObject()
+        .putString(NetworkConfig.NETWORK_NAME, "test")
+        .putNumber(NetworkConfig.NETWORK_CHECKPOINT_INTERVAL, 5000);
+    NetworkConfig network = new Vertigo(null, null).createNetwork(json);
+    assertEquals(5000, network.getCheckpointInterval());
+  }
+
   @Test
   public void testAddFeederModuleFromJson() {
     JsonObject json = new JsonObject().putString(NetworkConfig.NETWORK_NAME, "test");
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.kuujo.vertigo.cluster.data.impl.BloomFilterSketch;
+import net.kuujo.vertigo.cluster.data.impl.CountMinSketch;
+import net.kuujo.vertigo.cluster.data.impl.HyperLogLogSketch;
+import net.kuujo.vertigo.cluster.data.impl.Sketch;
+
+import org.junit.Test;
+
+/**
+ * Sketch tests.
+ *
+ * @author Jordan Halterman
+ */
+public class SketchTest {
+
+  @Test
+  public void testHyperLogLogMerge() {
+    HyperLogLogSketch first = new HyperLogLogSketch(14);
+    HyperLogLogSketch second = new HyperLogLogSketch(14);
+    for (int i = 0; i < 60000; i++) {
+      first.add("item" + i, 1);
+      second.add("item" + (i + 40000), 1);
+    }
+    first.merge(second);
+    assertEquals(100000, first.count(), 3000);
+  }
+
+  @Test
+  public void testCountMinNeverUndercounts() {
+    CountMinSketch sketch = new CountMinSketch(2048, 5);
+    for (int i = 0; i < 10000; i++) {
+      sketch.add("key" + (i % 100), 1);
+    }
+    for (int i = 0; i < 100; i++) {
+      assertTrue(sketch.estimate("key" + i) >= 100);
+    }
+    assertEquals(0, sketch.estimate("missing"));
+  }
+
+  @Test
+  public void testBloomFilterHasNoFalseNegatives() {
+    BloomFilterSketch sketch = BloomFilterSketch.create(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      sketch.add("item" + i, 1);
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(sketch.mightContain("item" + i));
+      if (sketch.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 300);
+  }
+
+  @Test
+  public void testEncoding() {
+    BloomFilterSketch sparse = BloomFilterSketch.create(10000, 0.01);
+    sparse.add("foo", 1);
+    BloomFilterSketch decoded = (BloomFilterSketch) Sketch.fromJson(sparse.toJson());
+    assertTrue(decoded.mightContain("foo"));
+    assertFalse(decoded.mightContain("bar"));
+
+    CountMinSketch dense = new CountMinSketch(16, 2);
+    for (int i = 0; i < 1000; i++) {
+      dense.add("key" + i, 2);
+    }
+    CountMinSketch decodedCounts = (CountMinSketch) Sketch.fromJson(dense.toJson());
+    assertEquals(dense.estimate("key1"), decodedCounts.estimate("key1"));
+  }
+
+  @Test
+  public void testIncompatibleMerge() {
+    try {
+      new HyperLogLogSketch(12).merge(new HyperLogLogSketch(14));
+      fail("Merged incompatible sketches");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.kuujo.vertigo.cluster.data.AsyncMap;
+import net.kuujo.vertigo.state.CounterStore;
+import net.kuujo.vertigo.state.StateStore;
+import net.kuujo.vertigo.state.ComponentState;
+import net.kuujo.vertigo.state.impl.BufferAllocator;
+import net.kuujo.vertigo.state.impl.DefaultComponentState;
+import net.kuujo.vertigo.state.impl.DefaultCounterStore;
+import net.kuujo.vertigo.state.impl.DefaultStateStore;
+
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+/**
+ * State store tests.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class StateStoreTest {
+
+  @Test
+  public void testStateStore() {
+    StateStore store = new DefaultStateStore("test", BufferAllocator.direct());
+    for (int i = 0; i < 100000; i++) {
+      store.putString(String.valueOf(i), String.valueOf(i));
+    }
+    assertEquals(100000, store.size());
+    store.putString("1", "foobarbaz");
+    assertEquals("foobarbaz", store.getString("1"));
+    assertEquals("2", store.getString("2"));
+    assertTrue(store.remove("2"));
+    assertFalse(store.containsKey("2"));
+    assertNull(store.getString("2"));
+    assertEquals(99999, store.size());
+  }
+
+  @Test
+  public void testCounterStore() {
+    CounterStore store = new DefaultCounterStore("test", BufferAllocator.direct());
+    assertEquals(0, store.get("foo"));
+    assertEquals(1, store.increment("foo"));
+    assertEquals(11, store.add("foo", 10));
+    assertEquals(10, store.decrement("foo"));
+    store.set("bar", 100);
+    assertEquals(100, store.get("bar"));
+    assertEquals(2, store.size());
+    store.clear();
+    assertEquals(0, store.get("foo"));
+    assertTrue(store.isEmpty());
+  }
+
+  @Test
+  public void testRestoreReplacesContents() {
+    AsyncMap<String, String> map = testMap();
+    StateStore store = new DefaultStateStore("test", BufferAllocator.direct());
+    store.putString("foo", "bar");
+    store.snapshot(map, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        assertTrue(result.succeeded());
+      }
+    });
+
+    store.putString("foo", "baz");
+    store.putString("bar", "baz");
+    store.restore(map, new Handler<AsyncResult<Void>>() {
+      @Override
+      public void handle(AsyncResult<Void> result) {
+        assertTrue(result.succeeded());
+      }
+    });
+    assertEquals(1, store.size());
+    assertEquals("bar", store.getString("foo"));
+    assertFalse(store.containsKey("bar"));
+    store.close();
+  }
+
+  @Test
+  public void testMappedStoreClose() throws Exception {
+    File directory = File.createTempFile("vertigo-state-", "");
+    directory.delete();
+    StateStore store = new DefaultStateStore("test", BufferAllocator.mapped(directory));
+    for (int i = 0; i < 100000; i++) {
+      store.putString(String.valueOf(i), String.valueOf(i));
+    }
+    assertEquals("1000", store.getString("1000"));
+    store.close();
+    try {
+      store.size();
+      fail("Expected closed store");
+    } catch (IllegalStateException e) {
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testReservedStoreName() {
+    ComponentState state = new DefaultComponentState("test");
+    try {
+      state.getStateStore("__stores__");
+      fail("Expected reserved store name");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      state.getCounterStore("__stores__");
+      fail("Expected reserved store name");
+    } catch (IllegalArgumentException e) {
+    }
+    state.close();
+  }
+
+  /**
+   * Returns an asynchronous map backed by a local map.
+   */
+  @SuppressWarnings("unchecked")
+  private static AsyncMap<String, String> testMap() {
+    final Map<Object, Object> map = new HashMap<>();
+    return new Fake() {
+      @Override
+      protected Object call(Object proxy, String method, Object[] args) {
+        Object result;
+        switch (method) {
+          case "put":
+            result = map.put(args[0], args[1]);
+            break;
+          case "get":
+            result = map.get(args[0]);
+            break;
+          case "remove":
+            result = map.remove(args[0]);
+            break;
+          default:
+            return super.call(proxy, method, args);
+        }
+        Object handler = args[args.length-1];
+        if (handler instanceof Handler) {
+          new DefaultFutureResult<Object>(result).setHandler((Handler<AsyncResult<Object>>) handler);
+        }
+        return null;
+      }
+    }.proxy(AsyncMap.class);
+  }
+
+}
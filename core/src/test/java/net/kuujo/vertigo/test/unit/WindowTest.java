@@ -0,0 +1,480 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.vertigo.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.kuujo.vertigo.io.Input;
+import net.kuujo.vertigo.io.InputWatermarkSupport;
+import net.kuujo.vertigo.io.KeyExtractor;
+import net.kuujo.vertigo.io.TimestampExtractor;
+import net.kuujo.vertigo.io.window.Aggregator;
+import net.kuujo.vertigo.io.window.Aggregators;
+import net.kuujo.vertigo.io.window.Window;
+import net.kuujo.vertigo.io.window.WindowResult;
+import net.kuujo.vertigo.io.window.WindowedInput;
+import net.kuujo.vertigo.util.TimerWheel;
+
+import org.junit.Test;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+/**
+ * Window tests.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class WindowTest {
+
+  @Test
+  public void testSlidingWindow() {
+    Window window = Window.sliding(1000, 250);
+    assertEquals(Window.Type.SLIDING, window.type());
+    assertEquals(1000, window.size());
+    assertEquals(250, window.slide());
+    assertTrue(!window.isCountBased());
+  }
+
+  @Test
+  public void testInvalidSlidingWindow() {
+    try {
+      Window.sliding(1000, 300);
+      fail("Expected invalid window");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testInvalidTumblingWindow() {
+    try {
+      Window.tumblingCount(0);
+      fail("Expected invalid window");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testMergeAggregator() {
+    Aggregator<Integer, double[], Double> sum = Aggregators.sum();
+    double[] first = sum.create();
+    first = sum.add(first, 1);
+    first = sum.add(first, 2);
+    double[] second = sum.add(sum.create(), 3);
+    assertEquals(6.0, sum.result(sum.merge(first, second)), 0);
+  }
+
+  @Test
+  public void testEventTimeTumblingWindow() {
+    TestInput input = new TestInput();
+    final List<WindowResult<Long>> results = new ArrayList<>();
+    WindowedInput.create(input, Window.tumbling(1000), Aggregators.<Long>count())
+        .timestampExtractor(new TimestampExtractor<Long>() {
+          @Override
+          public long timestamp(Long message) {
+            return message;
+          }
+        })
+        .resultHandler(new Handler<WindowResult<Long>>() {
+          @Override
+          public void handle(WindowResult<Long> result) {
+            results.add(result);
+          }
+        })
+        .start();
+
+    input.send(1500L);
+    input.send(500L);
+    input.send(1200L);
+    input.watermark(1000);
+    assertEquals(1, results.size());
+    assertEquals(0, results.get(0).start());
+    assertEquals(1, (long) results.get(0).result());
+
+    input.send(900L);
+    input.watermark(2000);
+    assertEquals(2, results.size());
+    assertEquals(1000, results.get(1).start());
+    assertEquals(2, (long) results.get(1).result());
+  }
+
+  @Test
+  public void testEventTimeSessionWindow() {
+    TestInput input = new TestInput();
+    final List<WindowResult<Long>> results = new ArrayList<>();
+    WindowedInput.create(input, Window.session(100), Aggregators.<Long>count())
+        .timestampExtractor(new TimestampExtractor<Long>() {
+          @Override
+          public long timestamp(Long message) {
+            return message;
+          }
+        })
+        .resultHandler(new Handler<WindowResult<Long>>() {
+          @Override
+          public void handle(WindowResult<Long> result) {
+            results.add(result);
+          }
+        })
+        .start();
+
+    input.send(0L);
+    input.send(150L);
+    input.send(80L);
+    input.send(400L);
+    input.watermark(300);
+    assertEquals(1, results.size());
+    assertEquals(0, results.get(0).start());
+    assertEquals(250, results.get(0).end());
+    assertEquals(3, (long) results.get(0).result());
+  }
+
+  @Test
+  public void testTimerWheel() throws Exception {
+    TestVertx vertx = new TestVertx();
+    TimerWheel wheel = new TimerWheel(vertx.vertx(), 10, 8);
+    final List<String> expired = new ArrayList<>();
+    wheel.schedule(50, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        expired.add("first");
+      }
+    });
+    long cancelled = wheel.schedule(50, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        expired.add("cancelled");
+      }
+    });
+    wheel.schedule(250, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        expired.add("second");
+      }
+    });
+    assertTrue(wheel.cancel(cancelled));
+    assertFalse(wheel.cancel(cancelled));
+    assertEquals(2, wheel.size());
+
+    // The deadline of the second timeout wraps around the wheel's slots,
+    // so it must not expire when its slot is first passed.
+    Thread.sleep(150);
+    vertx.fireTimers();
+    assertEquals(1, expired.size());
+    assertEquals("first", expired.get(0));
+    assertEquals(1, wheel.size());
+
+    Thread.sleep(150);
+    vertx.fireTimers();
+    assertEquals(2, expired.size());
+    assertEquals("second", expired.get(1));
+
+    // Vert.x timer IDs start at 0, so the wheel's periodic timer must
+    // be cancelled once no timeouts remain even if its ID is 0.
+    assertEquals(0, wheel.size());
+    assertEquals(0, vertx.timers.size());
+  }
+
+  @Test
+  public void testTimerWheelCancelInSameTick() throws Exception {
+    TestVertx vertx = new TestVertx();
+    final TimerWheel wheel = new TimerWheel(vertx.vertx(), 10, 8);
+    final List<String> expired = new ArrayList<>();
+    final long[] later = new long[1];
+    wheel.schedule(50, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        expired.add("first");
+        assertTrue(wheel.cancel(later[0]));
+      }
+    });
+    later[0] = wheel.schedule(50, new Handler<Void>() {
+      @Override
+      public void handle(Void _) {
+        expired.add("cancelled");
+      }
+    });
+
+    // Both timeouts expire in the same tick, but the first handler
+    // cancels the second before it is called.
+    Thread.sleep(100);
+    vertx.fireTimers();
+    assertEquals(1, expired.size());
+    assertEquals("first", expired.get(0));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testProcessingTimeTumblingWindow() throws Exception {
+    TestVertx vertx = new TestVertx();
+    TestInput input = new TestInput(vertx.vertx());
+    final List<WindowResult<Long>> results = new ArrayList<>();
+    WindowedInput.create(input, Window.tumbling(200), Aggregators.<String>count())
+        .resultHandler(new Handler<WindowResult<Long>>() {
+          @Override
+          public void handle(WindowResult<Long> result) {
+            results.add(result);
+          }
+        })
+        .start();
+
+    input.send("a");
+    input.send("b");
+    input.send("c");
+    awaitBoundary(200);
+    assertEquals(0, results.size());
+    vertx.fireTimers();
+    assertEquals(1, results.size());
+    assertEquals(3, (long) results.get(0).result());
+    assertEquals(200, results.get(0).end() - results.get(0).start());
+    assertEquals(0, results.get(0).end() % 200);
+
+    // Tumbling windows don't overlap, so an empty window emits nothing.
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(1, results.size());
+
+    input.send("d");
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(2, results.size());
+    assertEquals(1, (long) results.get(1).result());
+    assertTrue(results.get(1).start() >= results.get(0).end());
+  }
+
+  @Test
+  public void testProcessingTimeSlidingWindow() throws Exception {
+    TestVertx vertx = new TestVertx();
+    TestInput input = new TestInput(vertx.vertx());
+    final List<WindowResult<Long>> results = new ArrayList<>();
+    WindowedInput.create(input, Window.sliding(400, 200), Aggregators.<String>count())
+        .resultHandler(new Handler<WindowResult<Long>>() {
+          @Override
+          public void handle(WindowResult<Long> result) {
+            results.add(result);
+          }
+        })
+        .start();
+
+    input.send("a");
+    input.send("b");
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(1, results.size());
+    assertEquals(2, (long) results.get(0).result());
+    assertEquals(400, results.get(0).end() - results.get(0).start());
+
+    // Each window covers the current pane and the previous pane.
+    input.send("c");
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(2, results.size());
+    assertEquals(3, (long) results.get(1).result());
+    assertEquals(200, results.get(1).end() - results.get(0).end());
+
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(3, results.size());
+    assertEquals(1, (long) results.get(2).result());
+
+    // Once no messages remain in any pane the key is no longer emitted.
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(3, results.size());
+  }
+
+  @Test
+  public void testProcessingTimeSlidingWindowCatchUp() throws Exception {
+    TestVertx vertx = new TestVertx();
+    TestInput input = new TestInput(vertx.vertx());
+    final List<WindowResult<Long>> results = new ArrayList<>();
+    WindowedInput.create(input, Window.sliding(400, 200), Aggregators.<String>count())
+        .resultHandler(new Handler<WindowResult<Long>>() {
+          @Override
+          public void handle(WindowResult<Long> result) {
+            results.add(result);
+          }
+        })
+        .start();
+
+    // When the timer falls two slides behind, each missed window is
+    // closed in turn and the panes that slid out of them are cleared.
+    input.send("a");
+    input.send("b");
+    awaitBoundary(200);
+    Thread.sleep(400);
+    vertx.fireTimers();
+    assertEquals(2, results.size());
+    assertEquals(2, (long) results.get(0).result());
+    assertEquals(2, (long) results.get(1).result());
+    assertEquals(200, results.get(1).end() - results.get(0).end());
+
+    input.send("c");
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(3, results.size());
+    assertEquals(1, (long) results.get(2).result());
+  }
+
+  @Test
+  public void testProcessingTimeKeyedWindow() throws Exception {
+    TestVertx vertx = new TestVertx();
+    TestInput input = new TestInput(vertx.vertx());
+    final Map<Object, Long> results = new HashMap<>();
+    WindowedInput.create(input, Window.tumbling(200), Aggregators.<String>count())
+        .keyExtractor(new KeyExtractor<String>() {
+          @Override
+          public Object key(String message) {
+            return message.substring(0, 1);
+          }
+        })
+        .resultHandler(new Handler<WindowResult<Long>>() {
+          @Override
+          public void handle(WindowResult<Long> result) {
+            assertFalse(results.containsKey(result.key()));
+            results.put(result.key(), result.result());
+          }
+        })
+        .start();
+
+    input.send("a1");
+    input.send("b1");
+    input.send("a2");
+    input.send("a3");
+    awaitBoundary(200);
+    vertx.fireTimers();
+    assertEquals(2, results.size());
+    assertEquals(3, (long) results.get("a"));
+    assertEquals(1, (long) results.get("b"));
+  }
+
+  /**
+   * Sleeps until just after the next time based window boundary.
+   */
+  private static void awaitBoundary(long slide) throws InterruptedException {
+    Thread.sleep(slide - System.currentTimeMillis() % slide + 20);
+  }
+
+  /**
+   * Input that allows messages and watermarks to be pushed directly.
+   */
+  private static class TestInput implements Input<TestInput>, InputWatermarkSupport<TestInput> {
+    @SuppressWarnings("rawtypes")
+    private Handler messageHandler;
+    private Handler<Long> watermarkHandler;
+    private long watermark = Long.MIN_VALUE;
+    private final Vertx vertx;
+
+    private TestInput() {
+      this(null);
+    }
+
+    private TestInput(Vertx vertx) {
+      this.vertx = vertx;
+    }
+
+    @Override
+    public Vertx vertx() {
+      return vertx;
+    }
+
+    @Override
+    public TestInput pause() {
+      return this;
+    }
+
+    @Override
+    public TestInput resume() {
+      return this;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public TestInput messageHandler(Handler handler) {
+      this.messageHandler = handler;
+      return this;
+    }
+
+    @Override
+    public long watermark() {
+      return watermark;
+    }
+
+    @Override
+    public TestInput watermarkHandler(Handler<Long> handler) {
+      this.watermarkHandler = handler;
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void send(Object message) {
+      messageHandler.handle(message);
+    }
+
+    private void watermark(long watermark) {
+      this.watermark = watermark;
+      watermarkHandler.handle(watermark);
+    }
+  }
+
+  /**
+   * Vert.x instance whose periodic timers are only fired manually.<p>
+   *
+   * Timer IDs are assigned from 0 as they are by Vert.x itself.
+   */
+  private static class TestVertx extends Fake {
+    private final Map<Long, Handler<Long>> timers = new HashMap<>();
+    private final Context context = proxy(Context.class);
+    private long timerID;
+
+    private Vertx vertx() {
+      return proxy(Vertx.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object call(Object proxy, String method, Object[] args) {
+      switch (method) {
+        case "currentContext":
+          return context;
+        case "setPeriodic":
+          timers.put(timerID, (Handler<Long>) args[1]);
+          return timerID++;
+        case "cancelTimer":
+          return timers.remove(args[0]) != null;
+        default:
+          return super.call(proxy, method, args);
+      }
+    }
+
+    /**
+     * Fires all periodic timers once.
+     */
+    private void fireTimers() {
+      for (Map.Entry<Long, Handler<Long>> entry : new ArrayList<>(timers.entrySet())) {
+        entry.getValue().handle(entry.getKey());
+      }
+    }
+  }
+
+}